@@ -0,0 +1,102 @@
+package ru.practicum.explorewithme.stats.bench;
+
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Детерминированный поток хитов: при одном seed одна и та же последовательность.
+// Популярность uri и активность IP распределены по Ципфу (ранг 0 - самый частый),
+// время идёт от START с шагом step без перестановок, как при обычном приёме
+public final class HitDataGenerator {
+
+    public static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private static final String[] APPS = {"ewm-main-service", "ewm-admin", "ewm-mobile"};
+    private static final double[] APP_WEIGHTS = {0.8, 0.05, 0.15};
+
+    private final SplittableRandom random;
+    private final ZipfSampler uris;
+    private final ZipfSampler ips;
+    private final long stepNanos;
+    private long sequence;
+
+    public HitDataGenerator(long seed, int uriCount, int ipCount, Duration step) {
+        this.random = new SplittableRandom(seed);
+        this.uris = new ZipfSampler(uriCount, 1.1);
+        this.ips = new ZipfSampler(ipCount, 0.8);
+        this.stepNanos = step.toNanos();
+    }
+
+    public EndpointHit next() {
+        LocalDateTime timestamp = START.plusNanos(sequence++ * stepNanos).withNano(0);
+        return new EndpointHit(app(), uri(uris.sample(random)), ip(ips.sample(random)), timestamp);
+    }
+
+    public List<EndpointHit> next(int count) {
+        List<EndpointHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(next());
+        }
+        return hits;
+    }
+
+    public Hit nextHit() {
+        EndpointHit hit = next();
+        return new Hit(null, hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp());
+    }
+
+    public List<Hit> nextHits(int count) {
+        List<Hit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(nextHit());
+        }
+        return hits;
+    }
+
+    // Uri с рангом популярности rank
+    public static String uri(int rank) {
+        return "/events/" + (rank + 1);
+    }
+
+    private static String ip(int rank) {
+        return "10." + (rank >>> 16 & 0xFF) + "." + (rank >>> 8 & 0xFF) + "." + (rank & 0xFF);
+    }
+
+    private String app() {
+        double value = random.nextDouble();
+        for (int i = 0; i < APPS.length - 1; i++) {
+            value -= APP_WEIGHTS[i];
+            if (value < 0) {
+                return APPS[i];
+            }
+        }
+        return APPS[APPS.length - 1];
+    }
+
+    // Выбор ранга с вероятностью 1 / (rank + 1)^exponent по накопленным весам
+    private static final class ZipfSampler {
+
+        private final double[] cumulative;
+
+        ZipfSampler(int size, double exponent) {
+            cumulative = new double[Math.max(1, size)];
+            double sum = 0;
+            for (int rank = 0; rank < cumulative.length; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            double value = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, value);
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.explorewithme.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Запись хитов через StatService в синхронном режиме: по одному (транзакция на хит) и пачкой /hits.
+// Результат - хиты в секунду; таблица растёт от итерации к итерации, как в работе.
+// Хиты сгенерированы заранее и идут по кругу, чтобы генератор не попадал в замер и аллокации
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class IngestBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int BATCHES = 100;
+
+    private ConfigurableApplicationContext context;
+    private StatService statService;
+    private List<List<EndpointHit>> batches;
+    private List<EndpointHit> hits;
+    private int nextBatch;
+    private int nextHit;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = StatsServerContext.start();
+        statService = context.getBean(StatService.class);
+        HitDataGenerator generator = new HitDataGenerator(42, 10_000, 200_000, Duration.ofMillis(1));
+        batches = new ArrayList<>(BATCHES);
+        for (int i = 0; i < BATCHES; i++) {
+            batches.add(generator.next(BATCH_SIZE));
+        }
+        hits = batches.stream().flatMap(List::stream).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public EndpointHit saveHit() {
+        EndpointHit hit = hits.get(nextHit);
+        nextHit = (nextHit + 1) % hits.size();
+        return statService.saveHit(hit);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int saveHits() {
+        List<EndpointHit> batch = batches.get(nextBatch);
+        nextBatch = (nextBatch + 1) % batches.size();
+        return statService.saveHits(batch);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.explorewithme.stats.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// (Де)сериализация EndpointHit и ViewStats в кодировках HitWireFormat: одиночный хит (/hit),
+// пачка хитов (/hits) и ответ /stats
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int STATS_SIZE = 100;
+    private static final TypeReference<List<EndpointHit>> HIT_LIST = new TypeReference<>() {
+    };
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public HitWireFormat format;
+
+    private ObjectMapper mapper;
+    private EndpointHit hit;
+    private List<EndpointHit> batch;
+    private List<ViewStats> stats;
+    private byte[] hitBytes;
+    private byte[] batchBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = format.createMapper();
+        HitDataGenerator generator = new HitDataGenerator(42, 10_000, 200_000, Duration.ofMillis(10));
+        hit = generator.next();
+        batch = generator.next(BATCH_SIZE);
+        stats = IntStream.range(0, STATS_SIZE)
+                .mapToObj(rank -> new ViewStats("ewm-main-service", HitDataGenerator.uri(rank), 1_000_000L / (rank + 1)))
+                .toList();
+        hitBytes = mapper.writeValueAsBytes(hit);
+        batchBytes = mapper.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public byte[] writeHit() throws IOException {
+        return mapper.writeValueAsBytes(hit);
+    }
+
+    @Benchmark
+    public EndpointHit readHit() throws IOException {
+        return mapper.readValue(hitBytes, EndpointHit.class);
+    }
+
+    @Benchmark
+    public byte[] writeHitBatch() throws IOException {
+        return mapper.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public List<EndpointHit> readHitBatch() throws IOException {
+        return mapper.readValue(batchBytes, HIT_LIST);
+    }
+
+    @Benchmark
+    public byte[] writeStats() throws IOException {
+        return mapper.writeValueAsBytes(stats);
+    }
+}
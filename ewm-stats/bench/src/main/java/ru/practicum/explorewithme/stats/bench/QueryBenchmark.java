@@ -0,0 +1,100 @@
+package ru.practicum.explorewithme.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Запросы статистики к сырым хитам (HitRepository) на rows хитах за 30 дней.
+// Хиты пишутся один раз на запуск в пустую таблицу; на PostgreSQL нужна отдельная пустая БД,
+// иначе запросы посчитают и уже лежащие там хиты
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final Duration SPAN = Duration.ofDays(30);
+    private static final int URI_COUNT = 10_000;
+    private static final int FILTER_SIZE = 10;
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"1000000"})
+    public int rows;
+
+    // DAY - сутки в середине периода, MONTH - весь период
+    @Param({"DAY", "MONTH"})
+    public String window;
+
+    // ALL - все uri, HOT - самые популярные, COLD - из хвоста распределения
+    @Param({"ALL", "HOT", "COLD"})
+    public String uris;
+
+    private ConfigurableApplicationContext context;
+    private HitRepository repository;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private List<String> uriFilter;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = StatsServerContext.start();
+        repository = context.getBean(HitRepository.class);
+        Long existing = context.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM hits", Long.class);
+        if (existing == null || existing == 0) {
+            HitDataGenerator generator = new HitDataGenerator(7, URI_COUNT, 200_000, SPAN.dividedBy(rows));
+            for (int inserted = 0; inserted < rows; inserted += INSERT_BATCH) {
+                repository.insertBatch(generator.nextHits(Math.min(INSERT_BATCH, rows - inserted)));
+            }
+        }
+
+        LocalDateTime middle = HitDataGenerator.START.plus(SPAN.dividedBy(2));
+        start = window.equals("DAY") ? middle : HitDataGenerator.START;
+        end = window.equals("DAY") ? middle.plusDays(1) : HitDataGenerator.START.plus(SPAN);
+        uriFilter = switch (uris) {
+            case "HOT" -> ranks(0);
+            case "COLD" -> ranks(URI_COUNT - FILTER_SIZE);
+            default -> null;
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ViewStats> findStats() {
+        return repository.findStats(start, end, uriFilter);
+    }
+
+    @Benchmark
+    public List<ViewStats> findUniqueStats() {
+        return repository.findUniqueStats(start, end, uriFilter);
+    }
+
+    private static List<String> ranks(int from) {
+        return IntStream.range(from, from + FILTER_SIZE).mapToObj(HitDataGenerator::uri).toList();
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.explorewithme.stats.bench;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.explorewithme.stats.server.StatsServerApplication;
+
+// Контекст сервера статистики без HTTP, с профилем bench (application-bench.yml).
+// По умолчанию БД - H2 в памяти в режиме PostgreSQL; локальный PostgreSQL подключается переменными
+// окружения SPRING_DATASOURCE_URL, SPRING_DATASOURCE_USERNAME, SPRING_DATASOURCE_PASSWORD,
+// которые наследуют и JVM замеров
+final class StatsServerContext {
+
+    private StatsServerContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(StatsServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("bench")
+                .logStartupInfo(false)
+                .run();
+    }
+}
@@ -6,13 +6,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.dto.StatsBatchQuery;
+import ru.practicum.explorewithme.stats.dto.StatsBatchRequest;
+import ru.practicum.explorewithme.stats.dto.StatsBatchResult;
 import ru.practicum.explorewithme.stats.dto.ViewStats;
 
 import java.time.LocalDateTime;
@@ -20,6 +31,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Slf4j
 @Component
@@ -30,6 +42,16 @@ public class StatsClient {
     @Value("${stats-server.url:http://localhost:9090}")
     private String serverUrl;
 
+    // Кодировка хитов: JSON, SMILE или CBOR
+    @Value("${stats-server.wire-format:JSON}")
+    private HitWireFormat wireFormat;
+
+    // Попыток отправки хита при сбое сети или ошибке сервера (5xx), все - с одним id
+    @Value("${stats-server.hit-attempts:3}")
+    private int hitAttempts;
+
+    private static final long RETRY_DELAY_MS = 100;
+
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public StatsClient(RestTemplateBuilder builder) {
@@ -45,15 +67,31 @@ public class StatsClient {
         this.restTemplate = builder
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
                 .build();
-        log.info("StatsClient инициализирован с URL: {}", serverUrl);
+        // Свой конвертер - первым, чтобы время хита уходило секундами эпохи
+        if (wireFormat == HitWireFormat.SMILE) {
+            restTemplate.getMessageConverters().add(0,
+                    new MappingJackson2SmileHttpMessageConverter(wireFormat.createMapper()));
+        } else if (wireFormat == HitWireFormat.CBOR) {
+            restTemplate.getMessageConverters().add(0,
+                    new MappingJackson2CborHttpMessageConverter(wireFormat.createMapper()));
+        }
+        log.info("StatsClient инициализирован с URL: {}, кодировка хитов: {}", serverUrl, wireFormat);
     }
 
+    // Хиту без id присваивается случайный, и повторные попытки отправки идут с ним:
+    // дошедший до сервера, но не подтверждённый хит не посчитается дважды. Переданный хит не меняется
     public void postHit(EndpointHit hit) {
-        try {
-            restTemplate.postForObject("/hit", hit, EndpointHit.class);
-        } catch (HttpStatusCodeException e) {
-            throw new RuntimeException("Ошибка при сохранении статистики: " + e.getStatusCode());
+        HttpEntity<EndpointHit> entity = hitEntity(withId(hit));
+        send(() -> restTemplate.postForObject("/hit", entity, EndpointHit.class),
+                "Ошибка при сохранении статистики: ");
+    }
+
+    public void postHits(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
         }
+        HttpEntity<List<EndpointHit>> entity = hitEntity(hits.stream().map(StatsClient::withId).toList());
+        send(() -> restTemplate.postForLocation("/hits", entity), "Ошибка при сохранении пачки статистики: ");
     }
 
     public ResponseEntity<List<ViewStats>> getStats(LocalDateTime start, LocalDateTime end,
@@ -73,6 +111,66 @@ public class StatsClient {
         );
     }
 
+    // Несколько запросов статистики одним обращением; результаты по id запросов
+    public Map<String, StatsBatchResult> getStatsBatch(List<StatsBatchQuery> queries) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        try {
+            return restTemplate.exchange(
+                    "/stats/batch",
+                    HttpMethod.POST,
+                    new HttpEntity<>(new StatsBatchRequest(queries), headers),
+                    new ParameterizedTypeReference<Map<String, StatsBatchResult>>() {}
+            ).getBody();
+        } catch (HttpStatusCodeException e) {
+            throw new RuntimeException("Ошибка при получении статистики пачкой: " + e.getStatusCode());
+        }
+    }
+
+    // Ошибки клиента (4xx) не повторяются: тот же запрос получит тот же ответ
+    private void send(Runnable request, String error) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                request.run();
+                return;
+            } catch (HttpServerErrorException | ResourceAccessException e) {
+                if (attempt >= hitAttempts) {
+                    if (e instanceof HttpServerErrorException serverError) {
+                        throw new RuntimeException(error + serverError.getStatusCode());
+                    }
+                    throw e;
+                }
+                log.debug("[StatsClient] Попытка {} отправки хитов не удалась: {}", attempt, e.getMessage());
+                pause(attempt);
+            } catch (HttpStatusCodeException e) {
+                throw new RuntimeException(error + e.getStatusCode());
+            }
+        }
+    }
+
+    private static void pause(int attempt) {
+        try {
+            Thread.sleep(RETRY_DELAY_MS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Отправка хитов прервана", e);
+        }
+    }
+
+    private static EndpointHit withId(EndpointHit hit) {
+        if (hit.getId() != null) {
+            return hit;
+        }
+        return new EndpointHit(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp(),
+                UUID.randomUUID().toString());
+    }
+
+    private <T> HttpEntity<T> hitEntity(T body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(wireFormat.getMediaType()));
+        return new HttpEntity<>(body, headers);
+    }
+
     public static String clientIpAddress(HttpServletRequest request) {
         String xForwardedForHeader = request.getHeader("X-Forwarded-For");
         if (xForwardedForHeader == null) {
@@ -1,6 +1,10 @@
 package ru.practicum.explorewithme.stats.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,12 +18,34 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class EndpointHit {
 
+    // Наибольшие длины - как у колонок словарей и hits на сервере статистики
+    public static final int MAX_APP_LENGTH = 255;
+    public static final int MAX_URI_LENGTH = 512;
+    public static final int MAX_IP_LENGTH = 64;
+    public static final int MAX_ID_LENGTH = 64;
+
+    @NotBlank
+    @Size(max = MAX_APP_LENGTH)
     private String app;
 
+    @NotBlank
+    @Size(max = MAX_URI_LENGTH)
     private String uri;
 
+    @NotBlank
+    @Size(max = MAX_IP_LENGTH)
     private String ip;
 
+    @NotNull
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime timestamp;
-}
\ No newline at end of file
+
+    // Идентификатор хита от клиента: повторная отправка того же хита не посчитается дважды
+    @Size(max = MAX_ID_LENGTH)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String id;
+
+    public EndpointHit(String app, String uri, String ip, LocalDateTime timestamp) {
+        this(app, uri, ip, timestamp, null);
+    }
+}
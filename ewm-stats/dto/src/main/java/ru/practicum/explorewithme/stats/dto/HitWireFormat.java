@@ -0,0 +1,137 @@
+package ru.practicum.explorewithme.stats.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// Кодировка хитов при передаче, выбирается по Content-Type. JSON - по умолчанию.
+// Двоичные Smile и CBOR передают время числом секунд эпохи (UTC) вместо строки,
+// а повторяющиеся в пачке имена полей и значения (app, uri) - ссылками на первое вхождение.
+public enum HitWireFormat {
+    JSON(HitWireFormat.JSON_VALUE),
+    SMILE(HitWireFormat.SMILE_VALUE),
+    CBOR(HitWireFormat.CBOR_VALUE);
+
+    public static final String JSON_VALUE = "application/json";
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final String CBOR_VALUE = "application/cbor";
+
+    private final String mediaType;
+
+    HitWireFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    // Формат по заголовку Content-Type (параметры вроде charset не учитываются); неизвестный - JSON
+    public static HitWireFormat fromContentType(String contentType) {
+        if (contentType != null) {
+            String type = contentType.split(";", 2)[0].trim();
+            for (HitWireFormat format : values()) {
+                if (format.mediaType.equalsIgnoreCase(type)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    // Формат по первым байтам данных, когда Content-Type нет (кадры UDP/TCP): заголовок Smile ":)\n",
+    // у CBOR корень - массив, объект или метка self-describe; остальное считается JSON
+    public static HitWireFormat detect(byte[] data, int offset, int length) {
+        if (length >= 3 && data[offset] == ':' && data[offset + 1] == ')' && data[offset + 2] == '\n') {
+            return SMILE;
+        }
+        if (length > 0) {
+            int first = data[offset] & 0xFF;
+            if ((first >= 0x80 && first <= 0xBF) || first == 0xD9) {
+                return CBOR;
+            }
+        }
+        return JSON;
+    }
+
+    // ObjectMapper формата; у двоичных EndpointHit.timestamp - секунды эпохи
+    public ObjectMapper createMapper() {
+        ObjectMapper mapper = switch (this) {
+            case JSON -> new ObjectMapper();
+            case SMILE -> new ObjectMapper(SmileFactory.builder()
+                    .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                    .build());
+            case CBOR -> new ObjectMapper(CBORFactory.builder()
+                    .enable(CBORGenerator.Feature.STRINGREF)
+                    .build());
+        };
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        if (isBinary()) {
+            mapper.addMixIn(EndpointHit.class, EpochTimestampMixin.class);
+        }
+        return mapper;
+    }
+
+    abstract static class EpochTimestampMixin {
+
+        @JsonSerialize(using = EpochSecondSerializer.class)
+        @JsonDeserialize(using = EpochSecondDeserializer.class)
+        private LocalDateTime timestamp;
+    }
+
+    static class EpochSecondSerializer extends StdSerializer<LocalDateTime> {
+
+        EpochSecondSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    // Принимает и строку в формате Constants.FORMATTER: клиент мог собрать пачку сам
+    static class EpochSecondDeserializer extends StdDeserializer<LocalDateTime> {
+
+        private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(Constants.FORMATTER);
+
+        EpochSecondDeserializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                return LocalDateTime.ofEpochSecond(p.getLongValue(), 0, ZoneOffset.UTC);
+            }
+            if (p.currentToken() == JsonToken.VALUE_STRING) {
+                return LocalDateTime.parse(p.getText(), FORMATTER);
+            }
+            return (LocalDateTime) ctxt.handleUnexpectedToken(LocalDateTime.class, p);
+        }
+    }
+}
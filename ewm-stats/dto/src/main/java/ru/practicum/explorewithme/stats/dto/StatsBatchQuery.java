@@ -0,0 +1,47 @@
+package ru.practicum.explorewithme.stats.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Один запрос в POST /stats/batch; параметры те же, что у GET /stats
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsBatchQuery {
+
+    // Ключ результата в ответе, уникален в пачке
+    @NotBlank
+    @Size(max = 64)
+    private String id;
+
+    @NotNull
+    @JsonFormat(pattern = Constants.FORMATTER)
+    private LocalDateTime start;
+
+    @NotNull
+    @JsonFormat(pattern = Constants.FORMATTER)
+    private LocalDateTime end;
+
+    private List<String> uris;
+
+    private boolean unique;
+
+    @Builder.Default
+    private UniqueMode uniqueMode = UniqueMode.EXACT;
+
+    private Integer limit;
+
+    private int offset;
+
+    private boolean rollup;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.explorewithme.stats.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Тело POST /stats/batch
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsBatchRequest {
+
+    @NotEmpty
+    private List<@Valid StatsBatchQuery> queries;
+}
@@ -0,0 +1,20 @@
+package ru.practicum.explorewithme.stats.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Результат одного запроса из POST /stats/batch и источник, из которого он получен
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsBatchResult {
+
+    private String plan;
+
+    private List<ViewStats> stats;
+}
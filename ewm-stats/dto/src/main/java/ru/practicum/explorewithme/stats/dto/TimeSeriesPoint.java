@@ -0,0 +1,30 @@
+package ru.practicum.explorewithme.stats.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Точка ряда /stats/timeseries: хиты группы за одну корзину времени
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesPoint {
+
+    // Начало корзины
+    @JsonFormat(pattern = Constants.FORMATTER)
+    private LocalDateTime bucket;
+
+    private String app;
+
+    // uri или префикс uri; нет при группировке по приложению
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String uri;
+
+    private Long hits;
+}
@@ -0,0 +1,9 @@
+package ru.practicum.explorewithme.stats.dto;
+
+// Способ подсчёта уникальных посетителей в /stats?unique=true
+public enum UniqueMode {
+    // Точный подсчёт
+    EXACT,
+    // Оценка по HyperLogLog-скетчам агрегатов, стандартная ошибка ~1.6%
+    APPROXIMATE
+}
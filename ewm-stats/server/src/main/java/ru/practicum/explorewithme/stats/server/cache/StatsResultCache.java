@@ -0,0 +1,241 @@
+package ru.practicum.explorewithme.stats.server.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.ClusterProperties;
+import ru.practicum.explorewithme.stats.server.config.ReplicaProperties;
+import ru.practicum.explorewithme.stats.server.config.StatsCacheProperties;
+import ru.practicum.explorewithme.stats.server.ingest.IngestWatermark;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.rollup.HyperLogLog;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Кэш результатов /stats по параметрам запроса. Диапазон, закончившийся до устойчивого водяного знака
+// приёма (IngestWatermark), уже не пополнится: такой результат хранится, пока не изменилась ревизия
+// закрытых данных, а его ETag вычисляется из запроса и ревизии без обращения к хранилищу.
+// Результат для диапазона, который ещё пополняется, живёт openTtl, его ETag - хеш строк.
+// Объём ограничен оценкой размера строк, вытесняются давно не читанные результаты.
+// Водяной знак и ревизия свои у каждого экземпляра сервера, поэтому в ETag есть метка запуска.
+// В кластере хиты приходят и на другие узлы, мимо местного водяного знака, поэтому все диапазоны - открытые.
+@Slf4j
+@Component
+public class StatsResultCache {
+
+    // Оценка памяти на результат и на строку ViewStats без учёта символов app и uri
+    private static final long ENTRY_OVERHEAD = 256;
+    private static final long ROW_OVERHEAD = 96;
+
+    private final IngestWatermark watermark;
+    private final boolean enabled;
+    private final boolean clustered;
+    private final long maxWeight;
+    private final long openTtlNanos;
+    private final Duration closedDelay;
+    private final LongSupplier nanoTime;
+    private final String epoch;
+
+    private final LinkedHashMap<StatsQuery, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter notModifiedCounter;
+    private final Counter evictionCounter;
+
+    @Autowired
+    public StatsResultCache(StatsCacheProperties properties, ClusterProperties clusterProperties,
+                            ReplicaProperties replicaProperties, IngestWatermark watermark, MeterRegistry registry) {
+        this(properties, clusterProperties, replicaProperties, watermark, registry, System::nanoTime);
+    }
+
+    StatsResultCache(StatsCacheProperties properties, ClusterProperties clusterProperties,
+                     ReplicaProperties replicaProperties, IngestWatermark watermark, MeterRegistry registry,
+                     LongSupplier nanoTime) {
+        this.watermark = watermark;
+        this.enabled = properties.isEnabled();
+        this.clustered = clusterProperties.isEnabled();
+        this.maxWeight = properties.getMemoryBudget().toBytes();
+        this.openTtlNanos = properties.getOpenTtl().toNanos();
+        this.closedDelay = closedDelay(properties, replicaProperties);
+        this.nanoTime = nanoTime;
+        this.epoch = Long.toString(System.currentTimeMillis(), 36);
+
+        this.hitCounter = requests(registry, "hit");
+        this.missCounter = requests(registry, "miss");
+        this.notModifiedCounter = requests(registry, "not_modified");
+        this.evictionCounter = Counter.builder("stats.cache.evictions")
+                .description("Результаты, вытесненные из кэша /stats по объёму")
+                .register(registry);
+        Gauge.builder("stats.cache.entries", this, StatsResultCache::size)
+                .description("Результаты в кэше /stats")
+                .register(registry);
+        Gauge.builder("stats.cache.weight", this, StatsResultCache::weight)
+                .description("Оценка памяти под результаты в кэше /stats")
+                .baseUnit("bytes")
+                .register(registry);
+        if (enabled) {
+            log.info("[StatsResultCache] Кэш /stats: до {} байт, открытые диапазоны {}",
+                    maxWeight, properties.getOpenTtl());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ETag ответа, если его можно узнать без обращения к хранилищу, иначе null
+    public String peekEtag(StatsQuery query) {
+        if (!enabled) {
+            return null;
+        }
+        if (isClosed(query)) {
+            return closedEtag(query, watermark.getLateRevision());
+        }
+        synchronized (this) {
+            Entry entry = entries.get(query);
+            return entry != null && isValid(entry) ? entry.cached().etag() : null;
+        }
+    }
+
+    // Результат из кэша; при промахе - из loader с сохранением в кэш
+    public CachedStats get(StatsQuery query, Supplier<StatsResult> loader) {
+        if (!enabled) {
+            return new CachedStats(loader.get(), null);
+        }
+        // Ревизия и закрытость определяются до подсчёта: опоздавшие хиты, дописанные во время подсчёта,
+        // сменят ревизию, и результат сразу окажется устаревшим
+        long revision = watermark.getLateRevision();
+        boolean closed = isClosed(query);
+        synchronized (this) {
+            Entry entry = entries.get(query);
+            if (entry != null) {
+                if (isValid(entry)) {
+                    hitCounter.increment();
+                    return entry.cached();
+                }
+                remove(query);
+            }
+        }
+        missCounter.increment();
+
+        StatsResult result = loader.get();
+        String etag = closed ? closedEtag(query, revision) : openEtag(result);
+        CachedStats cached = new CachedStats(result, etag);
+        put(query, new Entry(cached, closed, revision, nanoTime.getAsLong() + openTtlNanos, weigh(result)));
+        return cached;
+    }
+
+    // Ответ 304 без обращения к хранилищу
+    public void recordNotModified() {
+        notModifiedCounter.increment();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long weight() {
+        return weight;
+    }
+
+    private boolean isClosed(StatsQuery query) {
+        if (clustered) {
+            return false;
+        }
+        LocalDateTime stable = watermark.getStableWatermark();
+        return !stable.equals(LocalDateTime.MIN) && query.end().isBefore(stable.minus(closedDelay));
+    }
+
+    // Реплика отстаёт до max-lag: диапазон, закрытый по местному водяному знаку, на ней может быть
+    // ещё неполным, и неполный результат остался бы в кэше до смены ревизии
+    private static Duration closedDelay(StatsCacheProperties properties, ReplicaProperties replicaProperties) {
+        Duration delay = properties.getClosedDelay();
+        if (replicaProperties.isEnabled() && delay.compareTo(replicaProperties.getMaxLag()) < 0) {
+            log.info("[StatsResultCache] stats.cache.closed-delay={} меньше stats.replicas.max-lag, используется {}",
+                    delay, replicaProperties.getMaxLag());
+            return replicaProperties.getMaxLag();
+        }
+        return delay;
+    }
+
+    private boolean isValid(Entry entry) {
+        return entry.closed()
+                ? entry.revision() == watermark.getLateRevision()
+                : nanoTime.getAsLong() - entry.expiresAt() < 0;
+    }
+
+    private synchronized void put(StatsQuery query, Entry entry) {
+        if (entry.weight() > maxWeight) {
+            return;
+        }
+        remove(query);
+        entries.put(query, entry);
+        weight += entry.weight();
+        Iterator<Map.Entry<StatsQuery, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight();
+            eldest.remove();
+            evictionCounter.increment();
+        }
+    }
+
+    private void remove(StatsQuery query) {
+        Entry removed = entries.remove(query);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    private String closedEtag(StatsQuery query, long revision) {
+        return "\"c" + epoch + "-" + revision + "-" + Long.toHexString(HyperLogLog.hash(query.toString())) + "\"";
+    }
+
+    // Одинаковые строки дают одинаковый ETag и после повторного подсчёта
+    private static String openEtag(StatsResult result) {
+        long hash = 1;
+        for (ViewStats row : result.stats()) {
+            hash = 31 * hash + HyperLogLog.hash(row.getApp() + '\n' + row.getUri());
+            hash = 31 * hash + row.getHits();
+        }
+        return "\"o" + Long.toHexString(hash) + "\"";
+    }
+
+    private static long weigh(StatsResult result) {
+        long bytes = ENTRY_OVERHEAD;
+        for (ViewStats row : result.stats()) {
+            bytes += ROW_OVERHEAD + 2L * (length(row.getApp()) + length(row.getUri()));
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("stats.cache.requests")
+                .description("Запросы /stats к кэшу результатов")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // Результат вместе с ETag; etag == null, если кэш выключен
+    public record CachedStats(StatsResult result, String etag) {
+    }
+
+    private record Entry(CachedStats cached, boolean closed, long revision, long expiresAt, long weight) {
+    }
+}
@@ -0,0 +1,5 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+// Узел кластера; local - этот сервер
+public record ClusterNode(String id, String url, boolean local) {
+}
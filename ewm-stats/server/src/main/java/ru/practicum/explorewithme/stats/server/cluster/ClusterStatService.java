@@ -0,0 +1,221 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.ClusterProperties;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.planner.StatsSink;
+import ru.practicum.explorewithme.stats.server.planner.UriPatterns;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesAccumulator;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesGroup;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+// Статистика кластера: хиты уходят на узел-владелец пары (app, uri) по HashRing, запросы
+// рассылаются всем узлам и собираются здесь. Каждая строка /stats и /stats/top (и уникальные по ней)
+// целиком лежит на одном узле, поэтому ответы узлов не пересекаются и складываются простым объединением
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "stats.cluster.enabled", havingValue = "true")
+public class ClusterStatService implements StatService, DisposableBean {
+
+    private final StatService localStatService;
+    private final ShardClient client;
+    private final HashRing ring;
+    // Обращения к узлам ждут сеть, поэтому на каждое - свой виртуальный поток
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ClusterStatService(@Qualifier(StatService.LOCAL) StatService localStatService, ShardClient client,
+                              ClusterProperties properties) {
+        this.localStatService = localStatService;
+        this.client = client;
+        this.ring = new HashRing(nodes(properties), properties.getVirtualNodes());
+        log.info("[ClusterStatService] Узел {} в кластере из {} узлов", properties.getNodeId(), ring.nodes().size());
+    }
+
+    @Override
+    public EndpointHit saveHit(EndpointHit hit) {
+        ClusterNode owner = ring.owner(hit.getApp(), hit.getUri());
+        if (owner.local()) {
+            return localStatService.saveHit(hit);
+        }
+        client.saveHits(owner, List.of(hit));
+        return hit;
+    }
+
+    // Пачка делится по узлам-владельцам и пишется на них параллельно. Запись не атомарна
+    // между узлами: при ошибке одного узла остальные части уже сохранены, повтор пачки
+    // отсекается дедупликацией по id хита
+    @Override
+    public int saveHits(List<EndpointHit> hits) {
+        Map<ClusterNode, List<EndpointHit>> parts = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            parts.computeIfAbsent(ring.owner(hit.getApp(), hit.getUri()), node -> new ArrayList<>()).add(hit);
+        }
+        log.debug("[ClusterStatService] Пачка из {} хитов разделена на {} узлов", hits.size(), parts.size());
+        List<Integer> saved = scatter(parts.keySet(), node -> node.local()
+                ? localStatService.saveHits(parts.get(node))
+                : client.saveHits(node, parts.get(node)));
+        return saved.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    // Узлы считают строки без свёртки по шаблонам и без смещения: каждому достаточно отдать
+    // offset + limit лучших своих строк, общая страница собирается из них здесь
+    @Override
+    public StatsResult findStats(StatsQuery query) {
+        log.debug("[ClusterStatService] Получение статистики: start={}, end={}, uris={}, unique={}, limit={}, offset={}",
+                query.start(), query.end(), query.uris(), query.unique(), query.limit(), query.offset());
+
+        Integer shardLimit = query.rollUp() || query.limit() == null ? null : query.offset() + query.limit();
+        StatsQuery shardQuery = new StatsQuery(query.start(), query.end(), query.uris(), query.unique(),
+                query.uniqueMode(), shardLimit, 0, false);
+        List<ViewStats> stats = new ArrayList<>();
+        scatter(ring.nodes(), node -> node.local()
+                ? localStatService.findStats(shardQuery).stats()
+                : client.findStats(node, shardQuery)).forEach(stats::addAll);
+
+        if (query.rollUp() && query.uris() != null) {
+            stats = UriPatterns.rollUp(stats, query.uris());
+        }
+        stats.sort(StatsPage.ORDER);
+        List<ViewStats> page = StatsPage.apply(stats, query.limit(), query.offset());
+        log.debug("[ClusterStatService] Получена статистика кластера: {} записей", page.size());
+        return new StatsResult(QueryPlan.CLUSTER, page);
+    }
+
+    // Ответы узлов нужно собрать целиком до сортировки, поэтому строки передаются после подсчёта
+    @Override
+    public void streamStats(StatsQuery query, StatsSink sink) {
+        StatsResult result = findStats(query);
+        sink.plan(result.plan());
+        result.stats().forEach(sink::accept);
+    }
+
+    // Точки узлов с одинаковыми (корзина, app, группа) складываются. Уникальные по группе из uri
+    // разных узлов сложить нельзя (посетитель посчитался бы на каждом), поэтому unique - только по uri
+    @Override
+    public TimeSeriesResult findTimeSeries(TimeSeriesQuery query) {
+        log.debug("[ClusterStatService] Получение ряда: start={}, end={}, interval={}, groupBy={}, uris={}, unique={}",
+                query.start(), query.end(), query.interval(), query.groupBy(), query.uris(), query.unique());
+        if (query.unique() && query.groupBy() != TimeSeriesGroup.URI) {
+            throw new IllegalArgumentException("В кластере уникальные посетители ряда считаются только "
+                    + "с groupBy=URI");
+        }
+
+        Map<PointKey, Long> hits = new LinkedHashMap<>();
+        for (List<TimeSeriesPoint> points : scatter(ring.nodes(), node -> node.local()
+                ? localStatService.findTimeSeries(query).points()
+                : client.findTimeSeries(node, query))) {
+            for (TimeSeriesPoint point : points) {
+                hits.merge(new PointKey(point.getBucket(), point.getApp(), point.getUri()), point.getHits(), Long::sum);
+            }
+        }
+        List<TimeSeriesPoint> merged = hits.entrySet().stream()
+                .map(e -> new TimeSeriesPoint(e.getKey().bucket(), e.getKey().app(), e.getKey().group(), e.getValue()))
+                .sorted(TimeSeriesAccumulator.ORDER)
+                .toList();
+        log.debug("[ClusterStatService] Получен ряд кластера: {} точек", merged.size());
+        return new TimeSeriesResult(QueryPlan.CLUSTER, merged);
+    }
+
+    // Пара (app, uri) считается только на узле-владельце, поэтому k лучших uri приложения в кластере
+    // есть среди k лучших на каком-то узле: списки узлов объединяются и снова режутся до k
+    @Override
+    public List<ViewStats> findTop(String app, int minutes, int k) {
+        Map<String, List<ViewStats>> byApp = new LinkedHashMap<>();
+        for (List<ViewStats> top : scatter(ring.nodes(), node -> node.local()
+                ? localStatService.findTop(app, minutes, k)
+                : client.findTop(node, app, minutes, k))) {
+            top.forEach(row -> byApp.computeIfAbsent(row.getApp(), name -> new ArrayList<>()).add(row));
+        }
+        List<ViewStats> merged = new ArrayList<>();
+        byApp.values().forEach(rows -> rows.stream().sorted(StatsPage.ORDER).limit(k).forEach(merged::add));
+        merged.sort(StatsPage.ORDER);
+        return merged;
+    }
+
+    // Другие узлы опрашиваются параллельно, этот - в вызывающем потоке (там же транзакция и выбор реплики).
+    // Ошибка любого узла - ошибка всего запроса: неполная статистика хуже, чем её отсутствие,
+    // поэтому незавершённые обращения к остальным узлам прерываются
+    private <T> List<T> scatter(Iterable<ClusterNode> nodes, Function<ClusterNode, T> request) {
+        List<Future<T>> futures = new ArrayList<>();
+        for (ClusterNode node : nodes) {
+            if (!node.local()) {
+                futures.add(executor.submit(() -> request.apply(node)));
+            }
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (ClusterNode node : nodes) {
+                if (node.local()) {
+                    results.add(request.apply(node));
+                }
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Опрос узлов кластера прерван", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    // Незавершённые обращения к узлам прерываются при остановке контекста
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static List<ClusterNode> nodes(ClusterProperties properties) {
+        Set<String> ids = new HashSet<>();
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (ClusterProperties.Node node : properties.getNodes()) {
+            if (!ids.add(node.getId())) {
+                throw new IllegalStateException("Повторяющийся id узла кластера: " + node.getId());
+            }
+            nodes.add(new ClusterNode(node.getId(), node.getUrl(), Objects.equals(node.getId(), properties.getNodeId())));
+        }
+        if (!ids.contains(properties.getNodeId())) {
+            throw new IllegalStateException("stats.cluster.node-id=" + properties.getNodeId()
+                    + " не найден среди stats.cluster.nodes");
+        }
+        return nodes;
+    }
+
+    private record PointKey(LocalDateTime bucket, String app, String group) {
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+import ru.practicum.explorewithme.stats.server.rollup.HyperLogLog;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Согласованное хеширование пар (app, uri) по узлам: у каждого узла virtualNodes точек на кольце,
+// пара принадлежит первой точке по часовой стрелке от своего хеша. При добавлении узла
+// переезжает только примерно 1/N пар, остальные остаются на прежних узлах
+public class HashRing {
+
+    private final TreeMap<Long, ClusterNode> ring = new TreeMap<>();
+    private final List<ClusterNode> nodes;
+
+    public HashRing(List<ClusterNode> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("В кластере должен быть хотя бы один узел");
+        }
+        this.nodes = List.copyOf(nodes);
+        for (ClusterNode node : nodes) {
+            for (int i = 0; i < Math.max(1, virtualNodes); i++) {
+                // Совпадение точек разных узлов почти невероятно; при совпадении точка остаётся за первым
+                ring.putIfAbsent(HyperLogLog.hash(node.id() + "#" + i), node);
+            }
+        }
+    }
+
+    public ClusterNode owner(String app, String uri) {
+        Map.Entry<Long, ClusterNode> entry = ring.ceilingEntry(HyperLogLog.hash(app + '\n' + uri));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<ClusterNode> nodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,148 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.practicum.explorewithme.stats.dto.Constants;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.ClusterProperties;
+import ru.practicum.explorewithme.stats.server.dto.HitBatchResponse;
+import ru.practicum.explorewithme.stats.server.exception.ShardUnavailableException;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Обращения к внутренним эндпоинтам других узлов кластера (ShardController).
+// Хиты передаются в Smile, результаты - в JSON; любая ошибка узла - ShardUnavailableException
+@Component
+@ConditionalOnProperty(name = "stats.cluster.enabled", havingValue = "true")
+public class ShardClient {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(Constants.FORMATTER);
+
+    private final RestTemplate restTemplate;
+    private final MeterRegistry registry;
+
+    public ShardClient(RestTemplateBuilder builder, ClusterProperties properties, MeterRegistry registry) {
+        this.restTemplate = builder
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setReadTimeout(properties.getRequestTimeout())
+                .build();
+        // Свой конвертер - первым, чтобы время хита уходило секундами эпохи
+        restTemplate.getMessageConverters().add(0,
+                new MappingJackson2SmileHttpMessageConverter(HitWireFormat.SMILE.createMapper()));
+        this.registry = registry;
+    }
+
+    // Записать хиты на узле, возвращает число записанных
+    public int saveHits(ClusterNode node, List<EndpointHit> hits) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(HitWireFormat.SMILE_VALUE));
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        return call(node, "hits", () -> {
+            HitBatchResponse response = restTemplate.postForObject(URI.create(node.url() + ShardController.HITS_PATH),
+                    new HttpEntity<>(hits, headers), HitBatchResponse.class);
+            return response != null && response.getSaved() != null ? response.getSaved() : 0;
+        });
+    }
+
+    // Статистика по хитам узла, без свёртки по шаблонам
+    public List<ViewStats> findStats(ClusterNode node, StatsQuery query) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(node.url())
+                .path(ShardController.STATS_PATH)
+                .queryParam("start", format(query.start()))
+                .queryParam("end", format(query.end()))
+                .queryParam("unique", query.unique())
+                .queryParam("uniqueMode", query.uniqueMode())
+                .queryParam("offset", query.offset());
+        if (query.uris() != null) {
+            uri.queryParam("uris", query.uris().toArray());
+        }
+        if (query.limit() != null) {
+            uri.queryParam("limit", query.limit());
+        }
+        return call(node, "stats", () -> get(uri, new ParameterizedTypeReference<List<ViewStats>>() {
+        }));
+    }
+
+    // Точки ряда по хитам узла
+    public List<TimeSeriesPoint> findTimeSeries(ClusterNode node, TimeSeriesQuery query) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(node.url())
+                .path(ShardController.TIMESERIES_PATH)
+                .queryParam("start", format(query.start()))
+                .queryParam("end", format(query.end()))
+                .queryParam("interval", query.interval())
+                .queryParam("groupBy", query.groupBy())
+                .queryParam("depth", query.depth())
+                .queryParam("unique", query.unique())
+                .queryParam("uniqueMode", query.uniqueMode());
+        if (query.uris() != null) {
+            uri.queryParam("uris", query.uris().toArray());
+        }
+        return call(node, "timeseries", () -> get(uri, new ParameterizedTypeReference<List<TimeSeriesPoint>>() {
+        }));
+    }
+
+    // Популярные uri узла
+    public List<ViewStats> findTop(ClusterNode node, String app, int minutes, int k) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(node.url())
+                .path(ShardController.TOP_PATH)
+                .queryParam("minutes", minutes)
+                .queryParam("k", k);
+        if (app != null) {
+            uri.queryParam("app", app);
+        }
+        return call(node, "top", () -> get(uri, new ParameterizedTypeReference<List<ViewStats>>() {
+        }));
+    }
+
+    private <T> List<T> get(UriComponentsBuilder uri, ParameterizedTypeReference<List<T>> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        List<T> body = restTemplate.exchange(uri.encode().build().toUri(), HttpMethod.GET, new HttpEntity<>(headers), type)
+                .getBody();
+        return body != null ? body : List.of();
+    }
+
+    private <T> T call(ClusterNode node, String operation, Supplier<T> request) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return request.get();
+        } catch (RestClientException e) {
+            outcome = "error";
+            throw new ShardUnavailableException(node.id(), "Узел кластера " + node.id() + " недоступен: "
+                    + e.getMessage(), e);
+        } finally {
+            sample.stop(Timer.builder("stats.cluster.requests")
+                    .description("Обращения к другим узлам кластера")
+                    .tag("node", node.id())
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+    }
+
+    private static String format(LocalDateTime time) {
+        return time.format(FORMATTER);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.explorewithme.stats.dto.Constants;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.dto.HitBatchResponse;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesGroup;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Внутренние эндпоинты узла кластера: работают только с хитами этого узла, без маршрутизации.
+// Вызываются другими узлами (ShardClient), снаружи кластера их следует закрыть
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "stats.cluster.enabled", havingValue = "true")
+public class ShardController {
+
+    static final String HITS_PATH = "/internal/shard/hits";
+    static final String STATS_PATH = "/internal/shard/stats";
+    static final String TIMESERIES_PATH = "/internal/shard/timeseries";
+    static final String TOP_PATH = "/internal/shard/top";
+
+    private final StatService localStatService;
+
+    public ShardController(@Qualifier(StatService.LOCAL) StatService localStatService) {
+        this.localStatService = localStatService;
+    }
+
+    @PostMapping(value = HITS_PATH, consumes = {MediaType.APPLICATION_JSON_VALUE, HitWireFormat.SMILE_VALUE})
+    public ResponseEntity<HitBatchResponse> hits(@RequestBody List<EndpointHit> hits) {
+        log.debug("Saving {} hits routed to this shard", hits.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(new HitBatchResponse(localStatService.saveHits(hits)));
+    }
+
+    @GetMapping(STATS_PATH)
+    public List<ViewStats> stats(@RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime start,
+                                 @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime end,
+                                 @RequestParam(required = false) List<String> uris,
+                                 @RequestParam(defaultValue = "false") boolean unique,
+                                 @RequestParam(defaultValue = "EXACT") UniqueMode uniqueMode,
+                                 @RequestParam(required = false) Integer limit,
+                                 @RequestParam(defaultValue = "0") int offset) {
+        log.debug("Getting shard stats from {} to {}, uris: {}, unique: {}, limit: {}", start, end, uris, unique, limit);
+        return localStatService.findStats(new StatsQuery(start, end, uris, unique, uniqueMode, limit, offset)).stats();
+    }
+
+    @GetMapping(TIMESERIES_PATH)
+    public List<TimeSeriesPoint> timeSeries(
+            @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime end,
+            @RequestParam Granularity interval,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam TimeSeriesGroup groupBy,
+            @RequestParam int depth,
+            @RequestParam(defaultValue = "false") boolean unique,
+            @RequestParam(defaultValue = "EXACT") UniqueMode uniqueMode) {
+        log.debug("Getting shard time series from {} to {} by {}, groupBy: {}", start, end, interval, groupBy);
+        return localStatService.findTimeSeries(
+                new TimeSeriesQuery(start, end, interval, uris, groupBy, depth, unique, uniqueMode)).points();
+    }
+
+    @GetMapping(TOP_PATH)
+    public List<ViewStats> top(@RequestParam(required = false) String app,
+                               @RequestParam int minutes,
+                               @RequestParam int k) {
+        log.debug("Getting shard top {} uris for app {} over {} minutes", k, app, minutes);
+        return localStatService.findTop(app, minutes, k);
+    }
+}
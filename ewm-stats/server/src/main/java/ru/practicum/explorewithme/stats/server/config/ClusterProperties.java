@@ -0,0 +1,43 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Настройки кластера серверов статистики (stats.cluster.*): состав узлов задаётся статически,
+// каждый узел хранит хиты своей доли пар (app, uri)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+
+    // Идентификатор этого узла, должен быть среди nodes
+    private String nodeId;
+
+    // Все узлы кластера, включая этот; у всех узлов список должен совпадать
+    private List<Node> nodes = new ArrayList<>();
+
+    // Точек на кольце на узел: больше точек - ровнее доли узлов
+    private int virtualNodes = 128;
+
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    // Предельное время ответа другого узла; не меньше stats.planner.query-timeout
+    private Duration requestTimeout = Duration.ofSeconds(15);
+
+    @Getter
+    @Setter
+    public static class Node {
+
+        private String id;
+
+        // Базовый адрес узла, например http://stats-server-2:9090
+        private String url;
+    }
+}
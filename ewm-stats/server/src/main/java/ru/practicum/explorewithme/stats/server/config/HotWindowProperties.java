@@ -0,0 +1,27 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+// Настройки окна поминутных счётчиков в памяти (stats.hot.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.hot")
+public class HotWindowProperties {
+
+    // Отвечать на /stats без БД, если диапазон целиком внутри окна
+    private boolean enabled = true;
+
+    // Длина окна, округляется до минут
+    private Duration window = Duration.ofHours(24);
+
+    // Память под счётчики: на каждую пару (app, uri) уходит 8 байт на минуту окна
+    private DataSize memoryBudget = DataSize.ofMegabytes(64);
+
+    // Держать счётчики вне кучи (direct memory, ограничена -XX:MaxDirectMemorySize)
+    private boolean offHeap = false;
+}
@@ -0,0 +1,11 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+// Режим приёма одиночных хитов
+public enum IngestMode {
+    // Запись в БД в потоке запроса
+    SYNC,
+    // Постановка в буфер и пакетная запись фоновыми потоками
+    ASYNC,
+    // ASYNC при включённых агрегатах (stats.rollup.enabled), иначе SYNC
+    AUTO
+}
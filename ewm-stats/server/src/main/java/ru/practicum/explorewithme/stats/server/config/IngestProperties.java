@@ -0,0 +1,117 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+// Настройки приёма хитов (stats.ingest.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest")
+public class IngestProperties {
+
+    // Максимальное количество хитов в одном запросе POST /hits
+    private int maxBatchSize = 50_000;
+
+    private IngestMode mode = IngestMode.AUTO;
+
+    private Buffer buffer = new Buffer();
+
+    private Socket socket = new Socket();
+
+    private Wal wal = new Wal();
+
+    private Dedup dedup = new Dedup();
+
+    // С агрегатами каждая запись обновляет счётчики, скетчи и битовые карты горячих корзин под блокировкой
+    // строк; в потоке запроса /hit это делалось бы на каждый хит, а буфер делает это раз на пачку
+    public boolean isAsync(RollupProperties rollupProperties) {
+        return mode == IngestMode.ASYNC || mode == IngestMode.AUTO && rollupProperties.isEnabled();
+    }
+
+    @Getter
+    @Setter
+    public static class Buffer {
+
+        // Количество разделов буфера, у каждого свой поток записи
+        private int partitions = 4;
+
+        // Ёмкость одного раздела; при переполнении клиент получает 429
+        private int capacity = 65_536;
+
+        // Запись начинается, как только в разделе набралось столько хитов...
+        private int flushSize = 1_000;
+
+        // ...или прошло это время с предыдущей записи
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        // Значение заголовка Retry-After при переполнении
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        // Пауза перед повторной записью пачки после ошибки БД; пока пачка не записана, её хиты
+        // занимают место в разделе
+        private Duration retryBackoff = Duration.ofSeconds(1);
+
+        // Сколько ждать выгрузки буфера при остановке сервера
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Socket {
+
+        // Приём хитов по UDP и TCP в обход HTTP, без подтверждения записи
+        private boolean enabled = false;
+
+        private String bindAddress = "0.0.0.0";
+
+        // Порт UDP, одна датаграмма - один кадр; без значения UDP не слушается, 0 - любой свободный
+        private Integer udpPort = 9091;
+
+        // Порт TCP, кадры с 4-байтовой длиной впереди; без значения TCP не слушается, 0 - любой свободный
+        private Integer tcpPort = 9091;
+
+        // Кадр длиннее считается испорченным; TCP-соединение с таким кадром закрывается
+        private DataSize maxFrameSize = DataSize.ofKilobytes(64);
+
+        // Не больше стольких TCP-соединений: каждое держит буфер на кадр максимальной длины
+        private int maxConnections = 256;
+
+        // TCP-соединение без данных дольше этого закрывается
+        private Duration idleTimeout = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Wal {
+
+        // Журнал хитов на диске для режима async: хит подтверждается после fsync журнала,
+        // а незаписанные в БД хиты применяются заново при старте
+        private boolean enabled = false;
+
+        private String directory = "data/wal";
+
+        // Размер файла журнала; файл удаляется, когда все его хиты записаны в БД
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+    }
+
+    @Getter
+    @Setter
+    public static class Dedup {
+
+        // Отбрасывать повторно присланные хиты с тем же EndpointHit.id; хиты без id не проверяются
+        private boolean enabled = true;
+
+        // Сколько помнить id: фильтр из двух поколений помнит их от window до 2 * window
+        private Duration window = Duration.ofMinutes(10);
+
+        // Ожидаемое число id за window; от него зависит размер фильтра Блума
+        private int expectedIds = 1_000_000;
+
+        // Доля новых id, которые фильтр примет за повтор и отправит на точную проверку в БД
+        private double falsePositiveRate = 0.01;
+    }
+}
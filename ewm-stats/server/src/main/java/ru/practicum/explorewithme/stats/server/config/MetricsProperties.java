@@ -0,0 +1,16 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Настройки собственных метрик сервера статистики (stats.metrics.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.metrics")
+public class MetricsProperties {
+
+    // Приложений с отдельным тегом app в stats.ingest.hits; хиты остальных идут под app=other,
+    // чтобы произвольные имена от клиентов не раздували число временных рядов
+    private int maxAppTags = 50;
+}
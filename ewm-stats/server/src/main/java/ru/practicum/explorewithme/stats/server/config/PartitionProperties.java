@@ -0,0 +1,31 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.practicum.explorewithme.stats.server.partition.PartitionInterval;
+
+import java.time.Duration;
+
+// Настройки секционирования таблицы hits по времени (stats.partitioning.*), только PostgreSQL
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.partitioning")
+public class PartitionProperties {
+
+    // Перевести hits на декларативное секционирование и обслуживать секции.
+    // При первом включении обычная таблица hits переносится в секционированную
+    private boolean enabled = true;
+
+    private PartitionInterval interval = PartitionInterval.DAY;
+
+    // Сколько секций создавать заранее
+    private int premake = 7;
+
+    // Сколько хранить сырые хиты; старые секции удаляются целиком. null - хранить всегда.
+    // Агрегаты, скетчи и битовые карты при этом сохраняются
+    private Duration retention;
+
+    // Как часто создавать новые секции и удалять устаревшие
+    private Duration maintenanceInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,29 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Настройки выбора источника для /stats (stats.planner.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.planner")
+public class PlannerProperties {
+
+    // Предельное время одного запроса статистики к БД, округляется до секунд
+    private Duration queryTimeout = Duration.ofSeconds(10);
+
+    // Как часто обновлять оценку числа хитов, по которой сравнивается стоимость планов
+    private Duration statisticsRefresh = Duration.ofMinutes(5);
+
+    // Наибольшее число корзин в одном запросе /stats/timeseries (по умолчанию - неделя поминутно)
+    private int maxSeriesBuckets = 10080;
+
+    // Наибольшее число запросов в одном POST /stats/batch
+    private int maxBatchQueries = 100;
+
+    // Наибольшее число uri, в которые раскрываются шаблоны одного запроса; шире - 400
+    private int maxPatternUris = 10_000;
+}
@@ -0,0 +1,67 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.TaskScheduler;
+import ru.practicum.explorewithme.stats.server.replica.Replica;
+import ru.practicum.explorewithme.stats.server.replica.ReplicaLagMonitor;
+import ru.practicum.explorewithme.stats.server.replica.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+// Чтение статистики с реплик (stats.replicas.enabled). Основная БД по-прежнему задаётся
+// spring.datasource.*, а всем остальным бинам отдаётся источник с выбором БД по транзакции
+@Configuration
+@ConditionalOnProperty(prefix = "stats.replicas", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             ReplicaProperties properties, MeterRegistry registry) {
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getEndpoints().size(); i++) {
+            ReplicaProperties.Endpoint endpoint = properties.getEndpoints().get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("stats-replica-" + i);
+            dataSource.setJdbcUrl(endpoint.getUrl());
+            dataSource.setUsername(endpoint.getUsername());
+            dataSource.setPassword(endpoint.getPassword());
+            dataSource.setMaximumPoolSize(endpoint.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            // Недоступная при старте реплика не мешает запуску, её отметит ReplicaLagMonitor
+            dataSource.setInitializationFailTimeout(-1);
+            replicas.add(new Replica("replica-" + i, dataSource));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, registry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaRoutingDataSource replicaRoutingDataSource,
+                                               TaskScheduler taskScheduler, ReplicaProperties properties,
+                                               MeterRegistry registry) {
+        return new ReplicaLagMonitor(replicaRoutingDataSource, taskScheduler, properties, registry,
+                Clock.systemUTC());
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Реплики БД для чтения статистики (stats.replicas.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.replicas")
+public class ReplicaProperties {
+
+    // Направлять read-only транзакции (/stats) на реплики; запись всегда идёт в spring.datasource
+    private boolean enabled = false;
+
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    // Реплика с большим отставанием от основной БД не получает запросы, пока не догонит
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    // Как часто писать отметку времени в основную БД и сверять её на репликах
+    private Duration checkInterval = Duration.ofSeconds(1);
+
+    @Getter
+    @Setter
+    public static class Endpoint {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
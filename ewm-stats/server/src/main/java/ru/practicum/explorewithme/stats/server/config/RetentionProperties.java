@@ -0,0 +1,45 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Настройки сжатия старых сырых хитов (stats.retention.*), только для таблицы hits
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.retention")
+public class RetentionProperties {
+
+    // Периодически убирать из hits сырые хиты старше rawAge. Требует stats.rollup.enabled:
+    // часовые и дневные агрегаты со скетчами и битовыми картами остаются и отвечают за этот период
+    private boolean enabled = false;
+
+    // Сколько хранить сырые хиты в hits
+    private Duration rawAge = Duration.ofDays(90);
+
+    // Свой срок для отдельных приложений: имя приложения -> срок
+    private Map<String, Duration> apps = new HashMap<>();
+
+    // Переносить убранные хиты в сжатые файлы архива; при false они удаляются.
+    // Хиты из архива читаются только запросами, захватывающими архивный период
+    private boolean archive = true;
+
+    private String archiveDirectory = "data/archive";
+
+    // Сколько распакованных файлов архива держать в памяти
+    private int archiveCacheSize = 16;
+
+    // Как часто запускать сжатие
+    private Duration interval = Duration.ofHours(1);
+
+    // Не больше стольких дней на приложение за один запуск, чтобы первый запуск не занял часы
+    private int maxDaysPerRun = 31;
+
+    public Duration rawAge(String app) {
+        return apps.getOrDefault(app, rawAge);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Настройки агрегатов по временным корзинам (stats.rollup.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.rollup")
+public class RollupProperties {
+
+    // Вести агрегаты и отвечать на /stats из них; при false читается только сырая таблица hits.
+    // Агрегаты, пропустившие хиты за время отключения, восстанавливаются очисткой hit_rollups:
+    // RollupBackfill заполнит пустую таблицу из hits при следующем старте
+    private boolean enabled = true;
+
+    // Насколько хит может отставать от самого свежего, чтобы не считаться опоздавшим
+    private Duration allowedLateness = Duration.ofMinutes(5);
+}
@@ -0,0 +1,27 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+// Настройки кэша результатов /stats (stats.cache.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.cache")
+public class StatsCacheProperties {
+
+    private boolean enabled = true;
+
+    // Память под результаты, по оценке размера строк; сверх неё вытесняются давно не читанные
+    private DataSize memoryBudget = DataSize.ofMegabytes(32);
+
+    // Сколько живёт результат для диапазона, который ещё может пополниться
+    private Duration openTtl = Duration.ofSeconds(5);
+
+    // Насколько диапазон должен отстоять от водяного знака, чтобы считаться закрытым;
+    // при чтении с реплик - не меньше stats.replicas.max-lag
+    private Duration closedDelay = Duration.ZERO;
+}
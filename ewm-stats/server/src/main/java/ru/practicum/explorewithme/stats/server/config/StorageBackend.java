@@ -0,0 +1,9 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+// Хранилище хитов
+public enum StorageBackend {
+    // Таблица hits в БД
+    TABLE,
+    // Колоночные сегменты на локальном диске, БД для хитов не нужна
+    SEGMENT
+}
@@ -0,0 +1,38 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Выбор хранилища хитов (stats.storage.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.storage")
+public class StorageProperties {
+
+    private StorageBackend backend = StorageBackend.TABLE;
+
+    private Segment segment = new Segment();
+
+    @Getter
+    @Setter
+    public static class Segment {
+
+        // Каталог с файлами сегментов
+        private String directory = "data/segments";
+
+        // Сколько хитов копить в памяти до записи сегмента
+        private int flushRows = 100_000;
+
+        // Как часто сбрасывать накопленное на диск, даже если хитов меньше flushRows
+        private Duration flushInterval = Duration.ofSeconds(5);
+
+        // Сколько мелких сегментов сливать в один
+        private int mergeFactor = 8;
+
+        // Сегменты крупнее этого не сливаются
+        private int maxSegmentRows = 10_000_000;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Настройки /stats/top: самые посещаемые uri за последние минуты и часы (stats.trending.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.trending")
+public class TrendingProperties {
+
+    private boolean enabled = true;
+
+    // Счётчиков в одном скетче; uri с долей хитов больше 1/capacity гарантированно попадают в скетч
+    private int capacity = 200;
+
+    // Приложений, для которых ведутся скетчи; хиты остальных не учитываются
+    private int maxApps = 16;
+}
@@ -0,0 +1,22 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+// Настройки точного подсчёта уникальных посетителей (stats.unique.*)
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.unique")
+public class UniqueProperties {
+
+    // Считать точные уникальные по битовым картам дневных агрегатов (нужен stats.rollup.enabled)
+    private boolean bitmapsEnabled = true;
+
+    // Сколько соответствий IP -> id держать в памяти
+    private int dictionaryCacheSize = 1_000_000;
+
+    // Ограничение памяти под кэш прочитанных битовых карт
+    private DataSize bitmapCacheSize = DataSize.ofMegabytes(64);
+}
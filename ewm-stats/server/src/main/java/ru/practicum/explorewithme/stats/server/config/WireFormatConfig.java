@@ -0,0 +1,23 @@
+package ru.practicum.explorewithme.stats.server.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+
+// Двоичные кодировки для /hit и ответов по Accept. Spring Boot ставит эти конвертеры
+// на место стандартных, у которых время хита было бы строкой
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+        return new MappingJackson2SmileHttpMessageConverter(HitWireFormat.SMILE.createMapper());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(HitWireFormat.CBOR.createMapper());
+    }
+}
@@ -1,47 +1,302 @@
 package ru.practicum.explorewithme.stats.server.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.explorewithme.stats.dto.Constants;
 import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.dto.StatsBatchQuery;
+import ru.practicum.explorewithme.stats.dto.StatsBatchRequest;
+import ru.practicum.explorewithme.stats.dto.StatsBatchResult;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
 import ru.practicum.explorewithme.stats.dto.ViewStats;
-import ru.practicum.explorewithme.stats.server.service.StatServiceImpl;
+import ru.practicum.explorewithme.stats.server.cache.StatsResultCache;
+import ru.practicum.explorewithme.stats.server.config.PlannerProperties;
+import ru.practicum.explorewithme.stats.server.dto.HitBatchResponse;
+import ru.practicum.explorewithme.stats.server.ingest.HitBatchReader;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.planner.StatsSink;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesGroup;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
+import ru.practicum.explorewithme.stats.server.trending.TrendingUriTracker;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
 @Slf4j
 @Validated
 public class StatsController {
-    private final StatServiceImpl statServiceImpl;
+    // Источник, из которого получен ответ на /stats
+    public static final String PLAN_HEADER = "X-Stats-Plan";
 
+    private final StatService statService;
+    private final HitBatchReader hitBatchReader;
+    private final ObjectMapper objectMapper;
+    private final TrendingUriTracker trendingUriTracker;
+    private final PlannerProperties plannerProperties;
+    private final StatsResultCache resultCache;
+
+    // Тело /hit и /hits - JSON или двоичная кодировка по Content-Type (HitWireFormat)
     @PostMapping("/hit")
     public ResponseEntity<EndpointHit> hit(@Valid @RequestBody EndpointHit endpointHit) {
         log.debug("Saving hit: {}", endpointHit);
-        EndpointHit savedHit = statServiceImpl.saveHit(endpointHit);
+        EndpointHit savedHit = statService.saveHit(endpointHit);
         return ResponseEntity.status(HttpStatus.CREATED).body(savedHit);
     }
 
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            HitWireFormat.SMILE_VALUE, HitWireFormat.CBOR_VALUE})
+    public ResponseEntity<HitBatchResponse> hits(HttpServletRequest request) throws IOException {
+        List<EndpointHit> hits = hitBatchReader.read(request.getInputStream(),
+                request.getHeader(HttpHeaders.CONTENT_ENCODING), request.getContentType());
+        log.debug("Saving batch of {} hits", hits.size());
+        int saved = statService.saveHits(hits);
+        return ResponseEntity.status(HttpStatus.CREATED).body(new HitBatchResponse(saved));
+    }
+
+    // uris могут содержать шаблоны с '*' (/events/*); rollup=true - строка на шаблон вместо строки на uri.
+    // Ответ кэшируется (StatsResultCache) и несёт ETag; If-None-Match с ETag закрытого диапазона
+    // или ещё живого результата даёт 304 без обращения к хранилищу
     @GetMapping("/stats")
     public ResponseEntity<List<ViewStats>> getStats(@RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime start,
                                                     @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime end,
                                                     @RequestParam(required = false) List<String> uris,
-                                                    @RequestParam(defaultValue = "false") boolean unique) {
-        log.debug("Getting stats from {} to {}, uris: {}, unique: {}", start, end, uris, unique);
+                                                    @RequestParam(defaultValue = "false") boolean unique,
+                                                    @RequestParam(defaultValue = "EXACT") UniqueMode uniqueMode,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(defaultValue = "0") int offset,
+                                                    @RequestParam(defaultValue = "false") boolean rollup,
+                                                    WebRequest request) {
+        log.debug("Getting stats from {} to {}, uris: {}, unique: {}, uniqueMode: {}, limit: {}, offset: {}, rollup: {}",
+                start, end, uris, unique, uniqueMode, limit, offset, rollup);
+
+        StatsQuery query = statsQuery(start, end, uris, unique, uniqueMode, limit, offset, rollup);
+        String etag = resultCache.peekEtag(query);
+        if (etag != null && request.checkNotModified(etag)) {
+            resultCache.recordNotModified();
+            return null;
+        }
+
+        StatsResultCache.CachedStats cached = resultCache.get(query, () -> statService.findStats(query));
+        StatsResult result = cached.result();
+        // С ETag ответ на совпавший If-None-Match тоже станет 304, уже после подсчёта
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(PLAN_HEADER, result.plan().name());
+        if (cached.etag() != null) {
+            response.eTag(cached.etag());
+        }
+        return response.body(result.stats());
+    }
+
+    // Самые посещаемые uri каждого приложения за последние minutes минут, по скетчам в памяти;
+    // в кластере - со всех узлов
+    @GetMapping("/stats/top")
+    public ResponseEntity<List<ViewStats>> getTop(@RequestParam(required = false) String app,
+                                                  @RequestParam(defaultValue = "60") int minutes,
+                                                  @RequestParam(defaultValue = "10") int k) {
+        log.debug("Getting top {} uris for app {} over {} minutes", k, app, minutes);
+
+        if (!trendingUriTracker.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (minutes <= 0 || minutes > TrendingUriTracker.MAX_WINDOW_MINUTES) {
+            throw new IllegalArgumentException("Параметр minutes должен быть от 1 до "
+                    + TrendingUriTracker.MAX_WINDOW_MINUTES);
+        }
+        if (k <= 0 || k > trendingUriTracker.getCapacity()) {
+            throw new IllegalArgumentException("Параметр k должен быть от 1 до " + trendingUriTracker.getCapacity());
+        }
+        return ResponseEntity.ok(statService.findTop(app, minutes, k));
+    }
+
+    // Несколько запросов статистики одним обращением. Запросы с одинаковым окном считаются вместе,
+    // разные окна могут читаться одним проходом по хитам; ответ - результаты по id запросов
+    @PostMapping("/stats/batch")
+    public ResponseEntity<Map<String, StatsBatchResult>> getStatsBatch(@Valid @RequestBody StatsBatchRequest request) {
+        List<StatsBatchQuery> queries = request.getQueries();
+        log.debug("Getting stats batch of {} queries", queries.size());
+
+        if (queries.size() > plannerProperties.getMaxBatchQueries()) {
+            throw new IllegalArgumentException("Слишком много запросов в пачке: " + queries.size() + ", не больше "
+                    + plannerProperties.getMaxBatchQueries());
+        }
+        Map<String, StatsQuery> statsQueries = new LinkedHashMap<>();
+        for (StatsBatchQuery query : queries) {
+            List<String> uris = query.getUris() == null || query.getUris().isEmpty() ? null : query.getUris();
+            UniqueMode uniqueMode = query.getUniqueMode() != null ? query.getUniqueMode() : UniqueMode.EXACT;
+            StatsQuery statsQuery = statsQuery(query.getStart(), query.getEnd(), uris, query.isUnique(), uniqueMode,
+                    query.getLimit(), query.getOffset(), query.isRollup());
+            if (statsQueries.put(query.getId(), statsQuery) != null) {
+                throw new IllegalArgumentException("Повторяющийся id запроса в пачке: " + query.getId());
+            }
+        }
+
+        Map<String, StatsBatchResult> results = new LinkedHashMap<>();
+        statService.findStatsBatch(statsQueries).forEach((id, result) ->
+                results.put(id, new StatsBatchResult(result.plan().name(), result.stats())));
+        return ResponseEntity.ok(results);
+    }
+
+    // Хиты по корзинам interval (MINUTE, HOUR, DAY) с группировкой по приложению, uri или префиксу uri
+    // из depth сегментов пути. Точки только для корзин с хитами, по времени корзины
+    @GetMapping("/stats/timeseries")
+    public ResponseEntity<List<TimeSeriesPoint>> getTimeSeries(
+            @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime end,
+            @RequestParam(defaultValue = "HOUR") Granularity interval,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "URI") TimeSeriesGroup groupBy,
+            @RequestParam(defaultValue = "1") int depth,
+            @RequestParam(defaultValue = "false") boolean unique,
+            @RequestParam(defaultValue = "EXACT") UniqueMode uniqueMode) {
+        log.debug("Getting time series from {} to {} by {}, groupBy: {}, depth: {}, uris: {}, unique: {}, uniqueMode: {}",
+                start, end, interval, groupBy, depth, uris, unique, uniqueMode);
 
         if (start.isAfter(end)) {
             throw new IllegalArgumentException("Неверный диапазон дат: start не может быть после end");
         }
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Параметр depth должен быть положительным");
+        }
+        TimeSeriesQuery query = new TimeSeriesQuery(start, end, interval, uris, groupBy, depth, unique, uniqueMode);
+        if (query.buckets() > plannerProperties.getMaxSeriesBuckets()) {
+            throw new IllegalArgumentException("Слишком много корзин: " + query.buckets() + ", не больше "
+                    + plannerProperties.getMaxSeriesBuckets() + "; укрупните interval или сократите диапазон");
+        }
+
+        TimeSeriesResult result = statService.findTimeSeries(query);
+        return ResponseEntity.ok()
+                .header(PLAN_HEADER, result.plan().name())
+                .body(result.points());
+    }
+
+    // Потоковый ответ: JSON-массив при stream=true или NDJSON по Accept: application/x-ndjson.
+    // Строки пишутся в ответ по мере подсчёта, ответ целиком в памяти не собирается
+    @GetMapping(value = "/stats", params = "stream=true")
+    public void streamStats(@RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime start,
+                            @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime end,
+                            @RequestParam(required = false) List<String> uris,
+                            @RequestParam(defaultValue = "false") boolean unique,
+                            @RequestParam(defaultValue = "EXACT") UniqueMode uniqueMode,
+                            @RequestParam(required = false) Integer limit,
+                            @RequestParam(defaultValue = "0") int offset,
+                            @RequestParam(defaultValue = "false") boolean rollup,
+                            HttpServletResponse response) throws IOException {
+        log.debug("Streaming stats from {} to {}, uris: {}, unique: {}, limit: {}, offset: {}",
+                start, end, uris, unique, limit, offset);
+        writeStats(statsQuery(start, end, uris, unique, uniqueMode, limit, offset, rollup), response, false);
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamStatsNdjson(@RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime start,
+                                  @RequestParam @DateTimeFormat(pattern = Constants.FORMATTER) LocalDateTime end,
+                                  @RequestParam(required = false) List<String> uris,
+                                  @RequestParam(defaultValue = "false") boolean unique,
+                                  @RequestParam(defaultValue = "EXACT") UniqueMode uniqueMode,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestParam(defaultValue = "0") int offset,
+                                  @RequestParam(defaultValue = "false") boolean rollup,
+                                  HttpServletResponse response) throws IOException {
+        log.debug("Streaming NDJSON stats from {} to {}, uris: {}, unique: {}, limit: {}, offset: {}",
+                start, end, uris, unique, limit, offset);
+        writeStats(statsQuery(start, end, uris, unique, uniqueMode, limit, offset, rollup), response, true);
+    }
+
+    private StatsQuery statsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                  UniqueMode uniqueMode, Integer limit, int offset, boolean rollup) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Неверный диапазон дат: start не может быть после end");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Параметр limit должен быть положительным");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Параметр offset не может быть отрицательным");
+        }
+        if (rollup && (uris == null || uris.isEmpty())) {
+            throw new IllegalArgumentException("Параметр rollup требует uris");
+        }
+        if (rollup && unique) {
+            throw new IllegalArgumentException("Уникальных посетителей нельзя сложить по uri: rollup несовместим с unique");
+        }
+        return new StatsQuery(start, end, uris, unique, uniqueMode, limit, offset, rollup);
+    }
+
+    // Заголовки выставляются, когда известен план, то есть до первой строки
+    private void writeStats(StatsQuery query, HttpServletResponse response, boolean ndjson) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream());
+        // Между корневыми значениями NDJSON - только перевод строки
+        generator.setRootValueSeparator(null);
+        try {
+            statService.streamStats(query, new StatsSink() {
+                @Override
+                public void plan(QueryPlan plan) {
+                    response.setStatus(HttpStatus.OK.value());
+                    response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+                    response.setHeader(PLAN_HEADER, plan.name());
+                    if (!ndjson) {
+                        write(generator::writeStartArray);
+                    }
+                }
+
+                @Override
+                public void accept(ViewStats stats) {
+                    write(() -> {
+                        generator.writeObject(stats);
+                        if (ndjson) {
+                            generator.writeRaw('\n');
+                        }
+                    });
+                }
+            });
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+            generator.close();
+        } catch (RuntimeException e) {
+            // Пока ответ не ушёл клиенту, ошибку оформит GlobalExceptionHandler
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+            }
+            throw e;
+        }
+    }
+
+    private static void write(JsonWrite action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        List<ViewStats> stats = statServiceImpl.getStats(start, end, uris, unique);
-        return ResponseEntity.ok(stats);
+    @FunctionalInterface
+    private interface JsonWrite {
+        void run() throws IOException;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package ru.practicum.explorewithme.stats.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitBatchResponse {
+    private Integer saved;
+}
@@ -1,21 +1,18 @@
 package ru.practicum.explorewithme.stats.server.entity;
 
-import jakarta.persistence.*;
 import lombok.*;
 import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.repository.IpAddressCodec;
 
 import java.time.LocalDateTime;
 
-@Entity
-@Table(name = "hits")
+// Хит в развёрнутом виде; в таблице hits хранится компактно (JdbcHitRepository)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Hit {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String app;
@@ -26,12 +23,21 @@ public class Hit {
 
     private LocalDateTime timestamp;
 
+    // Идентификатор хита от клиента (EndpointHit.id) или null
+    private String hitId;
+
+    public Hit(Long id, String app, String uri, String ip, LocalDateTime timestamp) {
+        this(id, app, uri, ip, timestamp, null);
+    }
+
+    // IP приводится к каноническому виду, в котором читается обратно из двоичного
     public static Hit fromDto(EndpointHit dto) {
         return Hit.builder()
                 .app(dto.getApp())
                 .uri(dto.getUri())
-                .ip(dto.getIp())
+                .ip(IpAddressCodec.canonical(dto.getIp()))
                 .timestamp(dto.getTimestamp())
+                .hitId(dto.getId())
                 .build();
     }
-}
\ No newline at end of file
+}
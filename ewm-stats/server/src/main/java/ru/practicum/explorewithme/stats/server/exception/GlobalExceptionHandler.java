@@ -1,12 +1,17 @@
 package ru.practicum.explorewithme.stats.server.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import ru.practicum.explorewithme.stats.server.controller.StatsController;
 import ru.practicum.explorewithme.stats.server.dto.ApiError;
 
 import java.time.LocalDateTime;
@@ -30,6 +35,32 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(error);
     }
 
+    @ExceptionHandler(JsonProcessingException.class)
+    public ResponseEntity<ApiError> handleJsonProcessing(JsonProcessingException e) {
+        log.warn("Некорректное тело запроса: {}", e.getOriginalMessage());
+        ApiError error = ApiError.builder()
+                .status(HttpStatus.BAD_REQUEST.name())
+                .reason("Некорректно составлен запрос.")
+                .message(e.getOriginalMessage())
+                .timestamp(LocalDateTime.now())
+                .errors(List.of())
+                .build();
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ApiError> handleTypeMismatch(MethodArgumentTypeMismatchException e) {
+        log.warn("Некорректное значение параметра {}: {}", e.getName(), e.getValue());
+        ApiError error = ApiError.builder()
+                .status(HttpStatus.BAD_REQUEST.name())
+                .reason("Некорректно составлен запрос.")
+                .message("Некорректное значение параметра '" + e.getName() + "': " + e.getValue())
+                .timestamp(LocalDateTime.now())
+                .errors(List.of())
+                .build();
+        return ResponseEntity.badRequest().body(error);
+    }
+
     @ExceptionHandler(MissingServletRequestParameterException.class)
     public ResponseEntity<ApiError> handleMissingRequestParam(MissingServletRequestParameterException e) {
         log.warn("Отсутствует обязательный параметр: {}", e.getParameterName());
@@ -43,6 +74,65 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(error);
     }
 
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<ApiError> handleNotValid(MethodArgumentNotValidException e) {
+        List<String> errors = e.getBindingResult().getFieldErrors().stream()
+                .map(error -> error.getField() + ": " + error.getDefaultMessage())
+                .toList();
+        log.warn("Некорректное тело запроса: {}", errors);
+        ApiError error = ApiError.builder()
+                .status(HttpStatus.BAD_REQUEST.name())
+                .reason("Некорректно составлен запрос.")
+                .message("Ошибка валидации тела запроса")
+                .timestamp(LocalDateTime.now())
+                .errors(errors)
+                .build();
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(HitBufferFullException.class)
+    public ResponseEntity<ApiError> handleBufferFull(HitBufferFullException e) {
+        log.warn("Буфер приёма переполнен: {}", e.getMessage());
+        ApiError error = ApiError.builder()
+                .status(HttpStatus.TOO_MANY_REQUESTS.name())
+                .reason("Сервер статистики перегружен.")
+                .message(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .errors(List.of())
+                .build();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(error);
+    }
+
+    @ExceptionHandler(StatsQueryTimeoutException.class)
+    public ResponseEntity<ApiError> handleStatsQueryTimeout(StatsQueryTimeoutException e) {
+        log.warn("Превышено время запроса статистики: {}", e.getMessage());
+        ApiError error = ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.name())
+                .reason("Запрос статистики выполняется слишком долго.")
+                .message(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .errors(List.of())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(StatsController.PLAN_HEADER, e.getPlan().name())
+                .body(error);
+    }
+
+    @ExceptionHandler(ShardUnavailableException.class)
+    public ResponseEntity<ApiError> handleShardUnavailable(ShardUnavailableException e) {
+        log.warn("Узел кластера {} недоступен: {}", e.getNodeId(), e.getMessage());
+        ApiError error = ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.name())
+                .reason("Часть кластера статистики недоступна.")
+                .message(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .errors(List.of())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleGeneric(Exception e) {
         log.error("Внутренняя ошибка сервера: {}", e.getMessage(), e);
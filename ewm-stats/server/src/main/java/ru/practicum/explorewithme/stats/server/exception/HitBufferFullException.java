@@ -0,0 +1,17 @@
+package ru.practicum.explorewithme.stats.server.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+// Буфер приёма хитов заполнен, клиенту следует повторить запрос позже
+@Getter
+public class HitBufferFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public HitBufferFullException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.explorewithme.stats.server.exception;
+
+import lombok.Getter;
+
+// Узел кластера не ответил или ответил ошибкой; частичный результат не отдаётся
+@Getter
+public class ShardUnavailableException extends RuntimeException {
+
+    private final String nodeId;
+
+    public ShardUnavailableException(String nodeId, String message, Throwable cause) {
+        super(message, cause);
+        this.nodeId = nodeId;
+    }
+}
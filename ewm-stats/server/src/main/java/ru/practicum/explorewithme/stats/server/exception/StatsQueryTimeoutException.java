@@ -0,0 +1,16 @@
+package ru.practicum.explorewithme.stats.server.exception;
+
+import lombok.Getter;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+
+// Запрос статистики не уложился в stats.planner.query-timeout
+@Getter
+public class StatsQueryTimeoutException extends RuntimeException {
+
+    private final QueryPlan plan;
+
+    public StatsQueryTimeoutException(String message, QueryPlan plan, Throwable cause) {
+        super(message, cause);
+        this.plan = plan;
+    }
+}
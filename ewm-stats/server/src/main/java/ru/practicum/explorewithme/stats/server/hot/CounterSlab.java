@@ -0,0 +1,73 @@
+package ru.practicum.explorewithme.stats.server.hot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Плоский массив long-счётчиков с атомарным прибавлением: в куче или в direct memory
+abstract class CounterSlab {
+
+    static CounterSlab allocate(int size, boolean offHeap) {
+        return offHeap ? new DirectSlab(size) : new HeapSlab(size);
+    }
+
+    abstract void add(int index, long delta);
+
+    abstract long get(int index);
+
+    abstract void clear(int index);
+
+    private static final class HeapSlab extends CounterSlab {
+
+        private final AtomicLongArray counters;
+
+        private HeapSlab(int size) {
+            this.counters = new AtomicLongArray(size);
+        }
+
+        @Override
+        void add(int index, long delta) {
+            counters.getAndAdd(index, delta);
+        }
+
+        @Override
+        long get(int index) {
+            return counters.get(index);
+        }
+
+        @Override
+        void clear(int index) {
+            counters.set(index, 0);
+        }
+    }
+
+    // Direct-буфер выровнен по странице, поэтому атомарные операции через VarHandle допустимы
+    private static final class DirectSlab extends CounterSlab {
+
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+                ByteOrder.nativeOrder());
+
+        private final ByteBuffer buffer;
+
+        private DirectSlab(int size) {
+            this.buffer = ByteBuffer.allocateDirect(Math.multiplyExact(size, Long.BYTES));
+        }
+
+        @Override
+        void add(int index, long delta) {
+            LONGS.getAndAdd(buffer, index * Long.BYTES, delta);
+        }
+
+        @Override
+        long get(int index) {
+            return (long) LONGS.getVolatile(buffer, index * Long.BYTES);
+        }
+
+        @Override
+        void clear(int index) {
+            LONGS.setVolatile(buffer, index * Long.BYTES, 0L);
+        }
+    }
+}
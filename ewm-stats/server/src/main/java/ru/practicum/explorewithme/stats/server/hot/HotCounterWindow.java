@@ -0,0 +1,253 @@
+package ru.practicum.explorewithme.stats.server.hot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.HotWindowProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.ingest.HitListener;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.repository.AfterCommit;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Кольцо поминутных счётчиков хитов по (app, uri) за последние stats.hot.window.
+// Счётчики растут без блокировок после фиксации транзакции записи, поэтому совпадают с БД.
+// Окно знает только хиты, записанные после старта сервера: на диапазоны, начинающиеся раньше,
+// а также при неполных минутах на краях или нехватке памяти под новый uri оно не отвечает.
+@Slf4j
+@Component
+@Order(30)
+public class HotCounterWindow implements HitListener {
+
+    private final boolean enabled;
+    private final int slots;
+    private final int maxRows;
+    private final CounterSlab counters;
+    // Минута, которую сейчас хранит каждый слот кольца (у всех строк общая)
+    private final AtomicLongArray slotMinutes;
+    // uri -> app -> номер строки счётчиков
+    private final Map<String, Map<String, Integer>> rows = new ConcurrentHashMap<>();
+    // Отслеживаемые uri, для которых не хватило памяти на пару с новым app; не больше, чем uri в rows
+    private final Set<String> partialUris = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextRow = new AtomicInteger();
+    private final AtomicLong maxEpochSecond = new AtomicLong(Long.MIN_VALUE);
+    private final Clock clock;
+    // Первая минута, все хиты которой прошли через окно
+    private final long coveredFromMinute;
+    private volatile boolean saturated;
+
+    private final Counter servedCounter;
+    private final Counter missedCounter;
+
+    @Autowired
+    public HotCounterWindow(HotWindowProperties properties, MeterRegistry registry) {
+        this(properties, registry, Clock.systemDefaultZone());
+    }
+
+    HotCounterWindow(HotWindowProperties properties, MeterRegistry registry, Clock clock) {
+        this.enabled = properties.isEnabled();
+        this.slots = (int) Math.max(1, properties.getWindow().toMinutes());
+        long rowBytes = (long) slots * Long.BYTES;
+        this.maxRows = enabled
+                ? (int) Math.min(Integer.MAX_VALUE / slots, properties.getMemoryBudget().toBytes() / rowBytes)
+                : 0;
+        this.counters = CounterSlab.allocate(maxRows * slots, properties.isOffHeap());
+        this.slotMinutes = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            slotMinutes.set(i, Long.MIN_VALUE);
+        }
+        this.clock = clock;
+        this.coveredFromMinute = epochMinute(LocalDateTime.now(clock)) + 1;
+
+        Gauge.builder("stats.hot.keys", this, w -> Math.min(w.nextRow.get(), w.maxRows))
+                .description("Пары (app, uri) в окне счётчиков")
+                .register(registry);
+        this.servedCounter = Counter.builder("stats.hot.queries")
+                .tag("result", "served")
+                .description("Запросы /stats, обслуженные окном счётчиков")
+                .register(registry);
+        this.missedCounter = Counter.builder("stats.hot.queries")
+                .tag("result", "missed")
+                .description("Запросы /stats, которые окно счётчиков не покрыло")
+                .register(registry);
+        if (enabled) {
+            log.info("[HotCounterWindow] Окно {} мин., до {} пар (app, uri), offHeap={}",
+                    slots, maxRows, properties.isOffHeap());
+        }
+    }
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> hits.forEach(this::add));
+    }
+
+    public void add(Hit hit) {
+        long minute = epochMinute(hit.getTimestamp());
+        int slot = slot(minute);
+        long current = slotMinutes.get(slot);
+        if (current != minute) {
+            if (current > minute) {
+                // Слот уже занят более новой минутой: хит старше окна
+                return;
+            }
+            rotate(slot, minute);
+        }
+        int row = row(hit.getApp(), hit.getUri());
+        if (row < 0) {
+            return;
+        }
+        counters.add(row * slots + slot, 1);
+        maxEpochSecond.accumulateAndGet(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC), Math::max);
+    }
+
+    // Статистика по хитам из окна или пусто, если окно не покрывает диапазон [start, end] целиком
+    public Optional<List<ViewStats>> findStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<List<ViewStats>> stats = collect(start, end, uris);
+        (stats.isPresent() ? servedCounter : missedCounter).increment();
+        return stats;
+    }
+
+    private Optional<List<ViewStats>> collect(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        // Внутри минуты хиты не различаются, поэтому начало должно совпадать с началом минуты,
+        // а конец - захватывать минуту целиком или быть не раньше последнего хита
+        if (start.getSecond() != 0 || start.getNano() != 0) {
+            return Optional.empty();
+        }
+        if (end.getSecond() != 59 && end.toEpochSecond(ZoneOffset.UTC) < maxEpochSecond.get()) {
+            return Optional.empty();
+        }
+        long from = epochMinute(start);
+        long to = Math.min(epochMinute(end), from + slots - 1);
+        if (from < coveredFromMinute || from <= epochMinute(LocalDateTime.now(clock)) - slots) {
+            return Optional.empty();
+        }
+        for (long minute = from; minute <= to; minute++) {
+            if (slotMinutes.get(slot(minute)) > minute) {
+                return Optional.empty();
+            }
+        }
+
+        Map<String, Map<String, Integer>> selected;
+        if (uris == null) {
+            if (saturated) {
+                return Optional.empty();
+            }
+            selected = rows;
+        } else {
+            selected = new ConcurrentHashMap<>();
+            for (String uri : new LinkedHashSet<>(uris)) {
+                Map<String, Integer> apps = rows.get(uri);
+                if (apps != null && !partialUris.contains(uri)) {
+                    selected.put(uri, apps);
+                } else if (saturated) {
+                    // uri мог не попасть в окно из-за нехватки памяти
+                    return Optional.empty();
+                }
+            }
+        }
+
+        List<ViewStats> stats = new ArrayList<>();
+        selected.forEach((uri, apps) -> apps.forEach((app, row) -> {
+            long hits = sum(row, from, to);
+            if (hits > 0) {
+                stats.add(new ViewStats(app, uri, hits));
+            }
+        }));
+        stats.sort(StatsPage.ORDER);
+        return Optional.of(stats);
+    }
+
+    private long sum(int row, long from, long to) {
+        long hits = 0;
+        for (long minute = from; minute <= to; minute++) {
+            int slot = slot(minute);
+            if (slotMinutes.get(slot) == minute) {
+                hits += counters.get(row * slots + slot);
+            }
+        }
+        return hits;
+    }
+
+    // Слот переходит к новой минуте один раз за оборот кольца: обнуляем его во всех строках
+    private synchronized void rotate(int slot, long minute) {
+        if (slotMinutes.get(slot) >= minute) {
+            return;
+        }
+        for (int row = 0; row < maxRows; row++) {
+            counters.clear(row * slots + slot);
+        }
+        slotMinutes.set(slot, minute);
+    }
+
+    // Строка выделяется под блокировкой ячейки uri во внешней карте: карта uri появляется только
+    // вместе с первой строкой, иначе непомещённый uri выглядел бы в окне как uri без хитов
+    private int row(String app, String uri) {
+        Map<String, Integer> apps = rows.get(uri);
+        Integer row = apps != null ? apps.get(app) : null;
+        if (row != null) {
+            return row;
+        }
+        if (saturated) {
+            if (apps != null) {
+                partialUris.add(uri);
+            }
+            return -1;
+        }
+        int[] allocated = {-1};
+        rows.compute(uri, (k, current) -> {
+            Map<String, Integer> map = current != null ? current : new ConcurrentHashMap<>();
+            Integer existing = map.get(app);
+            if (existing != null) {
+                allocated[0] = existing;
+                return map;
+            }
+            int next = nextRow.get() < maxRows ? nextRow.getAndIncrement() : maxRows;
+            if (next >= maxRows) {
+                if (!saturated) {
+                    saturated = true;
+                    log.warn("[HotCounterWindow] Память окна исчерпана, новые uri не отслеживаются");
+                }
+                if (current != null) {
+                    partialUris.add(uri);
+                }
+                return current;
+            }
+            map.put(app, next);
+            allocated[0] = next;
+            return map;
+        });
+        return allocated[0];
+    }
+
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) slots);
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
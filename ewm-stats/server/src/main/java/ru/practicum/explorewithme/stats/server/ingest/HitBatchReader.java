@@ -0,0 +1,92 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+// Потоковое чтение пачки хитов: JSON-массив, NDJSON или массив в двоичной кодировке (Smile, CBOR),
+// опционально сжатые gzip, а также кадров сокетного приёма
+@Slf4j
+@Component
+public class HitBatchReader {
+
+    private static final String GZIP_ENCODING = "gzip";
+
+    private final Map<HitWireFormat, ObjectReader> readers = new EnumMap<>(HitWireFormat.class);
+    private final IngestProperties properties;
+
+    public HitBatchReader(ObjectMapper objectMapper, IngestProperties properties) {
+        for (HitWireFormat format : HitWireFormat.values()) {
+            ObjectMapper mapper = format.isBinary() ? format.createMapper() : objectMapper;
+            readers.put(format, mapper.readerFor(EndpointHit.class));
+        }
+        this.properties = properties;
+    }
+
+    public List<EndpointHit> read(InputStream body, String contentEncoding, String contentType) throws IOException {
+        InputStream in = GZIP_ENCODING.equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body) : body;
+        ObjectReader reader = readers.get(HitWireFormat.fromContentType(contentType));
+        return readAll(reader.readValues(in));
+    }
+
+    // Кадр UDP/TCP: один хит или массив, кодировка определяется по первым байтам
+    public List<EndpointHit> read(byte[] frame, int offset, int length) throws IOException {
+        ObjectReader reader = readers.get(HitWireFormat.detect(frame, offset, length));
+        return readAll(reader.readValues(frame, offset, length));
+    }
+
+    // MappingIterator разворачивает корневой массив и так же читает значения,
+    // разделённые переводами строк, поэтому JSON и NDJSON обрабатываются одинаково
+    private List<EndpointHit> readAll(MappingIterator<EndpointHit> values) throws IOException {
+        List<EndpointHit> hits = new ArrayList<>();
+        try (MappingIterator<EndpointHit> iterator = values) {
+            while (iterator.hasNextValue()) {
+                EndpointHit hit = iterator.nextValue();
+                validate(hit, hits.size());
+                hits.add(hit);
+                if (hits.size() > properties.getMaxBatchSize()) {
+                    throw new IllegalArgumentException("Слишком большая пачка хитов, максимум: "
+                            + properties.getMaxBatchSize());
+                }
+            }
+        }
+        log.debug("[HitBatchReader] Прочитано хитов: {}", hits.size());
+        return hits;
+    }
+
+    // Те же ограничения, что у EndpointHit для POST /hit: хит, который не запишется в БД, не принимается
+    private void validate(EndpointHit hit, int index) {
+        if (isBlank(hit.getApp()) || isBlank(hit.getUri()) || isBlank(hit.getIp()) || hit.getTimestamp() == null) {
+            throw new IllegalArgumentException("Хит #" + index + " не содержит app, uri, ip или timestamp");
+        }
+        checkLength(hit.getApp(), EndpointHit.MAX_APP_LENGTH, "app", index);
+        checkLength(hit.getUri(), EndpointHit.MAX_URI_LENGTH, "uri", index);
+        checkLength(hit.getIp(), EndpointHit.MAX_IP_LENGTH, "ip", index);
+        if (hit.getId() != null) {
+            checkLength(hit.getId(), EndpointHit.MAX_ID_LENGTH, "id", index);
+        }
+    }
+
+    private static void checkLength(String value, int max, String field, int index) {
+        if (value.length() > max) {
+            throw new IllegalArgumentException("Поле " + field + " хита #" + index + " длиннее " + max);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
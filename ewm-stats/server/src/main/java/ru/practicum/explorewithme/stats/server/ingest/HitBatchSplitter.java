@@ -0,0 +1,44 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Запись пачки с отсевом хитов, которые не записываются сами по себе (NOT NULL, длина колонки, null в поле).
+// При такой ошибке пачка делится пополам, пока негодный хит не останется один, и он отбрасывается.
+// Прочие ошибки (например, БД недоступна) пробрасываются; части пачки обрабатываются по порядку,
+// поэтому к этому моменту обработано её начало - о каждой части сообщает done
+final class HitBatchSplitter {
+
+    private HitBatchSplitter() {
+    }
+
+    static <T> void write(List<T> batch, Consumer<List<T>> writer, Consumer<List<T>> done,
+                          BiConsumer<T, RuntimeException> rejected) {
+        try {
+            writer.accept(batch);
+        } catch (RuntimeException e) {
+            if (!isBadData(e)) {
+                throw e;
+            }
+            if (batch.size() == 1) {
+                rejected.accept(batch.get(0), e);
+                done.accept(batch);
+                return;
+            }
+            int middle = batch.size() / 2;
+            write(batch.subList(0, middle), writer, done, rejected);
+            write(batch.subList(middle, batch.size()), writer, done, rejected);
+            return;
+        }
+        done.accept(batch);
+    }
+
+    private static boolean isBadData(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException
+                || e instanceof NullPointerException
+                || e instanceof IllegalArgumentException;
+    }
+}
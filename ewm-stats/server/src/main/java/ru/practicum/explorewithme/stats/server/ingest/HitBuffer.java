@@ -0,0 +1,289 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.exception.HitBufferFullException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Ограниченный неблокирующий буфер хитов для режима stats.ingest.mode=async (и auto с агрегатами).
+// Буфер разбит на разделы по (app, uri); каждый раздел выгружает в БД ровно один поток,
+// пачками по размеру или по времени. С журналом (HitWal) хит принимается только после fsync журнала
+// и отмечается в нём после записи в БД. Хиты, которые не записываются сами по себе, отбрасываются
+// (HitBatchSplitter). Пачка, которую не удалось записать из-за БД, повторяется через retryBackoff
+// и до записи занимает место в разделе; при остановке она остаётся только в журнале.
+@Slf4j
+@Component
+public class HitBuffer implements SmartLifecycle {
+
+    private final HitWriter writer;
+    private final HitWal wal;
+    private final IngestProperties.Buffer config;
+    private final boolean enabled;
+    private final Partition[] partitions;
+
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private final Counter retriedCounter;
+    private final Counter droppedCounter;
+    private final DistributionSummary flushSize;
+    private final Timer flushLatency;
+
+    private volatile boolean running;
+
+    public HitBuffer(HitWriter writer, HitWal wal, IngestProperties properties, RollupProperties rollupProperties,
+                     MeterRegistry registry) {
+        this.writer = writer;
+        this.wal = wal;
+        this.config = properties.getBuffer();
+        this.enabled = properties.isAsync(rollupProperties);
+        this.partitions = new Partition[Math.max(1, config.getPartitions())];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(i);
+        }
+
+        Gauge.builder("stats.ingest.buffer.depth", this, HitBuffer::depth)
+                .description("Количество хитов, ожидающих записи в БД")
+                .register(registry);
+        this.rejectedCounter = Counter.builder("stats.ingest.buffer.rejected")
+                .description("Хиты, отклонённые из-за переполнения буфера")
+                .register(registry);
+        this.failedCounter = Counter.builder("stats.ingest.buffer.failed")
+                .description("Хиты, не записанные в БД до остановки (с журналом - применяются при старте)")
+                .register(registry);
+        this.retriedCounter = Counter.builder("stats.ingest.buffer.retried")
+                .description("Хиты, запись которых повторяется после ошибки БД")
+                .register(registry);
+        this.droppedCounter = Counter.builder("stats.ingest.buffer.dropped")
+                .description("Хиты, отброшенные из-за ошибки записи именно этого хита")
+                .register(registry);
+        this.flushSize = DistributionSummary.builder("stats.ingest.flush.size")
+                .description("Размер пачки при выгрузке буфера")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.flushLatency = Timer.builder("stats.ingest.flush.latency")
+                .description("Время записи одной пачки в БД")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    // Поставить хит в очередь; при переполнении раздела бросает HitBufferFullException
+    public void offer(EndpointHit hit) {
+        Partition partition = partitions[Math.floorMod(Objects.hash(hit.getApp(), hit.getUri()), partitions.length)];
+        if (!running || !partition.offer(hit)) {
+            rejectedCounter.increment();
+            throw new HitBufferFullException("Буфер приёма статистики переполнен", config.getRetryAfter());
+        }
+    }
+
+    public int depth() {
+        int depth = 0;
+        for (Partition partition : partitions) {
+            depth += partition.size.get();
+        }
+        return depth;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (Partition partition : partitions) {
+            partition.thread = new Thread(partition::run, "hit-flusher-" + partition.index);
+            partition.thread.start();
+        }
+        log.info("[HitBuffer] Асинхронный приём запущен: разделов={}, ёмкость раздела={}, flushSize={}, flushInterval={}",
+                partitions.length, config.getCapacity(), config.getFlushSize(), config.getFlushInterval());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        log.info("[HitBuffer] Остановка, выгрузка {} хитов", depth());
+        long deadline = System.nanoTime() + config.getShutdownTimeout().toNanos();
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+            try {
+                partition.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int left = depth();
+        if (left > 0) {
+            log.warn("[HitBuffer] Не успели выгрузить {} хитов до остановки", left);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Одиночные хиты принимаются через буфер (режим async или auto с агрегатами)
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Останавливаемся после веб-сервера, чтобы не принимать хиты в уже выгружаемый буфер
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private final class Partition {
+
+        private final int index;
+        private final ConcurrentLinkedQueue<BufferedHit> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private volatile Thread thread;
+        // Пачка, ждущая повторной записи, и время повтора; только для потока раздела
+        private List<BufferedHit> retry;
+        private long retryAt;
+
+        private Partition(int index) {
+            this.index = index;
+        }
+
+        private boolean offer(EndpointHit hit) {
+            int current;
+            do {
+                current = size.get();
+                if (current >= config.getCapacity()) {
+                    return false;
+                }
+            } while (!size.compareAndSet(current, current + 1));
+            WalSegment segment = null;
+            if (wal.isEnabled()) {
+                try {
+                    segment = wal.append(hit);
+                } catch (RuntimeException e) {
+                    size.decrementAndGet();
+                    throw e;
+                }
+            }
+            queue.offer(new BufferedHit(hit, segment));
+            if (current + 1 == config.getFlushSize()) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        }
+
+        private void run() {
+            long intervalNanos = config.getFlushInterval().toNanos();
+            long deadline = System.nanoTime() + intervalNanos;
+            while (running || size.get() > 0) {
+                int pending = size.get();
+                long now = System.nanoTime();
+                if (retry != null) {
+                    if (now >= retryAt || !running) {
+                        write(retry);
+                        deadline = System.nanoTime() + intervalNanos;
+                    } else {
+                        LockSupport.parkNanos(this, retryAt - now);
+                    }
+                } else if (pending > 0 && (pending >= config.getFlushSize() || now >= deadline || !running)) {
+                    flush();
+                    deadline = System.nanoTime() + intervalNanos;
+                } else if (pending == 0 && now >= deadline) {
+                    deadline = now + intervalNanos;
+                } else if (running) {
+                    LockSupport.parkNanos(this, deadline - now);
+                }
+            }
+        }
+
+        private void flush() {
+            List<BufferedHit> batch = new ArrayList<>(config.getFlushSize());
+            BufferedHit buffered;
+            while (batch.size() < config.getFlushSize() && (buffered = queue.poll()) != null) {
+                batch.add(buffered);
+            }
+            if (batch.isEmpty()) {
+                // size уже увеличен, а сам хит ещё не попал в очередь
+                Thread.onSpinWait();
+                return;
+            }
+            write(batch);
+        }
+
+        // size уменьшается только после записи (или отбрасывания) хитов пачки или отказа от неё при остановке
+        private void write(List<BufferedHit> batch) {
+            int[] done = {0};
+            long startNanos = System.nanoTime();
+            try {
+                HitBatchSplitter.write(batch, part -> writer.write(hits(part)), part -> {
+                    wal.applied(segments(part));
+                    size.addAndGet(-part.size());
+                    done[0] += part.size();
+                }, (buffered, e) -> {
+                    droppedCounter.increment();
+                    log.warn("[HitBuffer] Хит отброшен в разделе {}: {}, ошибка: {}",
+                            index, buffered.hit(), e.getMessage());
+                });
+                flushSize.record(batch.size());
+                retry = null;
+            } catch (RuntimeException e) {
+                List<BufferedHit> rest = new ArrayList<>(batch.subList(done[0], batch.size()));
+                if (running) {
+                    retriedCounter.increment(rest.size());
+                    retry = rest;
+                    retryAt = System.nanoTime() + config.getRetryBackoff().toNanos();
+                    log.warn("[HitBuffer] Ошибка записи пачки из {} хитов в разделе {}, повтор через {}: {}",
+                            rest.size(), index, config.getRetryBackoff(), e.getMessage());
+                } else {
+                    failedCounter.increment(rest.size());
+                    retry = null;
+                    size.addAndGet(-rest.size());
+                    // Файлы журнала с этими хитами не удалятся и будут применены при следующем старте
+                    log.error("[HitBuffer] Ошибка записи пачки из {} хитов в разделе {} при остановке: {}",
+                            rest.size(), index, e.getMessage(), e);
+                }
+            } finally {
+                flushLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static List<EndpointHit> hits(List<BufferedHit> batch) {
+        List<EndpointHit> hits = new ArrayList<>(batch.size());
+        batch.forEach(buffered -> hits.add(buffered.hit()));
+        return hits;
+    }
+
+    // Без журнала список пуст
+    private static List<WalSegment> segments(List<BufferedHit> batch) {
+        List<WalSegment> segments = new ArrayList<>();
+        for (BufferedHit buffered : batch) {
+            if (buffered.segment() != null) {
+                segments.add(buffered.segment());
+            }
+        }
+        return segments;
+    }
+
+    // segment - файл журнала с этим хитом или null без журнала
+    private record BufferedHit(EndpointHit hit, WalSegment segment) {
+    }
+}
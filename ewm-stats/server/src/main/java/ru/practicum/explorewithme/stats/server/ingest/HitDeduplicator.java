@@ -0,0 +1,98 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.repository.HitBatchRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Отсев повторно присланных хитов по идентификатору от клиента (EndpointHit.id), без уникального
+// индекса на hits. Каждый id отмечается в фильтре Блума за последнее окно; новый id фильтр почти всегда
+// пропускает сразу, а на возможный повтор выполняется точная проверка в hits по времени хита.
+// Повтор внутри одной пачки отсеивается сразу. Одновременная запись двух копий хита в разных
+// транзакциях не отсеивается: точная проверка не видит незафиксированную копию.
+// Хиты из журнала (HitWal) проверяются точно все: после перезапуска фильтр пуст и повтора не заметит.
+@Slf4j
+@Component
+public class HitDeduplicator {
+
+    private final HitBatchRepository repository;
+    private final boolean enabled;
+    private final RotatingBloomFilter filter;
+
+    private final Counter duplicatesCounter;
+    private final Counter checksCounter;
+
+    public HitDeduplicator(HitBatchRepository repository, IngestProperties properties, MeterRegistry registry) {
+        IngestProperties.Dedup config = properties.getDedup();
+        this.repository = repository;
+        this.enabled = config.isEnabled();
+        this.filter = enabled
+                ? new RotatingBloomFilter(config.getExpectedIds(), config.getFalsePositiveRate(), config.getWindow(),
+                        System::nanoTime)
+                : null;
+
+        this.duplicatesCounter = Counter.builder("stats.ingest.dedup.duplicates")
+                .description("Отброшенные повторы хитов")
+                .register(registry);
+        this.checksCounter = Counter.builder("stats.ingest.dedup.checks")
+                .description("Хиты, проверенные в БД после срабатывания фильтра Блума")
+                .register(registry);
+        if (enabled) {
+            log.info("[HitDeduplicator] Фильтр повторов: окно {}, {} бит, {} хешей",
+                    config.getWindow(), filter.bits(), filter.hashes());
+        }
+    }
+
+    // Хиты без повторов в исходном порядке; вызывается в транзакции записи
+    public List<Hit> filter(List<Hit> hits) {
+        return enabled ? filter(hits, false) : hits;
+    }
+
+    // То же, но каждый хит с id проверяется в hits, даже если отсев выключен
+    public List<Hit> filterExact(List<Hit> hits) {
+        return filter(hits, true);
+    }
+
+    private List<Hit> filter(List<Hit> hits, boolean exact) {
+        List<Hit> accepted = new ArrayList<>(hits.size());
+        List<Hit> suspects = new ArrayList<>();
+        Set<String> batchIds = new HashSet<>();
+        int duplicates = 0;
+        for (Hit hit : hits) {
+            String hitId = hit.getHitId();
+            if (hitId == null) {
+                accepted.add(hit);
+            } else if (!batchIds.add(hitId)) {
+                duplicates++;
+            } else {
+                boolean seen = filter != null && filter.put(hitId);
+                if (seen || exact) {
+                    suspects.add(hit);
+                }
+                accepted.add(hit);
+            }
+        }
+        if (!suspects.isEmpty()) {
+            checksCounter.increment(suspects.size());
+            Set<String> existing = repository.findHitIds(suspects);
+            if (!existing.isEmpty()) {
+                int before = accepted.size();
+                accepted.removeIf(hit -> hit.getHitId() != null && existing.contains(hit.getHitId()));
+                duplicates += before - accepted.size();
+            }
+        }
+        if (duplicates > 0) {
+            duplicatesCounter.increment(duplicates);
+            log.debug("[HitDeduplicator] Отброшено повторов хитов: {}", duplicates);
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import java.util.List;
+
+// Получатель записанных хитов. Вызывается HitWriter внутри транзакции записи,
+// поэтому производные структуры (агрегаты, счётчики) обновляются вместе с сырыми строками
+public interface HitListener {
+
+    void onHits(List<Hit> hits);
+}
@@ -0,0 +1,210 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Журнал хитов для режима async (stats.ingest.wal.enabled=true). Хит дописывается в текущий файл журнала,
+// и запрос ждёт fsync; fsync выполняет один из ждущих потоков сразу за всех, кто успел дописать
+// (групповая фиксация). Затем хит уходит в HitBuffer, а после записи в БД отмечается в журнале.
+// Файл удаляется, когда закрыт и все его хиты в БД. При старте оставшиеся файлы применяются к БД
+// целиком; уже записанные хиты с EndpointHit.id отсеиваются точной проверкой в hits, а хиты без id,
+// записанные до сбоя или остановки, повторяются. Хиты, которые не записываются сами по себе, пропускаются.
+@Slf4j
+@Component
+public class HitWal implements SmartLifecycle {
+
+    private final HitWriter writer;
+    private final IngestProperties.Wal config;
+    private final boolean enabled;
+    private final int replayBatchSize;
+    private final Path directory;
+    private final int segmentSize;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Object appendLock = new Object();
+
+    private final Timer syncLatency;
+    private final DistributionSummary syncSize;
+
+    private volatile WalSegment active;
+    private volatile boolean running;
+
+    public HitWal(HitWriter writer, IngestProperties properties, RollupProperties rollupProperties,
+                  MeterRegistry registry) {
+        this.writer = writer;
+        this.config = properties.getWal();
+        this.enabled = config.isEnabled() && properties.isAsync(rollupProperties);
+        this.replayBatchSize = Math.max(1, properties.getBuffer().getFlushSize());
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, config.getSegmentSize().toBytes());
+
+        this.syncLatency = Timer.builder("stats.ingest.wal.sync.latency")
+                .description("Время fsync журнала хитов")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.syncSize = DistributionSummary.builder("stats.ingest.wal.sync.size")
+                .description("Байт журнала, сброшенных на диск одним fsync")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            replay();
+            active = WalSegment.create(directory, nextId.getAndIncrement(), segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал хитов в " + directory, e);
+        }
+        running = true;
+        log.info("[HitWal] Журнал хитов открыт: {}, размер файла {}", active.path(), config.getSegmentSize());
+    }
+
+    // Вызывается после остановки буфера: все принятые хиты уже в БД или остаются в файле до старта
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        synchronized (appendLock) {
+            running = false;
+            active.syncAll();
+            if (active.seal()) {
+                delete(active.path());
+            }
+        }
+        log.info("[HitWal] Журнал хитов закрыт");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Применяем журнал до старта буфера приёма и закрываем после его выгрузки
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 5120;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Дописать хит и дождаться fsync; возвращает файл, в котором нужно отметить запись хита в БД
+    WalSegment append(EndpointHit hit) {
+        byte[] record = WalSegment.encode(hit);
+        WalSegment segment;
+        int end;
+        synchronized (appendLock) {
+            if (!running) {
+                throw new IllegalStateException("Журнал хитов закрыт");
+            }
+            if (!active.fits(record.length)) {
+                rotate();
+                if (!active.fits(record.length)) {
+                    throw new IllegalArgumentException("Хит не помещается в файл журнала: " + record.length + " байт");
+                }
+            }
+            segment = active;
+            end = segment.append(record);
+        }
+        long startNanos = System.nanoTime();
+        int bytes = segment.sync(end);
+        if (bytes > 0) {
+            syncLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            syncSize.record(bytes);
+        }
+        return segment;
+    }
+
+    // Хиты из этих файлов (по одному элементу на хит) записаны в БД
+    void applied(List<WalSegment> segments) {
+        Map<WalSegment, Integer> counts = new IdentityHashMap<>();
+        for (WalSegment segment : segments) {
+            counts.merge(segment, 1, Integer::sum);
+        }
+        counts.forEach((segment, hits) -> {
+            if (segment.release(hits)) {
+                delete(segment.path());
+            }
+        });
+    }
+
+    // Вызывается под appendLock
+    private void rotate() {
+        WalSegment previous = active;
+        previous.syncAll();
+        try {
+            active = WalSegment.create(directory, nextId.getAndIncrement(), segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать файл журнала в " + directory, e);
+        }
+        if (previous.seal()) {
+            delete(previous.path());
+        }
+        log.debug("[HitWal] Новый файл журнала {}", active.path());
+    }
+
+    // Файлы, оставшиеся от прошлого запуска, применяются по порядку; без БД сервер не стартует,
+    // чтобы не потерять хиты, а негодный хит только пропускается
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> WalSegment.parseId(file.getFileName().toString()) >= 0)
+                    .sorted(Comparator.comparingLong(file -> WalSegment.parseId(file.getFileName().toString())))
+                    .toList();
+        }
+        long replayed = 0;
+        AtomicLong skipped = new AtomicLong();
+        for (Path file : files) {
+            nextId.accumulateAndGet(WalSegment.parseId(file.getFileName().toString()) + 1, Math::max);
+            List<EndpointHit> hits = WalSegment.read(file);
+            for (int from = 0; from < hits.size(); from += replayBatchSize) {
+                HitBatchSplitter.write(hits.subList(from, Math.min(hits.size(), from + replayBatchSize)),
+                        writer::replay, part -> {
+                        }, (hit, e) -> {
+                            skipped.incrementAndGet();
+                            log.warn("[HitWal] Хит из {} пропущен: {}, ошибка: {}", file, hit, e.getMessage());
+                        });
+            }
+            delete(file);
+            replayed += hits.size();
+        }
+        if (!files.isEmpty()) {
+            log.info("[HitWal] Применено из журнала: файлов {}, хитов {}, пропущено {}",
+                    files.size(), replayed, skipped.get());
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("[HitWal] Не удалось удалить {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+
+import java.util.List;
+
+// Единая точка записи хитов в хранилище: и для синхронного приёма, и для потоков буфера.
+// Повторно присланные хиты отбрасываются до записи (HitDeduplicator)
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private final HitRepository repository;
+    private final HitDeduplicator deduplicator;
+    private final List<HitListener> listeners;
+
+    @Transactional
+    public int write(List<EndpointHit> hits) {
+        return save(deduplicator.filter(toEntities(hits)));
+    }
+
+    // Запись хитов из журнала: часть из них могла быть уже записана до перезапуска
+    @Transactional
+    public int replay(List<EndpointHit> hits) {
+        return save(deduplicator.filterExact(toEntities(hits)));
+    }
+
+    private int save(List<Hit> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        int saved = repository.insertBatch(entities);
+        for (HitListener listener : listeners) {
+            listener.onHits(entities);
+        }
+        log.debug("[HitWriter] Записано хитов: {}", saved);
+        return saved;
+    }
+
+    private static List<Hit> toEntities(List<EndpointHit> hits) {
+        return hits.stream()
+                .map(Hit::fromDto)
+                .toList();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Водяной знак приёма: самый свежий увиденный хит минус допустимое опоздание.
+// Корзины, закончившиеся до водяного знака, считаются закрытыми. Хит в закрытую корзину —
+// опоздавший: он всё равно учитывается в агрегатах, но увеличивает ревизию закрытых данных,
+// чтобы всё, что опирается на их неизменность, могло это заметить.
+// Пока транзакция с пачкой не завершилась, её хиты не видны читателям, поэтому для пачки запоминается
+// водяной знак на момент приёма: по устойчивому водяному знаку закрытыми считаются только корзины,
+// в которые незафиксированные пачки уже ничего не добавят, кроме опоздавших хитов.
+@Slf4j
+@Component
+public class IngestWatermark {
+
+    private final Duration allowedLateness;
+    private final AtomicReference<LocalDateTime> maxEventTime = new AtomicReference<>(LocalDateTime.MIN);
+    private final AtomicLong lateRevision = new AtomicLong();
+    // Незавершённые транзакции записи и водяной знак на момент приёма их пачек
+    private final Map<Object, LocalDateTime> inFlight = new IdentityHashMap<>();
+    private final Counter lateCounter;
+
+    public IngestWatermark(RollupProperties properties, MeterRegistry registry) {
+        this.allowedLateness = properties.getAllowedLateness();
+        this.lateCounter = Counter.builder("stats.ingest.late")
+                .description("Хиты, пришедшие в уже закрытые корзины")
+                .register(registry);
+    }
+
+    // Учесть пачку хитов, возвращает количество опоздавших
+    public int observe(List<Hit> hits) {
+        Object batch = new Object();
+        LocalDateTime watermark = register(batch);
+        LocalDateTime batchMax = LocalDateTime.MIN;
+        int late = 0;
+        for (Hit hit : hits) {
+            if (hit.getTimestamp().isBefore(watermark)) {
+                late++;
+            }
+            if (hit.getTimestamp().isAfter(batchMax)) {
+                batchMax = hit.getTimestamp();
+            }
+        }
+        LocalDateTime candidate = batchMax;
+        maxEventTime.accumulateAndGet(candidate, (current, next) -> next.isAfter(current) ? next : current);
+        if (late > 0) {
+            lateRevision.incrementAndGet();
+            lateCounter.increment(late);
+            log.debug("[IngestWatermark] Опоздавших хитов: {}, водяной знак: {}", late, watermark);
+        }
+        completeWithTransaction(batch, late > 0);
+        return late;
+    }
+
+    public LocalDateTime getWatermark() {
+        LocalDateTime max = maxEventTime.get();
+        return max.equals(LocalDateTime.MIN) ? LocalDateTime.MIN : max.minus(allowedLateness);
+    }
+
+    // Водяной знак, до которого незавершённые транзакции записи не добавят хитов, кроме опоздавших
+    public LocalDateTime getStableWatermark() {
+        synchronized (inFlight) {
+            LocalDateTime stable = getWatermark();
+            for (LocalDateTime watermark : inFlight.values()) {
+                if (watermark.isBefore(stable)) {
+                    stable = watermark;
+                }
+            }
+            return stable;
+        }
+    }
+
+    // Меняется каждый раз, когда в закрытые корзины дописаны опоздавшие хиты
+    public long getLateRevision() {
+        return lateRevision.get();
+    }
+
+    // Водяной знак читается и пачка регистрируется атомарно относительно getStableWatermark,
+    // иначе читатель мог бы увидеть сдвинутый другой пачкой знак раньше, чем эту пачку
+    private LocalDateTime register(Object batch) {
+        synchronized (inFlight) {
+            LocalDateTime watermark = getWatermark();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                inFlight.put(batch, watermark);
+            }
+            return watermark;
+        }
+    }
+
+    // Опоздавшие хиты становятся видны только после фиксации: ревизия меняется ещё раз, чтобы
+    // результат, посчитанный между приёмом и фиксацией, тоже считался устаревшим
+    private void completeWithTransaction(Object batch, boolean hasLate) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (hasLate) {
+                    lateRevision.incrementAndGet();
+                }
+                synchronized (inFlight) {
+                    inFlight.remove(batch);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import ru.practicum.explorewithme.stats.server.rollup.HyperLogLog;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+// Фильтр Блума из двух поколений: новые значения пишутся в текущее, проверка идёт по обоим.
+// Раз в window текущее поколение становится предыдущим, а самое старое очищается,
+// поэтому значение помнится не меньше window и не больше 2 * window.
+// Индексы битов - двойным хешированием половин 64-битного хеша (Kirsch, Mitzenmacher)
+final class RotatingBloomFilter {
+
+    private final int bits;
+    private final int hashes;
+    private final long windowNanos;
+    private final LongSupplier nanoTime;
+
+    private long[] current;
+    private long[] previous;
+    private long generationStart;
+
+    RotatingBloomFilter(int expectedValues, double falsePositiveRate, Duration window, LongSupplier nanoTime) {
+        int expected = Math.max(1, expectedValues);
+        double m = -expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bits = (int) Math.min(Integer.MAX_VALUE - Long.SIZE, Math.max(Long.SIZE, Math.ceil(m)));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+        this.windowNanos = window.toNanos();
+        this.nanoTime = nanoTime;
+        this.current = new long[(bits + Long.SIZE - 1) / Long.SIZE];
+        this.previous = new long[current.length];
+        this.generationStart = nanoTime.getAsLong();
+    }
+
+    // Запомнить значение; true, если оно, возможно, уже встречалось (или это ложное срабатывание)
+    synchronized boolean put(String value) {
+        rotate();
+        long hash = HyperLogLog.hash(value);
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 1; i <= hashes; i++) {
+            int combined = low + i * high;
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            int index = combined % bits;
+            int word = index >>> 6;
+            long mask = 1L << index;
+            if ((current[word] & mask) == 0) {
+                inCurrent = false;
+                current[word] |= mask;
+            }
+            if ((previous[word] & mask) == 0) {
+                inPrevious = false;
+            }
+        }
+        return inCurrent || inPrevious;
+    }
+
+    int bits() {
+        return bits;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    private void rotate() {
+        long elapsed = nanoTime.getAsLong() - generationStart;
+        if (elapsed < windowNanos) {
+            return;
+        }
+        long[] oldest = previous;
+        Arrays.fill(oldest, 0);
+        if (elapsed >= 2 * windowNanos) {
+            // Значения за прошлое окно тоже устарели
+            Arrays.fill(current, 0);
+        }
+        previous = current;
+        current = oldest;
+        generationStart += elapsed - elapsed % windowNanos;
+    }
+}
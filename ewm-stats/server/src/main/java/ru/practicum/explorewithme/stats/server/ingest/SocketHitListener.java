@@ -0,0 +1,382 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.exception.HitBufferFullException;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Приём хитов по UDP и TCP на отдельном порту (stats.ingest.socket.enabled=true) в обход HTTP.
+// Кадр - один хит или массив хитов в JSON, Smile или CBOR (HitWireFormat.detect): в UDP кадр занимает
+// датаграмму целиком, в TCP перед кадром идёт его длина (4 байта, big-endian). Ответов нет: испорченные
+// кадры и хиты, которые не удалось сохранить, только считаются в метриках.
+// Все каналы обслуживает один поток на селекторе; буферы приёма выделяются один раз на канал.
+// TCP-соединений не больше stats.ingest.socket.max-connections, простаивающие дольше idle-timeout закрываются.
+// Прочитанные за один проход хиты сохраняются тем же путём, что и /hit: в режиме async - через буфер,
+// иначе одной пачкой в потоке селектора (пока идёт запись, датаграммы копятся в буфере сокета ОС).
+@Slf4j
+@Component
+public class SocketHitListener implements SmartLifecycle {
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    // Не больше стольких датаграмм за проход, чтобы поток UDP не вытеснял TCP-соединения
+    private static final int MAX_DATAGRAMS_PER_PASS = 1024;
+    private static final long SELECT_TIMEOUT_MS = 1000;
+    private static final long STOP_TIMEOUT_MS = 10_000;
+
+    private final StatService statService;
+    private final HitBatchReader reader;
+    private final IngestProperties.Socket config;
+    private final boolean async;
+    private final int maxFrameSize;
+    private final List<EndpointHit> pending = new ArrayList<>();
+
+    private final Counter acceptedCounter;
+    private final Counter malformedCounter;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+
+    private Selector selector;
+    private DatagramChannel udp;
+    private ServerSocketChannel tcp;
+    private ByteBuffer datagram;
+    private Thread thread;
+    private volatile boolean running;
+    // Только поток селектора
+    private int connections;
+    private long idleCheckedAt;
+
+    public SocketHitListener(StatService statService, HitBatchReader reader, IngestProperties properties,
+                             RollupProperties rollupProperties, MeterRegistry registry) {
+        this.statService = statService;
+        this.reader = reader;
+        this.config = properties.getSocket();
+        this.async = properties.isAsync(rollupProperties);
+        this.maxFrameSize = (int) config.getMaxFrameSize().toBytes();
+
+        this.acceptedCounter = Counter.builder("stats.ingest.socket.frames")
+                .tag("result", "accepted")
+                .description("Кадры, принятые по UDP/TCP")
+                .register(registry);
+        this.malformedCounter = Counter.builder("stats.ingest.socket.frames")
+                .tag("result", "malformed")
+                .description("Кадры UDP/TCP, которые не удалось разобрать")
+                .register(registry);
+        this.droppedCounter = Counter.builder("stats.ingest.socket.dropped")
+                .description("Хиты из UDP/TCP, потерянные из-за переполнения буфера или ошибки записи")
+                .register(registry);
+        this.rejectedCounter = Counter.builder("stats.ingest.socket.rejected")
+                .description("TCP-соединения, закрытые сразу сверх stats.ingest.socket.max-connections")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            selector = Selector.open();
+            if (config.getUdpPort() != null) {
+                udp = DatagramChannel.open();
+                udp.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                udp.bind(new InetSocketAddress(config.getBindAddress(), config.getUdpPort()));
+                udp.configureBlocking(false);
+                udp.register(selector, SelectionKey.OP_READ);
+                // На байт больше кадра: датаграмма, заполнившая буфер целиком, была обрезана
+                datagram = ByteBuffer.allocate(maxFrameSize + 1);
+            }
+            if (config.getTcpPort() != null) {
+                tcp = ServerSocketChannel.open();
+                tcp.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                tcp.bind(new InetSocketAddress(config.getBindAddress(), config.getTcpPort()));
+                tcp.configureBlocking(false);
+                tcp.register(selector, SelectionKey.OP_ACCEPT);
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException("Не удалось открыть порты приёма хитов", e);
+        }
+        running = true;
+        idleCheckedAt = System.nanoTime();
+        thread = new Thread(this::run, "hit-socket-listener");
+        thread.start();
+        log.info("[SocketHitListener] Приём хитов запущен: udp={}, tcp={}, maxFrameSize={}",
+                udpAddress(), tcpAddress(), config.getMaxFrameSize());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("[SocketHitListener] Приём хитов остановлен");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Запускаемся после буфера приёма и сегментного хранилища и останавливаемся раньше них
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    SocketAddress udpAddress() {
+        return localAddress(udp);
+    }
+
+    SocketAddress tcpAddress() {
+        return localAddress(tcp);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        if (key.channel() == udp) {
+                            receive();
+                        } else {
+                            read(key);
+                        }
+                    }
+                }
+                save();
+                closeIdle();
+            } catch (IOException | RuntimeException e) {
+                log.error("[SocketHitListener] Ошибка приёма хитов: {}", e.getMessage(), e);
+            }
+        }
+        save();
+        closeQuietly();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = tcp.accept()) != null) {
+            if (connections >= config.getMaxConnections()) {
+                rejectedCounter.increment();
+                log.debug("[SocketHitListener] Соединение {} отклонено: открыто {}", remoteAddress(channel),
+                        connections);
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(
+                    ByteBuffer.allocate(LENGTH_BYTES + maxFrameSize), System.nanoTime()));
+            connections++;
+        }
+    }
+
+    // Закрыть соединения без данных дольше idle-timeout; проверяется не чаще прохода по таймауту селектора
+    private void closeIdle() {
+        long now = System.nanoTime();
+        if (connections == 0 || now - idleCheckedAt < SELECT_TIMEOUT_MS * 1_000_000) {
+            return;
+        }
+        idleCheckedAt = now;
+        long timeout = config.getIdleTimeout().toNanos();
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof Connection connection
+                    && now - connection.lastRead > timeout) {
+                log.debug("[SocketHitListener] Соединение {} закрыто по простою",
+                        remoteAddress((SocketChannel) key.channel()));
+                close(key);
+            }
+        }
+    }
+
+    private void receive() throws IOException {
+        for (int i = 0; i < MAX_DATAGRAMS_PER_PASS; i++) {
+            datagram.clear();
+            if (udp.receive(datagram) == null) {
+                return;
+            }
+            if (datagram.position() > maxFrameSize) {
+                malformedCounter.increment();
+                continue;
+            }
+            decode(datagram.array(), 0, datagram.position());
+        }
+    }
+
+    // Разобрать все полные кадры из буфера соединения, неполный остаток остаётся до следующего чтения
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.buffer;
+        connection.lastRead = System.nanoTime();
+        try {
+            if (channel.read(buffer) < 0) {
+                close(key);
+                return;
+            }
+        } catch (IOException e) {
+            log.debug("[SocketHitListener] Соединение {} разорвано: {}", remoteAddress(channel), e.getMessage());
+            close(key);
+            return;
+        }
+        buffer.flip();
+        while (buffer.remaining() >= LENGTH_BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > maxFrameSize) {
+                // Граница следующего кадра неизвестна, дальше читать соединение нельзя
+                malformedCounter.increment();
+                log.warn("[SocketHitListener] Кадр длиной {} от {}, соединение закрыто", length,
+                        remoteAddress(channel));
+                close(key);
+                return;
+            }
+            if (buffer.remaining() < LENGTH_BYTES + length) {
+                break;
+            }
+            decode(buffer.array(), buffer.position() + LENGTH_BYTES, length);
+            buffer.position(buffer.position() + LENGTH_BYTES + length);
+        }
+        buffer.compact();
+    }
+
+    private void decode(byte[] frame, int offset, int length) {
+        try {
+            pending.addAll(reader.read(frame, offset, length));
+            acceptedCounter.increment();
+        } catch (IOException | IllegalArgumentException e) {
+            malformedCounter.increment();
+            log.debug("[SocketHitListener] Испорченный кадр: {}", e.getMessage());
+        }
+    }
+
+    private void save() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            if (async) {
+                for (EndpointHit hit : pending) {
+                    saveOne(hit);
+                }
+            } else {
+                try {
+                    statService.saveHits(new ArrayList<>(pending));
+                } catch (RuntimeException e) {
+                    droppedCounter.increment(pending.size());
+                    log.error("[SocketHitListener] Не удалось сохранить {} хитов: {}", pending.size(),
+                            e.getMessage());
+                }
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    // Ошибка одного хита не должна терять остальные хиты прохода
+    private void saveOne(EndpointHit hit) {
+        try {
+            statService.saveHit(hit);
+        } catch (HitBufferFullException e) {
+            droppedCounter.increment();
+        } catch (RuntimeException e) {
+            droppedCounter.increment();
+            log.error("[SocketHitListener] Не удалось сохранить хит {}: {}", hit.getUri(), e.getMessage());
+        }
+    }
+
+    private void close(SelectionKey key) {
+        if (key.isValid() && key.attachment() instanceof Connection) {
+            connections--;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("[SocketHitListener] Ошибка закрытия соединения: {}", e.getMessage());
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (selector != null) {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            }
+            if (udp != null) {
+                udp.close();
+            }
+            if (tcp != null) {
+                tcp.close();
+            }
+        } catch (IOException e) {
+            log.warn("[SocketHitListener] Ошибка закрытия каналов: {}", e.getMessage());
+        }
+    }
+
+    // Состояние TCP-соединения: буфер недочитанного кадра и время последнего чтения (System.nanoTime)
+    private static final class Connection {
+
+        private final ByteBuffer buffer;
+        private long lastRead;
+
+        private Connection(ByteBuffer buffer, long lastRead) {
+            this.buffer = buffer;
+            this.lastRead = lastRead;
+        }
+    }
+
+    private static SocketAddress localAddress(NetworkChannel channel) {
+        try {
+            return channel == null ? null : channel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static SocketAddress remoteAddress(SocketChannel channel) {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
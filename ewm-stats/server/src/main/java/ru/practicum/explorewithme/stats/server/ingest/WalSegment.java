@@ -0,0 +1,199 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+// Файл журнала хитов фиксированного размера, отображённый в память.
+// Запись: длина данных (int), CRC32 данных (int), данные: app, uri, ip (modified UTF-8), время (секунды эпохи UTC)
+// и, если есть, идентификатор хита от клиента (modified UTF-8).
+// Файл создаётся заполненным нулями, поэтому нулевая длина - конец журнала; запись с неверной CRC
+// оборвалась при сбое и вместе со всем, что после неё, отбрасывается.
+final class WalSegment {
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer data;
+    // Хиты файла, ещё не записанные в БД
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    // Позиция записи меняется только под блокировкой HitWal
+    private volatile int written;
+    private int synced;
+    private boolean syncing;
+    private volatile boolean sealed;
+
+    private WalSegment(long id, Path path, MappedByteBuffer data) {
+        this.id = id;
+        this.path = path;
+        this.data = data;
+    }
+
+    static WalSegment create(Path directory, long id, int size) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Отображение растягивает файл до size, новые байты - нули
+            return new WalSegment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    static String fileName(long id) {
+        return String.format("wal-%016d.log", id);
+    }
+
+    // id файла по имени или -1, если это не файл журнала
+    static long parseId(String fileName) {
+        if (!fileName.startsWith("wal-") || !fileName.endsWith(".log")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(4, fileName.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static byte[] encode(EndpointHit hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            if (hit.getId() != null) {
+                out.writeUTF(hit.getId());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_BYTES, record.length - HEADER_BYTES);
+        ByteBuffer.wrap(record).putInt(record.length - HEADER_BYTES).putInt((int) crc.getValue());
+        return record;
+    }
+
+    // Все целые записи файла по порядку
+    static List<EndpointHit> read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<EndpointHit> hits = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(buffer.array(), buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            EndpointHit hit = new EndpointHit(in.readUTF(), in.readUTF(), in.readUTF(),
+                    LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC));
+            if (in.available() > 0) {
+                hit.setId(in.readUTF());
+            }
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    long id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    boolean fits(int length) {
+        return written + length <= data.capacity();
+    }
+
+    // Вызывается под блокировкой HitWal; возвращает позицию конца записи
+    int append(byte[] record) {
+        data.put(written, record);
+        outstanding.incrementAndGet();
+        written += record.length;
+        return written;
+    }
+
+    // Дождаться, пока запись до position попадёт на диск. Один поток сбрасывает на диск всё
+    // записанное к этому моменту, остальные ждут его: так fsync достаётся группе записей.
+    // Возвращает число сброшенных байт или 0, если запись сбросил другой поток
+    int sync(int position) {
+        int from;
+        int to;
+        synchronized (this) {
+            while (syncing && synced < position) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано", e);
+                }
+            }
+            if (synced >= position) {
+                return 0;
+            }
+            syncing = true;
+            from = synced;
+            to = written;
+        }
+        boolean forced = false;
+        try {
+            data.force(from, to - from);
+            forced = true;
+        } finally {
+            synchronized (this) {
+                syncing = false;
+                if (forced) {
+                    synced = Math.max(synced, to);
+                }
+                notifyAll();
+            }
+        }
+        return to - from;
+    }
+
+    void syncAll() {
+        sync(written);
+    }
+
+    // true, если файл закрыт для записи и все его хиты записаны в БД
+    boolean release(int hits) {
+        return outstanding.addAndGet(-hits) == 0 && sealed;
+    }
+
+    // Больше в файл не пишем; true, если все его хиты уже в БД
+    boolean seal() {
+        sealed = true;
+        return outstanding.get() == 0;
+    }
+}
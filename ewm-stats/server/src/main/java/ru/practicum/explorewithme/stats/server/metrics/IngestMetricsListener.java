@@ -0,0 +1,24 @@
+package ru.practicum.explorewithme.stats.server.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.ingest.HitListener;
+import ru.practicum.explorewithme.stats.server.repository.AfterCommit;
+
+import java.util.List;
+
+// Метрики записи хитов в таблицу hits; учитываются только зафиксированные пачки
+@Component
+@Order(50)
+@RequiredArgsConstructor
+public class IngestMetricsListener implements HitListener {
+
+    private final StatsMetrics metrics;
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        AfterCommit.run(() -> metrics.recordWrite(hits, Hit::getApp));
+    }
+}
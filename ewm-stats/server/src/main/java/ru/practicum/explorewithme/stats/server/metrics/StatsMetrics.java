@@ -0,0 +1,104 @@
+package ru.practicum.explorewithme.stats.server.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.MetricsProperties;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Метрики приёма и запросов для планирования мощности: хиты по приложениям, строки на фиксацию,
+// время запросов статистики по виду (уникальные или нет) и длине диапазона, размер результата.
+// Распределения публикуются гистограммами, из которых Prometheus считает любые перцентили
+@Component
+public class StatsMetrics {
+
+    static final String OTHER_APP = "other";
+
+    // Верхние границы длины диапазона для тега range
+    private static final Duration[] RANGE_LIMITS = {Duration.ofHours(1), Duration.ofDays(1), Duration.ofDays(7),
+            Duration.ofDays(31)};
+    private static final String[] RANGE_TAGS = {"1h", "1d", "7d", "31d", "longer"};
+
+    private final MeterRegistry registry;
+    private final int maxAppTags;
+    private final Map<String, Counter> appCounters = new ConcurrentHashMap<>();
+    private final DistributionSummary commitRows;
+
+    public StatsMetrics(MeterRegistry registry, MetricsProperties properties) {
+        this.registry = registry;
+        this.maxAppTags = properties.getMaxAppTags();
+        this.commitRows = DistributionSummary.builder("stats.ingest.commit.rows")
+                .description("Хитов, записанных одной фиксацией")
+                .baseUnit("rows")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // Учесть записанные хиты: по приложениям и размер фиксации
+    public <T> void recordWrite(Collection<T> hits, Function<T, String> app) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Long> perApp = new HashMap<>();
+        for (T hit : hits) {
+            perApp.merge(app.apply(hit), 1L, Long::sum);
+        }
+        perApp.forEach((name, count) -> appCounter(name).increment(count));
+        commitRows.record(hits.size());
+    }
+
+    public Timer.Sample startQuery() {
+        return Timer.start(registry);
+    }
+
+    // Время запроса статистики и число строк в ответе
+    public void recordQuery(Timer.Sample sample, StatsQuery query, int rows) {
+        String unique = Boolean.toString(query.unique());
+        sample.stop(Timer.builder("stats.query.latency")
+                .description("Время подсчёта статистики по виду запроса и длине диапазона")
+                .tag("unique", unique)
+                .tag("range", range(query))
+                .publishPercentileHistogram()
+                .register(registry));
+        DistributionSummary.builder("stats.query.rows")
+                .description("Строк в ответе на запрос статистики")
+                .baseUnit("rows")
+                .tag("unique", unique)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(rows);
+    }
+
+    static String range(StatsQuery query) {
+        Duration length = Duration.between(query.start(), query.end());
+        for (int i = 0; i < RANGE_LIMITS.length; i++) {
+            if (length.compareTo(RANGE_LIMITS[i]) <= 0) {
+                return RANGE_TAGS[i];
+            }
+        }
+        return RANGE_TAGS[RANGE_TAGS.length - 1];
+    }
+
+    // Новые приложения получают свой счётчик, пока их меньше maxAppTags; гонка при заполнении
+    // может добавить несколько лишних, это допустимо
+    private Counter appCounter(String app) {
+        Counter counter = appCounters.get(app);
+        if (counter != null) {
+            return counter;
+        }
+        String tag = app != null && appCounters.size() < maxAppTags ? app : OTHER_APP;
+        return appCounters.computeIfAbsent(tag, name -> Counter.builder("stats.ingest.hits")
+                .description("Записанные хиты по приложениям")
+                .tag("app", name)
+                .register(registry));
+    }
+}
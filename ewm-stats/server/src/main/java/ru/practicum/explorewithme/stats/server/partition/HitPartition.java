@@ -0,0 +1,21 @@
+package ru.practicum.explorewithme.stats.server.partition;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+// Секция таблицы hits с диапазоном [from, to)
+public record HitPartition(String name, LocalDate from, LocalDate to) {
+
+    public boolean overlaps(HitPartition other) {
+        return from.isBefore(other.to) && other.from.isBefore(to);
+    }
+
+    // Границы секции в секундах эпохи, как в колонке hits.ts
+    public long fromEpochSecond() {
+        return from.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public long toEpochSecond() {
+        return to.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+}
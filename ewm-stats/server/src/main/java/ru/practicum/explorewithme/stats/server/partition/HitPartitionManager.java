@@ -0,0 +1,231 @@
+package ru.practicum.explorewithme.stats.server.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explorewithme.stats.server.config.PartitionProperties;
+import ru.practicum.explorewithme.stats.server.repository.SqlDialect;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+
+// Декларативное секционирование hits по диапазонам ts (только PostgreSQL).
+// Секции создаются заранее, запросы по диапазону затрагивают только нужные секции,
+// а устаревшие по stats.partitioning.retention секции удаляются целиком, без DELETE и VACUUM.
+// Хиты вне созданных секций попадают в hits_default и переносятся при создании секции.
+// Граница удалённых хитов публикуется в HitArchive, чтобы планировщик не считал по ним сырые хиты.
+@Slf4j
+@Component
+public class HitPartitionManager implements SmartLifecycle {
+
+    private static final String DEFAULT_PARTITION = "hits_default";
+    private static final String LEGACY_TABLE = "hits_unpartitioned";
+
+    private static final String LIST_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass('hits')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final PartitionProperties properties;
+    private final HitArchive archive;
+    private final boolean enabled;
+    private final Clock clock;
+
+    private volatile ScheduledFuture<?> maintenanceTask;
+    private volatile boolean running;
+
+    @Autowired
+    public HitPartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               TaskScheduler taskScheduler, PartitionProperties properties, HitArchive archive) {
+        this(jdbcTemplate, transactionManager, taskScheduler, properties, archive, Clock.systemUTC());
+    }
+
+    HitPartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        TaskScheduler taskScheduler, PartitionProperties properties, HitArchive archive, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+        this.archive = archive;
+        this.enabled = properties.isEnabled() && SqlDialect.detect(jdbcTemplate) == SqlDialect.POSTGRESQL;
+        this.clock = clock;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            log.info("[HitPartitionManager] Секционирование hits отключено или не поддерживается СУБД");
+            return;
+        }
+        migrateIfNeeded();
+        maintain();
+        maintenanceTask = taskScheduler.scheduleWithFixedDelay(this::maintainSafely,
+                Instant.now().plus(properties.getMaintenanceInterval()), properties.getMaintenanceInterval());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Перестраиваем таблицу до старта веб-сервера и буфера приёма
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    // Таблица hits секционирована и запросы по диапазону затрагивают только нужные секции
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Создать недостающие секции вперёд и удалить устаревшие
+    public void maintain() {
+        List<HitPartition> existing = listPartitions();
+        // ts хранится в UTC, и границы секций тоже в UTC
+        LocalDate today = LocalDate.now(clock);
+        PartitionInterval interval = properties.getInterval();
+
+        LocalDate date = interval.truncate(today);
+        for (int i = 0; i <= properties.getPremake(); i++) {
+            HitPartition partition = interval.partition(date);
+            if (existing.stream().noneMatch(partition::overlaps)) {
+                createPartition(partition);
+                existing.add(partition);
+            }
+            date = partition.to();
+        }
+
+        if (properties.getRetention() != null) {
+            dropExpired(existing, LocalDateTime.now(clock).minus(properties.getRetention()));
+        }
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.error("[HitPartitionManager] Ошибка обслуживания секций hits: {}", e.getMessage(), e);
+        }
+    }
+
+    // Обычную таблицу hits заменяем секционированной с теми же колонками; первичный ключ
+    // секционированной таблицы обязан включать ключ секционирования, поэтому он (id, ts)
+    private void migrateIfNeeded() {
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT CAST(relkind AS VARCHAR) FROM pg_class WHERE oid = to_regclass('hits')", String.class);
+        if ("p".equals(kind)) {
+            return;
+        }
+        log.info("[HitPartitionManager] Перевод hits на секционирование по {}", properties.getInterval());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE hits IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE hits RENAME TO " + LEGACY_TABLE);
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS hits_pkey RENAME TO " + LEGACY_TABLE + "_pkey");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_hits_ts RENAME TO idx_" + LEGACY_TABLE + "_ts");
+            jdbcTemplate.execute("ALTER SEQUENCE IF EXISTS hits_id_seq RENAME TO " + LEGACY_TABLE + "_id_seq");
+
+            jdbcTemplate.execute("CREATE TABLE hits (" +
+                    "id BIGINT GENERATED BY DEFAULT AS IDENTITY, " +
+                    "app_id INTEGER NOT NULL, " +
+                    "uri_id INTEGER NOT NULL, " +
+                    "ip BYTEA NOT NULL, " +
+                    "ts BIGINT NOT NULL, " +
+                    "hit_id VARCHAR(64), " +
+                    "PRIMARY KEY (id, ts)" +
+                    ") PARTITION BY RANGE (ts)");
+            jdbcTemplate.execute("CREATE INDEX idx_hits_ts ON hits (ts)");
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF hits DEFAULT");
+
+            // Секции под уже накопленные хиты, чтобы они не осели в секции по умолчанию
+            Long oldest = jdbcTemplate.queryForObject("SELECT MIN(ts) FROM " + LEGACY_TABLE, Long.class);
+            if (oldest != null) {
+                PartitionInterval interval = properties.getInterval();
+                LocalDate today = LocalDate.now(clock);
+                LocalDate date = interval.truncate(
+                        LocalDateTime.ofEpochSecond(oldest, 0, ZoneOffset.UTC).toLocalDate());
+                while (!date.isAfter(today)) {
+                    HitPartition partition = interval.partition(date);
+                    jdbcTemplate.execute("CREATE TABLE " + partition.name() + " PARTITION OF hits " +
+                            "FOR VALUES FROM (" + partition.fromEpochSecond() + ") TO (" + partition.toEpochSecond() + ")");
+                    date = partition.to();
+                }
+            }
+
+            int moved = jdbcTemplate.update("INSERT INTO hits (id, app_id, uri_id, ip, ts, hit_id) " +
+                    "SELECT id, app_id, uri_id, ip, ts, hit_id FROM " + LEGACY_TABLE);
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence('hits', 'id'), " +
+                    "COALESCE(MAX(id), 0) + 1, false) FROM hits", Long.class);
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            log.info("[HitPartitionManager] Перенесено хитов в секционированную таблицу: {}", moved);
+        });
+    }
+
+    // Секция создаётся отдельной таблицей, в неё переносятся попавшие в секцию по умолчанию хиты
+    // её диапазона, и только затем она присоединяется: иначе присоединение отказало бы
+    private void createPartition(HitPartition partition) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + partition.name() + " (LIKE hits INCLUDING DEFAULTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION +
+                            " WHERE ts >= ? AND ts < ? RETURNING id, app_id, uri_id, ip, ts, hit_id) " +
+                            "INSERT INTO " + partition.name() + " (id, app_id, uri_id, ip, ts, hit_id) " +
+                            "SELECT id, app_id, uri_id, ip, ts, hit_id FROM moved",
+                    partition.fromEpochSecond(), partition.toEpochSecond());
+            jdbcTemplate.execute("ALTER TABLE hits ATTACH PARTITION " + partition.name() +
+                    " FOR VALUES FROM (" + partition.fromEpochSecond() + ") TO (" + partition.toEpochSecond() + ")");
+            log.info("[HitPartitionManager] Создана секция {} [{}, {}), перенесено из {}: {}",
+                    partition.name(), partition.from(), partition.to(), DEFAULT_PARTITION, moved);
+        });
+    }
+
+    private void dropExpired(List<HitPartition> partitions, LocalDateTime cutoff) {
+        for (HitPartition partition : partitions) {
+            if (!partition.to().atStartOfDay().isAfter(cutoff)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition.name());
+                log.info("[HitPartitionManager] Удалена секция {} [{}, {}) по сроку хранения",
+                        partition.name(), partition.from(), partition.to());
+            }
+        }
+        // В секцию по умолчанию попадают лишь хиты вне созданных секций, их немного
+        long until = cutoff.toEpochSecond(ZoneOffset.UTC);
+        int deleted = jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE ts < ?", until);
+        if (deleted > 0) {
+            log.info("[HitPartitionManager] Удалено устаревших хитов из {}: {}", DEFAULT_PARTITION, deleted);
+        }
+        // Хитов раньше cutoff больше нет: запросы с более ранним началом считаются по агрегатам
+        archive.drop(until);
+    }
+
+    private List<HitPartition> listPartitions() {
+        List<HitPartition> partitions = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class)) {
+            Optional<HitPartition> partition = PartitionInterval.parse(name);
+            partition.ifPresent(partitions::add);
+        }
+        return partitions;
+    }
+}
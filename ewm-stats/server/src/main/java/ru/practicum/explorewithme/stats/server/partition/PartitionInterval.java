@@ -0,0 +1,61 @@
+package ru.practicum.explorewithme.stats.server.partition;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+// Шаг секционирования hits. Секция покрывает [начало интервала, начало следующего)
+// и называется hits_p + дата начала: hits_p20240131 для дня, hits_p202401 для месяца.
+public enum PartitionInterval {
+    DAY(DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MONTH(DateTimeFormatter.ofPattern("yyyyMM"));
+
+    public static final String NAME_PREFIX = "hits_p";
+
+    private final DateTimeFormatter suffixFormat;
+
+    PartitionInterval(DateTimeFormatter suffixFormat) {
+        this.suffixFormat = suffixFormat;
+    }
+
+    public LocalDate truncate(LocalDate date) {
+        return this == DAY ? date : date.withDayOfMonth(1);
+    }
+
+    public LocalDate next(LocalDate start) {
+        return this == DAY ? start.plusDays(1) : start.plusMonths(1);
+    }
+
+    public HitPartition partition(LocalDate date) {
+        LocalDate from = truncate(date);
+        return new HitPartition(NAME_PREFIX + suffixFormat.format(from), from, next(from));
+    }
+
+    // Восстановить границы секции по имени; имена обоих форматов понимаются всегда,
+    // чтобы после смены шага старые секции продолжали обслуживаться
+    public static Optional<HitPartition> parse(String name) {
+        if (name == null || !name.startsWith(NAME_PREFIX)) {
+            return Optional.empty();
+        }
+        String suffix = name.substring(NAME_PREFIX.length());
+        for (PartitionInterval interval : values()) {
+            if (suffix.length() != interval.suffixLength()) {
+                continue;
+            }
+            try {
+                LocalDate from = interval == DAY
+                        ? LocalDate.parse(suffix, interval.suffixFormat)
+                        : LocalDate.parse(suffix + "01", DAY.suffixFormat);
+                return Optional.of(interval.partition(from));
+            } catch (DateTimeParseException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private int suffixLength() {
+        return this == DAY ? 8 : 6;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.PlannerProperties;
+import ru.practicum.explorewithme.stats.server.repository.SqlDialect;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Грубая статистика таблицы hits для сравнения стоимости планов: число хитов, их временной
+// диапазон и размеры словарей. Хиты считаются равномерно распределёнными по времени и uri.
+// В PostgreSQL число строк берётся из оценки планировщика (reltuples), без COUNT(*)
+@Slf4j
+@Component
+public class HitTableStatistics {
+
+    private static final String POSTGRES_ROWS_SQL =
+            "SELECT COALESCE(SUM(GREATEST(c.reltuples, 0)), 0) FROM pg_class c " +
+            "WHERE c.oid = to_regclass('hits') " +
+            "OR c.oid IN (SELECT i.inhrelid FROM pg_inherits i WHERE i.inhparent = to_regclass('hits'))";
+
+    private static final String H2_ROWS_SQL = "SELECT COUNT(*) FROM hits";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlannerProperties properties;
+    private final Clock clock;
+    private final String rowsSql;
+    // Обновляет один поток, остальные пользуются прежним снимком
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile Instant refreshedAt = Instant.MIN;
+
+    @Autowired
+    public HitTableStatistics(JdbcTemplate jdbcTemplate, PlannerProperties properties) {
+        this(jdbcTemplate, properties, Clock.systemUTC());
+    }
+
+    HitTableStatistics(JdbcTemplate jdbcTemplate, PlannerProperties properties, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.clock = clock;
+        this.rowsSql = SqlDialect.detect(jdbcTemplate) == SqlDialect.POSTGRESQL ? POSTGRES_ROWS_SQL : H2_ROWS_SQL;
+    }
+
+    public Snapshot current() {
+        Instant now = clock.instant();
+        if (refreshedAt.plus(properties.getStatisticsRefresh()).isBefore(now) && refreshLock.tryLock()) {
+            try {
+                snapshot = load();
+                refreshedAt = now;
+            } catch (RuntimeException e) {
+                // Без статистики планы сравниваются по числу обращений к БД
+                log.warn("[HitTableStatistics] Не удалось обновить статистику hits: {}", e.getMessage());
+                refreshedAt = now;
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    private Snapshot load() {
+        Number rows = jdbcTemplate.queryForObject(rowsSql, Number.class);
+        Snapshot loaded = jdbcTemplate.queryForObject("SELECT MIN(ts) AS min_ts, MAX(ts) AS max_ts, " +
+                        "(SELECT COUNT(*) FROM hit_apps) AS apps, (SELECT COUNT(*) FROM hit_uris) AS uris FROM hits",
+                (rs, rowNum) -> new Snapshot(rows == null ? 0 : rows.longValue(), rs.getLong("min_ts"),
+                        rs.getLong("max_ts"), rs.getLong("apps"), rs.getLong("uris")));
+        log.debug("[HitTableStatistics] Хитов: {}, приложений: {}, uri: {}",
+                loaded.rows(), loaded.apps(), loaded.uris());
+        return loaded;
+    }
+
+    // Снимок статистики; время - секунды эпохи UTC
+    public record Snapshot(long rows, long minEpochSecond, long maxEpochSecond, long apps, long uris) {
+
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0);
+
+        // Ожидаемое число хитов в [from, to) по указанным uri
+        public double estimateRows(LocalDateTime from, LocalDateTime to, List<String> uriFilter) {
+            if (rows == 0) {
+                return 0;
+            }
+            long lower = Math.max(from.toEpochSecond(ZoneOffset.UTC), minEpochSecond);
+            long upper = Math.min(to.toEpochSecond(ZoneOffset.UTC), maxEpochSecond + 1);
+            if (upper <= lower) {
+                return 0;
+            }
+            double span = maxEpochSecond - minEpochSecond + 1;
+            return rows * ((upper - lower) / span) * selectivity(uriFilter);
+        }
+
+        // Ожидаемое число пар (app, uri), которые могут встретиться в одной корзине
+        public double estimateKeys(List<String> uriFilter) {
+            double uriCount = uriFilter == null ? Math.max(1, uris) : uriFilter.size();
+            return Math.max(1, apps) * uriCount;
+        }
+
+        private double selectivity(List<String> uriFilter) {
+            if (uriFilter == null) {
+                return 1;
+            }
+            return Math.min(1, (double) uriFilter.size() / Math.max(1, uris));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+// Источник, из которого получен ответ на /stats; отдаётся в заголовке X-Stats-Plan и в метриках
+public enum QueryPlan {
+    // Поминутные счётчики в памяти
+    HOT_WINDOW,
+    // Агрегаты hit_rollups и сырые края диапазона
+    ROLLUP,
+    // HyperLogLog-скетчи агрегатов (приблизительные уникальные)
+    ROLLUP_SKETCH,
+    // Дневные битовые карты посетителей (точные уникальные)
+    VISITOR_BITMAP,
+    // Сырые хиты в секциях, попадающих в диапазон
+    PARTITION_SCAN,
+    // Сырые хиты в несекционированной таблице
+    RAW_SCAN,
+    // Колоночные сегменты на диске (stats.storage.backend=segment)
+    SEGMENT_SCAN,
+    // Ответы узлов кластера, собранные вместе (stats.cluster.enabled=true)
+    CLUSTER,
+    // Шаблоны uri не совпали ни с одним известным uri, запрос не выполнялся
+    EMPTY
+}
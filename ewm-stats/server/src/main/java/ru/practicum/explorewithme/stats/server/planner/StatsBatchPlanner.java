@@ -0,0 +1,283 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Пачка запросов /stats/batch за один заход. Запросы с одинаковым окном (start, end, unique, uniqueMode)
+// сливаются в один запрос по объединению uri, результат разбирается по uri каждого запроса.
+// Окна, не покрытые окном счётчиков в памяти, читаются общим проходом по сырым хитам от самого раннего
+// начала до самого позднего конца, если он дешевле отдельных планов; состав общего прохода подбирается
+// жадно: из него по одному убираются окна, пока это снижает суммарную стоимость
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatsBatchPlanner {
+
+    private final StatsQueryPlanner planner;
+    private final HitRepository repository;
+
+    // Результаты в порядке запросов
+    public Map<String, StatsResult> execute(Map<String, StatsQuery> queries) {
+        Map<List<String>, List<String>> expansions = new HashMap<>();
+        Map<String, StatsQuery> resolved = new LinkedHashMap<>();
+        Map<Window, WindowGroup> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, StatsQuery> entry : queries.entrySet()) {
+            StatsQuery query = entry.getValue();
+            if (UriPatterns.hasPatterns(query.uris())) {
+                query = query.withUris(expansions.computeIfAbsent(query.uris(), planner::expandUris));
+            }
+            resolved.put(entry.getKey(), query);
+            if (query.uris() == null || !query.uris().isEmpty()) {
+                groups.computeIfAbsent(Window.of(query), WindowGroup::new).add(query.uris());
+            }
+        }
+
+        List<WindowGroup> pending = new ArrayList<>();
+        for (WindowGroup group : groups.values()) {
+            Optional<List<ViewStats>> hot = group.window().unique()
+                    ? Optional.empty()
+                    : planner.findHot(group.query());
+            if (hot.isPresent()) {
+                group.complete(QueryPlan.HOT_WINDOW, hot.get());
+            } else {
+                pending.add(group);
+            }
+        }
+
+        List<WindowGroup> shared = chooseShared(pending);
+        if (!shared.isEmpty()) {
+            scanShared(shared);
+            pending.removeAll(shared);
+        }
+        for (WindowGroup group : pending) {
+            List<ViewStats> stats = new ArrayList<>();
+            QueryPlan plan = planner.runInDatabase(group.query(), new StatsSink() {
+                @Override
+                public void plan(QueryPlan plan) {
+                }
+
+                @Override
+                public void accept(ViewStats row) {
+                    stats.add(row);
+                }
+            });
+            group.complete(plan, stats);
+        }
+        log.debug("[StatsBatchPlanner] Запросов {}, окон {}, общим проходом {}",
+                queries.size(), groups.size(), shared.size());
+
+        Map<String, StatsResult> results = new LinkedHashMap<>();
+        queries.forEach((id, query) -> results.put(id, result(query, resolved.get(id), groups)));
+        return results;
+    }
+
+    private StatsResult result(StatsQuery requested, StatsQuery query, Map<Window, WindowGroup> groups) {
+        if (query.uris() != null && query.uris().isEmpty()) {
+            return new StatsResult(QueryPlan.EMPTY, List.of());
+        }
+        WindowGroup group = groups.get(Window.of(query));
+        Set<String> uris = query.uris() == null ? null : new HashSet<>(query.uris());
+        List<ViewStats> stats = group.stats().stream()
+                .filter(row -> uris == null || uris.contains(row.getUri()))
+                .toList();
+        if (requested.rollUp() && requested.uris() != null) {
+            stats = UriPatterns.rollUp(stats, requested.uris());
+        }
+        return new StatsResult(group.plan(), StatsPage.apply(stats, query.limit(), query.offset()));
+    }
+
+    // Окна для общего прохода; пусто, если отдельные планы не дороже
+    private List<WindowGroup> chooseShared(List<WindowGroup> groups) {
+        if (groups.size() < 2) {
+            return List.of();
+        }
+        Map<WindowGroup, Double> costs = new HashMap<>();
+        double separate = 0;
+        for (WindowGroup group : groups) {
+            double cost = planner.cost(group.query());
+            costs.put(group, cost);
+            separate += cost;
+        }
+
+        List<WindowGroup> selected = new ArrayList<>(groups);
+        double best = sharedCost(selected);
+        while (selected.size() > 2) {
+            List<WindowGroup> bestRest = null;
+            for (WindowGroup group : selected) {
+                List<WindowGroup> rest = new ArrayList<>(selected);
+                rest.remove(group);
+                double total = sharedCost(rest);
+                for (WindowGroup other : groups) {
+                    if (!rest.contains(other)) {
+                        total += costs.get(other);
+                    }
+                }
+                if (total < best) {
+                    best = total;
+                    bestRest = rest;
+                }
+            }
+            if (bestRest == null) {
+                break;
+            }
+            selected = bestRest;
+        }
+        log.debug("[StatsBatchPlanner] Общий проход по {} окнам: {} против {} по отдельности",
+                selected.size(), Math.round(best), Math.round(separate));
+        return best < separate ? selected : List.of();
+    }
+
+    private double sharedCost(List<WindowGroup> groups) {
+        return planner.rawScanCost(start(groups), end(groups), unionUris(groups));
+    }
+
+    // Один проход по сырым хитам; каждый хит засчитывается всем окнам, в которые он попадает.
+    // Уникальные здесь считаются точно и для приблизительного режима
+    private void scanShared(List<WindowGroup> groups) {
+        List<SharedCounter> counters = groups.stream()
+                .map(SharedCounter::new)
+                .toList();
+        QueryPlan plan = planner.rawPlan();
+        planner.executeTimed(plan, () -> repository.scan(start(groups), end(groups), true, unionUris(groups),
+                (app, uri, ip, timestamp) -> {
+                    for (SharedCounter counter : counters) {
+                        counter.accept(app, uri, ip, timestamp);
+                    }
+                }));
+        for (SharedCounter counter : counters) {
+            counter.group().complete(plan, counter.stats());
+        }
+    }
+
+    private static LocalDateTime start(List<WindowGroup> groups) {
+        return groups.stream().map(group -> group.window().start()).min(LocalDateTime::compareTo).orElseThrow();
+    }
+
+    private static LocalDateTime end(List<WindowGroup> groups) {
+        return groups.stream().map(group -> group.window().end()).max(LocalDateTime::compareTo).orElseThrow();
+    }
+
+    private static List<String> unionUris(List<WindowGroup> groups) {
+        Set<String> uris = new LinkedHashSet<>();
+        for (WindowGroup group : groups) {
+            if (group.uris() == null) {
+                return null;
+            }
+            uris.addAll(group.uris());
+        }
+        return new ArrayList<>(uris);
+    }
+
+    private record Window(LocalDateTime start, LocalDateTime end, boolean unique, UniqueMode uniqueMode) {
+
+        static Window of(StatsQuery query) {
+            return new Window(query.start(), query.end(), query.unique(),
+                    query.unique() ? query.uniqueMode() : UniqueMode.EXACT);
+        }
+    }
+
+    // Запросы с одним окном: объединение их uri (null - все uri) и общий результат
+    private static final class WindowGroup {
+        private final Window window;
+        private Set<String> uris = new LinkedHashSet<>();
+        private QueryPlan plan;
+        private List<ViewStats> stats;
+
+        private WindowGroup(Window window) {
+            this.window = window;
+        }
+
+        private void add(List<String> queryUris) {
+            if (queryUris == null) {
+                uris = null;
+            } else if (uris != null) {
+                uris.addAll(queryUris);
+            }
+        }
+
+        private Window window() {
+            return window;
+        }
+
+        private List<String> uris() {
+            return uris == null ? null : new ArrayList<>(uris);
+        }
+
+        private StatsQuery query() {
+            return new StatsQuery(window.start(), window.end(), uris(), window.unique(), window.uniqueMode());
+        }
+
+        private void complete(QueryPlan plan, List<ViewStats> stats) {
+            this.plan = plan;
+            this.stats = stats;
+        }
+
+        private QueryPlan plan() {
+            return plan;
+        }
+
+        private List<ViewStats> stats() {
+            return stats;
+        }
+    }
+
+    // Счётчики одного окна в общем проходе
+    private static final class SharedCounter {
+        private final WindowGroup group;
+        private final Set<String> uris;
+        private final Map<StatsKey, Long> hits = new HashMap<>();
+        private final Map<StatsKey, Set<String>> ips = new HashMap<>();
+
+        private SharedCounter(WindowGroup group) {
+            this.group = group;
+            this.uris = group.uris;
+        }
+
+        private WindowGroup group() {
+            return group;
+        }
+
+        private void accept(String app, String uri, String ip, LocalDateTime timestamp) {
+            Window window = group.window();
+            if (timestamp.isBefore(window.start()) || timestamp.isAfter(window.end())
+                    || (uris != null && !uris.contains(uri))) {
+                return;
+            }
+            StatsKey key = new StatsKey(app, uri);
+            if (window.unique()) {
+                ips.computeIfAbsent(key, k -> new HashSet<>()).add(ip);
+            } else {
+                hits.merge(key, 1L, Long::sum);
+            }
+        }
+
+        private List<ViewStats> stats() {
+            List<ViewStats> stats = new ArrayList<>();
+            if (group.window().unique()) {
+                ips.forEach((key, set) -> stats.add(new ViewStats(key.app(), key.uri(), (long) set.size())));
+            } else {
+                hits.forEach((key, count) -> stats.add(new ViewStats(key.app(), key.uri(), count)));
+            }
+            stats.sort(StatsPage.ORDER);
+            return stats;
+        }
+    }
+
+    private record StatsKey(String app, String uri) {
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Постраничная выборка из статистики, посчитанной в памяти (окно счётчиков, агрегаты, сегменты).
+// Строки всегда идут в порядке ORDER; при заданном limit сортируются не все строки, а только offset + limit лучших
+public final class StatsPage {
+
+    // По убыванию хитов, при равенстве - по app и uri, чтобы страницы не пересекались
+    public static final Comparator<ViewStats> ORDER = Comparator.comparing(ViewStats::getHits).reversed()
+            .thenComparing(ViewStats::getApp)
+            .thenComparing(ViewStats::getUri);
+
+    private StatsPage() {
+    }
+
+    public static List<ViewStats> apply(List<ViewStats> stats, Integer limit, int offset) {
+        if (limit == null) {
+            List<ViewStats> sorted = new ArrayList<>(stats);
+            sorted.sort(ORDER);
+            return sorted.subList(Math.min(offset, sorted.size()), sorted.size());
+        }
+        int keep = (int) Math.min((long) offset + limit, stats.size());
+        if (keep <= offset) {
+            return List.of();
+        }
+        // Куча из keep лучших строк, в вершине - худшая из них
+        PriorityQueue<ViewStats> top = new PriorityQueue<>(keep, ORDER.reversed());
+        for (ViewStats row : stats) {
+            if (top.size() < keep) {
+                top.add(row);
+            } else if (ORDER.compare(row, top.peek()) < 0) {
+                top.poll();
+                top.add(row);
+            }
+        }
+        List<ViewStats> sorted = new ArrayList<>(top);
+        sorted.sort(ORDER);
+        return sorted.subList(offset, sorted.size());
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Параметры запроса /stats; uris == null - все uri, элементы uris могут быть шаблонами (UriPatterns).
+// rollUp - по строке на каждый элемент uris вместо строки на каждый uri.
+// Из результата, упорядоченного по убыванию хитов, пропускаются offset строк и берётся не больше limit
+public record StatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                         UniqueMode uniqueMode, Integer limit, int offset, boolean rollUp) {
+
+    // Запрос всей статистики, без постраничной выборки
+    public StatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, UniqueMode uniqueMode) {
+        this(start, end, uris, unique, uniqueMode, null, 0, false);
+    }
+
+    public StatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                      UniqueMode uniqueMode, Integer limit, int offset) {
+        this(start, end, uris, unique, uniqueMode, limit, offset, false);
+    }
+
+    // Тот же запрос по другому списку uri
+    public StatsQuery withUris(List<String> uris) {
+        return new StatsQuery(start, end, uris, unique, uniqueMode, limit, offset, rollUp);
+    }
+
+    // Тот же запрос без постраничной выборки
+    public StatsQuery unpaged() {
+        return new StatsQuery(start, end, uris, unique, uniqueMode, null, 0, rollUp);
+    }
+}
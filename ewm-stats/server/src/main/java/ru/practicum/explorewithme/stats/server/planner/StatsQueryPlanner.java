@@ -0,0 +1,346 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.PlannerProperties;
+import ru.practicum.explorewithme.stats.server.exception.StatsQueryTimeoutException;
+import ru.practicum.explorewithme.stats.server.hot.HotCounterWindow;
+import ru.practicum.explorewithme.stats.server.partition.HitPartitionManager;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RangeDecomposer;
+import ru.practicum.explorewithme.stats.server.rollup.RangeSegment;
+import ru.practicum.explorewithme.stats.server.rollup.RollupStatsReader;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesAccumulator;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesReader;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
+import ru.practicum.explorewithme.stats.server.visitor.ExactUniqueReader;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Выбор самого дешёвого источника для запроса /stats. Окно счётчиков в памяти берётся всегда,
+// когда покрывает диапазон; иначе стоимость агрегатов и сырых хитов оценивается в условных строках
+// по статистике hits и выбирается меньшая. Запрос к БД выполняется в транзакции только для чтения
+// с ограничением времени stats.planner.query-timeout. Шаблоны uri раскрываются по словарю uri
+// до выбора источника, свёртка по шаблонам выполняется над готовым результатом.
+@Slf4j
+@Component
+public class StatsQueryPlanner {
+
+    // Условная стоимость одного обращения к БД и чтения строки каждого вида
+    private static final double STATEMENT_COST = 50;
+    private static final double RAW_ROW_COST = 1;
+    private static final double ROLLUP_ROW_COST = 1;
+    // Скетч - 4 КБ, которые нужно прочитать и слить
+    private static final double SKETCH_ROW_COST = 8;
+    private static final double BITMAP_ROW_COST = 4;
+
+    private final HitRepository repository;
+    private final RollupStatsReader rollupStatsReader;
+    private final ExactUniqueReader exactUniqueReader;
+    private final TimeSeriesReader timeSeriesReader;
+    private final HotCounterWindow hotCounterWindow;
+    private final HitTableStatistics statistics;
+    private final HitPartitionManager partitionManager;
+    private final HitArchive archive;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration queryTimeout;
+    private final int maxPatternUris;
+    private final MeterRegistry registry;
+
+    public StatsQueryPlanner(HitRepository repository, RollupStatsReader rollupStatsReader,
+                             ExactUniqueReader exactUniqueReader, TimeSeriesReader timeSeriesReader,
+                             HotCounterWindow hotCounterWindow, HitTableStatistics statistics,
+                             HitPartitionManager partitionManager, HitArchive archive,
+                             PlatformTransactionManager transactionManager, PlannerProperties properties,
+                             MeterRegistry registry) {
+        this.repository = repository;
+        this.rollupStatsReader = rollupStatsReader;
+        this.exactUniqueReader = exactUniqueReader;
+        this.timeSeriesReader = timeSeriesReader;
+        this.hotCounterWindow = hotCounterWindow;
+        this.statistics = statistics;
+        this.partitionManager = partitionManager;
+        this.archive = archive;
+        this.queryTimeout = properties.getQueryTimeout();
+        this.maxPatternUris = properties.getMaxPatternUris();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setTimeout((int) Math.max(1, queryTimeout.toSeconds()));
+        this.registry = registry;
+    }
+
+    public StatsResult execute(StatsQuery query) {
+        List<ViewStats> stats = new ArrayList<>();
+        QueryPlan plan = stream(query, new StatsSink() {
+            @Override
+            public void plan(QueryPlan plan) {
+            }
+
+            @Override
+            public void accept(ViewStats row) {
+                stats.add(row);
+            }
+        });
+        return new StatsResult(plan, stats);
+    }
+
+    // Передать строки получателю по мере подсчёта; для сырых хитов строки идут прямо из курсора БД
+    public QueryPlan stream(StatsQuery query, StatsSink sink) {
+        List<String> requested = query.uris();
+        StatsQuery resolved = query;
+        if (UriPatterns.hasPatterns(requested)) {
+            List<String> uris = expandUris(requested);
+            log.debug("[StatsQueryPlanner] Шаблоны {} раскрыты в {} uri", requested,
+                    uris == null ? "все" : uris.size());
+            if (uris != null && uris.isEmpty()) {
+                sink.plan(QueryPlan.EMPTY);
+                return QueryPlan.EMPTY;
+            }
+            resolved = query.withUris(uris);
+        }
+        if (!query.rollUp() || requested == null) {
+            return run(resolved, sink);
+        }
+
+        // Порядок свёрнутых строк известен только после подсчёта всех uri, страница - после свёртки
+        List<ViewStats> stats = new ArrayList<>();
+        QueryPlan plan = run(resolved.unpaged(), new StatsSink() {
+            @Override
+            public void plan(QueryPlan plan) {
+                sink.plan(plan);
+            }
+
+            @Override
+            public void accept(ViewStats row) {
+                stats.add(row);
+            }
+        });
+        StatsPage.apply(UriPatterns.rollUp(stats, requested), query.limit(), query.offset()).forEach(sink::accept);
+        return plan;
+    }
+
+    // Шаблоны uri в известные uri (null - без фильтра по uri), не больше stats.planner.max-pattern-uris
+    List<String> expandUris(List<String> uris) {
+        return UriPatterns.expand(uris, repository::findUrisByPrefix, maxPatternUris);
+    }
+
+    private QueryPlan run(StatsQuery query, StatsSink sink) {
+        if (!query.unique()) {
+            Optional<List<ViewStats>> hot = findHot(query);
+            if (hot.isPresent()) {
+                sink.plan(QueryPlan.HOT_WINDOW);
+                StatsPage.apply(hot.get(), query.limit(), query.offset()).forEach(sink::accept);
+                return QueryPlan.HOT_WINDOW;
+            }
+        }
+        return runInDatabase(query, sink);
+    }
+
+    // Статистика из окна счётчиков в памяти, если оно покрывает диапазон
+    Optional<List<ViewStats>> findHot(StatsQuery query) {
+        Timer.Sample sample = Timer.start(registry);
+        Optional<List<ViewStats>> hot = hotCounterWindow.findStats(query.start(), query.end(), query.uris());
+        if (hot.isPresent()) {
+            record(sample, QueryPlan.HOT_WINDOW, "success");
+        }
+        return hot;
+    }
+
+    // Самый дешёвый источник в БД, без окна счётчиков
+    QueryPlan runInDatabase(StatsQuery query, StatsSink sink) {
+        List<Candidate> candidates = candidates(query, statistics.current());
+        Candidate chosen = candidates.stream()
+                .min(Comparator.comparingDouble(Candidate::cost))
+                .orElseThrow();
+        log.debug("[StatsQueryPlanner] Выбран план {} (стоимость {}), варианты: {}",
+                chosen.plan(), Math.round(chosen.cost()), candidates);
+
+        recordEstimate(chosen);
+        sink.plan(chosen.plan());
+        executeTimed(chosen.plan(), () -> chosen.source().emit(sink::accept));
+        return chosen.plan();
+    }
+
+    // Стоимость самого дешёвого источника в БД в условных строках
+    double cost(StatsQuery query) {
+        return candidates(query, statistics.current()).stream()
+                .mapToDouble(Candidate::cost)
+                .min()
+                .orElseThrow();
+    }
+
+    // Стоимость одного прохода по сырым хитам в [start, end]
+    double rawScanCost(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return STATEMENT_COST + statistics.current().estimateRows(start, end.plusSeconds(1), uris) * RAW_ROW_COST;
+    }
+
+    QueryPlan rawPlan() {
+        return partitionManager.isEnabled() ? QueryPlan.PARTITION_SCAN : QueryPlan.RAW_SCAN;
+    }
+
+    // Ряд по корзинам за один проход. Агрегаты, если применимы, всегда дешевле сырых хитов:
+    // строка агрегата заменяет не меньше одного хита, а обращений к БД не больше трёх на гранулярность
+    public TimeSeriesResult timeSeries(TimeSeriesQuery query) {
+        TimeSeriesQuery resolved = query;
+        if (UriPatterns.hasPatterns(query.uris())) {
+            List<String> uris = expandUris(query.uris());
+            if (uris != null && uris.isEmpty()) {
+                return new TimeSeriesResult(QueryPlan.EMPTY, List.of());
+            }
+            resolved = query.withUris(uris);
+        }
+        TimeSeriesQuery series = resolved;
+        TimeSeriesAccumulator accumulator = new TimeSeriesAccumulator(series);
+        QueryPlan plan;
+        Runnable read;
+        if (timeSeriesReader.rollupsApply(series)) {
+            plan = QueryPlan.ROLLUP;
+            read = () -> timeSeriesReader.readRollups(series, accumulator);
+        } else if (series.uniqueMode() == UniqueMode.APPROXIMATE && timeSeriesReader.sketchesApply(series)) {
+            plan = QueryPlan.ROLLUP_SKETCH;
+            read = () -> timeSeriesReader.readSketches(series, accumulator);
+        } else {
+            plan = rawPlan();
+            read = () -> timeSeriesReader.readRaw(series, accumulator);
+        }
+        log.debug("[StatsQueryPlanner] Ряд по {} за {} - {} строится по плану {}",
+                series.interval(), series.start(), series.end(), plan);
+        executeTimed(plan, read);
+        return new TimeSeriesResult(plan, accumulator.points());
+    }
+
+    // Выполнить чтение в транзакции только для чтения с ограничением времени
+    void executeTimed(QueryPlan plan, Runnable read) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            transactionTemplate.executeWithoutResult(status -> read.run());
+            record(sample, plan, "success");
+        } catch (QueryTimeoutException | TransactionTimedOutException e) {
+            record(sample, plan, "timeout");
+            throw new StatsQueryTimeoutException("Запрос статистики по плану " + plan +
+                    " не уложился в " + queryTimeout.toSeconds() + " с", plan, e);
+        }
+    }
+
+    // Применимые источники со стоимостью; при равной стоимости выигрывает добавленный раньше
+    private List<Candidate> candidates(StatsQuery query, HitTableStatistics.Snapshot snapshot) {
+        LocalDateTime start = query.start();
+        LocalDateTime end = query.end();
+        List<String> uris = query.uris();
+        QueryPlan rawPlan = rawPlan();
+        double rawCost = STATEMENT_COST + snapshot.estimateRows(start, end.plusSeconds(1), uris) * RAW_ROW_COST;
+
+        List<Candidate> candidates = new ArrayList<>();
+        if (!query.unique()) {
+            candidates.add(new Candidate(rawPlan, rawCost, sink ->
+                    repository.forEachStats(start, end, uris, false, query.limit(), query.offset(), sink)));
+            if (rollupStatsReader.isEnabled()) {
+                candidates.add(new Candidate(QueryPlan.ROLLUP,
+                        decompositionCost(RangeDecomposer.decompose(start, end), uris, snapshot, ROLLUP_ROW_COST),
+                        inMemory(query, () -> rollupStatsReader.findStats(start, end, uris))));
+            }
+            return withoutLostRaw(candidates, start, rawPlan);
+        }
+
+        // Точный подсчёт по сырым хитам допустим и для приблизительного режима, если он дешевле
+        candidates.add(new Candidate(rawPlan, rawCost, sink ->
+                repository.forEachStats(start, end, uris, true, query.limit(), query.offset(), sink)));
+        if (query.uniqueMode() == UniqueMode.APPROXIMATE && rollupStatsReader.isEnabled()) {
+            candidates.add(new Candidate(QueryPlan.ROLLUP_SKETCH,
+                    decompositionCost(RangeDecomposer.decompose(start, end, Granularity.HOUR), uris, snapshot,
+                            SKETCH_ROW_COST),
+                    inMemory(query, () -> rollupStatsReader.findApproximateUniqueStats(start, end, uris))));
+        } else if (query.uniqueMode() != UniqueMode.APPROXIMATE && exactUniqueReader.isEnabled()) {
+            candidates.add(new Candidate(QueryPlan.VISITOR_BITMAP,
+                    decompositionCost(RangeDecomposer.decompose(start, end, Granularity.DAY), uris, snapshot,
+                            BITMAP_ROW_COST),
+                    inMemory(query, () -> exactUniqueReader.findUniqueStats(start, end, uris))));
+        }
+        return withoutLostRaw(candidates, start, rawPlan);
+    }
+
+    // Хиты раньше start удалены (секции hits по сроку хранения, сжатие без архива): сырые хиты недосчитают,
+    // и план по ним остаётся, только если агрегаты выключены
+    private List<Candidate> withoutLostRaw(List<Candidate> candidates, LocalDateTime start, QueryPlan rawPlan) {
+        if (candidates.size() > 1 && !archive.rawComplete(start.toEpochSecond(ZoneOffset.UTC))) {
+            candidates.removeIf(candidate -> candidate.plan() == rawPlan);
+        }
+        return candidates;
+    }
+
+    // Каждая часть разбиения - отдельный запрос; в корзине не больше строк, чем пар (app, uri) или хитов
+    private double decompositionCost(List<RangeSegment> segments, List<String> uris,
+                                     HitTableStatistics.Snapshot snapshot, double bucketRowCost) {
+        double cost = 0;
+        for (RangeSegment segment : segments) {
+            LocalDateTime to = segment.toInclusive() ? segment.to().plusSeconds(1) : segment.to();
+            double rows = snapshot.estimateRows(segment.from(), to, uris);
+            cost += STATEMENT_COST;
+            if (segment.isRaw()) {
+                cost += rows * RAW_ROW_COST;
+            } else {
+                long buckets = Math.max(1,
+                        Duration.between(segment.from(), segment.to()).toSeconds() / segment.granularity().seconds());
+                cost += buckets * Math.min(snapshot.estimateKeys(uris), Math.max(1, rows / buckets)) * bucketRowCost;
+            }
+        }
+        return cost;
+    }
+
+    // Источник, который считает всю статистику в памяти: limit и offset применяются после подсчёта
+    private static StatsSource inMemory(StatsQuery query, Supplier<List<ViewStats>> stats) {
+        return sink -> StatsPage.apply(stats.get(), query.limit(), query.offset()).forEach(sink);
+    }
+
+    private void record(Timer.Sample sample, QueryPlan plan, String outcome) {
+        sample.stop(Timer.builder("stats.query")
+                .description("Время ответа на /stats по выбранному плану")
+                .tag("plan", plan.name())
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    // Оценка прочитанных строк по модели стоимости; для сырых хитов - почти число строк скана
+    private void recordEstimate(Candidate chosen) {
+        DistributionSummary.builder("stats.query.scan.estimate")
+                .description("Оценка строк, читаемых выбранным планом, в условных строках модели стоимости")
+                .baseUnit("rows")
+                .tag("plan", chosen.plan().name())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(chosen.cost());
+    }
+
+    @FunctionalInterface
+    private interface StatsSource {
+        void emit(Consumer<ViewStats> sink);
+    }
+
+    private record Candidate(QueryPlan plan, double cost, StatsSource source) {
+
+        @Override
+        public String toString() {
+            return plan + "=" + Math.round(cost);
+        }
+    }
+}
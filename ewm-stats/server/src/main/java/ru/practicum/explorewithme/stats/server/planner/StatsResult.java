@@ -0,0 +1,9 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+import java.util.List;
+
+// Статистика вместе с планом, по которому она получена
+public record StatsResult(QueryPlan plan, List<ViewStats> stats) {
+}
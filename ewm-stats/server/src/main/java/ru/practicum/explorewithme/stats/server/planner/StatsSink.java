@@ -0,0 +1,12 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+// Получатель потоковой статистики: сначала узнаёт выбранный план, затем получает строки
+// по убыванию числа хитов
+public interface StatsSink {
+
+    void plan(QueryPlan plan);
+
+    void accept(ViewStats stats);
+}
@@ -0,0 +1,116 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+// Шаблоны uri в /stats: '*' - любая (в том числе пустая) последовательность символов,
+// например /events/* или /events/*/comments. Шаблон раскрывается в известные uri по индексу:
+// сначала диапазон по префиксу до первой '*', затем проверка остатка шаблона. Шаблон из одних '*'
+// подходит к любому uri и снимает фильтр; шаблон, префикс которого охватывает больше maxUris uri,
+// отклоняется с 400, чтобы /stats?uris=/* не читал весь словарь.
+public final class UriPatterns {
+
+    public static final char WILDCARD = '*';
+
+    private UriPatterns() {
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf(WILDCARD) >= 0;
+    }
+
+    public static boolean hasPatterns(List<String> uris) {
+        return uris != null && uris.stream().anyMatch(UriPatterns::isPattern);
+    }
+
+    // Шаблон из одних '*' подходит к любому uri
+    public static boolean matchesAll(List<String> uris) {
+        return uris != null && uris.stream()
+                .anyMatch(uri -> !uri.isEmpty() && uri.chars().allMatch(c -> c == WILDCARD));
+    }
+
+    // Точные uri как есть, шаблоны - в подходящие известные uri; без повторов, в порядке запроса.
+    // null - фильтр по uri не нужен (matchesAll). prefixLookup получает префикс и наибольшее нужное число uri
+    public static List<String> expand(List<String> uris, BiFunction<String, Integer, Collection<String>> prefixLookup,
+                                      int maxUris) {
+        if (matchesAll(uris)) {
+            return null;
+        }
+        Set<String> expanded = new LinkedHashSet<>();
+        for (String uri : uris) {
+            if (!isPattern(uri)) {
+                expanded.add(uri);
+                continue;
+            }
+            String prefix = uri.substring(0, uri.indexOf(WILDCARD));
+            Pattern pattern = compile(uri);
+            boolean prefixOnly = uri.indexOf(WILDCARD) == uri.length() - 1;
+            Collection<String> candidates = prefixLookup.apply(prefix, maxUris + 1);
+            if (candidates.size() > maxUris) {
+                throw tooMany(uri, maxUris);
+            }
+            for (String candidate : candidates) {
+                if (prefixOnly || pattern.matcher(candidate).matches()) {
+                    expanded.add(candidate);
+                }
+            }
+        }
+        if (expanded.size() > maxUris) {
+            throw tooMany(String.join(",", uris), maxUris);
+        }
+        return new ArrayList<>(expanded);
+    }
+
+    private static IllegalArgumentException tooMany(String uri, int maxUris) {
+        return new IllegalArgumentException("Шаблон uri " + uri + " охватывает больше " + maxUris +
+                " uri (stats.planner.max-pattern-uris); уточните часть до '*'");
+    }
+
+    // Свернуть строки по запрошенным uri и шаблонам: строка идёт в первый подходящий элемент запроса
+    // (для каждого приложения отдельно), uri итоговой строки - сам шаблон. Только для полной статистики:
+    // уникальные посетители разных uri не складываются
+    public static List<ViewStats> rollUp(List<ViewStats> stats, List<String> requested) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(requested));
+        List<Pattern> patterns = distinct.stream()
+                .map(uri -> isPattern(uri) ? compile(uri) : null)
+                .toList();
+        Map<String, Map<String, Long>> totals = new LinkedHashMap<>();
+        for (ViewStats row : stats) {
+            for (int i = 0; i < distinct.size(); i++) {
+                Pattern pattern = patterns.get(i);
+                boolean matches = pattern == null
+                        ? distinct.get(i).equals(row.getUri())
+                        : pattern.matcher(row.getUri()).matches();
+                if (matches) {
+                    totals.computeIfAbsent(distinct.get(i), k -> new LinkedHashMap<>())
+                            .merge(row.getApp(), row.getHits(), Long::sum);
+                    break;
+                }
+            }
+        }
+        List<ViewStats> rolledUp = new ArrayList<>();
+        totals.forEach((uri, apps) -> apps.forEach((app, hits) -> rolledUp.add(new ViewStats(app, uri, hits))));
+        rolledUp.sort(StatsPage.ORDER);
+        return rolledUp;
+    }
+
+    private static Pattern compile(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        int from = 0;
+        for (int i = pattern.indexOf(WILDCARD); i >= 0; i = pattern.indexOf(WILDCARD, from)) {
+            regex.append(Pattern.quote(pattern.substring(from, i))).append(".*");
+            from = i + 1;
+        }
+        regex.append(Pattern.quote(pattern.substring(from)));
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
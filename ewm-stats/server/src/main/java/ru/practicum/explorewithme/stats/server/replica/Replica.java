@@ -0,0 +1,40 @@
+package ru.practicum.explorewithme.stats.server.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// Реплика для чтения и её последнее известное отставание от основной БД
+public final class Replica {
+
+    private final String name;
+    private final HikariDataSource dataSource;
+
+    // Отставание в миллисекундах; -1, пока не проверено или реплика недоступна
+    private volatile long lagMillis = -1;
+    private volatile boolean healthy;
+
+    public Replica(String name, HikariDataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public HikariDataSource dataSource() {
+        return dataSource;
+    }
+
+    public long lagMillis() {
+        return lagMillis;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    void update(long lagMillis, boolean healthy) {
+        this.lagMillis = lagMillis;
+        this.healthy = healthy;
+    }
+}
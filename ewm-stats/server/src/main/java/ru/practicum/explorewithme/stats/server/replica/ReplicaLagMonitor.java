@@ -0,0 +1,150 @@
+package ru.practicum.explorewithme.stats.server.replica;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import ru.practicum.explorewithme.stats.server.config.ReplicaProperties;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+
+// Отставание реплик по отметке времени: раз в checkInterval в stats_heartbeat основной БД пишется
+// текущее время, а на каждой реплике читается доехавшее значение. Реплика с отставанием больше maxLag
+// или с ошибкой запроса исключается из чтения до следующей удачной проверки. Способ не зависит
+// от СУБД, поэтому в тестах реплику заменяет вторая база H2
+@Slf4j
+public class ReplicaLagMonitor implements SmartLifecycle {
+
+    private static final String UPDATE_SQL = "UPDATE stats_heartbeat SET beat_at = ? WHERE id = 1";
+    private static final String INSERT_SQL = "INSERT INTO stats_heartbeat (id, beat_at) VALUES (1, ?)";
+    private static final String SELECT_SQL = "SELECT beat_at FROM stats_heartbeat WHERE id = 1";
+
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final TaskScheduler taskScheduler;
+    private final JdbcTemplate primaryTemplate;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final int queryTimeoutSeconds;
+    private final Clock clock;
+
+    private volatile ScheduledFuture<?> checkTask;
+    private volatile boolean running;
+
+    public ReplicaLagMonitor(ReplicaRoutingDataSource routingDataSource, TaskScheduler taskScheduler,
+                             ReplicaProperties properties, MeterRegistry registry, Clock clock) {
+        this.routingDataSource = routingDataSource;
+        this.taskScheduler = taskScheduler;
+        this.maxLag = properties.getMaxLag();
+        this.checkInterval = properties.getCheckInterval();
+        this.queryTimeoutSeconds = (int) Math.max(1, checkInterval.toSeconds());
+        this.clock = clock;
+        this.primaryTemplate = template(routingDataSource.primary());
+
+        for (Replica replica : routingDataSource.replicas()) {
+            Gauge.builder("stats.replica.lag", replica, r -> r.lagMillis() / 1000.0)
+                    .description("Отставание реплики от основной БД, с; -1 - недоступна")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name())
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        checkSafely();
+        checkTask = taskScheduler.scheduleWithFixedDelay(this::checkSafely,
+                Instant.now().plus(checkInterval), checkInterval);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (checkTask != null) {
+            checkTask.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Первая проверка до старта веб-сервера, чтобы чтение сразу шло на догнавшие реплики
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 12288;
+    }
+
+    // Записать отметку в основную БД и обновить отставание реплик
+    public void check() {
+        beat();
+        long now = clock.millis();
+        for (Replica replica : routingDataSource.replicas()) {
+            check(replica, now);
+        }
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.error("[ReplicaLagMonitor] Ошибка проверки реплик: {}", e.getMessage(), e);
+        }
+    }
+
+    private void beat() {
+        long now = clock.millis();
+        try {
+            if (primaryTemplate.update(UPDATE_SQL, now) == 0) {
+                primaryTemplate.update(INSERT_SQL, now);
+            }
+        } catch (DuplicateKeyException e) {
+            // Строку одновременно вставил другой экземпляр сервиса
+            primaryTemplate.update(UPDATE_SQL, now);
+        } catch (DataAccessException e) {
+            // Отметки на репликах устареют, и чтение перейдёт в основную БД
+            log.warn("[ReplicaLagMonitor] Не удалось записать отметку в основную БД: {}", e.getMessage());
+        }
+    }
+
+    private void check(Replica replica, long now) {
+        long lag;
+        try {
+            Long beatAt = template(replica.dataSource()).queryForObject(SELECT_SQL, Long.class);
+            lag = Math.max(0, now - beatAt);
+        } catch (DataAccessException e) {
+            // В том числе отметка ещё не доехала до реплики
+            if (replica.isHealthy() || replica.lagMillis() != -1) {
+                log.warn("[ReplicaLagMonitor] Реплика {} недоступна: {}", replica.name(), e.getMessage());
+            }
+            replica.update(-1, false);
+            return;
+        }
+        boolean healthy = lag <= maxLag.toMillis();
+        if (healthy != replica.isHealthy()) {
+            if (healthy) {
+                log.info("[ReplicaLagMonitor] Реплика {} догнала основную БД (отставание {} мс), чтение включено",
+                        replica.name(), lag);
+            } else {
+                log.warn("[ReplicaLagMonitor] Реплика {} отстаёт на {} мс, чтение переведено на основную БД",
+                        replica.name(), lag);
+            }
+        }
+        replica.update(lag, healthy);
+    }
+
+    private JdbcTemplate template(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setQueryTimeout(queryTimeoutSeconds);
+        return template;
+    }
+}
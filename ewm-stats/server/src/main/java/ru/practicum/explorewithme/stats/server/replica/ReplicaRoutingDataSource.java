@@ -0,0 +1,89 @@
+package ru.practicum.explorewithme.stats.server.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Выбор БД по транзакции: read-only транзакции уходят на реплики по кругу, остальное - в основную.
+// Если живых реплик нет, чтение тоже идёт в основную. Решение принимается при получении соединения,
+// поэтому источник оборачивается в LazyConnectionDataSourceProxy: тогда соединение берётся на первом
+// запросе, когда признак read-only транзакции уже выставлен
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryReadsCounter;
+    private final Counter replicaReadsCounter;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<Replica> replicas, MeterRegistry registry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : this.replicas) {
+            targets.put(replica.name(), replica.dataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+
+        this.primaryReadsCounter = Counter.builder("stats.replica.reads")
+                .description("Соединения read-only транзакций")
+                .tag("target", PRIMARY)
+                .register(registry);
+        this.replicaReadsCounter = Counter.builder("stats.replica.reads")
+                .description("Соединения read-only транзакций")
+                .tag("target", "replica")
+                .register(registry);
+    }
+
+    public HikariDataSource primary() {
+        return primary;
+    }
+
+    public List<Replica> replicas() {
+        return replicas;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isHealthy()) {
+                replicaReadsCounter.increment();
+                return replica.name();
+            }
+        }
+        primaryReadsCounter.increment();
+        return PRIMARY;
+    }
+
+    // Пулы реплик принадлежат этому источнику, пул основной БД закрывается своим бином
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.dataSource().close();
+        }
+    }
+}
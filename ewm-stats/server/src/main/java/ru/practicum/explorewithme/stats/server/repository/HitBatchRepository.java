@@ -0,0 +1,16 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import java.util.List;
+import java.util.Set;
+
+// Пакетная запись хитов через JDBC batch
+public interface HitBatchRepository {
+
+    // Вставить хиты пачками JDBC batch, возвращает количество записанных строк
+    int insertBatch(List<Hit> hits);
+
+    // Идентификаторы хитов (Hit.hitId), которые уже записаны с тем же временем
+    Set<String> findHitIds(List<Hit> hits);
+}
@@ -0,0 +1,188 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Словари app и uri: строки хранятся один раз в hit_apps/hit_uris, в hits - только int-ключи.
+// Записи словарей не удаляются и не меняются, поэтому кэшируются целиком и без ограничений:
+// приложений единицы, uri - по числу событий. В кэш попадают только зафиксированные строки.
+// Поиск по префиксу идёт в hit_uris, чтобы видеть uri, записанные другими экземплярами сервера.
+@Slf4j
+@Component
+public class HitDictionary {
+
+    private static final Pattern EVENT_URI = Pattern.compile("^/events/(\\d{1,18})$");
+    private static final int IN_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final Table apps;
+    private final Table uris;
+
+    public HitDictionary(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        boolean postgres = SqlDialect.detect(jdbcTemplate) == SqlDialect.POSTGRESQL;
+        this.apps = new Table("hit_apps", "name", postgres
+                ? "INSERT INTO hit_apps (name) VALUES (?) ON CONFLICT (name) DO NOTHING"
+                : "MERGE INTO hit_apps a USING (SELECT CAST(? AS VARCHAR(255)) AS name) s ON a.name = s.name " +
+                  "WHEN NOT MATCHED THEN INSERT (name) VALUES (s.name)");
+        this.uris = new Table("hit_uris", "uri", postgres
+                ? "INSERT INTO hit_uris (uri, event_id) VALUES (?, ?) ON CONFLICT (uri) DO NOTHING"
+                : "MERGE INTO hit_uris u USING (SELECT CAST(? AS VARCHAR(512)) AS uri, CAST(? AS BIGINT) AS event_id) s " +
+                  "ON u.uri = s.uri WHEN NOT MATCHED THEN INSERT (uri, event_id) VALUES (s.uri, s.event_id)");
+    }
+
+    // Ключи приложений, новые добавляются в словарь. Вызывается внутри транзакции записи
+    public Map<String, Integer> internApps(Collection<String> names) {
+        return intern(apps, names);
+    }
+
+    // Ключи uri, новые добавляются в словарь вместе с id события из /events/{id}
+    public Map<String, Integer> internUris(Collection<String> values) {
+        return intern(uris, values);
+    }
+
+    // Ключи только уже известных uri, без записи
+    public Map<String, Integer> findUris(Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String value : values) {
+            Integer id = uris.ids.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> found = find(uris, missing);
+            ids.putAll(found);
+            // Строку могла вставить ещё не зафиксированная текущая транзакция
+            AfterCommit.run(() -> uris.cache(found));
+        }
+        return ids;
+    }
+
+    // Известные uri, начинающиеся с prefix, по возрастанию; не больше limit, чтобы широкий префикс
+    // не читал весь словарь. В PostgreSQL поиск идёт по индексу idx_hit_uris_uri_pattern (HitTableMigrator)
+    public List<String> urisWithPrefix(String prefix, int limit) {
+        List<String> found = new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT uri FROM hit_uris WHERE uri LIKE ? ESCAPE '!' LIMIT ?", String.class,
+                escapeLike(prefix) + "%", limit));
+        // Порядок сравнения строк в Java, а не правила сортировки БД
+        found.sort(null);
+        return found;
+    }
+
+    public String app(int id) {
+        return name(apps, id);
+    }
+
+    public String uri(int id) {
+        return name(uris, id);
+    }
+
+    // Числовой id события из uri вида /events/{id} или null
+    public static Long eventId(String uri) {
+        Matcher matcher = EVENT_URI.matcher(uri);
+        return matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+    }
+
+    private Map<String, Integer> intern(Table table, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String value : values) {
+            Integer id = table.ids.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        // Одинаковый порядок вставки, чтобы параллельные транзакции не ждали друг друга по кругу
+        List<String> sorted = missing.stream().distinct().sorted().toList();
+        jdbcTemplate.batchUpdate(table.insertSql, sorted, IN_CHUNK, (ps, value) -> {
+            ps.setString(1, value);
+            if (table == uris) {
+                Long eventId = eventId(value);
+                if (eventId != null) {
+                    ps.setLong(2, eventId);
+                } else {
+                    ps.setNull(2, Types.BIGINT);
+                }
+            }
+        });
+        Map<String, Integer> found = find(table, sorted);
+        ids.putAll(found);
+        // В кэш - только после фиксации: при откате строки словаря исчезнут
+        AfterCommit.run(() -> table.cache(found));
+        log.debug("[HitDictionary] Новых или некэшированных значений в {}: {}", table.name, sorted.size());
+        return ids;
+    }
+
+    private Map<String, Integer> find(Table table, List<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        String sql = "SELECT id, " + table.column + " FROM " + table.name + " WHERE " + table.column + " IN (:values)";
+        for (int from = 0; from < values.size(); from += IN_CHUNK) {
+            List<String> chunk = values.subList(from, Math.min(values.size(), from + IN_CHUNK));
+            namedJdbcTemplate.query(sql, new MapSqlParameterSource("values", chunk),
+                    rs -> {
+                        ids.put(rs.getString(2), rs.getInt(1));
+                    });
+        }
+        return ids;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private String name(Table table, int id) {
+        String value = table.names.get(id);
+        if (value == null) {
+            value = jdbcTemplate.queryForObject(
+                    "SELECT " + table.column + " FROM " + table.name + " WHERE id = ?", String.class, id);
+            table.names.put(id, value);
+        }
+        return value;
+    }
+
+    private static final class Table {
+
+        private final String name;
+        private final String column;
+        private final String insertSql;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+        private Table(String name, String column, String insertSql) {
+            this.name = name;
+            this.column = column;
+            this.insertSql = insertSql;
+        }
+
+        private void cache(Map<String, Integer> found) {
+            found.forEach((value, id) -> {
+                ids.put(value, id);
+                names.put(id, value);
+            });
+        }
+    }
+}
@@ -1,46 +1,32 @@
 package ru.practicum.explorewithme.stats.server.repository;
 
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import ru.practicum.explorewithme.stats.dto.ViewStats;
 import ru.practicum.explorewithme.stats.server.entity.Hit;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 // Репозиторий для работы со статистикой
-public interface HitRepository extends JpaRepository<Hit, Long> {
+public interface HitRepository extends HitBatchRepository, HitScanRepository {
 
     // Получить полную статистику
-    @Query("SELECT new ru.practicum.explorewithme.stats.dto.ViewStats(h.app, h.uri, COUNT(h.id)) " +
-            "FROM Hit h " +
-            "WHERE h.timestamp BETWEEN :start AND :end " +
-            "AND (:uris IS NULL OR h.uri IN :uris) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.id) DESC")
-    List<ViewStats> findStats(@Param("start") LocalDateTime start,
-                              @Param("end") LocalDateTime end,
-                              @Param("uris") List<String> uris);
+    List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    // Получить полную статистику за полуоткрытый интервал [start, end)
+    List<ViewStats> findStatsBefore(LocalDateTime start, LocalDateTime end, List<String> uris);
 
     // Получить уникальную статистику (уникальные)
-    @Query("SELECT new ru.practicum.explorewithme.stats.dto.ViewStats(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
-            "FROM Hit h " +
-            "WHERE h.timestamp BETWEEN :start AND :end " +
-            "AND (:uris IS NULL OR h.uri IN :uris) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStats> findUniqueStats(@Param("start") LocalDateTime start,
-                                    @Param("end") LocalDateTime end,
-                                    @Param("uris") List<String> uris);
+    List<ViewStats> findUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
 
-    // Найти по URI в период времени
-    List<Hit> findAllByUriAndTimestampBetween(String uri, LocalDateTime start, LocalDateTime end);
+    // Статистика (полная или уникальная) по убыванию числа хитов, строки передаются по мере чтения.
+    // Первые offset строк пропускаются, всего передаётся не больше limit (null - без ограничения)
+    void forEachStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                      Integer limit, int offset, Consumer<ViewStats> consumer);
 
-    // Найти все в период времени
-    List<Hit> findAllByTimestampBetween(LocalDateTime start, LocalDateTime end);
+    // Известные uri с заданным префиксом, по возрастанию; не больше limit штук (какие именно - не определено)
+    List<String> findUrisByPrefix(String prefix, int limit);
 
-    // Найти уникальные по URI, APP и IP в период времени
-    @Query("SELECT h FROM Hit h WHERE h.timestamp BETWEEN :start AND :end GROUP BY h.uri, h.app, h.ip")
-    List<Hit> findDistinctByTimestampBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
-}
\ No newline at end of file
+    // Найти по URI в период времени
+    List<Hit> findAllByUriAndTimestampBetween(String uri, LocalDateTime start, LocalDateTime end);
+}
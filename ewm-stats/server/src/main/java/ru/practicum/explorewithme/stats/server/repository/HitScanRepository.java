@@ -0,0 +1,16 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Потоковый обход сырых хитов без материализации сущностей
+public interface HitScanRepository {
+
+    // Пройти по хитам в [from, to) или [from, to] при toInclusive; uris == null - все URI
+    void scan(LocalDateTime from, LocalDateTime to, boolean toInclusive, List<String> uris, HitRowConsumer consumer);
+
+    @FunctionalInterface
+    interface HitRowConsumer {
+        void accept(String app, String uri, String ip, LocalDateTime timestamp);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Перевод таблицы hits старого формата (строки app/uri/ip и timestamp) в компактный (только PostgreSQL;
+// в H2 база создаётся заново). Старая таблица переименовывается, хиты переносятся через
+// JdbcHitRepository пачками, затем старая таблица удаляется вместе с секциями, если они были.
+// Заодно создаётся индекс для поиска uri по префиксу, которого нет в общем для H2 schema.sql.
+@Slf4j
+@Component
+public class HitTableMigrator implements SmartLifecycle {
+
+    private static final String LEGACY_TABLE = "hits_legacy";
+    private static final int CHUNK_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HitBatchRepository hitRepository;
+    private final boolean postgres;
+
+    private volatile boolean running;
+
+    public HitTableMigrator(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                            PlatformTransactionManager transactionManager, HitRepository hitRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(CHUNK_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hitRepository = hitRepository;
+        this.postgres = SqlDialect.detect(jdbcTemplate) == SqlDialect.POSTGRESQL;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (postgres && isLegacy()) {
+            migrate();
+        }
+        if (postgres) {
+            // LIKE 'prefix%' не использует индекс UNIQUE (uri) при правилах сортировки, отличных от C
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_hit_uris_uri_pattern ON hit_uris (uri text_pattern_ops)");
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Раньше секционирования: оно строит секционированную таблицу уже с компактными колонками
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 16384;
+    }
+
+    private boolean isLegacy() {
+        Integer columns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = 'hits' AND column_name = 'uri'", Integer.class);
+        return columns != null && columns > 0;
+    }
+
+    private void migrate() {
+        log.info("[HitTableMigrator] Перевод hits в компактный формат");
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE hits IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE hits RENAME TO " + LEGACY_TABLE);
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS hits_pkey RENAME TO " + LEGACY_TABLE + "_pkey");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_hits_timestamp RENAME TO idx_" + LEGACY_TABLE + "_timestamp");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_hits_ts RENAME TO idx_" + LEGACY_TABLE + "_ts");
+            jdbcTemplate.execute("ALTER SEQUENCE IF EXISTS hits_id_seq RENAME TO " + LEGACY_TABLE + "_id_seq");
+
+            jdbcTemplate.execute("CREATE TABLE hits (" +
+                    "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "app_id INTEGER NOT NULL, " +
+                    "uri_id INTEGER NOT NULL, " +
+                    "ip BYTEA NOT NULL, " +
+                    "ts BIGINT NOT NULL, " +
+                    "hit_id VARCHAR(64))");
+            jdbcTemplate.execute("CREATE INDEX idx_hits_ts ON hits (ts)");
+
+            // Курсорное чтение внутри транзакции: старая таблица не загружается в память целиком
+            List<Hit> chunk = new ArrayList<>(CHUNK_SIZE);
+            long[] moved = {0};
+            streamingJdbcTemplate.query("SELECT app, uri, ip, timestamp FROM " + LEGACY_TABLE, rs -> {
+                chunk.add(new Hit(null, rs.getString("app"), rs.getString("uri"),
+                        IpAddressCodec.canonical(rs.getString("ip")),
+                        rs.getTimestamp("timestamp").toLocalDateTime()));
+                if (chunk.size() == CHUNK_SIZE) {
+                    moved[0] += hitRepository.insertBatch(chunk);
+                    chunk.clear();
+                }
+            });
+            moved[0] += hitRepository.insertBatch(chunk);
+
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            log.info("[HitTableMigrator] Перенесено хитов в компактную таблицу: {}", moved[0]);
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+// Двоичная запись IP для колонки hits.ip: IPv4 - 4 байта, IPv6 - 16 байт.
+// Строки, не являющиеся IP-адресом, хранятся как 0x00 + UTF-8 (и дополняются нулём,
+// если длина совпала бы с длиной адреса), чтобы ничего не терять.
+public final class IpAddressCodec {
+
+    private static final byte TEXT_MARKER = 0;
+
+    private IpAddressCodec() {
+    }
+
+    public static byte[] encode(String ip) {
+        byte[] address = parse(ip);
+        if (address != null) {
+            return address;
+        }
+        byte[] utf8 = ip.getBytes(StandardCharsets.UTF_8);
+        int length = utf8.length + 1;
+        if (length == 4 || length == 16) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        bytes[0] = TEXT_MARKER;
+        System.arraycopy(utf8, 0, bytes, 1, utf8.length);
+        return bytes;
+    }
+
+    public static String decode(byte[] bytes) {
+        if (bytes.length == 4 || bytes.length == 16) {
+            try {
+                return InetAddress.getByAddress(bytes).getHostAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Некорректный двоичный IP", e);
+            }
+        }
+        int end = bytes.length;
+        while (end > 1 && bytes[end - 1] == 0) {
+            end--;
+        }
+        return new String(bytes, 1, end - 1, StandardCharsets.UTF_8);
+    }
+
+    // Каноническая запись IP: та же строка, что вернёт decode(encode(ip)).
+    // Нужна, чтобы один адрес в разных записях (например, IPv6 с сокращениями) считался одним посетителем
+    public static String canonical(String ip) {
+        return ip == null ? null : decode(encode(ip));
+    }
+
+    // Разбор только литералов IP, без обращения к DNS
+    private static byte[] parse(String ip) {
+        if (ip.isEmpty() || ip.length() > 45) {
+            return null;
+        }
+        boolean colon = false;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c == ':') {
+                colon = true;
+            } else if (!(c >= '0' && c <= '9' || c == '.' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return null;
+            }
+        }
+        if (!colon) {
+            return parseIpv4(ip);
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    // Только каноническая запись a.b.c.d без ведущих нулей, чтобы обратное преобразование совпадало
+    private static byte[] parseIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || (part.length() > 1 && part.charAt(0) == '0')
+                    || !part.chars().allMatch(Character::isDigit)) {
+                return null;
+            }
+            int octet = Integer.parseInt(part);
+            if (octet > 255) {
+                return null;
+            }
+            address[i] = (byte) octet;
+        }
+        return address;
+    }
+}
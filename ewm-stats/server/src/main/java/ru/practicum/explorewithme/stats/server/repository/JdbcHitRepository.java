@@ -0,0 +1,362 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Хиты в компактном формате: app и uri - ключи словарей hit_apps/hit_uris, IP - в двоичном виде,
+// время - секунды эпохи (LocalDateTime как UTC). Наружу отдаются обычные строки и LocalDateTime.
+// Запросы, начинающиеся в сжатом периоде (HitCompactor), дополняются хитами из архива.
+@Repository
+public class JdbcHitRepository implements HitRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO hits (app_id, uri_id, ip, ts, hit_id) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String STATS_SQL = "SELECT app_id, uri_id, COUNT(*) AS cnt FROM hits WHERE ts >= :from";
+
+    private static final String UNIQUE_STATS_SQL =
+            "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS cnt FROM hits WHERE ts >= :from";
+
+    // Размер одной пачки JDBC batch; с reWriteBatchedInserts драйвер PostgreSQL
+    // склеивает её в многострочный INSERT
+    private static final int JDBC_BATCH_SIZE = 500;
+
+    private static final int FETCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final NamedParameterJdbcTemplate scanJdbcTemplate;
+    private final HitDictionary dictionary;
+    private final HitArchive archive;
+
+    // Для обхода - собственный JdbcTemplate с fetch size, чтобы не менять настройки общего.
+    // В PostgreSQL курсорное чтение работает только внутри транзакции
+    public JdbcHitRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                             DataSource dataSource, HitDictionary dictionary, HitArchive archive) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        JdbcTemplate scanTemplate = new JdbcTemplate(dataSource);
+        scanTemplate.setFetchSize(FETCH_SIZE);
+        this.scanJdbcTemplate = new NamedParameterJdbcTemplate(scanTemplate);
+        this.dictionary = dictionary;
+        this.archive = archive;
+    }
+
+    @Override
+    public int insertBatch(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return 0;
+        }
+        Set<String> appNames = new HashSet<>();
+        Set<String> uriValues = new HashSet<>();
+        for (Hit hit : hits) {
+            appNames.add(hit.getApp());
+            uriValues.add(hit.getUri());
+        }
+        Map<String, Integer> appIds = dictionary.internApps(appNames);
+        Map<String, Integer> uriIds = dictionary.internUris(uriValues);
+        jdbcTemplate.batchUpdate(INSERT_SQL, hits, JDBC_BATCH_SIZE, (ps, hit) -> {
+            ps.setInt(1, appIds.get(hit.getApp()));
+            ps.setInt(2, uriIds.get(hit.getUri()));
+            ps.setBytes(3, IpAddressCodec.encode(hit.getIp()));
+            ps.setLong(4, epochSecond(hit.getTimestamp()));
+            if (hit.getHitId() != null) {
+                ps.setString(5, hit.getHitId());
+            } else {
+                ps.setNull(5, Types.VARCHAR);
+            }
+        });
+        return hits.size();
+    }
+
+    // Индекса по hit_id нет: строки отбираются по индексу ts, ведь повтор хита приходит с тем же временем
+    @Override
+    public Set<String> findHitIds(List<Hit> hits) {
+        Set<Long> timestamps = new HashSet<>();
+        Set<String> hitIds = new HashSet<>();
+        for (Hit hit : hits) {
+            timestamps.add(epochSecond(hit.getTimestamp()));
+            hitIds.add(hit.getHitId());
+        }
+        if (hitIds.isEmpty()) {
+            return Set.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "SELECT hit_id FROM hits WHERE " + SqlFilters.in("ts", "timestamps", timestamps, params) +
+                " AND " + SqlFilters.in("hit_id", "hitIds", hitIds, params);
+        return new HashSet<>(namedJdbcTemplate.queryForList(sql, params, String.class));
+    }
+
+    @Override
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return aggregate(STATS_SQL, start, end, true, uris);
+    }
+
+    @Override
+    public List<ViewStats> findStatsBefore(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return aggregate(STATS_SQL, start, end, false, uris);
+    }
+
+    @Override
+    public List<ViewStats> findUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (archive.covers(epochSecond(start))) {
+            List<ViewStats> stats = new ArrayList<>();
+            forEachMergedStats(start, end, uris, true, null, 0, stats::add);
+            return stats;
+        }
+        return aggregate(UNIQUE_STATS_SQL, start, end, true, uris);
+    }
+
+    @Override
+    public void forEachStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                             Integer limit, int offset, Consumer<ViewStats> consumer) {
+        if (archive.covers(epochSecond(start))) {
+            forEachMergedStats(start, end, uris, unique, limit, offset, consumer);
+            return;
+        }
+        MapSqlParameterSource params = rangeParams(start, end);
+        StringBuilder sql = new StringBuilder(unique ? UNIQUE_STATS_SQL : STATS_SQL).append(" AND ts <= :to");
+        if (!appendUriFilter(sql, params, uris)) {
+            return;
+        }
+        sql.append(" GROUP BY app_id, uri_id ORDER BY cnt DESC");
+        long pageEnd = limit == null ? Long.MAX_VALUE : (long) offset + limit;
+        scanJdbcTemplate.query(sql.toString(), params, (ResultSetExtractor<Void>) rs -> {
+            // Пары с равным числом хитов идут подряд и досортировываются по StatsPage.ORDER (по именам),
+            // как статистика, посчитанная в памяти: иначе страницы разных источников разошлись бы
+            List<ViewStats> ties = new ArrayList<>();
+            long position = 0;
+            while (position < pageEnd && rs.next()) {
+                long hits = rs.getLong("cnt");
+                if (!ties.isEmpty() && hits != ties.get(0).getHits()) {
+                    position = emitPage(ties, position, offset, pageEnd, consumer);
+                }
+                ties.add(new ViewStats(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")),
+                        hits));
+            }
+            emitPage(ties, position, offset, pageEnd, consumer);
+            return null;
+        });
+    }
+
+    // Отсортировать группу строк с номерами от position и отдать те, что в [offset, end); вернуть номер следующей
+    private static long emitPage(List<ViewStats> rows, long position, int offset, long end,
+                                 Consumer<ViewStats> consumer) {
+        rows.sort(StatsPage.ORDER);
+        for (ViewStats row : rows) {
+            if (position >= offset && position < end) {
+                consumer.accept(row);
+            }
+            position++;
+        }
+        rows.clear();
+        return position;
+    }
+
+    // Диапазон со сжатыми днями: в памяти досчитываются только пары с хитами в архиве (архив плюс
+    // их хиты в hits). Остальные пары есть только в hits и читаются из упорядоченного SQL-агрегата,
+    // пока не наберётся offset + limit строк (и равных последней, ведь при равенстве порядок - по именам)
+    private void forEachMergedStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                    Integer limit, int offset, Consumer<ViewStats> consumer) {
+        Map<String, Map<String, Long>> archived = archivedTotals(start, end, uris, unique);
+        List<ViewStats> stats = new ArrayList<>();
+        archived.forEach((app, byUri) -> byUri.forEach((uri, hits) -> stats.add(new ViewStats(app, uri, hits))));
+
+        long needed = limit == null ? Long.MAX_VALUE : (long) offset + limit;
+        MapSqlParameterSource params = rangeParams(start, end);
+        StringBuilder sql = new StringBuilder(unique ? UNIQUE_STATS_SQL : STATS_SQL).append(" AND ts <= :to");
+        if (appendUriFilter(sql, params, uris)) {
+            sql.append(" GROUP BY app_id, uri_id ORDER BY cnt DESC");
+            scanJdbcTemplate.query(sql.toString(), params, (ResultSetExtractor<Void>) rs -> {
+                long taken = 0;
+                long lastHits = 0;
+                while (rs.next()) {
+                    long hits = rs.getLong("cnt");
+                    if (taken >= needed && (taken == 0 || hits < lastHits)) {
+                        break;
+                    }
+                    String app = dictionary.app(rs.getInt("app_id"));
+                    String uri = dictionary.uri(rs.getInt("uri_id"));
+                    if (archived.getOrDefault(app, Map.of()).containsKey(uri)) {
+                        continue;
+                    }
+                    stats.add(new ViewStats(app, uri, hits));
+                    taken++;
+                    lastHits = hits;
+                }
+                return null;
+            });
+        }
+        stats.sort(StatsPage.ORDER);
+        stats.stream().skip(offset).limit(limit == null ? Long.MAX_VALUE : limit).forEach(consumer);
+    }
+
+    // Итоги пар (app, uri), у которых есть хиты в архивной части диапазона. Уникальных по паре
+    // не сложить (посетитель бывает и в архиве, и в hits), поэтому для них объединяются IP архива
+    // и IP тех же пар из hits
+    private Map<String, Map<String, Long>> archivedTotals(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                          boolean unique) {
+        Map<String, Map<String, Long>> totals = new HashMap<>();
+        if (!unique) {
+            for (ViewStats row : archive.findStats(epochSecond(start), epochSecond(end), uris, false)) {
+                totals.computeIfAbsent(row.getApp(), k -> new HashMap<>()).put(row.getUri(), row.getHits());
+            }
+            MapSqlParameterSource params = rangeParams(start, end);
+            StringBuilder sql = new StringBuilder(STATS_SQL).append(" AND ts <= :to");
+            if (!totals.isEmpty() && appendUriFilter(sql, params, archivedUris(totals))) {
+                sql.append(" GROUP BY app_id, uri_id");
+                namedJdbcTemplate.query(sql.toString(), params, rs -> {
+                    long hits = rs.getLong("cnt");
+                    Map<String, Long> byUri = totals.get(dictionary.app(rs.getInt("app_id")));
+                    if (byUri != null) {
+                        byUri.computeIfPresent(dictionary.uri(rs.getInt("uri_id")), (uri, archivedHits) ->
+                                archivedHits + hits);
+                    }
+                });
+            }
+            return totals;
+        }
+        Map<String, Map<String, Set<String>>> ips = new HashMap<>();
+        archive.scan(epochSecond(start), epochSecond(end), uris, row -> ips
+                .computeIfAbsent(row.app(), k -> new HashMap<>())
+                .computeIfAbsent(row.uri(), k -> new HashSet<>())
+                .add(row.ip()));
+        if (!ips.isEmpty()) {
+            scanHits(start, end, true, archivedUris(ips), (app, uri, ip, timestamp) -> {
+                Set<String> set = ips.getOrDefault(app, Map.of()).get(uri);
+                if (set != null) {
+                    set.add(ip);
+                }
+            });
+        }
+        ips.forEach((app, byUri) -> byUri.forEach((uri, set) ->
+                totals.computeIfAbsent(app, k -> new HashMap<>()).put(uri, (long) set.size())));
+        return totals;
+    }
+
+    private static List<String> archivedUris(Map<String, ? extends Map<String, ?>> byApp) {
+        Set<String> uris = new HashSet<>();
+        byApp.values().forEach(byUri -> uris.addAll(byUri.keySet()));
+        return new ArrayList<>(uris);
+    }
+
+    @Override
+    public List<Hit> findAllByUriAndTimestampBetween(String uri, LocalDateTime start, LocalDateTime end) {
+        List<Hit> hits = new ArrayList<>();
+        scan(start, end, true, List.of(uri), (app, hitUri, ip, timestamp) ->
+                hits.add(new Hit(null, app, hitUri, ip, timestamp)));
+        return hits;
+    }
+
+    @Override
+    public void scan(LocalDateTime from, LocalDateTime to, boolean toInclusive, List<String> uris,
+                     HitRowConsumer consumer) {
+        if (archive.covers(epochSecond(from))) {
+            long last = toInclusive ? epochSecond(to) : epochSecond(to) - 1;
+            archive.scan(epochSecond(from), last, uris, row -> consumer.accept(row.app(), row.uri(), row.ip(),
+                    LocalDateTime.ofEpochSecond(row.epochSecond(), 0, ZoneOffset.UTC)));
+        }
+        scanHits(from, to, toInclusive, uris, consumer);
+    }
+
+    private void scanHits(LocalDateTime from, LocalDateTime to, boolean toInclusive, List<String> uris,
+                          HitRowConsumer consumer) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, ip, ts FROM hits WHERE ts >= :from")
+                .append(toInclusive ? " AND ts <= :to" : " AND ts < :to");
+        if (!appendUriFilter(sql, params, uris)) {
+            return;
+        }
+        scanJdbcTemplate.query(sql.toString(), params, rs -> {
+            consumer.accept(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")),
+                    IpAddressCodec.decode(rs.getBytes("ip")),
+                    LocalDateTime.ofEpochSecond(rs.getLong("ts"), 0, ZoneOffset.UTC));
+        });
+    }
+
+    private List<ViewStats> aggregate(String select, LocalDateTime start, LocalDateTime end, boolean endInclusive,
+                                      List<String> uris) {
+        MapSqlParameterSource params = rangeParams(start, end);
+        StringBuilder sql = new StringBuilder(select)
+                .append(endInclusive ? " AND ts <= :to" : " AND ts < :to");
+        if (!appendUriFilter(sql, params, uris)) {
+            return List.of();
+        }
+        sql.append(" GROUP BY app_id, uri_id");
+        List<ViewStats> stats = namedJdbcTemplate.query(sql.toString(), params, (rs, rowNum) ->
+                new ViewStats(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")),
+                        rs.getLong("cnt")));
+        if (!archive.covers(epochSecond(start))) {
+            stats.sort(StatsPage.ORDER);
+            return stats;
+        }
+        long last = endInclusive ? epochSecond(end) : epochSecond(end) - 1;
+        return merge(stats, archive.findStats(epochSecond(start), last, uris, false));
+    }
+
+    // Сложить счётчики hits и архива по (app, uri)
+    private static List<ViewStats> merge(List<ViewStats> stats, List<ViewStats> archived) {
+        if (archived.isEmpty()) {
+            return stats;
+        }
+        Map<String, Map<String, Long>> totals = new LinkedHashMap<>();
+        for (List<ViewStats> part : List.of(stats, archived)) {
+            for (ViewStats row : part) {
+                totals.computeIfAbsent(row.getApp(), k -> new LinkedHashMap<>())
+                        .merge(row.getUri(), row.getHits(), Long::sum);
+            }
+        }
+        List<ViewStats> merged = new ArrayList<>();
+        totals.forEach((app, byUri) -> byUri.forEach((uri, hits) -> merged.add(new ViewStats(app, uri, hits))));
+        merged.sort(StatsPage.ORDER);
+        return merged;
+    }
+
+    @Override
+    public List<String> findUrisByPrefix(String prefix, int limit) {
+        return dictionary.urisWithPrefix(prefix, limit);
+    }
+
+    // false, если ни одного из запрошенных uri ещё не было и запрос заведомо пуст
+    private boolean appendUriFilter(StringBuilder sql, MapSqlParameterSource params, List<String> uris) {
+        if (uris == null) {
+            return true;
+        }
+        Map<String, Integer> uriIds = dictionary.findUris(uris);
+        if (uriIds.isEmpty()) {
+            return false;
+        }
+        sql.append(" AND ").append(SqlFilters.in("uri_id", "uriIds", uriIds.values(), params));
+        return true;
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("from", epochSecond(from))
+                .addValue("to", epochSecond(to));
+    }
+
+    private static long epochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
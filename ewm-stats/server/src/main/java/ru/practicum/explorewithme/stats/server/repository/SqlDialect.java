@@ -0,0 +1,19 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Locale;
+
+// СУБД под сервером статистики: рабочий PostgreSQL или H2 в локальном и тестовом профилях.
+// Нужна там, где переносимого SQL нет (upsert, секционирование).
+public enum SqlDialect {
+    POSTGRESQL,
+    H2;
+
+    public static SqlDialect detect(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return product != null && product.toLowerCase(Locale.ROOT).contains("postgres") ? POSTGRESQL : H2;
+    }
+}
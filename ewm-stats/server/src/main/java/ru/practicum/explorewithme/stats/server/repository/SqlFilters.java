@@ -0,0 +1,31 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.lang.reflect.Array;
+import java.sql.Types;
+import java.util.Collection;
+
+// Условие "колонка входит в список". Короткий список разворачивается в IN (?, ?, ...),
+// длинный (например, все uri под шаблоном /events/*) передаётся одним параметром-массивом:
+// число параметров JDBC-запроса ограничено (в PostgreSQL - 32767)
+public final class SqlFilters {
+
+    private static final int MAX_IN_LIST = 1000;
+
+    private SqlFilters() {
+    }
+
+    // Значения одного типа (Integer или String), список не пуст
+    public static String in(String column, String name, Collection<?> values, MapSqlParameterSource params) {
+        if (values.size() <= MAX_IN_LIST) {
+            params.addValue(name, values);
+            return column + " IN (:" + name + ")";
+        }
+        // Массив с типом элементов, чтобы драйвер PostgreSQL вывел тип int4[] или varchar[]
+        Object[] array = values.toArray((Object[]) Array.newInstance(values.iterator().next().getClass(), 0));
+        params.addValue(name, new SqlParameterValue(Types.ARRAY, array));
+        return column + " = ANY(:" + name + ")";
+    }
+}
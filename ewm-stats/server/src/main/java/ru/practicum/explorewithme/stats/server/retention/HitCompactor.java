@@ -0,0 +1,189 @@
+package ru.practicum.explorewithme.stats.server.retention;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.config.StorageBackend;
+import ru.practicum.explorewithme.stats.server.config.StorageProperties;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RollupRepository;
+import ru.practicum.explorewithme.stats.server.segment.ArchiveFile;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+import ru.practicum.explorewithme.stats.server.segment.SegmentRow;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+// Сжатие старых сырых хитов (stats.retention.enabled=true). Хиты старше срока приложения по одному дню
+// переносятся в сжатый файл архива (HitArchive) или удаляются, а минутные агрегаты этого дня удаляются.
+// Часовые и дневные агрегаты со скетчами и битовыми картами посетителей остаются: их уже заполнила
+// запись хитов. Поэтому после сжатия нельзя очищать hit_rollups в расчёте на RollupBackfill.
+// Хиты, пришедшие в сжатый день позже, сжимаются при следующем запуске отдельным файлом.
+@Slf4j
+@Component
+public class HitCompactor implements SmartLifecycle {
+
+    private final RetentionRepository repository;
+    private final RollupRepository rollupRepository;
+    private final HitArchive archive;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final RetentionProperties properties;
+    private final boolean tableBackend;
+    private final boolean rollupsEnabled;
+    private final Clock clock;
+
+    private volatile ScheduledFuture<?> compactionTask;
+    private volatile boolean running;
+
+    @Autowired
+    public HitCompactor(RetentionRepository repository, RollupRepository rollupRepository, HitArchive archive,
+                        PlatformTransactionManager transactionManager, TaskScheduler taskScheduler,
+                        RetentionProperties properties, RollupProperties rollupProperties,
+                        StorageProperties storageProperties) {
+        this(repository, rollupRepository, archive, transactionManager, taskScheduler, properties,
+                rollupProperties, storageProperties, Clock.systemUTC());
+    }
+
+    HitCompactor(RetentionRepository repository, RollupRepository rollupRepository, HitArchive archive,
+                 PlatformTransactionManager transactionManager, TaskScheduler taskScheduler,
+                 RetentionProperties properties, RollupProperties rollupProperties,
+                 StorageProperties storageProperties, Clock clock) {
+        this.repository = repository;
+        this.rollupRepository = rollupRepository;
+        this.archive = archive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+        this.tableBackend = storageProperties.getBackend() == StorageBackend.TABLE;
+        this.rollupsEnabled = rollupProperties.isEnabled();
+        this.clock = clock;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!tableBackend) {
+            return;
+        }
+        // Архив открывается и при выключенном сжатии: убранных из hits хитов там больше нет
+        archive.open(repository.findArchiveFiles(), repository.findHorizon());
+        archive.drop(repository.findDroppedHorizon());
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!rollupsEnabled) {
+            log.warn("[HitCompactor] Сжатие хитов требует stats.rollup.enabled=true и не запущено");
+            return;
+        }
+        compactionTask = taskScheduler.scheduleWithFixedDelay(this::compactSafely,
+                Instant.now().plus(properties.getInterval()), properties.getInterval());
+        log.info("[HitCompactor] Сжатие хитов старше {} раз в {}, архив: {}", properties.getRawAge(),
+                properties.getInterval(), properties.isArchive());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (compactionTask != null) {
+            compactionTask.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Архив открывается до старта приёма хитов и веб-сервера
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 7168;
+    }
+
+    // Сжать до maxDaysPerRun самых старых дней каждого приложения, вышедших за срок
+    public void compact() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (Map.Entry<Integer, String> app : repository.findApps().entrySet()) {
+            long cutoff = startOfDay(now.minus(properties.rawAge(app.getValue())).toEpochSecond(ZoneOffset.UTC));
+            long from = Long.MIN_VALUE;
+            for (int day = 0; day < properties.getMaxDaysPerRun() && running; day++) {
+                Long oldest = repository.findOldestHit(app.getKey(), from);
+                if (oldest == null || oldest >= cutoff) {
+                    break;
+                }
+                from = startOfDay(oldest);
+                compactDay(app.getKey(), app.getValue(), from);
+                from += RetentionRepository.DAY_SECONDS;
+            }
+        }
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("[HitCompactor] Ошибка сжатия хитов: {}", e.getMessage(), e);
+        }
+    }
+
+    private void compactDay(int appId, String app, long dayStart) {
+        long dayEnd = dayStart + RetentionRepository.DAY_SECONDS;
+        List<SegmentRow> rows = new ArrayList<>();
+        long maxId = repository.readHits(appId, dayStart, dayEnd, rows::add);
+        if (rows.isEmpty()) {
+            return;
+        }
+        long id = repository.nextArchiveId();
+        boolean archived = properties.isArchive();
+        if (archived) {
+            archive.write(id, rows);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int deleted = repository.deleteHits(appId, dayStart, dayEnd, maxId);
+                // Хит с меньшим id, зафиксированный после чтения, в файл не попал: день сожмём в другой раз
+                if (deleted != rows.size()) {
+                    throw new IllegalStateException("Хиты " + app + " за " + day(dayStart) +
+                            " изменились во время сжатия");
+                }
+                repository.insertArchive(id, appId, dayStart, rows.size(), archived);
+                rollupRepository.deleteBuckets(Granularity.MINUTE, app, day(dayStart), day(dayEnd));
+            });
+        } catch (RuntimeException e) {
+            if (archived) {
+                archive.discard(id);
+            }
+            throw e;
+        }
+        if (archived) {
+            archive.publish(new ArchiveFile(id, dayStart, dayEnd));
+        } else {
+            // Удалённых хитов нет нигде: планировщик не должен считать этот период по сырым хитам
+            archive.advance(dayEnd);
+            archive.drop(dayEnd);
+        }
+        log.info("[HitCompactor] Хиты {} за {} {}: {}", app, day(dayStart).toLocalDate(),
+                archived ? "перенесены в архив" : "удалены", rows.size());
+    }
+
+    private static long startOfDay(long epochSecond) {
+        return Math.floorDiv(epochSecond, RetentionRepository.DAY_SECONDS) * RetentionRepository.DAY_SECONDS;
+    }
+
+    private static LocalDateTime day(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.explorewithme.stats.server.retention;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.explorewithme.stats.server.repository.HitDictionary;
+import ru.practicum.explorewithme.stats.server.repository.IpAddressCodec;
+import ru.practicum.explorewithme.stats.server.segment.ArchiveFile;
+import ru.practicum.explorewithme.stats.server.segment.SegmentRow;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Сырые хиты приложения по дням для сжатия и журнал сжатых дней hit_archive
+@Repository
+public class RetentionRepository {
+
+    static final long DAY_SECONDS = 86_400;
+
+    private static final int FETCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate scanJdbcTemplate;
+    private final HitDictionary dictionary;
+
+    public RetentionRepository(JdbcTemplate jdbcTemplate, DataSource dataSource, HitDictionary dictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.scanJdbcTemplate = new JdbcTemplate(dataSource);
+        this.scanJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.dictionary = dictionary;
+    }
+
+    // id -> имя приложения
+    public Map<Integer, String> findApps() {
+        Map<Integer, String> apps = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM hit_apps ORDER BY id", rs -> {
+            apps.put(rs.getInt("id"), rs.getString("name"));
+        });
+        return apps;
+    }
+
+    // Время самого старого хита приложения не раньше from или null
+    public Long findOldestHit(int appId, long from) {
+        return jdbcTemplate.queryForObject("SELECT MIN(ts) FROM hits WHERE app_id = ? AND ts >= ?",
+                Long.class, appId, from);
+    }
+
+    // Хиты приложения в [from, to) по возрастанию времени; возвращает наибольший id прочитанных хитов
+    public long readHits(int appId, long from, long to, Consumer<SegmentRow> consumer) {
+        long[] maxId = {0};
+        String app = dictionary.app(appId);
+        scanJdbcTemplate.query("SELECT id, uri_id, ip, ts FROM hits WHERE app_id = ? AND ts >= ? AND ts < ? " +
+                "ORDER BY ts, id", rs -> {
+                    maxId[0] = Math.max(maxId[0], rs.getLong("id"));
+                    consumer.accept(new SegmentRow(app, dictionary.uri(rs.getInt("uri_id")),
+                            IpAddressCodec.decode(rs.getBytes("ip")), rs.getLong("ts")));
+                }, appId, from, to);
+        return maxId[0];
+    }
+
+    // Удалить прочитанные хиты приложения в [from, to): хиты, записанные после чтения, остаются
+    public int deleteHits(int appId, long from, long to, long maxId) {
+        return jdbcTemplate.update("DELETE FROM hits WHERE app_id = ? AND ts >= ? AND ts < ? AND id <= ?",
+                appId, from, to, maxId);
+    }
+
+    public long nextArchiveId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM hit_archive", Long.class);
+        return max == null ? 1 : max + 1;
+    }
+
+    public void insertArchive(long id, int appId, long dayStart, long hits, boolean archived) {
+        jdbcTemplate.update("INSERT INTO hit_archive (id, app_id, day_start, hits, archived) VALUES (?, ?, ?, ?, ?)",
+                id, appId, dayStart, hits, archived);
+    }
+
+    public List<ArchiveFile> findArchiveFiles() {
+        return jdbcTemplate.query("SELECT id, day_start FROM hit_archive WHERE archived AND hits > 0 ORDER BY id",
+                (rs, rowNum) -> new ArchiveFile(rs.getLong("id"), rs.getLong("day_start"),
+                        rs.getLong("day_start") + DAY_SECONDS));
+    }
+
+    // Конец последнего сжатого дня или Long.MIN_VALUE, если сжатия ещё не было
+    public long findHorizon() {
+        Long last = jdbcTemplate.queryForObject("SELECT MAX(day_start) FROM hit_archive", Long.class);
+        return last == null ? Long.MIN_VALUE : last + DAY_SECONDS;
+    }
+
+    // Конец последнего дня, хиты которого удалены без архивации, или Long.MIN_VALUE
+    public long findDroppedHorizon() {
+        Long last = jdbcTemplate.queryForObject("SELECT MAX(day_start) FROM hit_archive WHERE NOT archived",
+                Long.class);
+        return last == null ? Long.MIN_VALUE : last + DAY_SECONDS;
+    }
+}
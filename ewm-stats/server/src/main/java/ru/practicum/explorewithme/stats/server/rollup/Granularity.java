@@ -0,0 +1,43 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// Размер временной корзины агрегатов, от самой мелкой к самой крупной
+public enum Granularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    Granularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    // Начало корзины, в которую попадает момент времени
+    public LocalDateTime truncate(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    // Начало следующей корзины
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+
+    // Ближайшая граница корзины не раньше указанного момента
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime truncated = truncate(time);
+        return truncated.equals(time) ? time : next(truncated);
+    }
+
+    // Длина корзины в секундах
+    public long seconds() {
+        return unit.getDuration().getSeconds();
+    }
+
+    // Следующая по мелкости гранулярность, null для MINUTE
+    public Granularity finer() {
+        return ordinal() == 0 ? null : values()[ordinal() - 1];
+    }
+}
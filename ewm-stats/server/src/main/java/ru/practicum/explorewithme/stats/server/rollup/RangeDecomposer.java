@@ -0,0 +1,49 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Разбивает диапазон [start, end] на самые крупные целые корзины и сырые края.
+// Например, 10:30:15 .. 2 дня спустя 09:00 превращается в сырой кусок до 10:31,
+// минуты до 11:00, часы до полуночи, целые дни, часы до 09:00 и сырую точку 09:00.
+public final class RangeDecomposer {
+
+    private RangeDecomposer() {
+    }
+
+    public static List<RangeSegment> decompose(LocalDateTime start, LocalDateTime end) {
+        return decompose(start, end, Granularity.MINUTE);
+    }
+
+    // То же, но корзины мельче finest не используются: их заменяют сырые куски
+    public static List<RangeSegment> decompose(LocalDateTime start, LocalDateTime end, Granularity finest) {
+        List<RangeSegment> segments = new ArrayList<>();
+        // Правая граница в полуоткрытом виде: корзина целиком внутри, если её конец <= end + 1 нс
+        LocalDateTime endExclusive = end.plusNanos(1);
+        split(Granularity.DAY, finest, start, endExclusive, end, segments);
+        return segments;
+    }
+
+    private static void split(Granularity granularity, Granularity finest, LocalDateTime from, LocalDateTime to,
+                              LocalDateTime end, List<RangeSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (granularity == null) {
+            boolean touchesEnd = to.isAfter(end);
+            segments.add(new RangeSegment(null, from, touchesEnd ? end : to, touchesEnd));
+            return;
+        }
+        Granularity finer = granularity == finest ? null : granularity.finer();
+        LocalDateTime first = granularity.ceil(from);
+        LocalDateTime last = granularity.truncate(to);
+        if (!first.isBefore(last)) {
+            split(finer, finest, from, to, end, segments);
+            return;
+        }
+        split(finer, finest, from, first, end, segments);
+        segments.add(new RangeSegment(granularity, first, last, false));
+        split(finer, finest, last, to, end, segments);
+    }
+}
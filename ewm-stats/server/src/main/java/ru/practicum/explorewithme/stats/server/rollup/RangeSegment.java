@@ -0,0 +1,12 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import java.time.LocalDateTime;
+
+// Часть запрошенного диапазона: либо целые корзины одной гранулярности [from, to),
+// либо кусок сырых хитов (granularity == null). Последний сырой кусок включает правую границу.
+public record RangeSegment(Granularity granularity, LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+
+// Первичное заполнение агрегатов из уже накопленных хитов при старте (только для пустых гранулярностей).
+// Выполняется после перевода hits в компактный формат и секционирования, но до приёма хитов
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RollupBackfill implements SmartLifecycle {
+
+    private final RollupRepository rollupRepository;
+    private final RollupProperties properties;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (Granularity granularity : Granularity.values()) {
+            int rows = rollupRepository.backfill(granularity);
+            if (rows > 0) {
+                log.info("[RollupBackfill] Построено агрегатов {} из hits: {}", granularity, rows);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 6144;
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import java.util.Comparator;
+
+// Приращение счётчика одной корзины агрегата
+public record RollupDelta(RollupKey key, long hits) {
+
+    public static final Comparator<RollupDelta> KEY_ORDER = Comparator.comparing(RollupDelta::key, RollupKey.ORDER);
+}
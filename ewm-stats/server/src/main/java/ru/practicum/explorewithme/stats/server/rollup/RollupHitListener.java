@@ -0,0 +1,93 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.ingest.HitListener;
+import ru.practicum.explorewithme.stats.server.ingest.IngestWatermark;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Инкрементальное обновление агрегатов при записи хитов: пачка сворачивается в памяти
+// до одного приращения на корзину, затем приращения применяются upsert-ом в той же транзакции.
+// Для часовых и дневных корзин рядом со счётчиком хранится HyperLogLog-скетч уникальных IP.
+// Работа идёт под блокировкой горячих корзин, поэтому по умолчанию (stats.ingest.mode=auto) одиночные
+// хиты копятся в HitBuffer и доходят сюда пачками, а не по одному из потока запроса /hit.
+@Component
+@Order(10)
+@RequiredArgsConstructor
+public class RollupHitListener implements HitListener {
+
+    // Минутные скетчи дали бы слишком много строк по 4 КБ, края короче часа читаются из hits
+    private static final List<Granularity> SKETCH_GRANULARITIES = List.of(Granularity.HOUR, Granularity.DAY);
+
+    private final RollupRepository rollupRepository;
+    private final HitRepository hitRepository;
+    private final RollupProperties properties;
+    private final IngestWatermark watermark;
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        watermark.observe(hits);
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Map<RollupKey, Long> counts = new HashMap<>();
+        Map<RollupKey, HyperLogLog> sketches = new HashMap<>();
+        for (Hit hit : hits) {
+            long ipHash = HyperLogLog.hash(hit.getIp());
+            for (Granularity granularity : Granularity.values()) {
+                RollupKey key = new RollupKey(granularity, granularity.truncate(hit.getTimestamp()),
+                        hit.getApp(), hit.getUri());
+                counts.merge(key, 1L, Long::sum);
+                if (SKETCH_GRANULARITIES.contains(granularity)) {
+                    sketches.computeIfAbsent(key, k -> new HyperLogLog()).addHash(ipHash);
+                }
+            }
+        }
+        rollupRepository.increment(counts.entrySet().stream()
+                .map(e -> new RollupDelta(e.getKey(), e.getValue()))
+                .sorted(RollupDelta.KEY_ORDER)
+                .toList());
+        mergeSketches(sketches, counts);
+    }
+
+    // Строки уже заблокированы upsert-ом выше, поэтому чтение-слияние-запись скетча безопасно
+    private void mergeSketches(Map<RollupKey, HyperLogLog> sketches, Map<RollupKey, Long> counts) {
+        List<RollupKey> keys = new ArrayList<>(sketches.keySet());
+        keys.sort(RollupKey.ORDER);
+        Map<RollupKey, SketchRow> existing = rollupRepository.lockSketches(keys);
+
+        Map<RollupKey, byte[]> updates = new HashMap<>();
+        for (RollupKey key : keys) {
+            HyperLogLog sketch = sketches.get(key);
+            SketchRow row = existing.get(key);
+            if (row != null && row.sketch() != null) {
+                sketch.merge(HyperLogLog.fromBytes(row.sketch()));
+            } else if (row != null && row.hits() > counts.get(key)) {
+                // Корзина заполнена до появления скетчей: строим скетч по сырым хитам,
+                // они уже включают текущую пачку
+                sketch = rebuildFromHits(key);
+            }
+            updates.put(key, sketch.toBytes());
+        }
+        rollupRepository.updateSketches(updates);
+    }
+
+    private HyperLogLog rebuildFromHits(RollupKey key) {
+        HyperLogLog sketch = new HyperLogLog();
+        hitRepository.scan(key.bucketStart(), key.granularity().next(key.bucketStart()), false, List.of(key.uri()),
+                (app, uri, ip, timestamp) -> {
+                    if (app.equals(key.app())) {
+                        sketch.add(ip);
+                    }
+                });
+        return sketch;
+    }
+}
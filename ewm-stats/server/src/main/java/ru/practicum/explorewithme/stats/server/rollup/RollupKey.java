@@ -0,0 +1,14 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+// Ключ строки агрегата
+public record RollupKey(Granularity granularity, LocalDateTime bucketStart, String app, String uri) {
+
+    public static final Comparator<RollupKey> ORDER = Comparator
+            .comparing(RollupKey::granularity)
+            .thenComparing(RollupKey::bucketStart)
+            .thenComparing(RollupKey::app)
+            .thenComparing(RollupKey::uri);
+}
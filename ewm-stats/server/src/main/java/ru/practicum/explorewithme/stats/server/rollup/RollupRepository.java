@@ -0,0 +1,211 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.repository.SqlDialect;
+import ru.practicum.explorewithme.stats.server.repository.SqlFilters;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Агрегаты хитов по (гранулярность, начало корзины, app, uri) в таблице hit_rollups
+@Repository
+public class RollupRepository {
+
+    // В PostgreSQL ON CONFLICT атомарен при конкурентной вставке одного ключа
+    private static final String UPSERT_POSTGRES =
+            "INSERT INTO hit_rollups (granularity, bucket_start, app, uri, hits) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (granularity, bucket_start, app, uri) " +
+            "DO UPDATE SET hits = hit_rollups.hits + EXCLUDED.hits";
+
+    // H2 не умеет ON CONFLICT DO UPDATE, используем стандартный MERGE
+    private static final String UPSERT_H2 =
+            "MERGE INTO hit_rollups r " +
+            "USING (SELECT CAST(? AS VARCHAR(8)) AS granularity, CAST(? AS TIMESTAMP) AS bucket_start, " +
+            "CAST(? AS VARCHAR(255)) AS app, CAST(? AS VARCHAR(512)) AS uri, CAST(? AS BIGINT) AS hits) s " +
+            "ON r.granularity = s.granularity AND r.bucket_start = s.bucket_start " +
+            "AND r.app = s.app AND r.uri = s.uri " +
+            "WHEN MATCHED THEN UPDATE SET hits = r.hits + s.hits " +
+            "WHEN NOT MATCHED THEN INSERT (granularity, bucket_start, app, uri, hits) " +
+            "VALUES (s.granularity, s.bucket_start, s.app, s.uri, s.hits)";
+
+    private static final String SUM_SQL =
+            "SELECT app, uri, SUM(hits) AS hits FROM hit_rollups " +
+            "WHERE granularity = :granularity AND bucket_start >= :from AND bucket_start < :to";
+
+    private static final String LOCK_SKETCHES_SQL =
+            "SELECT app, uri, hits, ip_sketch FROM hit_rollups " +
+            "WHERE granularity = :granularity AND bucket_start = :bucketStart AND (app, uri) IN (:keys) " +
+            "FOR UPDATE";
+
+    private static final String UPDATE_SKETCH_SQL =
+            "UPDATE hit_rollups SET ip_sketch = ? " +
+            "WHERE granularity = ? AND bucket_start = ? AND app = ? AND uri = ?";
+
+    private static final String FIND_SKETCHES_SQL =
+            "SELECT app, uri, bucket_start, hits, ip_sketch FROM hit_rollups " +
+            "WHERE granularity = :granularity AND bucket_start >= :from AND bucket_start < :to";
+
+    private static final String FIND_BUCKETS_SQL =
+            "SELECT app, uri, bucket_start, hits FROM hit_rollups " +
+            "WHERE granularity = :granularity AND bucket_start >= :from AND bucket_start < :to";
+
+    private static final String DELETE_BUCKETS_SQL =
+            "DELETE FROM hit_rollups " +
+            "WHERE granularity = :granularity AND app = :app AND bucket_start >= :from AND bucket_start < :to";
+
+    // Заполнение агрегатов гранулярности из hits, только если их ещё нет; %s - начало корзины по h.ts
+    private static final String BACKFILL_SQL =
+            "INSERT INTO hit_rollups (granularity, bucket_start, app, uri, hits) " +
+            "SELECT ?, %1$s, a.name, u.uri, COUNT(*) FROM hits h " +
+            "JOIN hit_apps a ON a.id = h.app_id JOIN hit_uris u ON u.id = h.uri_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM hit_rollups r WHERE r.granularity = ?) " +
+            "GROUP BY %1$s, a.name, u.uri";
+
+    private static final int JDBC_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final String upsertSql;
+    private final boolean postgres;
+
+    public RollupRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.postgres = SqlDialect.detect(jdbcTemplate) == SqlDialect.POSTGRESQL;
+        this.upsertSql = postgres ? UPSERT_POSTGRES : UPSERT_H2;
+    }
+
+    // Построить агрегаты гранулярности по накопленным хитам, если таблица агрегатов для неё пуста.
+    // Возвращает число созданных строк агрегатов
+    public int backfill(Granularity granularity) {
+        String bucketStart = postgres
+                ? "TO_TIMESTAMP(h.ts - MOD(h.ts, " + granularity.seconds() + ")) AT TIME ZONE 'UTC'"
+                : "DATEADD(SECOND, h.ts - MOD(h.ts, " + granularity.seconds() + "), TIMESTAMP '1970-01-01 00:00:00')";
+        return jdbcTemplate.update(String.format(BACKFILL_SQL, bucketStart),
+                granularity.name(), granularity.name());
+    }
+
+    // Прибавить приращения к агрегатам. Ключи должны быть отсортированы,
+    // чтобы параллельные транзакции блокировали строки в одном порядке
+    public void increment(List<RollupDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(upsertSql, deltas, JDBC_BATCH_SIZE, (ps, delta) -> {
+            ps.setString(1, delta.key().granularity().name());
+            ps.setTimestamp(2, Timestamp.valueOf(delta.key().bucketStart()));
+            ps.setString(3, delta.key().app());
+            ps.setString(4, delta.key().uri());
+            ps.setLong(5, delta.hits());
+        });
+    }
+
+    // Сумма хитов по корзинам гранулярности, начинающимся в [from, to)
+    public List<ViewStats> sumHits(Granularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris) {
+        if (uris != null && uris.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = rangeParams(granularity, from, to);
+        String sql = SUM_SQL + urisFilter(uris, params) + " GROUP BY app, uri";
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    // Заблокировать строки агрегатов до конца транзакции и вернуть их скетчи
+    public Map<RollupKey, SketchRow> lockSketches(List<RollupKey> keys) {
+        Map<RollupKey, SketchRow> rows = new HashMap<>();
+        Map<RollupKey, List<Object[]>> byBucket = new LinkedHashMap<>();
+        for (RollupKey key : keys) {
+            RollupKey bucket = new RollupKey(key.granularity(), key.bucketStart(), "", "");
+            byBucket.computeIfAbsent(bucket, k -> new ArrayList<>()).add(new Object[]{key.app(), key.uri()});
+        }
+        byBucket.forEach((bucket, pairs) -> {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("granularity", bucket.granularity().name())
+                    .addValue("bucketStart", Timestamp.valueOf(bucket.bucketStart()))
+                    .addValue("keys", pairs);
+            namedJdbcTemplate.query(LOCK_SKETCHES_SQL, params, rs -> {
+                RollupKey key = new RollupKey(bucket.granularity(), bucket.bucketStart(),
+                        rs.getString("app"), rs.getString("uri"));
+                rows.put(key, new SketchRow(key, rs.getLong("hits"), rs.getBytes("ip_sketch")));
+            });
+        });
+        return rows;
+    }
+
+    public void updateSketches(Map<RollupKey, byte[]> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<RollupKey, byte[]>> entries = sketches.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(RollupKey.ORDER))
+                .toList();
+        jdbcTemplate.batchUpdate(UPDATE_SKETCH_SQL, entries, JDBC_BATCH_SIZE, (ps, entry) -> {
+            ps.setBytes(1, entry.getValue());
+            ps.setString(2, entry.getKey().granularity().name());
+            ps.setTimestamp(3, Timestamp.valueOf(entry.getKey().bucketStart()));
+            ps.setString(4, entry.getKey().app());
+            ps.setString(5, entry.getKey().uri());
+        });
+    }
+
+    // Пройти по скетчам корзин гранулярности, начинающихся в [from, to)
+    public void forEachSketch(Granularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris,
+                              Consumer<SketchRow> consumer) {
+        if (uris != null && uris.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = rangeParams(granularity, from, to);
+        String sql = FIND_SKETCHES_SQL + urisFilter(uris, params);
+        namedJdbcTemplate.query(sql, params, rs -> {
+            RollupKey key = new RollupKey(granularity, rs.getTimestamp("bucket_start").toLocalDateTime(),
+                    rs.getString("app"), rs.getString("uri"));
+            consumer.accept(new SketchRow(key, rs.getLong("hits"), rs.getBytes("ip_sketch")));
+        });
+    }
+
+    // Пройти по счётчикам корзин гранулярности, начинающихся в [from, to), без скетчей
+    public void forEachBucket(Granularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris,
+                              Consumer<RollupDelta> consumer) {
+        if (uris != null && uris.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = rangeParams(granularity, from, to);
+        String sql = FIND_BUCKETS_SQL + urisFilter(uris, params);
+        namedJdbcTemplate.query(sql, params, rs -> {
+            RollupKey key = new RollupKey(granularity, rs.getTimestamp("bucket_start").toLocalDateTime(),
+                    rs.getString("app"), rs.getString("uri"));
+            consumer.accept(new RollupDelta(key, rs.getLong("hits")));
+        });
+    }
+
+    // Удалить корзины гранулярности приложения, начинающиеся в [from, to)
+    public int deleteBuckets(Granularity granularity, String app, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = rangeParams(granularity, from, to).addValue("app", app);
+        return namedJdbcTemplate.update(DELETE_BUCKETS_SQL, params);
+    }
+
+    private MapSqlParameterSource rangeParams(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+    }
+
+    private String urisFilter(List<String> uris, MapSqlParameterSource params) {
+        if (uris == null) {
+            return "";
+        }
+        return " AND " + SqlFilters.in("uri", "uris", uris, params);
+    }
+}
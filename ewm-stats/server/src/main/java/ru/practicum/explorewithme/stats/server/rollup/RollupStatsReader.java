@@ -0,0 +1,136 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Неуникальная статистика из агрегатов: целые дни, часы и минуты берутся из hit_rollups,
+// сырая таблица читается только на неполных краях диапазона (меньше минуты с каждой стороны).
+// В сжатом периоде минутных корзин нет, и края до часа читаются из hits и архива.
+// Если сырые хиты края удалены (HitArchive.rawHorizon), край расширяется до целой корзины
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RollupStatsReader {
+
+    private final RollupRepository rollupRepository;
+    private final HitRepository hitRepository;
+    private final RollupProperties properties;
+    private final HitArchive archive;
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<RangeSegment> segments = RangeDecomposer.decompose(start, end);
+        log.debug("[RollupStatsReader] Диапазон {} - {} разбит на {} частей", start, end, segments.size());
+
+        Map<StatsKey, Long> totals = new LinkedHashMap<>();
+        for (RangeSegment segment : segments) {
+            List<ViewStats> part;
+            if (segment.isRaw() && rawLost(segment)) {
+                LocalDateTime minute = Granularity.MINUTE.truncate(segment.from());
+                part = rollupRepository.sumHits(Granularity.MINUTE, minute, Granularity.MINUTE.next(minute), uris);
+            } else if (!segment.isRaw() && !minuteBucketsCompacted(segment)) {
+                part = rollupRepository.sumHits(segment.granularity(), segment.from(), segment.to(), uris);
+            } else if (segment.toInclusive()) {
+                part = hitRepository.findStats(segment.from(), segment.to(), uris);
+            } else {
+                part = hitRepository.findStatsBefore(segment.from(), segment.to(), uris);
+            }
+            for (ViewStats stats : part) {
+                totals.merge(new StatsKey(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
+            }
+        }
+
+        return totals.entrySet().stream()
+                .map(e -> new ViewStats(e.getKey().app(), e.getKey().uri(), e.getValue()))
+                .sorted(StatsPage.ORDER)
+                .toList();
+    }
+
+    // Приблизительная уникальная статистика: скетчи часовых и дневных корзин объединяются,
+    // сырые IP читаются только на краях диапазона короче часа
+    @Transactional(readOnly = true)
+    public List<ViewStats> findApproximateUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<RangeSegment> segments = RangeDecomposer.decompose(start, end, Granularity.HOUR);
+        Map<StatsKey, HyperLogLog> sketches = new HashMap<>();
+        List<RollupKey> withoutSketch = new ArrayList<>();
+
+        for (RangeSegment segment : segments) {
+            if (segment.isRaw() && rawLost(segment)) {
+                LocalDateTime hour = Granularity.HOUR.truncate(segment.from());
+                mergeSketches(Granularity.HOUR, hour, Granularity.HOUR.next(hour), uris, sketches, withoutSketch);
+                continue;
+            }
+            if (segment.isRaw()) {
+                hitRepository.scan(segment.from(), segment.to(), segment.toInclusive(), uris,
+                        (app, uri, ip, timestamp) -> sketchFor(sketches, app, uri).add(ip));
+                continue;
+            }
+            mergeSketches(segment.granularity(), segment.from(), segment.to(), uris, sketches, withoutSketch);
+        }
+
+        // Корзины, заполненные до появления скетчей и с тех пор не обновлявшиеся
+        for (RollupKey key : withoutSketch) {
+            hitRepository.scan(key.bucketStart(), key.granularity().next(key.bucketStart()), false,
+                    List.of(key.uri()), (app, uri, ip, timestamp) -> {
+                        if (app.equals(key.app())) {
+                            sketchFor(sketches, app, uri).add(ip);
+                        }
+                    });
+        }
+        log.debug("[RollupStatsReader] Оценка уникальных по {} частям диапазона, без скетча: {} корзин",
+                segments.size(), withoutSketch.size());
+
+        return sketches.entrySet().stream()
+                .map(e -> new ViewStats(e.getKey().app(), e.getKey().uri(), e.getValue().estimate()))
+                .sorted(StatsPage.ORDER)
+                .toList();
+    }
+
+    private void mergeSketches(Granularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris,
+                               Map<StatsKey, HyperLogLog> sketches, List<RollupKey> withoutSketch) {
+        rollupRepository.forEachSketch(granularity, from, to, uris, row -> {
+            if (row.sketch() != null) {
+                sketchFor(sketches, row.key().app(), row.key().uri()).merge(HyperLogLog.fromBytes(row.sketch()));
+            } else {
+                withoutSketch.add(row.key());
+            }
+        });
+    }
+
+    // Сырых хитов края больше нет (удалённые секции hits или сжатие без архива)
+    private boolean rawLost(RangeSegment segment) {
+        return !archive.rawComplete(segment.from().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    // Минутные корзины сжатого периода удалены (HitCompactor), их хиты читаются из hits и архива
+    private boolean minuteBucketsCompacted(RangeSegment segment) {
+        return segment.granularity() == Granularity.MINUTE
+                && archive.covers(segment.from().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private HyperLogLog sketchFor(Map<StatsKey, HyperLogLog> sketches, String app, String uri) {
+        return sketches.computeIfAbsent(new StatsKey(app, uri), k -> new HyperLogLog());
+    }
+
+    private record StatsKey(String app, String uri) {
+    }
+}
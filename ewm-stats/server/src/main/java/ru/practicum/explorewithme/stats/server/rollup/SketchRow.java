@@ -0,0 +1,5 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+// Строка агрегата со скетчем уникальных IP; sketch == null у строк, созданных до появления скетчей
+public record SketchRow(RollupKey key, long hits, byte[] sketch) {
+}
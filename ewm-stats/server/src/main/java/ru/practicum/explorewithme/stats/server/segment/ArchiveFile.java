@@ -0,0 +1,5 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+// Файл архива с хитами из [fromEpochSecond, toEpochSecond)
+public record ArchiveFile(long id, long fromEpochSecond, long toEpochSecond) {
+}
@@ -0,0 +1,46 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Счётчик хитов одной пары (app, uri) с множеством IP для уникальных:
+// IPv4 хранятся числами, остальные адреса - строками
+final class HitAggregate {
+
+    long hits;
+    private Set<Long> ipv4;
+    private Set<String> otherIps;
+
+    void addIpv4(long ip) {
+        if (ipv4 == null) {
+            ipv4 = new HashSet<>();
+        }
+        ipv4.add(ip);
+    }
+
+    void addIp(String ip) {
+        long value = IpCodec.parseIpv4(ip);
+        if (value != IpCodec.NOT_IPV4) {
+            addIpv4(value);
+            return;
+        }
+        if (otherIps == null) {
+            otherIps = new HashSet<>();
+        }
+        otherIps.add(ip);
+    }
+
+    void merge(HitAggregate other) {
+        hits += other.hits;
+        if (other.ipv4 != null) {
+            other.ipv4.forEach(this::addIpv4);
+        }
+        if (other.otherIps != null) {
+            other.otherIps.forEach(this::addIp);
+        }
+    }
+
+    long uniqueIps() {
+        return (ipv4 == null ? 0 : ipv4.size()) + (otherIps == null ? 0 : otherIps.size());
+    }
+}
@@ -0,0 +1,214 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Архив сырых хитов, убранных из hits задачей HitCompactor: файл на приложение и день в формате
+// сегмента (Segment), сжатый GZIP. Файлы читаются только запросами, захватывающими архивный период,
+// последние распакованные держатся в памяти. Действительные файлы перечислены в hit_archive:
+// файл пишется до транзакции, удаляющей хиты из hits, и виден запросам только после её фиксации.
+@Slf4j
+@Component
+public class HitArchive {
+
+    private static final String SUFFIX = ".gz";
+
+    private final Path directory;
+    private final Map<Long, Segment> cache;
+
+    private volatile List<ArchiveFile> files = List.of();
+    // Хиты раньше этого момента могли быть убраны из hits
+    private volatile long horizon = Long.MIN_VALUE;
+    // Хиты раньше этого момента удалены совсем: их нет ни в hits, ни в архиве
+    private volatile long rawHorizon = Long.MIN_VALUE;
+
+    public HitArchive(RetentionProperties properties) {
+        this.directory = Paths.get(properties.getArchiveDirectory());
+        int cacheSize = Math.max(1, properties.getArchiveCacheSize());
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(cacheSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Segment> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    // Открыть архив с действительными файлами live; остальные файлы каталога остались
+    // от прерванных запусков сжатия и удаляются
+    public synchronized void open(Collection<ArchiveFile> live, long horizon) {
+        Set<String> names = new HashSet<>();
+        for (ArchiveFile file : live) {
+            names.add(fileName(file.id()));
+        }
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> list = Files.list(directory)) {
+                list.filter(file -> !names.contains(file.getFileName().toString())).forEach(this::delete);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать каталог архива " + directory, e);
+            }
+        }
+        this.files = List.copyOf(live);
+        this.horizon = horizon;
+        if (!live.isEmpty()) {
+            log.info("[HitArchive] Архив хитов открыт: {}, файлов {}", directory, live.size());
+        }
+    }
+
+    public long horizon() {
+        return horizon;
+    }
+
+    // Запрос с началом from (секунды эпохи) может задеть убранные из hits хиты
+    public boolean covers(long from) {
+        return from < horizon;
+    }
+
+    // Записать отсортированные по времени хиты в файл архива; файл ещё не виден запросам
+    public void write(long id, List<SegmentRow> rows) {
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(fileName(id));
+            Path tmp = directory.resolve(fileName(id) + ".tmp");
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(compressed, 64 * 1024)) {
+                out.write(SegmentWriter.encode(id, new long[0], rows));
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(compressed.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать файл архива " + id + " в " + directory, e);
+        }
+    }
+
+    // Удалить записанный файл, если транзакция сжатия не прошла
+    public void discard(long id) {
+        delete(directory.resolve(fileName(id)));
+    }
+
+    // Транзакция сжатия зафиксирована: хиты файла больше не в hits
+    public synchronized void publish(ArchiveFile file) {
+        List<ArchiveFile> updated = new ArrayList<>(files);
+        updated.add(file);
+        files = List.copyOf(updated);
+        advance(file.toEpochSecond());
+    }
+
+    // Хиты до until убраны из hits без архивации или их не было
+    public synchronized void advance(long until) {
+        horizon = Math.max(horizon, until);
+    }
+
+    // Хиты до until удалены безвозвратно (секции hits по сроку хранения, сжатие без архива):
+    // сырые хиты их больше не посчитают
+    public synchronized void drop(long until) {
+        rawHorizon = Math.max(rawHorizon, until);
+    }
+
+    public long rawHorizon() {
+        return rawHorizon;
+    }
+
+    // Сырые хиты с момента from (секунды эпохи) сохранились полностью
+    public boolean rawComplete(long from) {
+        return from >= rawHorizon;
+    }
+
+    // Статистика по архивным хитам с временем в [from, to]; uris == null - все uri
+    public List<ViewStats> findStats(long from, long to, List<String> uris, boolean unique) {
+        Set<String> uriSet = uris == null ? null : new HashSet<>(uris);
+        Map<String, Map<String, HitAggregate>> aggregates = new HashMap<>();
+        for (ArchiveFile file : overlapping(from, to)) {
+            segment(file).aggregate(from, to, uriSet, unique, aggregates);
+        }
+        List<ViewStats> stats = new ArrayList<>();
+        aggregates.forEach((uri, apps) -> apps.forEach((app, aggregate) ->
+                stats.add(new ViewStats(app, uri, unique ? aggregate.uniqueIps() : aggregate.hits))));
+        stats.sort(StatsPage.ORDER);
+        return stats;
+    }
+
+    // Архивные хиты с временем в [from, to]; uris == null - все uri
+    public void scan(long from, long to, List<String> uris, Consumer<SegmentRow> consumer) {
+        Set<String> uriSet = uris == null ? null : new HashSet<>(uris);
+        for (ArchiveFile file : overlapping(from, to)) {
+            segment(file).forEachRow(row -> {
+                if (row.epochSecond() >= from && row.epochSecond() <= to
+                        && (uriSet == null || uriSet.contains(row.uri()))) {
+                    consumer.accept(row);
+                }
+            });
+        }
+    }
+
+    private List<ArchiveFile> overlapping(long from, long to) {
+        if (!covers(from)) {
+            return List.of();
+        }
+        return files.stream()
+                .filter(file -> file.fromEpochSecond() <= to && file.toEpochSecond() > from)
+                .toList();
+    }
+
+    private Segment segment(ArchiveFile file) {
+        Segment segment = cache.get(file.id());
+        if (segment != null) {
+            return segment;
+        }
+        Path path = directory.resolve(fileName(file.id()));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path), 64 * 1024)) {
+            segment = Segment.wrap(path, ByteBuffer.wrap(in.readAllBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать файл архива " + path, e);
+        }
+        cache.put(file.id(), segment);
+        return segment;
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("[HitArchive] Не удалось удалить {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String fileName(long id) {
+        return Segment.fileName(id) + SUFFIX;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+// Запись IPv4 в int. Принимается только каноническая запись без ведущих нулей,
+// чтобы обратное преобразование давало исходную строку
+final class IpCodec {
+
+    static final long NOT_IPV4 = -1;
+
+    private IpCodec() {
+    }
+
+    // Адрес как беззнаковое 32-битное число или NOT_IPV4
+    static long parseIpv4(String ip) {
+        long value = 0;
+        int octets = 0;
+        int i = 0;
+        int length = ip.length();
+        while (i <= length) {
+            int start = i;
+            int octet = 0;
+            while (i < length && ip.charAt(i) != '.') {
+                char c = ip.charAt(i);
+                if (c < '0' || c > '9' || i - start >= 3) {
+                    return NOT_IPV4;
+                }
+                octet = octet * 10 + (c - '0');
+                i++;
+            }
+            int digits = i - start;
+            if (digits == 0 || octet > 255 || (digits > 1 && ip.charAt(start) == '0') || ++octets > 4) {
+                return NOT_IPV4;
+            }
+            value = (value << 8) | octet;
+            i++;
+        }
+        return octets == 4 ? value : NOT_IPV4;
+    }
+
+    static String formatIpv4(int ip) {
+        return ((ip >>> 24) & 0xFF) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+}
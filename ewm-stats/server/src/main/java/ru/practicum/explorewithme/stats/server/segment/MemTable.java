@@ -0,0 +1,61 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Хиты, ещё не записанные в сегмент. После заморозки таблица только читается и сбрасывается на диск
+final class MemTable {
+
+    private final List<SegmentRow> rows = new ArrayList<>();
+    private boolean frozen;
+
+    // false, если таблица уже заморожена и хиты нужно добавить в новую
+    synchronized boolean append(List<SegmentRow> hits) {
+        if (frozen) {
+            return false;
+        }
+        rows.addAll(hits);
+        return true;
+    }
+
+    synchronized int size() {
+        return rows.size();
+    }
+
+    synchronized List<SegmentRow> freeze() {
+        frozen = true;
+        return rows;
+    }
+
+    synchronized void collectUris(String prefix, Collection<String> into) {
+        for (SegmentRow row : rows) {
+            if (row.uri().startsWith(prefix)) {
+                into.add(row.uri());
+            }
+        }
+    }
+
+    synchronized void forEachRow(Consumer<SegmentRow> consumer) {
+        rows.forEach(consumer);
+    }
+
+    synchronized void aggregate(long from, long to, Set<String> uris, boolean unique,
+                                Map<String, Map<String, HitAggregate>> into) {
+        for (SegmentRow row : rows) {
+            if (row.epochSecond() < from || row.epochSecond() > to || (uris != null && !uris.contains(row.uri()))) {
+                continue;
+            }
+            HitAggregate aggregate = into.computeIfAbsent(row.uri(), k -> new HashMap<>())
+                    .computeIfAbsent(row.app(), k -> new HitAggregate());
+            aggregate.hits++;
+            if (unique) {
+                aggregate.addIp(row.ip());
+            }
+        }
+    }
+}
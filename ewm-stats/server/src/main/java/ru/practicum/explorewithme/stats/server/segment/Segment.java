@@ -0,0 +1,254 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Неизменяемый сегмент хитов, отсортированных по времени, отображённый в память.
+// Формат (big-endian):
+//   заголовок: magic, версия, id, id заменённых сегментов, число строк, мин. и макс. время,
+//              словарь строк app/uri, признак IPv4 и словарь IP (если не все адреса IPv4),
+//              индекс блоков по BLOCK_ROWS строк (время первой строки, смещение в колонке времени)
+//   колонки:   app (int-код), uri (int-код), ip (IPv4 или int-код), время (varint-дельты внутри блока)
+final class Segment {
+
+    static final int MAGIC = 0x45574D53;
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 4096;
+
+    private final Path path;
+    private final long id;
+    private final long[] replaces;
+    private final int rowCount;
+    private final long minEpochSecond;
+    private final long maxEpochSecond;
+    private final String[] strings;
+    private final Map<String, Integer> codes;
+    private final boolean ipv4;
+    private final String[] ips;
+    private final long[] blockFirst;
+    private final int[] blockOffsets;
+    private final ByteBuffer data;
+    private final int appBase;
+    private final int uriBase;
+    private final int ipBase;
+    private final int timestampBase;
+
+    private Segment(Path path, ByteBuffer data) {
+        this.path = path;
+        this.data = data;
+        ByteBuffer header = data.duplicate();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IllegalStateException("Файл не является сегментом хитов: " + path);
+        }
+        this.id = header.getLong();
+        this.replaces = new long[header.getInt()];
+        for (int i = 0; i < replaces.length; i++) {
+            replaces[i] = header.getLong();
+        }
+        this.rowCount = header.getInt();
+        this.minEpochSecond = header.getLong();
+        this.maxEpochSecond = header.getLong();
+        this.strings = readStrings(header);
+        this.codes = new HashMap<>(strings.length * 2);
+        for (int i = 0; i < strings.length; i++) {
+            codes.put(strings[i], i);
+        }
+        this.ipv4 = header.get() != 0;
+        this.ips = ipv4 ? null : readStrings(header);
+        int blockCount = header.getInt();
+        this.blockFirst = new long[blockCount];
+        this.blockOffsets = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            blockFirst[i] = header.getLong();
+            blockOffsets[i] = header.getInt();
+        }
+        header.getInt();
+        this.appBase = header.position();
+        this.uriBase = appBase + rowCount * Integer.BYTES;
+        this.ipBase = uriBase + rowCount * Integer.BYTES;
+        this.timestampBase = ipBase + rowCount * Integer.BYTES;
+    }
+
+    // Отображение живёт дольше канала; после удаления файла память освобождается сборщиком
+    static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Segment(path, data);
+        }
+    }
+
+    // Сегмент из уже прочитанного в память содержимого, например распакованного файла архива
+    static Segment wrap(Path path, ByteBuffer data) {
+        return new Segment(path, data);
+    }
+
+    static String fileName(long id) {
+        return String.format("segment-%016d.seg", id);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long id() {
+        return id;
+    }
+
+    long[] replaces() {
+        return replaces;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    long minEpochSecond() {
+        return minEpochSecond;
+    }
+
+    long maxEpochSecond() {
+        return maxEpochSecond;
+    }
+
+    // Строки словаря сегмента с префиксом prefix. Словарь общий для app и uri, поэтому сюда
+    // могут попасть и имена приложений: как uri они ни с чем не совпадут
+    void collectStrings(String prefix, Collection<String> into) {
+        for (String value : strings) {
+            if (value.startsWith(prefix)) {
+                into.add(value);
+            }
+        }
+    }
+
+    // Свернуть хиты с временем в [from, to] в счётчики по (app, uri); uris == null - все uri
+    void aggregate(long from, long to, Set<String> uris, boolean unique, Map<String, Map<String, HitAggregate>> into) {
+        if (rowCount == 0 || maxEpochSecond < from || minEpochSecond > to) {
+            return;
+        }
+        boolean[] uriFilter = null;
+        if (uris != null) {
+            uriFilter = new boolean[strings.length];
+            boolean any = false;
+            for (String uri : uris) {
+                Integer code = codes.get(uri);
+                if (code != null) {
+                    uriFilter[code] = true;
+                    any = true;
+                }
+            }
+            if (!any) {
+                return;
+            }
+        }
+
+        Map<Long, HitAggregate> local = new HashMap<>();
+        int block = firstBlock(from);
+        int row = block * BLOCK_ROWS;
+        int position = timestampBase + blockOffsets[block];
+        long epochSecond = blockFirst[block];
+        while (row < rowCount) {
+            if (row % BLOCK_ROWS == 0) {
+                epochSecond = blockFirst[row / BLOCK_ROWS];
+                position = timestampBase + blockOffsets[row / BLOCK_ROWS];
+            }
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            epochSecond += delta;
+            if (epochSecond > to) {
+                break;
+            }
+            if (epochSecond >= from) {
+                int uriCode = data.getInt(uriBase + row * Integer.BYTES);
+                if (uriFilter == null || uriFilter[uriCode]) {
+                    int appCode = data.getInt(appBase + row * Integer.BYTES);
+                    HitAggregate aggregate = local.computeIfAbsent(((long) appCode << 32) | uriCode,
+                            k -> new HitAggregate());
+                    aggregate.hits++;
+                    if (unique) {
+                        int ip = data.getInt(ipBase + row * Integer.BYTES);
+                        if (ipv4) {
+                            aggregate.addIpv4(ip & 0xFFFFFFFFL);
+                        } else {
+                            aggregate.addIp(ips[ip]);
+                        }
+                    }
+                }
+            }
+            row++;
+        }
+
+        local.forEach((key, aggregate) -> into
+                .computeIfAbsent(strings[(int) (key & 0xFFFFFFFFL)], k -> new HashMap<>())
+                .computeIfAbsent(strings[(int) (key >>> 32)], k -> new HitAggregate())
+                .merge(aggregate));
+    }
+
+    // Все строки сегмента по порядку, для слияния сегментов
+    void forEachRow(Consumer<SegmentRow> consumer) {
+        int position = timestampBase;
+        long epochSecond = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (row % BLOCK_ROWS == 0) {
+                epochSecond = blockFirst[row / BLOCK_ROWS];
+                position = timestampBase + blockOffsets[row / BLOCK_ROWS];
+            }
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            epochSecond += delta;
+            int ip = data.getInt(ipBase + row * Integer.BYTES);
+            consumer.accept(new SegmentRow(strings[data.getInt(appBase + row * Integer.BYTES)],
+                    strings[data.getInt(uriBase + row * Integer.BYTES)],
+                    ipv4 ? IpCodec.formatIpv4(ip) : ips[ip],
+                    epochSecond));
+        }
+    }
+
+    // Последний блок, начинающийся раньше from: в предыдущих блоках все строки раньше from
+    private int firstBlock(long from) {
+        int low = 0;
+        int high = blockFirst.length - 1;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockFirst[mid] < from) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] utf8 = new byte[buffer.getInt()];
+            buffer.get(utf8);
+            values[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+}
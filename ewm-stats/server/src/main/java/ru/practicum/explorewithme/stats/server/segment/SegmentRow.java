@@ -0,0 +1,13 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+
+import java.time.ZoneOffset;
+
+// Хит в представлении сегментного хранилища: время в секундах эпохи (LocalDateTime как UTC)
+public record SegmentRow(String app, String uri, String ip, long epochSecond) {
+
+    public static SegmentRow fromDto(EndpointHit hit) {
+        return new SegmentRow(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.PlannerProperties;
+import ru.practicum.explorewithme.stats.server.metrics.StatsMetrics;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.planner.StatsSink;
+import ru.practicum.explorewithme.stats.server.planner.UriPatterns;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesAccumulator;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
+import ru.practicum.explorewithme.stats.server.trending.TrendingUriTracker;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+// Сервис статистики поверх сегментного хранилища. Уникальные здесь всегда считаются точно:
+// сканирование сегментов одинаково дорого в обоих режимах
+@Slf4j
+@Service(StatService.LOCAL)
+@ConditionalOnProperty(name = "stats.storage.backend", havingValue = "segment")
+@RequiredArgsConstructor
+public class SegmentStatService implements StatService {
+
+    private final SegmentStore store;
+    private final StatsMetrics metrics;
+    private final TrendingUriTracker trendingUriTracker;
+    private final PlannerProperties plannerProperties;
+
+    @Override
+    public EndpointHit saveHit(EndpointHit hit) {
+        log.debug("[SegmentStatService] Сохранение статистики: app={}, uri={}, ip={}",
+                hit.getApp(), hit.getUri(), hit.getIp());
+        List<SegmentRow> rows = List.of(SegmentRow.fromDto(hit));
+        store.append(rows);
+        metrics.recordWrite(rows, SegmentRow::app);
+        return hit;
+    }
+
+    @Override
+    public int saveHits(List<EndpointHit> hits) {
+        log.debug("[SegmentStatService] Сохранение пачки хитов: {} шт.", hits.size());
+        List<SegmentRow> rows = hits.stream()
+                .map(SegmentRow::fromDto)
+                .toList();
+        store.append(rows);
+        metrics.recordWrite(rows, SegmentRow::app);
+        return hits.size();
+    }
+
+    @Override
+    public StatsResult findStats(StatsQuery query) {
+        log.debug("[SegmentStatService] Получение статистики: start={}, end={}, uris={}, unique={}",
+                query.start(), query.end(), query.uris(), query.unique());
+        Timer.Sample sample = metrics.startQuery();
+        List<String> uris = query.uris();
+        if (UriPatterns.hasPatterns(uris)) {
+            uris = UriPatterns.expand(uris, store::urisWithPrefix, plannerProperties.getMaxPatternUris());
+            if (uris != null && uris.isEmpty()) {
+                metrics.recordQuery(sample, query, 0);
+                return new StatsResult(QueryPlan.EMPTY, List.of());
+            }
+        }
+        List<ViewStats> stats = store.findStats(query.start().toEpochSecond(ZoneOffset.UTC),
+                query.end().toEpochSecond(ZoneOffset.UTC), uris, query.unique());
+        if (query.rollUp() && query.uris() != null) {
+            stats = UriPatterns.rollUp(stats, query.uris());
+        }
+        stats = StatsPage.apply(stats, query.limit(), query.offset());
+        metrics.recordQuery(sample, query, stats.size());
+        log.debug("[SegmentStatService] Получена статистика: {} записей", stats.size());
+        return new StatsResult(QueryPlan.SEGMENT_SCAN, stats);
+    }
+
+    // Сегменты сворачиваются в памяти целиком, поэтому строки передаются после подсчёта
+    @Override
+    public void streamStats(StatsQuery query, StatsSink sink) {
+        StatsResult result = findStats(query);
+        sink.plan(result.plan());
+        result.stats().forEach(sink::accept);
+    }
+
+    @Override
+    public TimeSeriesResult findTimeSeries(TimeSeriesQuery query) {
+        log.debug("[SegmentStatService] Получение ряда: start={}, end={}, interval={}, groupBy={}, uris={}",
+                query.start(), query.end(), query.interval(), query.groupBy(), query.uris());
+        List<String> uris = query.uris();
+        if (UriPatterns.hasPatterns(uris)) {
+            uris = UriPatterns.expand(uris, store::urisWithPrefix, plannerProperties.getMaxPatternUris());
+            if (uris != null && uris.isEmpty()) {
+                return new TimeSeriesResult(QueryPlan.EMPTY, List.of());
+            }
+        }
+        TimeSeriesAccumulator accumulator = new TimeSeriesAccumulator(query);
+        store.scan(query.start().toEpochSecond(ZoneOffset.UTC), query.end().toEpochSecond(ZoneOffset.UTC), uris,
+                row -> accumulator.addHit(row.app(), row.uri(), row.ip(),
+                        LocalDateTime.ofEpochSecond(row.epochSecond(), 0, ZoneOffset.UTC)));
+        List<TimeSeriesPoint> points = accumulator.points();
+        log.debug("[SegmentStatService] Получен ряд: {} точек", points.size());
+        return new TimeSeriesResult(QueryPlan.SEGMENT_SCAN, points);
+    }
+
+    // Скетчи пополняются только при записи через HitWriter (backend table)
+    @Override
+    public List<ViewStats> findTop(String app, int minutes, int k) {
+        return trendingUriTracker.top(app, minutes, k);
+    }
+}
@@ -0,0 +1,277 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.StorageProperties;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Хранилище хитов в неизменяемых колоночных сегментах на локальном диске (stats.storage.backend=segment).
+// Хиты копятся в памяти и сбрасываются в новый сегмент по размеру или по времени;
+// мелкие сегменты сливаются в крупные. Читатели видят согласованный снимок:
+// сегменты, замороженные таблицы в процессе записи и текущую таблицу.
+// Несброшенные хиты при аварийной остановке теряются.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage.backend", havingValue = "segment")
+public class SegmentStore implements SmartLifecycle {
+
+    private final StorageProperties.Segment config;
+    private final TaskScheduler taskScheduler;
+    private final Path directory;
+    private final AtomicLong nextId = new AtomicLong(1);
+    // Запись и слияние сегментов выполняются по одному
+    private final Object flushLock = new Object();
+
+    private volatile Snapshot snapshot = new Snapshot(List.of(), List.of(), new MemTable());
+    private volatile ScheduledFuture<?> flushTask;
+    private volatile boolean running;
+
+    public SegmentStore(StorageProperties properties, TaskScheduler taskScheduler) {
+        this.config = properties.getSegment();
+        this.taskScheduler = taskScheduler;
+        this.directory = Paths.get(config.getDirectory());
+    }
+
+    @Override
+    public void start() {
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось загрузить сегменты из " + directory, e);
+        }
+        running = true;
+        flushTask = taskScheduler.scheduleWithFixedDelay(this::flushQuietly,
+                Instant.now().plus(config.getFlushInterval()), config.getFlushInterval());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Останавливаемся после веб-сервера, чтобы сбросить все принятые хиты
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    public void append(List<SegmentRow> rows) {
+        MemTable active;
+        do {
+            active = snapshot.active();
+        } while (!active.append(rows));
+        if (active.size() >= config.getFlushRows()) {
+            taskScheduler.schedule(this::flushQuietly, Instant.now());
+        }
+    }
+
+    public List<ViewStats> findStats(long from, long to, List<String> uris, boolean unique) {
+        Set<String> uriSet = uris == null ? null : new HashSet<>(uris);
+        Map<String, Map<String, HitAggregate>> aggregates = new HashMap<>();
+        Snapshot current = snapshot;
+        for (Segment segment : current.segments()) {
+            segment.aggregate(from, to, uriSet, unique, aggregates);
+        }
+        for (MemTable table : current.frozen()) {
+            table.aggregate(from, to, uriSet, unique, aggregates);
+        }
+        current.active().aggregate(from, to, uriSet, unique, aggregates);
+
+        List<ViewStats> stats = new ArrayList<>();
+        aggregates.forEach((uri, apps) -> apps.forEach((app, aggregate) ->
+                stats.add(new ViewStats(app, uri, unique ? aggregate.uniqueIps() : aggregate.hits))));
+        stats.sort(StatsPage.ORDER);
+        return stats;
+    }
+
+    // Хиты с временем в [from, to]; uris == null - все uri
+    public void scan(long from, long to, List<String> uris, Consumer<SegmentRow> consumer) {
+        Set<String> uriSet = uris == null ? null : new HashSet<>(uris);
+        Consumer<SegmentRow> filtered = row -> {
+            if (row.epochSecond() >= from && row.epochSecond() <= to
+                    && (uriSet == null || uriSet.contains(row.uri()))) {
+                consumer.accept(row);
+            }
+        };
+        Snapshot current = snapshot;
+        for (Segment segment : current.segments()) {
+            if (segment.rowCount() > 0 && segment.maxEpochSecond() >= from && segment.minEpochSecond() <= to) {
+                segment.forEachRow(filtered);
+            }
+        }
+        for (MemTable table : current.frozen()) {
+            table.forEachRow(filtered);
+        }
+        current.active().forEachRow(filtered);
+    }
+
+    // uri с префиксом prefix, встречающиеся в сегментах и таблицах в памяти, по возрастанию.
+    // Набрав limit uri, обход останавливается: результат тогда лишь сигнал, что префикс слишком широк
+    public List<String> urisWithPrefix(String prefix, int limit) {
+        Set<String> uris = new TreeSet<>();
+        Snapshot current = snapshot;
+        for (Segment segment : current.segments()) {
+            segment.collectStrings(prefix, uris);
+            if (uris.size() >= limit) {
+                return uris.stream().limit(limit).toList();
+            }
+        }
+        for (MemTable table : current.frozen()) {
+            table.collectUris(prefix, uris);
+        }
+        current.active().collectUris(prefix, uris);
+        return uris.stream().limit(limit).toList();
+    }
+
+    // Сбросить текущую таблицу в новый сегмент и при необходимости слить мелкие сегменты.
+    // Таблицы, которые не удалось записать прошлый раз, остаются замороженными и пишутся повторно
+    public void flush() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                if (snapshot.active().size() > 0) {
+                    List<MemTable> frozen = new ArrayList<>(snapshot.frozen());
+                    frozen.add(snapshot.active());
+                    snapshot = new Snapshot(snapshot.segments(), frozen, new MemTable());
+                }
+            }
+            for (MemTable table : snapshot.frozen()) {
+                List<SegmentRow> rows = new ArrayList<>(table.freeze());
+                rows.sort(Comparator.comparingLong(SegmentRow::epochSecond));
+                Segment segment = writeSegment(rows, new long[0]);
+                synchronized (this) {
+                    List<Segment> segments = new ArrayList<>(snapshot.segments());
+                    segments.add(segment);
+                    List<MemTable> frozen = new ArrayList<>(snapshot.frozen());
+                    frozen.remove(table);
+                    snapshot = new Snapshot(segments, frozen, snapshot.active());
+                }
+                log.debug("[SegmentStore] Записан сегмент {}: {} хитов", segment.id(), rows.size());
+            }
+            mergeSmallSegments();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("[SegmentStore] Ошибка записи сегмента: {}", e.getMessage(), e);
+        }
+    }
+
+    // Слить mergeFactor самых мелких сегментов в один. Новый сегмент помнит, какие сегменты заменил,
+    // поэтому при сбое до удаления старых файлов дубликаты отбрасываются при загрузке
+    private void mergeSmallSegments() {
+        List<Segment> candidates = snapshot.segments().stream()
+                .filter(s -> s.rowCount() < config.getMaxSegmentRows())
+                .sorted(Comparator.comparingInt(Segment::rowCount))
+                .toList();
+        if (candidates.size() < Math.max(2, config.getMergeFactor())) {
+            return;
+        }
+        List<Segment> merging = candidates.subList(0, Math.max(2, config.getMergeFactor()));
+        List<SegmentRow> rows = new ArrayList<>();
+        for (Segment segment : merging) {
+            segment.forEachRow(rows::add);
+        }
+        rows.sort(Comparator.comparingLong(SegmentRow::epochSecond));
+        Segment merged = writeSegment(rows, merging.stream().mapToLong(Segment::id).toArray());
+        synchronized (this) {
+            List<Segment> segments = new ArrayList<>(snapshot.segments());
+            segments.removeAll(merging);
+            segments.add(merged);
+            snapshot = new Snapshot(segments, snapshot.frozen(), snapshot.active());
+        }
+        for (Segment segment : merging) {
+            delete(segment.path());
+        }
+        log.debug("[SegmentStore] Слито сегментов: {} в сегмент {} ({} хитов)", merging.size(), merged.id(), rows.size());
+    }
+
+    private Segment writeSegment(List<SegmentRow> rows, long[] replaces) {
+        try {
+            return Segment.open(SegmentWriter.write(directory, nextId.getAndIncrement(), replaces, rows));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать сегмент в " + directory, e);
+        }
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        List<Segment> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    delete(file);
+                } else if (name.endsWith(".seg")) {
+                    segments.add(Segment.open(file));
+                }
+            }
+        }
+        Set<Long> replaced = new HashSet<>();
+        for (Segment segment : segments) {
+            for (long id : segment.replaces()) {
+                replaced.add(id);
+            }
+        }
+        List<Segment> live = new ArrayList<>();
+        long rows = 0;
+        for (Segment segment : segments) {
+            nextId.accumulateAndGet(segment.id() + 1, Math::max);
+            if (replaced.contains(segment.id())) {
+                delete(segment.path());
+            } else {
+                live.add(segment);
+                rows += segment.rowCount();
+            }
+        }
+        synchronized (this) {
+            snapshot = new Snapshot(live, List.of(), snapshot.active());
+        }
+        log.info("[SegmentStore] Загружено сегментов из {}: {}, хитов: {}", directory, live.size(), rows);
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("[SegmentStore] Не удалось удалить {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record Snapshot(List<Segment> segments, List<MemTable> frozen, MemTable active) {
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Запись отсортированных по времени хитов в файл сегмента (формат описан в Segment).
+// Файл пишется во временный, сбрасывается на диск и атомарно переименовывается.
+final class SegmentWriter {
+
+    private SegmentWriter() {
+    }
+
+    static Path write(Path directory, long id, long[] replaces, List<SegmentRow> rows) throws IOException {
+        Path target = directory.resolve(Segment.fileName(id));
+        Path tmp = directory.resolve(Segment.fileName(id) + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(encode(id, replaces, rows));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        return Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Содержимое файла сегмента целиком
+    static byte[] encode(long id, long[] replaces, List<SegmentRow> rows) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Map<String, Integer> ips = new LinkedHashMap<>();
+        boolean ipv4 = true;
+        for (SegmentRow row : rows) {
+            strings.putIfAbsent(row.app(), strings.size());
+            strings.putIfAbsent(row.uri(), strings.size());
+            ips.putIfAbsent(row.ip(), ips.size());
+            ipv4 &= IpCodec.parseIpv4(row.ip()) != IpCodec.NOT_IPV4;
+        }
+
+        int blockCount = (rows.size() + Segment.BLOCK_ROWS - 1) / Segment.BLOCK_ROWS;
+        long[] blockFirst = new long[blockCount];
+        int[] blockOffsets = new int[blockCount];
+        ByteArrayOutputStream timestamps = new ByteArrayOutputStream(rows.size() * 2);
+        long previous = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            long epochSecond = rows.get(i).epochSecond();
+            if (i % Segment.BLOCK_ROWS == 0) {
+                // Каждый блок декодируется независимо от предыдущих
+                blockFirst[i / Segment.BLOCK_ROWS] = epochSecond;
+                blockOffsets[i / Segment.BLOCK_ROWS] = timestamps.size();
+                previous = epochSecond;
+            }
+            writeVarLong(timestamps, epochSecond - previous);
+            previous = epochSecond;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + rows.size() * 14);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Segment.MAGIC);
+        out.writeInt(Segment.VERSION);
+        out.writeLong(id);
+        out.writeInt(replaces.length);
+        for (long replaced : replaces) {
+            out.writeLong(replaced);
+        }
+        out.writeInt(rows.size());
+        out.writeLong(rows.isEmpty() ? 0 : rows.get(0).epochSecond());
+        out.writeLong(rows.isEmpty() ? 0 : rows.get(rows.size() - 1).epochSecond());
+        writeStrings(out, strings);
+        out.writeBoolean(ipv4);
+        if (!ipv4) {
+            writeStrings(out, ips);
+        }
+        out.writeInt(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            out.writeLong(blockFirst[i]);
+            out.writeInt(blockOffsets[i]);
+        }
+        out.writeInt(timestamps.size());
+        for (SegmentRow row : rows) {
+            out.writeInt(strings.get(row.app()));
+        }
+        for (SegmentRow row : rows) {
+            out.writeInt(strings.get(row.uri()));
+        }
+        for (SegmentRow row : rows) {
+            out.writeInt(ipv4 ? (int) IpCodec.parseIpv4(row.ip()) : ips.get(row.ip()));
+        }
+        timestamps.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeStrings(DataOutputStream out, Map<String, Integer> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String value : strings.keySet()) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -1,16 +1,57 @@
 package ru.practicum.explorewithme.stats.server.service;
 
 import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
 import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.planner.StatsSink;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface StatService {
 
+    // Имя бина, работающего только с хитами этого сервера; в кластере поверх него - ClusterStatService
+    String LOCAL = "localStatService";
+
     // Сохранить информацию о запросе
     EndpointHit saveHit(EndpointHit hit);
 
-    // Получить статистику
-    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+    // Сохранить пачку хитов одной транзакцией
+    int saveHits(List<EndpointHit> hits);
+
+    // Получить статистику (уникальные считаются точно)
+    default List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        return getStats(start, end, uris, unique, UniqueMode.EXACT);
+    }
+
+    // Получить статистику с выбором способа подсчёта уникальных
+    default List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                     UniqueMode uniqueMode) {
+        return findStats(new StatsQuery(start, end, uris, Boolean.TRUE.equals(unique), uniqueMode)).stats();
+    }
+
+    // Получить статистику вместе с планом, по которому она посчитана
+    StatsResult findStats(StatsQuery query);
+
+    // Передать статистику получателю по мере подсчёта, не собирая весь ответ в памяти
+    void streamStats(StatsQuery query, StatsSink sink);
+
+    // Выполнить несколько запросов статистики; результаты по ключам запросов, в их порядке
+    default Map<String, StatsResult> findStatsBatch(Map<String, StatsQuery> queries) {
+        Map<String, StatsResult> results = new LinkedHashMap<>();
+        queries.forEach((id, query) -> results.put(id, findStats(query)));
+        return results;
+    }
+
+    // Получить хиты по корзинам времени одним запросом
+    TimeSeriesResult findTimeSeries(TimeSeriesQuery query);
+
+    // До k самых посещаемых uri каждого приложения за последние minutes минут (app == null - все)
+    List<ViewStats> findTop(String app, int minutes, int k);
 }
\ No newline at end of file
@@ -1,29 +1,54 @@
 package ru.practicum.explorewithme.stats.server.service;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import ru.practicum.explorewithme.stats.dto.EndpointHit;
 import ru.practicum.explorewithme.stats.dto.ViewStats;
-import ru.practicum.explorewithme.stats.server.entity.Hit;
-import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.ingest.HitBuffer;
+import ru.practicum.explorewithme.stats.server.ingest.HitWriter;
+import ru.practicum.explorewithme.stats.server.metrics.StatsMetrics;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsBatchPlanner;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsQueryPlanner;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.planner.StatsSink;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
+import ru.practicum.explorewithme.stats.server.trending.TrendingUriTracker;
 
-import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
-@Service
+@Service(StatService.LOCAL)
+@ConditionalOnProperty(name = "stats.storage.backend", havingValue = "table", matchIfMissing = true)
 @RequiredArgsConstructor
 public class StatServiceImpl implements StatService {
 
-    private final HitRepository repository;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final StatsQueryPlanner planner;
+    private final StatsBatchPlanner batchPlanner;
+    private final StatsMetrics metrics;
+    private final TrendingUriTracker trendingUriTracker;
 
     @Override
     public EndpointHit saveHit(EndpointHit hit) {
         log.debug("[StatService] Сохранение статистики: app={}, uri={}, ip={}",
                 hit.getApp(), hit.getUri(), hit.getIp());
 
-        repository.save(Hit.fromDto(hit));
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.offer(hit);
+            log.debug("[StatService] Статистика поставлена в буфер: app={}, uri={}",
+                    hit.getApp(), hit.getUri());
+            return hit;
+        }
+
+        hitWriter.write(List.of(hit));
 
         log.debug("[StatService] Статистика сохранена: app={}, uri={}",
                 hit.getApp(), hit.getUri());
@@ -31,19 +56,76 @@ public class StatServiceImpl implements StatService {
     }
 
     @Override
-    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
-        log.debug("[StatService] Получение статистики: start={}, end={}, uris={}, unique={}",
-                start, end, uris, unique);
-
-        List<ViewStats> stats;
-        if (unique) {
-            stats = repository.findUniqueStats(start, end, uris);
-            log.debug("[StatService] Получена уникальная статистика: {} записей", stats.size());
-        } else {
-            stats = repository.findStats(start, end, uris);
-            log.debug("[StatService] Получена полная статистика: {} записей", stats.size());
-        }
+    public int saveHits(List<EndpointHit> hits) {
+        log.debug("[StatService] Сохранение пачки хитов: {} шт.", hits.size());
+
+        int saved = hitWriter.write(hits);
+
+        log.debug("[StatService] Пачка хитов сохранена: {} шт.", saved);
+        return saved;
+    }
+
+    @Override
+    public StatsResult findStats(StatsQuery query) {
+        log.debug("[StatService] Получение статистики: start={}, end={}, uris={}, unique={}, uniqueMode={}",
+                query.start(), query.end(), query.uris(), query.unique(), query.uniqueMode());
+
+        Timer.Sample sample = metrics.startQuery();
+        StatsResult result = planner.execute(query);
+        metrics.recordQuery(sample, query, result.stats().size());
+
+        log.debug("[StatService] Получена статистика по плану {}: {} записей",
+                result.plan(), result.stats().size());
+        return result;
+    }
+
+    @Override
+    public void streamStats(StatsQuery query, StatsSink sink) {
+        log.debug("[StatService] Потоковая выдача статистики: start={}, end={}, uris={}, unique={}, limit={}, offset={}",
+                query.start(), query.end(), query.uris(), query.unique(), query.limit(), query.offset());
+
+        Timer.Sample sample = metrics.startQuery();
+        int[] rows = new int[1];
+        QueryPlan plan = planner.stream(query, new StatsSink() {
+            @Override
+            public void plan(QueryPlan plan) {
+                sink.plan(plan);
+            }
 
-        return stats;
+            @Override
+            public void accept(ViewStats row) {
+                rows[0]++;
+                sink.accept(row);
+            }
+        });
+        metrics.recordQuery(sample, query, rows[0]);
+
+        log.debug("[StatService] Статистика выдана по плану {}", plan);
+    }
+
+    @Override
+    public Map<String, StatsResult> findStatsBatch(Map<String, StatsQuery> queries) {
+        log.debug("[StatService] Получение статистики пачкой: {} запросов", queries.size());
+
+        Map<String, StatsResult> results = batchPlanner.execute(queries);
+
+        log.debug("[StatService] Получена статистика пачкой: {} результатов", results.size());
+        return results;
+    }
+
+    @Override
+    public TimeSeriesResult findTimeSeries(TimeSeriesQuery query) {
+        log.debug("[StatService] Получение ряда: start={}, end={}, interval={}, groupBy={}, uris={}, unique={}",
+                query.start(), query.end(), query.interval(), query.groupBy(), query.uris(), query.unique());
+
+        TimeSeriesResult result = planner.timeSeries(query);
+
+        log.debug("[StatService] Получен ряд по плану {}: {} точек", result.plan(), result.points().size());
+        return result;
+    }
+
+    @Override
+    public List<ViewStats> findTop(String app, int minutes, int k) {
+        return trendingUriTracker.top(app, minutes, k);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package ru.practicum.explorewithme.stats.server.timeseries;
+
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.server.rollup.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Сборка ряда за один проход: хиты, IP или скетчи из любого источника раскладываются
+// по (корзина, app, группа). Уникальные по группе из нескольких uri считаются объединением
+// множеств IP или скетчей, а не суммой, поэтому посетитель двух uri группы учитывается один раз
+public class TimeSeriesAccumulator {
+
+    // По времени корзины, внутри корзины - по убыванию хитов, при равенстве - по app и uri
+    public static final Comparator<TimeSeriesPoint> ORDER = Comparator.comparing(TimeSeriesPoint::getBucket)
+            .thenComparing(TimeSeriesPoint::getHits, Comparator.reverseOrder())
+            .thenComparing(TimeSeriesPoint::getApp)
+            .thenComparing(TimeSeriesPoint::getUri, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final TimeSeriesQuery query;
+    private final Map<PointKey, Cell> cells = new HashMap<>();
+
+    public TimeSeriesAccumulator(TimeSeriesQuery query) {
+        this.query = query;
+    }
+
+    // Хиты с временем time (или корзина агрегата, начинающаяся в time)
+    public void addHits(LocalDateTime time, String app, String uri, long hits) {
+        cell(time, app, uri).hits += hits;
+    }
+
+    // Один сырой хит; для уникальных запоминается IP. Порядок параметров - как у HitRowConsumer
+    public void addHit(String app, String uri, String ip, LocalDateTime timestamp) {
+        Cell cell = cell(timestamp, app, uri);
+        if (!query.unique()) {
+            cell.hits++;
+        } else if (cell.sketch != null) {
+            cell.sketch.add(ip);
+        } else {
+            if (cell.ips == null) {
+                cell.ips = new HashSet<>();
+            }
+            cell.ips.add(ip);
+        }
+    }
+
+    // Скетч IP корзины агрегата; после первого скетча IP группы тоже идут в скетч
+    public void addSketch(LocalDateTime time, String app, String uri, HyperLogLog sketch) {
+        Cell cell = cell(time, app, uri);
+        if (cell.sketch == null) {
+            cell.sketch = new HyperLogLog();
+            if (cell.ips != null) {
+                cell.ips.forEach(cell.sketch::add);
+                cell.ips = null;
+            }
+        }
+        cell.sketch.merge(sketch);
+    }
+
+    public List<TimeSeriesPoint> points() {
+        return cells.entrySet().stream()
+                .map(e -> new TimeSeriesPoint(e.getKey().bucket(), e.getKey().app(), e.getKey().group(),
+                        e.getValue().value(query.unique())))
+                .sorted(ORDER)
+                .toList();
+    }
+
+    private Cell cell(LocalDateTime time, String app, String uri) {
+        PointKey key = new PointKey(query.interval().truncate(time), app, query.groupBy().key(uri, query.depth()));
+        return cells.computeIfAbsent(key, k -> new Cell());
+    }
+
+    private record PointKey(LocalDateTime bucket, String app, String group) {
+    }
+
+    private static final class Cell {
+        private long hits;
+        private Set<String> ips;
+        private HyperLogLog sketch;
+
+        private long value(boolean unique) {
+            if (!unique) {
+                return hits;
+            }
+            if (sketch != null) {
+                return sketch.estimate();
+            }
+            return ips == null ? 0 : ips.size();
+        }
+    }
+}
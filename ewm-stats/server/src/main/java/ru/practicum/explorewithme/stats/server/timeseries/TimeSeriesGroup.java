@@ -0,0 +1,32 @@
+package ru.practicum.explorewithme.stats.server.timeseries;
+
+// Группировка точек ряда внутри корзины; приложение различается всегда
+public enum TimeSeriesGroup {
+    // Одна точка на приложение
+    APP,
+    // Одна точка на uri
+    URI,
+    // Одна точка на первые depth сегментов пути: /events/1/comments при depth=1 - /events
+    PREFIX;
+
+    // Ключ группы для uri; null - группа без uri
+    public String key(String uri, int depth) {
+        return switch (this) {
+            case APP -> null;
+            case URI -> uri;
+            case PREFIX -> prefix(uri, depth);
+        };
+    }
+
+    static String prefix(String uri, int depth) {
+        int position = 0;
+        for (int i = 0; i < depth; i++) {
+            int next = uri.indexOf('/', position + 1);
+            if (next < 0) {
+                return uri;
+            }
+            position = next;
+        }
+        return uri.substring(0, position);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.explorewithme.stats.server.timeseries;
+
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Параметры запроса /stats/timeseries: хиты в [start, end] по корзинам interval с группировкой groupBy.
+// uris == null - все uri, элементы uris могут быть шаблонами (UriPatterns); depth - только для PREFIX
+public record TimeSeriesQuery(LocalDateTime start, LocalDateTime end, Granularity interval, List<String> uris,
+                              TimeSeriesGroup groupBy, int depth, boolean unique, UniqueMode uniqueMode) {
+
+    // Тот же запрос по другому списку uri
+    public TimeSeriesQuery withUris(List<String> uris) {
+        return new TimeSeriesQuery(start, end, interval, uris, groupBy, depth, unique, uniqueMode);
+    }
+
+    // Число корзин, которые задевает диапазон
+    public long buckets() {
+        return Duration.between(interval.truncate(start), interval.truncate(end)).toSeconds() / interval.seconds() + 1;
+    }
+}
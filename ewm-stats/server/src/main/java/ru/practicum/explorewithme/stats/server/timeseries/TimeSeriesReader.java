@@ -0,0 +1,137 @@
+package ru.practicum.explorewithme.stats.server.timeseries;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.HyperLogLog;
+import ru.practicum.explorewithme.stats.server.rollup.RangeDecomposer;
+import ru.practicum.explorewithme.stats.server.rollup.RangeSegment;
+import ru.practicum.explorewithme.stats.server.rollup.RollupRepository;
+import ru.practicum.explorewithme.stats.server.rollup.RollupStatsReader;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+// Чтение ряда для таблицы hits. Целые корзины ряда берутся одним запросом к hit_rollups той же
+// гранулярности, неполные корзины на краях диапазона (меньше одной корзины с каждой стороны) -
+// из более мелких агрегатов и сырых хитов. Без агрегатов ряд собирается одним проходом по сырым хитам
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TimeSeriesReader {
+
+    private final HitRepository hitRepository;
+    private final RollupRepository rollupRepository;
+    private final RollupStatsReader rollupStatsReader;
+    private final HitArchive archive;
+
+    // Неуникальный ряд можно взять из агрегатов
+    public boolean rollupsApply(TimeSeriesQuery query) {
+        return rollupStatsReader.isEnabled() && !query.unique();
+    }
+
+    // Приблизительный уникальный ряд можно взять из скетчей: они есть только у часовых и дневных корзин
+    public boolean sketchesApply(TimeSeriesQuery query) {
+        return rollupStatsReader.isEnabled() && query.unique() && query.interval() != Granularity.MINUTE;
+    }
+
+    // Все хиты диапазона; для уникальных - точные множества IP по точкам
+    public void readRaw(TimeSeriesQuery query, TimeSeriesAccumulator accumulator) {
+        hitRepository.scan(query.start(), query.end(), true, query.uris(), accumulator::addHit);
+    }
+
+    public void readRollups(TimeSeriesQuery query, TimeSeriesAccumulator accumulator) {
+        Granularity interval = query.interval();
+        Bounds bounds = bounds(query);
+        for (Edge edge : bounds.edges()) {
+            // Край меньше корзины ряда: все его хиты в одной точке
+            for (ViewStats stats : rollupStatsReader.findStats(edge.from(), edge.to().minusNanos(1), query.uris())) {
+                accumulator.addHits(edge.from(), stats.getApp(), stats.getUri(), stats.getHits());
+            }
+        }
+
+        LocalDateTime from = bounds.first();
+        // Минутных корзин сжатого периода нет (HitCompactor), их хиты читаются из hits и архива
+        if (interval == Granularity.MINUTE && from.isBefore(bounds.last())
+                && archive.covers(from.toEpochSecond(ZoneOffset.UTC))) {
+            LocalDateTime horizon = LocalDateTime.ofEpochSecond(archive.horizon(), 0, ZoneOffset.UTC);
+            LocalDateTime compactedTo = horizon.isBefore(bounds.last()) ? horizon : bounds.last();
+            hitRepository.scan(from, compactedTo, false, query.uris(),
+                    (app, uri, ip, timestamp) -> accumulator.addHits(timestamp, app, uri, 1));
+            from = compactedTo;
+        }
+        if (from.isBefore(bounds.last())) {
+            rollupRepository.forEachBucket(interval, from, bounds.last(), query.uris(), row ->
+                    accumulator.addHits(row.key().bucketStart(), row.key().app(), row.key().uri(), row.hits()));
+        }
+        log.debug("[TimeSeriesReader] Ряд {} - {} по {}: целые корзины {} - {}, краёв {}",
+                query.start(), query.end(), interval, bounds.first(), bounds.last(), bounds.edges().size());
+    }
+
+    public void readSketches(TimeSeriesQuery query, TimeSeriesAccumulator accumulator) {
+        Bounds bounds = bounds(query);
+        for (Edge edge : bounds.edges()) {
+            // Край дневного ряда короче суток: часовые скетчи и сырые IP на краях часа
+            for (RangeSegment segment : RangeDecomposer.decompose(edge.from(), edge.to().minusNanos(1), Granularity.HOUR)) {
+                if (segment.isRaw()) {
+                    hitRepository.scan(segment.from(), segment.to(), segment.toInclusive(), query.uris(),
+                            accumulator::addHit);
+                } else {
+                    readSketches(segment.granularity(), segment.from(), segment.to(), query, accumulator);
+                }
+            }
+        }
+        if (bounds.first().isBefore(bounds.last())) {
+            readSketches(query.interval(), bounds.first(), bounds.last(), query, accumulator);
+        }
+    }
+
+    private void readSketches(Granularity granularity, LocalDateTime from, LocalDateTime to, TimeSeriesQuery query,
+                              TimeSeriesAccumulator accumulator) {
+        rollupRepository.forEachSketch(granularity, from, to, query.uris(), row -> {
+            if (row.sketch() != null) {
+                accumulator.addSketch(row.key().bucketStart(), row.key().app(), row.key().uri(),
+                        HyperLogLog.fromBytes(row.sketch()));
+                return;
+            }
+            // Корзина заполнена до появления скетчей
+            hitRepository.scan(row.key().bucketStart(), granularity.next(row.key().bucketStart()), false,
+                    List.of(row.key().uri()), (app, uri, ip, timestamp) -> {
+                        if (app.equals(row.key().app())) {
+                            accumulator.addHit(app, uri, ip, timestamp);
+                        }
+                    });
+        });
+    }
+
+    // Целые корзины ряда [first, last) и неполные края в полуоткрытом виде [from, to)
+    private static Bounds bounds(TimeSeriesQuery query) {
+        Granularity interval = query.interval();
+        LocalDateTime endExclusive = query.end().plusNanos(1);
+        LocalDateTime first = interval.ceil(query.start());
+        LocalDateTime last = interval.truncate(endExclusive);
+
+        LocalDateTime leftEnd = first.isBefore(endExclusive) ? first : endExclusive;
+        LocalDateTime rightStart = first.isAfter(last) ? first : last;
+        List<Edge> edges = new ArrayList<>(2);
+        if (query.start().isBefore(leftEnd)) {
+            edges.add(new Edge(query.start(), leftEnd));
+        }
+        if (rightStart.isBefore(endExclusive)) {
+            edges.add(new Edge(rightStart, endExclusive));
+        }
+        return new Bounds(first, last, edges);
+    }
+
+    private record Bounds(LocalDateTime first, LocalDateTime last, List<Edge> edges) {
+    }
+
+    private record Edge(LocalDateTime from, LocalDateTime to) {
+    }
+}
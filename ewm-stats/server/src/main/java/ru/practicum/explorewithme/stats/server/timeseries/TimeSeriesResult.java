@@ -0,0 +1,10 @@
+package ru.practicum.explorewithme.stats.server.timeseries;
+
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+
+import java.util.List;
+
+// Ряд вместе с планом, по которому он получен
+public record TimeSeriesResult(QueryPlan plan, List<TimeSeriesPoint> points) {
+}
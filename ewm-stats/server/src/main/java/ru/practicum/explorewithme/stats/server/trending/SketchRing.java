@@ -0,0 +1,65 @@
+package ru.practicum.explorewithme.stats.server.trending;
+
+import java.util.Map;
+
+// Кольцо скетчей Space-Saving по интервалам одной длины: слот переиспользуется,
+// когда время доходит до него на следующем обороте. Каждый скетч защищён собственной блокировкой
+final class SketchRing {
+
+    private final long slotSeconds;
+    private final SpaceSaving[] sketches;
+    // Номер интервала, который хранит слот (под блокировкой его скетча)
+    private final long[] intervals;
+
+    SketchRing(long slotSeconds, int slots, int capacity) {
+        this.slotSeconds = slotSeconds;
+        this.sketches = new SpaceSaving[slots];
+        this.intervals = new long[slots];
+        for (int i = 0; i < slots; i++) {
+            sketches[i] = new SpaceSaving(capacity);
+            intervals[i] = Long.MIN_VALUE;
+        }
+    }
+
+    int slots() {
+        return sketches.length;
+    }
+
+    long interval(long epochSecond) {
+        return Math.floorDiv(epochSecond, slotSeconds);
+    }
+
+    void add(long epochSecond, String key) {
+        long interval = interval(epochSecond);
+        int slot = slot(interval);
+        SpaceSaving sketch = sketches[slot];
+        synchronized (sketch) {
+            if (intervals[slot] > interval) {
+                // Слот уже занят более новым интервалом: хит старше кольца
+                return;
+            }
+            if (intervals[slot] < interval) {
+                sketch.clear();
+                intervals[slot] = interval;
+            }
+            sketch.add(key, 1);
+        }
+    }
+
+    // Слить скетчи интервалов [last - count + 1, last]
+    void mergeInto(long last, int count, Map<String, long[]> totals) {
+        for (long interval = last - Math.min(count, sketches.length) + 1; interval <= last; interval++) {
+            int slot = slot(interval);
+            SpaceSaving sketch = sketches[slot];
+            synchronized (sketch) {
+                if (intervals[slot] == interval) {
+                    sketch.mergeInto(totals);
+                }
+            }
+        }
+    }
+
+    private int slot(long interval) {
+        return (int) Math.floorMod(interval, (long) sketches.length);
+    }
+}
@@ -0,0 +1,127 @@
+package ru.practicum.explorewithme.stats.server.trending;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Скетч Space-Saving: не больше capacity счётчиков независимо от числа разных ключей.
+// Новый ключ при заполненном скетче вытесняет ключ с минимальным счётчиком и наследует его значение,
+// поэтому счёт - оценка сверху, а ошибка не превышает вытесненного значения (error).
+// Счётчики лежат в минимальной куче: минимум доступен сразу, приращение - O(log capacity).
+// Не потокобезопасен, синхронизация на стороне вызывающего
+final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Integer> positions;
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.positions = new HashMap<>(capacity * 2);
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    void add(String key, long count) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = count;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+        positions.remove(keys[0]);
+        errors[0] = counts[0];
+        counts[0] += count;
+        keys[0] = key;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+    void clear() {
+        positions.clear();
+        for (int i = 0; i < size; i++) {
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Прибавить счётчики скетча к накопителю: ключ -> {оценка, ошибка}
+    void mergeInto(Map<String, long[]> totals) {
+        for (int i = 0; i < size; i++) {
+            long[] total = totals.computeIfAbsent(keys[i], k -> new long[2]);
+            total[0] += counts[i];
+            total[1] += errors[i];
+        }
+    }
+
+    // Ключи по убыванию оценки, не больше limit
+    List<Map.Entry<String, Long>> top(int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(Map.entry(keys[i], counts[i]));
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.explorewithme.stats.server.trending;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.TrendingProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.ingest.HitListener;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.repository.AfterCommit;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Самые посещаемые uri каждого приложения за последние минуты и часы (/stats/top).
+// На приложение - кольцо из 60 минутных и 24 часовых скетчей Space-Saving, поэтому память постоянна
+// при любом числе разных uri. Окна до часа собираются из минутных скетчей, длиннее - из часовых
+// (окно округляется вверх до целых часов). Счёт приблизительный: оценка сверху для каждого uri.
+@Slf4j
+@Component
+@Order(40)
+public class TrendingUriTracker implements HitListener {
+
+    public static final int MAX_WINDOW_MINUTES = 24 * 60;
+
+    private static final int MINUTE_SLOTS = 60;
+    private static final int HOUR_SLOTS = 24;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxApps;
+    private final Map<String, AppSketches> apps = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private volatile boolean saturated;
+
+    @Autowired
+    public TrendingUriTracker(TrendingProperties properties) {
+        this(properties, Clock.systemDefaultZone());
+    }
+
+    TrendingUriTracker(TrendingProperties properties, Clock clock) {
+        this.enabled = properties.isEnabled();
+        this.capacity = properties.getCapacity();
+        this.maxApps = properties.getMaxApps();
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> hits.forEach(this::add));
+    }
+
+    public void add(Hit hit) {
+        AppSketches sketches = sketches(hit.getApp());
+        if (sketches == null) {
+            return;
+        }
+        long epochSecond = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        sketches.minutes.add(epochSecond, hit.getUri());
+        sketches.hours.add(epochSecond, hit.getUri());
+    }
+
+    // До limit самых посещаемых uri за последние minutes минут по каждому приложению (app == null - все)
+    public List<ViewStats> top(String app, int minutes, int limit) {
+        long now = LocalDateTime.now(clock).toEpochSecond(ZoneOffset.UTC);
+        List<ViewStats> stats = new ArrayList<>();
+        apps.forEach((name, sketches) -> {
+            if (app != null && !app.equals(name)) {
+                return;
+            }
+            Map<String, long[]> totals = new HashMap<>();
+            if (minutes <= MINUTE_SLOTS) {
+                sketches.minutes.mergeInto(sketches.minutes.interval(now), minutes, totals);
+            } else {
+                int hours = (minutes + 59) / 60;
+                sketches.hours.mergeInto(sketches.hours.interval(now), hours, totals);
+            }
+            totals.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed())
+                    .limit(limit)
+                    .forEach(e -> stats.add(new ViewStats(name, e.getKey(), e.getValue()[0])));
+        });
+        stats.sort(StatsPage.ORDER);
+        return stats;
+    }
+
+    private AppSketches sketches(String app) {
+        AppSketches sketches = apps.get(app);
+        if (sketches != null) {
+            return sketches;
+        }
+        if (apps.size() >= maxApps) {
+            if (!saturated) {
+                saturated = true;
+                log.warn("[TrendingUriTracker] Достигнут предел приложений ({}), хиты новых не учитываются", maxApps);
+            }
+            return null;
+        }
+        return apps.computeIfAbsent(app, k -> new AppSketches(
+                new SketchRing(60, MINUTE_SLOTS, capacity),
+                new SketchRing(3600, HOUR_SLOTS, capacity)));
+    }
+
+    private record AppSketches(SketchRing minutes, SketchRing hours) {
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.config.UniqueProperties;
+import ru.practicum.explorewithme.stats.server.planner.StatsPage;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RangeDecomposer;
+import ru.practicum.explorewithme.stats.server.rollup.RangeSegment;
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Точная уникальная статистика: объединение дневных битовых карт посетителей и мощность результата.
+// Сырые IP читаются только для неполных дней на краях диапазона и для дней без карты.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExactUniqueReader {
+
+    private final VisitorRepository visitorRepository;
+    private final VisitorBitmapCache bitmapCache;
+    private final IpDictionary ipDictionary;
+    private final HitRepository hitRepository;
+    private final RollupProperties rollupProperties;
+    private final UniqueProperties properties;
+
+    public boolean isEnabled() {
+        return rollupProperties.isEnabled() && properties.isBitmapsEnabled();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ViewStats> findUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatsKey, VisitorBitmap> unions = new HashMap<>();
+        Map<StatsKey, Set<String>> rawIps = new HashMap<>();
+
+        for (RangeSegment segment : RangeDecomposer.decompose(start, end, Granularity.DAY)) {
+            if (segment.isRaw()) {
+                hitRepository.scan(segment.from(), segment.to(), segment.toInclusive(), uris,
+                        (app, uri, ip, timestamp) -> rawIps.computeIfAbsent(new StatsKey(app, uri),
+                                k -> new HashSet<>()).add(ip));
+            } else {
+                addDays(segment.from(), segment.to(), uris, unions, rawIps);
+            }
+        }
+
+        // IP с краёв и из дней без карт переводим в идентификаторы и добавляем в объединение.
+        // IP, которых нет в словаре, не встречаются ни в одной карте и считаются отдельно
+        Set<String> allRawIps = new HashSet<>();
+        rawIps.values().forEach(allRawIps::addAll);
+        Map<String, Integer> ids = ipDictionary.find(allRawIps);
+
+        Set<StatsKey> keys = new HashSet<>(unions.keySet());
+        keys.addAll(rawIps.keySet());
+        List<ViewStats> stats = new ArrayList<>(keys.size());
+        for (StatsKey key : keys) {
+            VisitorBitmap union = unions.computeIfAbsent(key, k -> new VisitorBitmap());
+            long unknown = 0;
+            for (String ip : rawIps.getOrDefault(key, Set.of())) {
+                Integer id = ids.get(ip);
+                if (id != null) {
+                    union.add(id);
+                } else {
+                    unknown++;
+                }
+            }
+            stats.add(new ViewStats(key.app(), key.uri(), union.cardinality() + unknown));
+        }
+        stats.sort(StatsPage.ORDER);
+        return stats;
+    }
+
+    private void addDays(LocalDateTime from, LocalDateTime to, List<String> uris,
+                         Map<StatsKey, VisitorBitmap> unions, Map<StatsKey, Set<String>> rawIps) {
+        Map<LocalDateTime, Long> generations = bitmapCache.generations();
+        Map<RollupKey, Boolean> days = visitorRepository.findDays(from, to, uris);
+
+        Set<RollupKey> toLoad = new HashSet<>();
+        Set<String> urisToLoad = new HashSet<>();
+        int cached = 0;
+        for (Map.Entry<RollupKey, Boolean> day : days.entrySet()) {
+            RollupKey key = day.getKey();
+            if (!day.getValue()) {
+                // День без карты: считаем по сырым хитам
+                hitRepository.scan(key.bucketStart(), Granularity.DAY.next(key.bucketStart()), false,
+                        List.of(key.uri()), (app, uri, ip, timestamp) -> {
+                            if (app.equals(key.app())) {
+                                rawIps.computeIfAbsent(new StatsKey(app, uri), k -> new HashSet<>()).add(ip);
+                            }
+                        });
+                continue;
+            }
+            VisitorBitmap bitmap = bitmapCache.get(key);
+            if (bitmap != null) {
+                union(unions, key).or(bitmap);
+                cached++;
+            } else {
+                toLoad.add(key);
+                urisToLoad.add(key.uri());
+            }
+        }
+
+        if (!toLoad.isEmpty()) {
+            visitorRepository.forEachBitmap(from, to, urisToLoad, row -> {
+                if (toLoad.contains(row.key())) {
+                    VisitorBitmap bitmap = VisitorBitmap.fromBytes(row.bitmap());
+                    bitmapCache.put(row.key(), bitmap, generations);
+                    union(unions, row.key()).or(bitmap);
+                }
+            });
+        }
+        log.debug("[ExactUniqueReader] Дней с {} по {}: {}, из кэша: {}, загружено: {}",
+                from, to, days.size(), cached, toLoad.size());
+    }
+
+    private VisitorBitmap union(Map<StatsKey, VisitorBitmap> unions, RollupKey key) {
+        return unions.computeIfAbsent(new StatsKey(key.app(), key.uri()), k -> new VisitorBitmap());
+    }
+
+    private record StatsKey(String app, String uri) {
+    }
+}
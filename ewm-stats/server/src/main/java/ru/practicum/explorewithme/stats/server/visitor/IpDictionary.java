@@ -0,0 +1,86 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.UniqueProperties;
+import ru.practicum.explorewithme.stats.server.repository.AfterCommit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словарь IP -> плотный int-идентификатор для битовых карт посетителей.
+// Горячая часть словаря держится в LRU-кэше ограниченного размера.
+@Slf4j
+@Component
+public class IpDictionary {
+
+    private final VisitorRepository repository;
+    private final Map<String, Integer> cache;
+
+    public IpDictionary(VisitorRepository repository, UniqueProperties properties) {
+        this.repository = repository;
+        int maxSize = properties.getDictionaryCacheSize();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    // Идентификаторы для IP, новые IP добавляются в словарь. Вызывается внутри транзакции записи
+    public Map<String, Integer> resolve(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (String ip : ips) {
+                Integer id = cache.get(ip);
+                if (id != null) {
+                    ids.put(ip, id);
+                } else {
+                    missing.add(ip);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        missing.sort(null);
+        repository.insertIps(missing);
+        Map<String, Integer> found = repository.findIds(missing);
+        ids.putAll(found);
+        // В кэш - только после фиксации: при откате строки словаря исчезнут, а идентификаторы
+        // из последовательности повторно не выдаются, и IP получил бы второй id
+        AfterCommit.run(() -> {
+            synchronized (cache) {
+                cache.putAll(found);
+            }
+        });
+        log.debug("[IpDictionary] Новых или некэшированных IP: {}", missing.size());
+        return ids;
+    }
+
+    // Идентификаторы только уже известных IP, без записи в словарь
+    public Map<String, Integer> find(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (String ip : ips) {
+                Integer id = cache.get(ip);
+                if (id != null) {
+                    ids.put(ip, id);
+                } else {
+                    missing.add(ip);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            ids.putAll(repository.findIds(missing));
+        }
+        return ids;
+    }
+}
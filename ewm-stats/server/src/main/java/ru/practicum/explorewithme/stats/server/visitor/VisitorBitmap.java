@@ -0,0 +1,309 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Сжатое множество неотрицательных int-идентификаторов посетителей в духе Roaring bitmap:
+// значения делятся на блоки по старшим 16 битам, разреженный блок хранится отсортированным
+// массивом char (до 4096 значений, 2 байта на значение), плотный - битовой картой на 8 КБ.
+public class VisitorBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final byte TYPE_ARRAY = 0;
+    private static final byte TYPE_BITMAP = 1;
+
+    private final TreeMap<Integer, Container> containers = new TreeMap<>();
+
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Идентификатор посетителя не может быть отрицательным: " + value);
+        }
+        int high = value >>> 16;
+        Container container = containers.get(high);
+        if (container == null) {
+            container = new ArrayContainer();
+        }
+        containers.put(high, container.add((char) value));
+    }
+
+    public boolean contains(int value) {
+        Container container = containers.get(value >>> 16);
+        return container != null && container.contains((char) value);
+    }
+
+    // Объединить с другим множеством; other не изменяется и не разделяет с этим блоки
+    public void or(VisitorBitmap other) {
+        for (Map.Entry<Integer, Container> entry : other.containers.entrySet()) {
+            Container mine = containers.get(entry.getKey());
+            containers.put(entry.getKey(), mine == null ? entry.getValue().copy() : mine.or(entry.getValue()));
+        }
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers.values()) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    // Приблизительный объём в памяти, для ограничения кэша
+    public long sizeInBytes() {
+        long size = 64;
+        for (Container container : containers.values()) {
+            size += 48 + container.serializedSize();
+        }
+        return size;
+    }
+
+    public byte[] toBytes() {
+        int size = Integer.BYTES;
+        for (Container container : containers.values()) {
+            size += Character.BYTES + 1 + container.serializedSize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(containers.size());
+        for (Map.Entry<Integer, Container> entry : containers.entrySet()) {
+            buffer.putChar((char) entry.getKey().intValue());
+            entry.getValue().write(buffer);
+        }
+        return buffer.array();
+    }
+
+    public static VisitorBitmap fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        VisitorBitmap bitmap = new VisitorBitmap();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int high = buffer.getChar();
+            byte type = buffer.get();
+            Container container;
+            if (type == TYPE_ARRAY) {
+                container = ArrayContainer.read(buffer);
+            } else if (type == TYPE_BITMAP) {
+                container = BitmapContainer.read(buffer);
+            } else {
+                throw new IllegalArgumentException("Неизвестный тип блока битовой карты: " + type);
+            }
+            bitmap.containers.put(high, container);
+        }
+        return bitmap;
+    }
+
+    private abstract static class Container {
+
+        // Возвращает контейнер с добавленным значением: этот же или преобразованный
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        // Объединение на месте, other не изменяется; возвращает этот же или преобразованный контейнер
+        abstract Container or(Container other);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        // Размер без байта типа
+        abstract int serializedSize();
+
+        abstract void write(ByteBuffer buffer);
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int size;
+
+        private ArrayContainer() {
+            this.values = new char[4];
+        }
+
+        private ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size >= ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            int insertAt = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.copy().or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[size + array.size];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size && j < array.size) {
+                char a = values[i];
+                char b = array.values[j];
+                if (a < b) {
+                    merged[k++] = a;
+                    i++;
+                } else if (b < a) {
+                    merged[k++] = b;
+                    j++;
+                } else {
+                    merged[k++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < size) {
+                merged[k++] = values[i++];
+            }
+            while (j < array.size) {
+                merged[k++] = array.values[j++];
+            }
+            ArrayContainer result = new ArrayContainer(merged, k);
+            return k > ARRAY_MAX ? result.toBitmap() : result;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+
+        @Override
+        int serializedSize() {
+            return Character.BYTES + size * Character.BYTES;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            buffer.put(TYPE_ARRAY);
+            // Размер блока бывает до 4096 включительно, поэтому храним size - 1 (пустых блоков нет)
+            buffer.putChar((char) (size - 1));
+            for (int i = 0; i < size; i++) {
+                buffer.putChar(values[i]);
+            }
+        }
+
+        static ArrayContainer read(ByteBuffer buffer) {
+            int size = buffer.getChar() + 1;
+            char[] values = new char[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = buffer.getChar();
+            }
+            return new ArrayContainer(values, size);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = value >>> 6;
+            long mask = 1L << value;
+            if ((words[index] & mask) == 0) {
+                words[index] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                int total = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    words[i] |= bitmap.words[i];
+                    total += Long.bitCount(words[i]);
+                }
+                cardinality = total;
+                return this;
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            for (int i = 0; i < array.size; i++) {
+                add(array.values[i]);
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int serializedSize() {
+            return BITMAP_WORDS * Long.BYTES;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            buffer.put(TYPE_BITMAP);
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+
+        static BitmapContainer read(ByteBuffer buffer) {
+            long[] words = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] = buffer.getLong();
+                cardinality += Long.bitCount(words[i]);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+}
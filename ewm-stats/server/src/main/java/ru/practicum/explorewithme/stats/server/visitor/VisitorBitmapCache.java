@@ -0,0 +1,68 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.UniqueProperties;
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// LRU-кэш прочитанных битовых карт, ограниченный по суммарному объёму.
+// Закэшированные карты нельзя изменять, их только объединяют в новую.
+@Component
+public class VisitorBitmapCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<RollupKey, VisitorBitmap> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Поколение каждого дня растёт при каждом изменении его карт
+    private final Map<LocalDateTime, Long> generations = new HashMap<>();
+    private long bytes;
+
+    public VisitorBitmapCache(UniqueProperties properties) {
+        this.maxBytes = properties.getBitmapCacheSize().toBytes();
+    }
+
+    public synchronized VisitorBitmap get(RollupKey key) {
+        return entries.get(key);
+    }
+
+    // Снимок поколений берётся до чтения карт из БД: если день за это время менялся,
+    // прочитанная карта могла устареть и в кэш не попадёт
+    public synchronized Map<LocalDateTime, Long> generations() {
+        return new HashMap<>(generations);
+    }
+
+    public synchronized void put(RollupKey key, VisitorBitmap bitmap, Map<LocalDateTime, Long> readGenerations) {
+        if (!readGenerations.getOrDefault(key.bucketStart(), 0L).equals(generations.getOrDefault(key.bucketStart(), 0L))) {
+            return;
+        }
+        long size = bitmap.sizeInBytes();
+        if (size > maxBytes) {
+            return;
+        }
+        VisitorBitmap previous = entries.put(key, bitmap);
+        if (previous != null) {
+            bytes -= previous.sizeInBytes();
+        }
+        bytes += size;
+        Iterator<Map.Entry<RollupKey, VisitorBitmap>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().sizeInBytes();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void evict(Collection<RollupKey> keys) {
+        for (RollupKey key : keys) {
+            generations.merge(key.bucketStart(), 1L, Long::sum);
+            VisitorBitmap removed = entries.remove(key);
+            if (removed != null) {
+                bytes -= removed.sizeInBytes();
+            }
+        }
+    }
+}
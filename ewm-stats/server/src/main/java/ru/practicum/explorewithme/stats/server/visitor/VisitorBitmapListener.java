@@ -0,0 +1,89 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.config.UniqueProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.ingest.HitListener;
+import ru.practicum.explorewithme.stats.server.repository.AfterCommit;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Дописывает идентификаторы посетителей пачки в битовые карты дневных строк hit_rollups.
+// Выполняется после RollupHitListener: дневные строки к этому моменту созданы и заблокированы.
+@Component
+@Order(20)
+@RequiredArgsConstructor
+public class VisitorBitmapListener implements HitListener {
+
+    private final VisitorRepository visitorRepository;
+    private final IpDictionary ipDictionary;
+    private final VisitorBitmapCache bitmapCache;
+    private final HitRepository hitRepository;
+    private final RollupProperties rollupProperties;
+    private final UniqueProperties properties;
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!rollupProperties.isEnabled() || !properties.isBitmapsEnabled()) {
+            return;
+        }
+        Set<String> ips = new HashSet<>();
+        for (Hit hit : hits) {
+            ips.add(hit.getIp());
+        }
+        Map<String, Integer> ids = ipDictionary.resolve(ips);
+
+        Map<RollupKey, VisitorBitmap> batch = new HashMap<>();
+        Map<RollupKey, Long> counts = new HashMap<>();
+        for (Hit hit : hits) {
+            RollupKey key = new RollupKey(Granularity.DAY, Granularity.DAY.truncate(hit.getTimestamp()),
+                    hit.getApp(), hit.getUri());
+            batch.computeIfAbsent(key, k -> new VisitorBitmap()).add(ids.get(hit.getIp()));
+            counts.merge(key, 1L, Long::sum);
+        }
+
+        List<RollupKey> keys = new ArrayList<>(batch.keySet());
+        keys.sort(RollupKey.ORDER);
+        Map<RollupKey, VisitorBitmapRow> existing = visitorRepository.lockBitmaps(keys);
+
+        Map<RollupKey, byte[]> updates = new HashMap<>();
+        for (RollupKey key : keys) {
+            VisitorBitmap bitmap = batch.get(key);
+            VisitorBitmapRow row = existing.get(key);
+            if (row != null && row.bitmap() != null) {
+                bitmap.or(VisitorBitmap.fromBytes(row.bitmap()));
+            } else if (row != null && row.hits() > counts.get(key)) {
+                // День заполнен до появления битовых карт: строим карту по сырым хитам,
+                // они уже включают текущую пачку
+                bitmap = rebuildFromHits(key);
+            }
+            updates.put(key, bitmap.toBytes());
+        }
+        visitorRepository.updateBitmaps(updates);
+        AfterCommit.run(() -> bitmapCache.evict(keys));
+    }
+
+    private VisitorBitmap rebuildFromHits(RollupKey key) {
+        Set<String> dayIps = new HashSet<>();
+        hitRepository.scan(key.bucketStart(), Granularity.DAY.next(key.bucketStart()), false, List.of(key.uri()),
+                (app, uri, ip, timestamp) -> {
+                    if (app.equals(key.app())) {
+                        dayIps.add(ip);
+                    }
+                });
+        VisitorBitmap bitmap = new VisitorBitmap();
+        ipDictionary.resolve(dayIps).values().forEach(bitmap::add);
+        return bitmap;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+
+// Дневная строка агрегата с битовой картой посетителей; bitmap == null у строк, созданных до появления карт
+public record VisitorBitmapRow(RollupKey key, long hits, byte[] bitmap) {
+}
@@ -0,0 +1,159 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.explorewithme.stats.server.repository.SqlDialect;
+import ru.practicum.explorewithme.stats.server.repository.SqlFilters;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Словарь IP (visitor_ips) и битовые карты посетителей в дневных строках hit_rollups
+@Repository
+public class VisitorRepository {
+
+    private static final String INSERT_IP_POSTGRES =
+            "INSERT INTO visitor_ips (ip) VALUES (?) ON CONFLICT (ip) DO NOTHING";
+
+    private static final String INSERT_IP_H2 =
+            "MERGE INTO visitor_ips v USING (SELECT CAST(? AS VARCHAR(64)) AS ip) s ON v.ip = s.ip " +
+            "WHEN NOT MATCHED THEN INSERT (ip) VALUES (s.ip)";
+
+    private static final String FIND_IDS_SQL = "SELECT id, ip FROM visitor_ips WHERE ip IN (:ips)";
+
+    private static final String LOCK_BITMAPS_SQL =
+            "SELECT app, uri, hits, visitor_bitmap FROM hit_rollups " +
+            "WHERE granularity = 'DAY' AND bucket_start = :day AND (app, uri) IN (:keys) FOR UPDATE";
+
+    private static final String UPDATE_BITMAP_SQL =
+            "UPDATE hit_rollups SET visitor_bitmap = ? " +
+            "WHERE granularity = 'DAY' AND bucket_start = ? AND app = ? AND uri = ?";
+
+    private static final String FIND_DAYS_SQL =
+            "SELECT app, uri, bucket_start, visitor_bitmap IS NOT NULL AS has_bitmap FROM hit_rollups " +
+            "WHERE granularity = 'DAY' AND bucket_start >= :from AND bucket_start < :to";
+
+    private static final String FIND_BITMAPS_SQL =
+            "SELECT app, uri, bucket_start, visitor_bitmap FROM hit_rollups " +
+            "WHERE granularity = 'DAY' AND bucket_start >= :from AND bucket_start < :to " +
+            "AND visitor_bitmap IS NOT NULL AND uri IN (:uris)";
+
+    // Ограничение на размер списка IN, чтобы не упираться в лимит параметров драйвера
+    private static final int IN_CHUNK = 1_000;
+    private static final int JDBC_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final String insertIpSql;
+
+    public VisitorRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.insertIpSql = SqlDialect.detect(jdbcTemplate) == SqlDialect.POSTGRESQL ? INSERT_IP_POSTGRES : INSERT_IP_H2;
+    }
+
+    // Добавить отсутствующие IP в словарь
+    public void insertIps(List<String> ips) {
+        if (ips.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(insertIpSql, ips, JDBC_BATCH_SIZE, (ps, ip) -> ps.setString(1, ip));
+    }
+
+    // Идентификаторы известных IP; неизвестных в результате нет
+    public Map<String, Integer> findIds(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> all = new ArrayList<>(ips);
+        for (int from = 0; from < all.size(); from += IN_CHUNK) {
+            List<String> chunk = all.subList(from, Math.min(all.size(), from + IN_CHUNK));
+            namedJdbcTemplate.query(FIND_IDS_SQL, new MapSqlParameterSource("ips", chunk),
+                    rs -> {
+                        ids.put(rs.getString("ip"), rs.getInt("id"));
+                    });
+        }
+        return ids;
+    }
+
+    // Заблокировать дневные строки агрегатов и вернуть их битовые карты
+    public Map<RollupKey, VisitorBitmapRow> lockBitmaps(List<RollupKey> keys) {
+        Map<RollupKey, VisitorBitmapRow> rows = new HashMap<>();
+        Map<LocalDateTime, List<Object[]>> byDay = new LinkedHashMap<>();
+        for (RollupKey key : keys) {
+            byDay.computeIfAbsent(key.bucketStart(), k -> new ArrayList<>()).add(new Object[]{key.app(), key.uri()});
+        }
+        byDay.forEach((day, pairs) -> {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("day", Timestamp.valueOf(day))
+                    .addValue("keys", pairs);
+            namedJdbcTemplate.query(LOCK_BITMAPS_SQL, params, rs -> {
+                RollupKey key = new RollupKey(Granularity.DAY, day, rs.getString("app"), rs.getString("uri"));
+                rows.put(key, new VisitorBitmapRow(key, rs.getLong("hits"), rs.getBytes("visitor_bitmap")));
+            });
+        });
+        return rows;
+    }
+
+    public void updateBitmaps(Map<RollupKey, byte[]> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<RollupKey, byte[]>> entries = bitmaps.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(RollupKey.ORDER))
+                .toList();
+        jdbcTemplate.batchUpdate(UPDATE_BITMAP_SQL, entries, JDBC_BATCH_SIZE, (ps, entry) -> {
+            ps.setBytes(1, entry.getValue());
+            ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().bucketStart()));
+            ps.setString(3, entry.getKey().app());
+            ps.setString(4, entry.getKey().uri());
+        });
+    }
+
+    // Ключи дневных строк в [from, to) и признак наличия битовой карты, без самих карт
+    public Map<RollupKey, Boolean> findDays(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        Map<RollupKey, Boolean> days = new LinkedHashMap<>();
+        if (uris != null && uris.isEmpty()) {
+            return days;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = FIND_DAYS_SQL;
+        if (uris != null) {
+            sql += " AND " + SqlFilters.in("uri", "uris", uris, params);
+        }
+        namedJdbcTemplate.query(sql, params, rs -> {
+            RollupKey key = new RollupKey(Granularity.DAY, rs.getTimestamp("bucket_start").toLocalDateTime(),
+                    rs.getString("app"), rs.getString("uri"));
+            days.put(key, rs.getBoolean("has_bitmap"));
+        });
+        return days;
+    }
+
+    // Битовые карты дневных строк в [from, to) для перечисленных URI
+    public void forEachBitmap(LocalDateTime from, LocalDateTime to, Collection<String> uris,
+                              Consumer<VisitorBitmapRow> consumer) {
+        List<String> all = new ArrayList<>(uris);
+        for (int start = 0; start < all.size(); start += IN_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("from", Timestamp.valueOf(from))
+                    .addValue("to", Timestamp.valueOf(to))
+                    .addValue("uris", all.subList(start, Math.min(all.size(), start + IN_CHUNK)));
+            namedJdbcTemplate.query(FIND_BITMAPS_SQL, params, rs -> {
+                RollupKey key = new RollupKey(Granularity.DAY, rs.getTimestamp("bucket_start").toLocalDateTime(),
+                        rs.getString("app"), rs.getString("uri"));
+                consumer.accept(new VisitorBitmapRow(key, 0, rs.getBytes("visitor_bitmap")));
+            });
+        }
+    }
+}
@@ -1,7 +1,74 @@
+-- Словари приложений и uri: в hits хранятся только их ключи
+CREATE TABLE IF NOT EXISTS hit_apps (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  name VARCHAR(255) NOT NULL UNIQUE
+);
+
+-- event_id - id события для uri вида /events/{id}
+CREATE TABLE IF NOT EXISTS hit_uris (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  uri VARCHAR(512) NOT NULL UNIQUE,
+  event_id BIGINT
+);
+
+CREATE INDEX IF NOT EXISTS idx_hit_uris_event_id ON hit_uris (event_id);
+
+-- Хиты в компактном виде: ip - 4 или 16 байт адреса, ts - секунды эпохи UTC,
+-- hit_id - идентификатор хита от клиента для отсева повторов (без индекса).
+-- Таблица старого формата переводится в этот при старте (HitTableMigrator),
+-- в PostgreSQL затем заменяется секционированной по ts таблицей (HitPartitionManager)
 CREATE TABLE IF NOT EXISTS hits (
   id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  app_id INTEGER NOT NULL,
+  uri_id INTEGER NOT NULL,
+  ip BYTEA NOT NULL,
+  ts BIGINT NOT NULL,
+  hit_id VARCHAR(64)
+);
+
+-- В таблице старого формата колонки ts нет; она появится там пустой до переноса
+ALTER TABLE hits ADD COLUMN IF NOT EXISTS ts BIGINT;
+
+ALTER TABLE hits ADD COLUMN IF NOT EXISTS hit_id VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS idx_hits_ts ON hits (ts);
+
+-- Агрегаты хитов по минутам, часам и дням, обновляются при записи хитов
+CREATE TABLE IF NOT EXISTS hit_rollups (
+  granularity VARCHAR(8) NOT NULL,
+  bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
   app VARCHAR(255) NOT NULL,
   uri VARCHAR(512) NOT NULL,
-  ip VARCHAR(64) NOT NULL,
-  timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
-);
\ No newline at end of file
+  hits BIGINT NOT NULL,
+  ip_sketch BYTEA,
+  visitor_bitmap BYTEA,
+  PRIMARY KEY (granularity, bucket_start, app, uri)
+);
+
+-- HyperLogLog-скетч уникальных IP (только для HOUR и DAY)
+ALTER TABLE hit_rollups ADD COLUMN IF NOT EXISTS ip_sketch BYTEA;
+
+-- Битовая карта идентификаторов посетителей (только для DAY)
+ALTER TABLE hit_rollups ADD COLUMN IF NOT EXISTS visitor_bitmap BYTEA;
+
+-- Словарь IP -> плотный идентификатор для битовых карт
+CREATE TABLE IF NOT EXISTS visitor_ips (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  ip VARCHAR(64) NOT NULL UNIQUE
+);
+
+-- Дни сырых хитов приложения, убранные из hits задачей хранения (HitCompactor).
+-- archived - хиты лежат в файле архива с этим id, иначе удалены; day_start - секунды эпохи UTC
+CREATE TABLE IF NOT EXISTS hit_archive (
+  id BIGINT PRIMARY KEY,
+  app_id INTEGER NOT NULL,
+  day_start BIGINT NOT NULL,
+  hits BIGINT NOT NULL,
+  archived BOOLEAN NOT NULL
+);
+
+-- Отметка времени для оценки отставания реплик чтения (ReplicaLagMonitor); beat_at - мс эпохи
+CREATE TABLE IF NOT EXISTS stats_heartbeat (
+  id INTEGER PRIMARY KEY,
+  beat_at BIGINT NOT NULL
+);
@@ -0,0 +1,198 @@
+package ru.practicum.explorewithme.stats.server.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.ClusterProperties;
+import ru.practicum.explorewithme.stats.server.config.ReplicaProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.config.StatsCacheProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.ingest.IngestWatermark;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsResultCacheTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 1, 12, 0);
+    private static final StatsQuery CLOSED = query(NOW.minusDays(2), NOW.minusDays(1));
+    private static final StatsQuery OPEN = query(NOW.minusHours(1), NOW.plusHours(1));
+
+    private final IngestWatermark watermark = new IngestWatermark(new RollupProperties(), new SimpleMeterRegistry());
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_keepsClosedRangeUntilLateHit() {
+        StatsResultCache cache = cache(DataSize.ofMegabytes(1));
+        watermark.observe(List.of(hit(NOW)));
+
+        StatsResultCache.CachedStats first = cache.get(CLOSED, this::load);
+        nanoTime.addAndGet(Duration.ofDays(1).toNanos());
+        StatsResultCache.CachedStats second = cache.get(CLOSED, this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(first.etag(), second.etag());
+        assertEquals(first.etag(), cache.peekEtag(CLOSED));
+
+        watermark.observe(List.of(hit(CLOSED.start())));
+        StatsResultCache.CachedStats third = cache.get(CLOSED, this::load);
+
+        assertEquals(2, loads.get());
+        assertNotEquals(first.etag(), third.etag());
+    }
+
+    @Test
+    void get_expiresOpenRange() {
+        StatsResultCache cache = cache(DataSize.ofMegabytes(1));
+        watermark.observe(List.of(hit(NOW)));
+
+        StatsResultCache.CachedStats first = cache.get(OPEN, this::load);
+        assertEquals(first.etag(), cache.peekEtag(OPEN));
+        cache.get(OPEN, this::load);
+        assertEquals(1, loads.get());
+
+        nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+        assertNull(cache.peekEtag(OPEN));
+        StatsResultCache.CachedStats second = cache.get(OPEN, this::load);
+
+        assertEquals(2, loads.get());
+        // Строки те же, поэтому и ETag тот же
+        assertEquals(first.etag(), second.etag());
+    }
+
+    @Test
+    void peekEtag_noClosedRangesBeforeFirstHit() {
+        StatsResultCache cache = cache(DataSize.ofMegabytes(1));
+
+        assertNull(cache.peekEtag(CLOSED));
+    }
+
+    // Пока транзакция с пачкой не завершилась, её хиты могут попасть в диапазон, закрытый по новому знаку
+    @Test
+    void peekEtag_waitsForInFlightBatch() {
+        StatsResultCache cache = cache(DataSize.ofMegabytes(1));
+        watermark.observe(List.of(hit(NOW.minusDays(3))));
+
+        TransactionSynchronizationManager.initSynchronization();
+        watermark.observe(List.of(hit(NOW)));
+        assertNull(cache.peekEtag(CLOSED));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertNotNull(cache.peekEtag(CLOSED));
+    }
+
+    @Test
+    void get_evictsLeastRecentlyUsedOverBudget() {
+        StatsResultCache cache = cache(DataSize.ofBytes(1000));
+        watermark.observe(List.of(hit(NOW)));
+        StatsQuery other = query(NOW.minusDays(3), NOW.minusDays(2));
+        StatsQuery third = query(NOW.minusDays(4), NOW.minusDays(3));
+
+        cache.get(CLOSED, this::load);
+        cache.get(other, this::load);
+        cache.get(CLOSED, this::load);
+        cache.get(third, this::load);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.weight() <= 1000);
+        cache.get(CLOSED, this::load);
+        assertEquals(3, loads.get());
+        cache.get(other, this::load);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void get_disabledAlwaysLoads() {
+        StatsCacheProperties properties = new StatsCacheProperties();
+        properties.setEnabled(false);
+        StatsResultCache cache = new StatsResultCache(properties, new ClusterProperties(), new ReplicaProperties(),
+                watermark, new SimpleMeterRegistry(), nanoTime::get);
+        watermark.observe(List.of(hit(NOW)));
+
+        assertNull(cache.get(CLOSED, this::load).etag());
+        cache.get(CLOSED, this::load);
+
+        assertEquals(2, loads.get());
+        assertNull(cache.peekEtag(CLOSED));
+    }
+
+    // В кластере местный водяной знак не видит хитов других узлов
+    @Test
+    void peekEtag_clusterTreatsRangesAsOpen() {
+        ClusterProperties cluster = new ClusterProperties();
+        cluster.setEnabled(true);
+        StatsResultCache cache = new StatsResultCache(new StatsCacheProperties(), cluster, new ReplicaProperties(),
+                watermark, new SimpleMeterRegistry(), nanoTime::get);
+        watermark.observe(List.of(hit(NOW)));
+
+        cache.get(CLOSED, this::load);
+        nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+
+        assertNull(cache.peekEtag(CLOSED));
+        cache.get(CLOSED, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    // С репликами диапазон закрыт, только если отстоит от водяного знака (NOW минус 5 минут
+    // допустимого опоздания) не меньше чем на max-lag
+    @Test
+    void peekEtag_replicasDelayClosedRanges() {
+        ReplicaProperties replicas = new ReplicaProperties();
+        replicas.setEnabled(true);
+        replicas.setMaxLag(Duration.ofSeconds(5));
+        StatsResultCache cache = new StatsResultCache(new StatsCacheProperties(), new ClusterProperties(), replicas,
+                watermark, new SimpleMeterRegistry(), nanoTime::get);
+        watermark.observe(List.of(hit(NOW)));
+
+        assertNull(cache.peekEtag(query(NOW.minusHours(1), NOW.minusMinutes(5).minusSeconds(2))));
+        assertNotNull(cache.peekEtag(query(NOW.minusHours(1), NOW.minusMinutes(5).minusSeconds(10))));
+    }
+
+    private StatsResultCache cache(DataSize budget) {
+        StatsCacheProperties properties = new StatsCacheProperties();
+        properties.setMemoryBudget(budget);
+        return new StatsResultCache(properties, new ClusterProperties(), new ReplicaProperties(), watermark,
+                new SimpleMeterRegistry(), nanoTime::get);
+    }
+
+    private StatsResult load() {
+        loads.incrementAndGet();
+        return new StatsResult(QueryPlan.RAW_SCAN, List.of(new ViewStats("app", "/events/1", 3L)));
+    }
+
+    private static StatsQuery query(LocalDateTime start, LocalDateTime end) {
+        return new StatsQuery(start, end, null, false, UniqueMode.EXACT);
+    }
+
+    private static Hit hit(LocalDateTime timestamp) {
+        return new Hit(null, "app", "/events/1", "10.0.0.1", timestamp);
+    }
+}
@@ -0,0 +1,198 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.ClusterProperties;
+import ru.practicum.explorewithme.stats.server.exception.ShardUnavailableException;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesGroup;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesQuery;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterStatServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2026, 3, 2, 0, 0);
+    private static final ClusterNode REMOTE = new ClusterNode("node2", "http://stats-2:9090", false);
+
+    @Mock
+    private StatService localStatService;
+
+    @Mock
+    private ShardClient client;
+
+    private ClusterStatService service;
+    private HashRing ring;
+
+    @BeforeEach
+    void setUp() {
+        ClusterProperties properties = new ClusterProperties();
+        properties.setEnabled(true);
+        properties.setNodeId("node1");
+        properties.setNodes(List.of(node("node1", "http://stats-1:9090"), node("node2", "http://stats-2:9090")));
+        service = new ClusterStatService(localStatService, client, properties);
+        ring = new HashRing(List.of(new ClusterNode("node1", "http://stats-1:9090", true), REMOTE), 128);
+    }
+
+    @Test
+    void saveHits_routesHitsToOwners() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            hits.add(new EndpointHit("app", "/events/" + i, "10.0.0.1", START));
+        }
+        List<EndpointHit> local = hits.stream().filter(hit -> ring.owner(hit.getApp(), hit.getUri()).local()).toList();
+        List<EndpointHit> remote = hits.stream().filter(hit -> !local.contains(hit)).toList();
+        when(localStatService.saveHits(local)).thenReturn(local.size());
+        when(client.saveHits(REMOTE, remote)).thenReturn(remote.size());
+
+        assertEquals(20, service.saveHits(hits));
+    }
+
+    // Каждый узел отдаёт offset + limit лучших строк, страница собирается из общего порядка
+    @Test
+    void findStats_mergesShardsAndPages() {
+        StatsQuery query = new StatsQuery(START, END, null, false, UniqueMode.EXACT, 2, 1);
+        when(localStatService.findStats(argThat(q -> q.limit() == 3 && q.offset() == 0)))
+                .thenReturn(new StatsResult(QueryPlan.ROLLUP, List.of(
+                        new ViewStats("app", "/events/1", 10L),
+                        new ViewStats("app", "/events/3", 4L))));
+        when(client.findStats(eq(REMOTE), argThat(q -> q.limit() == 3 && q.offset() == 0)))
+                .thenReturn(List.of(
+                        new ViewStats("app", "/events/2", 7L),
+                        new ViewStats("app", "/events/4", 1L)));
+
+        StatsResult result = service.findStats(query);
+
+        assertEquals(QueryPlan.CLUSTER, result.plan());
+        assertEquals(List.of(new ViewStats("app", "/events/2", 7L), new ViewStats("app", "/events/3", 4L)),
+                result.stats());
+    }
+
+    @Test
+    void findStats_rollsUpAfterMerge() {
+        StatsQuery query = new StatsQuery(START, END, List.of("/events/*"), false, UniqueMode.EXACT, null, 0, true);
+        when(localStatService.findStats(argThat(q -> !q.rollUp())))
+                .thenReturn(new StatsResult(QueryPlan.ROLLUP, List.of(new ViewStats("app", "/events/1", 10L))));
+        when(client.findStats(eq(REMOTE), argThat(q -> !q.rollUp())))
+                .thenReturn(List.of(new ViewStats("app", "/events/2", 5L)));
+
+        StatsResult result = service.findStats(query);
+
+        assertEquals(List.of(new ViewStats("app", "/events/*", 15L)), result.stats());
+    }
+
+    @Test
+    void findStats_failsWhenShardUnavailable() {
+        StatsQuery query = new StatsQuery(START, END, null, false, UniqueMode.EXACT);
+        when(localStatService.findStats(any())).thenReturn(new StatsResult(QueryPlan.ROLLUP, List.of()));
+        when(client.findStats(eq(REMOTE), any()))
+                .thenThrow(new ShardUnavailableException("node2", "Узел кластера node2 недоступен", null));
+
+        assertThrows(ShardUnavailableException.class, () -> service.findStats(query));
+    }
+
+    // Ошибка этого узла прерывает обращение к другому, не дожидаясь его ответа
+    @Test
+    void findStats_cancelsShardsWhenLocalFails() throws InterruptedException {
+        StatsQuery query = new StatsQuery(START, END, null, false, UniqueMode.EXACT);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(client.findStats(eq(REMOTE), any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return List.of();
+        });
+        when(localStatService.findStats(any())).thenAnswer(invocation -> {
+            started.await();
+            throw new IllegalStateException("БД недоступна");
+        });
+
+        assertThrows(IllegalStateException.class, () -> service.findStats(query));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    // k лучших uri каждого приложения выбираются из объединения ответов узлов
+    @Test
+    void findTop_mergesShardsPerApp() {
+        when(localStatService.findTop(null, 60, 2)).thenReturn(List.of(
+                new ViewStats("app", "/events/1", 10L),
+                new ViewStats("app", "/events/3", 4L),
+                new ViewStats("other", "/events/9", 2L)));
+        when(client.findTop(REMOTE, null, 60, 2)).thenReturn(List.of(
+                new ViewStats("app", "/events/2", 7L),
+                new ViewStats("app", "/events/4", 1L)));
+
+        assertEquals(List.of(
+                new ViewStats("app", "/events/1", 10L),
+                new ViewStats("app", "/events/2", 7L),
+                new ViewStats("other", "/events/9", 2L)), service.findTop(null, 60, 2));
+    }
+
+    @Test
+    void findTimeSeries_sumsPointsOfSameGroup() {
+        TimeSeriesQuery query = new TimeSeriesQuery(START, END, Granularity.HOUR, null, TimeSeriesGroup.APP, 1,
+                false, UniqueMode.EXACT);
+        when(localStatService.findTimeSeries(query)).thenReturn(new TimeSeriesResult(QueryPlan.ROLLUP,
+                List.of(new TimeSeriesPoint(START, "app", null, 3L))));
+        when(client.findTimeSeries(REMOTE, query))
+                .thenReturn(List.of(new TimeSeriesPoint(START, "app", null, 4L)));
+
+        TimeSeriesResult result = service.findTimeSeries(query);
+
+        assertEquals(List.of(new TimeSeriesPoint(START, "app", null, 7L)), result.points());
+    }
+
+    @Test
+    void findTimeSeries_rejectsUniqueAcrossUris() {
+        TimeSeriesQuery query = new TimeSeriesQuery(START, END, Granularity.HOUR, null, TimeSeriesGroup.APP, 1,
+                true, UniqueMode.EXACT);
+
+        assertThrows(IllegalArgumentException.class, () -> service.findTimeSeries(query));
+    }
+
+    @Test
+    void constructor_rejectsUnknownNodeId() {
+        ClusterProperties properties = new ClusterProperties();
+        properties.setNodeId("node3");
+        properties.setNodes(List.of(node("node1", "http://stats-1:9090")));
+
+        assertThrows(IllegalStateException.class, () -> new ClusterStatService(localStatService, client, properties));
+    }
+
+    private static ClusterProperties.Node node(String id, String url) {
+        ClusterProperties.Node node = new ClusterProperties.Node();
+        node.setId(id);
+        node.setUrl(url);
+        return node;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.explorewithme.stats.server.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final int KEYS = 20_000;
+
+    @Test
+    void owner_sameForSameKey() {
+        HashRing ring = new HashRing(nodes(3), 128);
+        HashRing other = new HashRing(nodes(3), 128);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ring.owner("app", "/events/" + i), other.owner("app", "/events/" + i));
+        }
+    }
+
+    @Test
+    void owner_spreadsKeysEvenly() {
+        HashRing ring = new HashRing(nodes(4), 128);
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("ewm-main-service", "/events/" + i).id(), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 4) < KEYS / 4 * 0.25,
+                "Доля узла: " + count));
+    }
+
+    // Новый узел забирает около 1/N пар, остальные пары остаются на прежних узлах
+    @Test
+    void owner_movesOnlyShareOfKeysToNewNode() {
+        HashRing before = new HashRing(nodes(3), 128);
+        HashRing after = new HashRing(nodes(4), 128);
+        int moved = 0;
+
+        for (int i = 0; i < KEYS; i++) {
+            ClusterNode owner = after.owner("app", "/events/" + i);
+            if (!owner.equals(before.owner("app", "/events/" + i))) {
+                assertEquals("node4", owner.id());
+                moved++;
+            }
+        }
+
+        assertTrue(moved > KEYS / 4 * 0.75 && moved < KEYS / 4 * 1.25, "Переехало: " + moved);
+    }
+
+    @Test
+    void constructor_rejectsEmptyCluster() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 128));
+    }
+
+    private static List<ClusterNode> nodes(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new ClusterNode("node" + i, "http://stats-" + i + ":9090", i == 1))
+                .toList();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.practicum.explorewithme.stats.server.hot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.HotWindowProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotCounterWindowTest {
+
+    // Сервер стартовал в 12:00:30, окно покрывает хиты начиная с 12:01
+    private final Clock clock = Clock.fixed(Instant.parse("2025-12-27T12:00:30Z"), ZoneOffset.UTC);
+
+    @Test
+    void findStats_sumsMinutesInsideWindow() {
+        HotCounterWindow window = window(false, DataSize.ofMegabytes(1));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 1, 10)));
+        window.add(hit("/events/1", "10.0.0.2", at(12, 2, 5)));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 2, 40)));
+        window.add(hit("/events/2", "10.0.0.1", at(12, 2, 41)));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 5, 0)));
+
+        Optional<List<ViewStats>> stats = window.findStats(at(12, 1, 0), at(12, 3, 59), null);
+
+        assertTrue(stats.isPresent());
+        assertEquals(2, stats.get().size());
+        assertEquals("/events/1", stats.get().get(0).getUri());
+        assertEquals(3L, stats.get().get(0).getHits());
+        assertEquals(1L, stats.get().get(1).getHits());
+    }
+
+    @Test
+    void findStats_offHeap() {
+        HotCounterWindow window = window(true, DataSize.ofMegabytes(1));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 1, 10)));
+        window.add(hit("/events/1", "10.0.0.2", at(12, 1, 20)));
+
+        Optional<List<ViewStats>> stats = window.findStats(at(12, 1, 0), at(12, 1, 59), List.of("/events/1"));
+
+        assertTrue(stats.isPresent());
+        assertEquals(2L, stats.get().get(0).getHits());
+    }
+
+    @Test
+    void findStats_endAfterLastHitCoversPartialMinute() {
+        HotCounterWindow window = window(false, DataSize.ofMegabytes(1));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 1, 10)));
+
+        assertTrue(window.findStats(at(12, 1, 0), at(12, 1, 30), List.of("/events/1")).isPresent());
+        assertTrue(window.findStats(at(12, 1, 0), at(12, 1, 5), List.of("/events/1")).isEmpty());
+    }
+
+    @Test
+    void findStats_notCovered() {
+        HotCounterWindow window = window(false, DataSize.ofMegabytes(1));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 1, 10)));
+
+        // Начало до старта сервера и начало не на границе минуты
+        assertTrue(window.findStats(at(12, 0, 0), at(12, 1, 59), null).isEmpty());
+        assertTrue(window.findStats(at(12, 1, 30), at(12, 1, 59), null).isEmpty());
+    }
+
+    @Test
+    void findStats_saturatedWindowSkipsUnknownUris() {
+        // Памяти ровно на одну пару (app, uri)
+        HotCounterWindow window = window(false, DataSize.ofBytes(Duration.ofHours(24).toMinutes() * Long.BYTES));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 1, 10)));
+        window.add(hit("/events/2", "10.0.0.1", at(12, 1, 20)));
+
+        assertTrue(window.findStats(at(12, 1, 0), at(12, 1, 59), List.of("/events/1")).isPresent());
+        assertTrue(window.findStats(at(12, 1, 0), at(12, 1, 59), List.of("/events/2")).isEmpty());
+        assertTrue(window.findStats(at(12, 1, 0), at(12, 1, 59), null).isEmpty());
+    }
+
+    @Test
+    void findStats_saturatedWindowSkipsUriWithUntrackedApp() {
+        HotCounterWindow window = window(false, DataSize.ofBytes(Duration.ofHours(24).toMinutes() * Long.BYTES));
+        window.add(hit("/events/1", "10.0.0.1", at(12, 1, 10)));
+        window.add(Hit.builder().app("ewm-admin").uri("/events/1").ip("10.0.0.2").timestamp(at(12, 1, 20)).build());
+
+        assertTrue(window.findStats(at(12, 1, 0), at(12, 1, 59), List.of("/events/1")).isEmpty());
+    }
+
+    private HotCounterWindow window(boolean offHeap, DataSize budget) {
+        HotWindowProperties properties = new HotWindowProperties();
+        properties.setOffHeap(offHeap);
+        properties.setMemoryBudget(budget);
+        return new HotCounterWindow(properties, new SimpleMeterRegistry(), clock);
+    }
+
+    private Hit hit(String uri, String ip, LocalDateTime timestamp) {
+        return Hit.builder().app("ewm-main-service").uri(uri).ip(ip).timestamp(timestamp).build();
+    }
+
+    private LocalDateTime at(int hour, int minute, int second) {
+        return LocalDateTime.of(2025, 12, 27, hour, minute, second);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitBatchReaderTest {
+
+    private final HitBatchReader reader = new HitBatchReader(HitWireFormat.JSON.createMapper(), new IngestProperties());
+
+    @Test
+    void readsJsonByDefault() throws IOException {
+        byte[] body = ("[{\"app\":\"app\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\",\"timestamp\":\"2025-12-27 12:00:00\"}]")
+                .getBytes();
+
+        List<EndpointHit> hits = reader.read(new ByteArrayInputStream(body), null, null);
+
+        assertEquals(List.of(hit(0)), hits);
+    }
+
+    @Test
+    void readsBinaryFormatsByContentType() throws IOException {
+        List<EndpointHit> batch = batch();
+        for (HitWireFormat format : List.of(HitWireFormat.SMILE, HitWireFormat.CBOR)) {
+            byte[] body = format.createMapper().writeValueAsBytes(batch);
+
+            List<EndpointHit> hits = reader.read(new ByteArrayInputStream(body), null, format.getMediaType());
+
+            assertEquals(batch, hits, format.name());
+        }
+    }
+
+    @Test
+    void binaryBatchIsSmallerThanJson() throws IOException {
+        List<EndpointHit> batch = batch();
+        ObjectMapper json = HitWireFormat.JSON.createMapper();
+        int jsonSize = json.writeValueAsBytes(batch).length;
+
+        assertTrue(HitWireFormat.SMILE.createMapper().writeValueAsBytes(batch).length < jsonSize / 2);
+        assertTrue(HitWireFormat.CBOR.createMapper().writeValueAsBytes(batch).length < jsonSize / 2);
+    }
+
+    // Хит, который не запишется в БД (пустое поле, uri длиннее колонки), не принимается
+    @Test
+    void rejectsUnwritableHit() {
+        byte[] missing = "[{\"app\":\"app\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\"}]".getBytes();
+        byte[] longUri = ("[{\"app\":\"app\",\"uri\":\"/" + "a".repeat(EndpointHit.MAX_URI_LENGTH)
+                + "\",\"ip\":\"10.0.0.1\",\"timestamp\":\"2025-12-27 12:00:00\"}]").getBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> reader.read(new ByteArrayInputStream(missing), null, null));
+        assertThrows(IllegalArgumentException.class, () -> reader.read(new ByteArrayInputStream(longUri), null, null));
+    }
+
+    @Test
+    void binaryTimestampIsEpochSecond() throws IOException {
+        byte[] body = HitWireFormat.SMILE.createMapper().writeValueAsBytes(hit(0));
+
+        long timestamp = HitWireFormat.SMILE.createMapper().readTree(body).get("timestamp").asLong();
+
+        assertEquals(1766836800L, timestamp);
+    }
+
+    private static List<EndpointHit> batch() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            hits.add(hit(i % 5));
+        }
+        return hits;
+    }
+
+    private static EndpointHit hit(int minute) {
+        return new EndpointHit("app", "/events/1", "10.0.0.1", LocalDateTime.of(2025, 12, 27, 12, minute));
+    }
+}
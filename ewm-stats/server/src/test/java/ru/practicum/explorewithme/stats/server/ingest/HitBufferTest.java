@@ -0,0 +1,141 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.config.IngestMode;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.exception.HitBufferFullException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitBufferTest {
+
+    private final EndpointHit hit = new EndpointHit("app", "/events/1", "ip", LocalDateTime.of(2025, 12, 27, 12, 0));
+
+    @Test
+    void stop_drainsPendingHits() {
+        HitWriter writer = mock(HitWriter.class);
+        HitBuffer buffer = buffer(writer, properties(100));
+        buffer.start();
+
+        buffer.offer(hit);
+        buffer.offer(hit);
+        buffer.stop();
+
+        verify(writer, atLeastOnce()).write(anyList());
+        assertEquals(0, buffer.depth());
+    }
+
+    // Пачка больше ёмкости, а интервал - час, поэтому до остановки буфер не выгружается
+    @Test
+    void offer_rejectsWhenFull() {
+        HitWriter writer = mock(HitWriter.class);
+        IngestProperties properties = properties(3);
+        properties.getBuffer().setRetryAfter(Duration.ofSeconds(5));
+        HitBuffer buffer = buffer(writer, properties);
+        buffer.start();
+
+        try {
+            buffer.offer(hit);
+            buffer.offer(hit);
+            buffer.offer(hit);
+
+            HitBufferFullException e = assertThrows(HitBufferFullException.class, () -> buffer.offer(hit));
+
+            assertEquals(Duration.ofSeconds(5), e.getRetryAfter());
+            assertEquals(3, buffer.depth());
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    // Пачка не теряется при ошибке БД: она повторяется и до записи занимает место в разделе
+    @Test
+    void flush_retriesFailedBatch() {
+        HitWriter writer = mock(HitWriter.class);
+        when(writer.write(anyList())).thenThrow(new IllegalStateException("БД недоступна")).thenReturn(1);
+        IngestProperties properties = properties(100);
+        properties.getBuffer().setFlushSize(1);
+        properties.getBuffer().setRetryBackoff(Duration.ofMillis(10));
+        HitBuffer buffer = buffer(writer, properties);
+        buffer.start();
+
+        try {
+            buffer.offer(hit);
+
+            verify(writer, timeout(5_000).times(2)).write(List.of(hit));
+        } finally {
+            buffer.stop();
+        }
+        assertEquals(0, buffer.depth());
+    }
+
+    // Хит, который не записывается сам по себе, отбрасывается, остальные хиты пачки записываются
+    @Test
+    void flush_dropsHitThatFailsAlone() {
+        EndpointHit bad = new EndpointHit("app", "/events/1", "ip", null);
+        HitWriter writer = mock(HitWriter.class);
+        when(writer.write(anyList())).thenAnswer(invocation -> {
+            List<EndpointHit> hits = invocation.getArgument(0);
+            if (hits.contains(bad)) {
+                throw new DataIntegrityViolationException("NOT NULL");
+            }
+            return hits.size();
+        });
+        IngestProperties properties = properties(100);
+        properties.getBuffer().setFlushSize(2);
+        HitBuffer buffer = buffer(writer, properties);
+        buffer.start();
+
+        try {
+            buffer.offer(bad);
+            buffer.offer(hit);
+
+            verify(writer, timeout(5_000)).write(List.of(hit));
+        } finally {
+            buffer.stop();
+        }
+        assertEquals(0, buffer.depth());
+    }
+
+    @Test
+    void offer_rejectsWhenStopped() {
+        HitBuffer buffer = buffer(mock(HitWriter.class), properties(100));
+
+        HitBufferFullException e = assertThrows(HitBufferFullException.class, () -> buffer.offer(hit));
+
+        assertEquals(Duration.ofSeconds(1), e.getRetryAfter());
+    }
+
+    // Журнал выключен по умолчанию
+    private HitBuffer buffer(HitWriter writer, IngestProperties properties) {
+        return new HitBuffer(writer, wal(writer), properties, new RollupProperties(), new SimpleMeterRegistry());
+    }
+
+    private HitWal wal(HitWriter writer) {
+        return new HitWal(writer, properties(100), new RollupProperties(), new SimpleMeterRegistry());
+    }
+
+    private IngestProperties properties(int capacity) {
+        IngestProperties properties = new IngestProperties();
+        properties.setMode(IngestMode.ASYNC);
+        properties.getBuffer().setPartitions(1);
+        properties.getBuffer().setCapacity(capacity);
+        properties.getBuffer().setFlushInterval(Duration.ofHours(1));
+        return properties;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.repository.HitBatchRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitDeduplicatorTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2025, 12, 27, 12, 0);
+
+    private final HitBatchRepository repository = mock(HitBatchRepository.class);
+
+    @Test
+    void filter_dropsRepeatsWithinBatch() {
+        HitDeduplicator deduplicator = deduplicator(true);
+
+        List<Hit> accepted = deduplicator.filter(List.of(hit("a"), hit("a"), hit(null), hit(null), hit("b")));
+
+        assertEquals(4, accepted.size());
+        verify(repository, never()).findHitIds(anyList());
+    }
+
+    // В БД проверяются только хиты, на которых сработал фильтр (a и b), c принимается сразу
+    @Test
+    void filter_checksRepositoryOnFilterHit() {
+        HitDeduplicator deduplicator = deduplicator(true);
+        deduplicator.filter(List.of(hit("a"), hit("b")));
+        when(repository.findHitIds(anyList())).thenReturn(Set.of("a"));
+
+        List<Hit> accepted = deduplicator.filter(List.of(hit("a"), hit("b"), hit("c")));
+
+        assertEquals(List.of("b", "c"), hitIds(accepted));
+        verify(repository).findHitIds(argThat(hits -> hitIds(hits).equals(List.of("a", "b"))));
+    }
+
+    // Фильтр сработал, но хита в БД нет (например, транзакция первой попытки откатилась)
+    @Test
+    void filter_keepsHitMissingInRepository() {
+        HitDeduplicator deduplicator = deduplicator(true);
+        deduplicator.filter(List.of(hit("a")));
+        when(repository.findHitIds(anyList())).thenReturn(Set.of());
+
+        assertEquals(1, deduplicator.filter(List.of(hit("a"))).size());
+    }
+
+    // Хиты из журнала после перезапуска: фильтр пуст, поэтому проверяется каждый хит с id
+    @Test
+    void filterExact_checksEveryHitWithId() {
+        HitDeduplicator deduplicator = deduplicator(false);
+        when(repository.findHitIds(anyList())).thenReturn(Set.of("a"));
+
+        List<Hit> accepted = deduplicator.filterExact(List.of(hit("a"), hit("b"), hit(null)));
+
+        assertEquals(Arrays.asList("b", null), hitIds(accepted));
+        verify(repository).findHitIds(argThat(hits -> hitIds(hits).equals(List.of("a", "b"))));
+    }
+
+    @Test
+    void filter_disabledPassesEverything() {
+        HitDeduplicator deduplicator = deduplicator(false);
+
+        assertEquals(2, deduplicator.filter(List.of(hit("a"), hit("a"))).size());
+    }
+
+    @Test
+    void bloomFilter_forgetsAfterTwoWindows() {
+        AtomicLong now = new AtomicLong();
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.01, Duration.ofNanos(100), now::get);
+
+        assertFalse(filter.put("a"));
+        assertTrue(filter.put("a"));
+
+        now.set(150);
+        filter.put("b");
+        assertTrue(filter.put("a"));
+
+        now.set(400);
+        assertFalse(filter.put("a"));
+    }
+
+    @Test
+    void bloomFilter_falsePositiveRateNearConfigured() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.01, Duration.ofHours(1), System::nanoTime);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("id-" + i);
+        }
+        // Проверка тоже запоминает значение, поэтому проверок немного, чтобы не переполнить фильтр
+        int falsePositives = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (filter.put("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 30, "ложных срабатываний: " + falsePositives);
+    }
+
+    private HitDeduplicator deduplicator(boolean enabled) {
+        IngestProperties properties = new IngestProperties();
+        properties.getDedup().setEnabled(enabled);
+        properties.getDedup().setExpectedIds(1000);
+        return new HitDeduplicator(repository, properties, new SimpleMeterRegistry());
+    }
+
+    private static List<String> hitIds(List<Hit> hits) {
+        return hits.stream().map(Hit::getHitId).toList();
+    }
+
+    private Hit hit(String hitId) {
+        return new Hit(null, "app", "/events/1", "10.0.0.1", TIMESTAMP, hitId);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.server.config.IngestMode;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitWalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unappliedHitsAreReplayedOnStart() {
+        HitWal wal = wal(mock(HitWriter.class), DataSize.ofKilobytes(64));
+        wal.start();
+        List<EndpointHit> hits = List.of(hit(1), hit(2), hit(3));
+        hits.forEach(wal::append);
+        // Сбой: журнал не закрыт, хиты в БД не записаны
+
+        HitWriter writer = mock(HitWriter.class);
+        HitWal restarted = wal(writer, DataSize.ofKilobytes(64));
+        restarted.start();
+
+        verify(writer).replay(hits);
+        restarted.stop();
+    }
+
+    // Негодный хит пропускается, а не останавливает старт сервера
+    @Test
+    void replaySkipsUnwritableHit() throws IOException {
+        HitWal wal = wal(mock(HitWriter.class), DataSize.ofKilobytes(64));
+        wal.start();
+        EndpointHit bad = new EndpointHit("app", "/" + "a".repeat(EndpointHit.MAX_URI_LENGTH), "10.0.0.1",
+                LocalDateTime.of(2025, 12, 27, 12, 0));
+        List.of(hit(1), bad).forEach(wal::append);
+
+        HitWriter writer = mock(HitWriter.class);
+        when(writer.replay(argThat(hits -> hits.contains(bad)))).thenThrow(new DataIntegrityViolationException("длина"));
+        HitWal restarted = wal(writer, DataSize.ofKilobytes(64));
+        restarted.start();
+
+        verify(writer).replay(List.of(hit(1)));
+        restarted.stop();
+        assertEquals(0, walFiles());
+    }
+
+    @Test
+    void appliedFilesAreDeleted() throws IOException {
+        HitWal wal = wal(mock(HitWriter.class), DataSize.ofBytes(256));
+        wal.start();
+        List<WalSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            segments.add(wal.append(hit(i)));
+        }
+        assertTrue(walFiles() > 1);
+
+        wal.applied(segments);
+        wal.stop();
+
+        assertEquals(0, walFiles());
+        HitWriter writer = mock(HitWriter.class);
+        wal(writer, DataSize.ofBytes(256)).start();
+        verify(writer, never()).replay(anyList());
+    }
+
+    @Test
+    void tornRecordIsIgnored() throws IOException {
+        HitWal wal = wal(mock(HitWriter.class), DataSize.ofKilobytes(64));
+        wal.start();
+        wal.append(hit(1));
+        wal.append(hit(2));
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        byte[] data = Files.readAllBytes(file);
+        // Портим последний байт второй записи
+        int end = WalSegment.encode(hit(1)).length + WalSegment.encode(hit(2)).length;
+        data[end - 1] ^= 0x7F;
+        Files.write(file, data);
+
+        assertEquals(List.of(hit(1)), WalSegment.read(file));
+    }
+
+    private long walFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private HitWal wal(HitWriter writer, DataSize segmentSize) {
+        return new HitWal(writer, properties(segmentSize), new RollupProperties(), new SimpleMeterRegistry());
+    }
+
+    private IngestProperties properties(DataSize segmentSize) {
+        IngestProperties properties = new IngestProperties();
+        properties.setMode(IngestMode.ASYNC);
+        properties.getWal().setEnabled(true);
+        properties.getWal().setDirectory(directory.toString());
+        properties.getWal().setSegmentSize(segmentSize);
+        return properties;
+    }
+
+    private static EndpointHit hit(int second) {
+        return new EndpointHit("app", "/events/" + second, "10.0.0.1", LocalDateTime.of(2025, 12, 27, 12, 0, second));
+    }
+}
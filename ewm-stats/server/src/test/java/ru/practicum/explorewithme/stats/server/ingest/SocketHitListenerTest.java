@@ -0,0 +1,149 @@
+package ru.practicum.explorewithme.stats.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.HitWireFormat;
+import ru.practicum.explorewithme.stats.server.config.IngestMode;
+import ru.practicum.explorewithme.stats.server.config.IngestProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.service.StatService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class SocketHitListenerTest {
+
+    private final EndpointHit hit = new EndpointHit("app", "/events/1", "10.0.0.1", LocalDateTime.of(2025, 12, 27, 12, 0));
+
+    private StatService statService;
+    private SimpleMeterRegistry registry;
+    private SocketHitListener listener;
+
+    @BeforeEach
+    void setUp() {
+        statService = mock(StatService.class);
+        start(properties -> {
+        });
+    }
+
+    private void start(Consumer<IngestProperties> customizer) {
+        if (listener != null) {
+            listener.stop();
+        }
+        IngestProperties properties = new IngestProperties();
+        properties.getSocket().setEnabled(true);
+        properties.getSocket().setBindAddress("127.0.0.1");
+        properties.getSocket().setUdpPort(0);
+        properties.getSocket().setTcpPort(0);
+        properties.setMode(IngestMode.SYNC);
+        customizer.accept(properties);
+        registry = new SimpleMeterRegistry();
+        listener = new SocketHitListener(statService,
+                new HitBatchReader(HitWireFormat.JSON.createMapper(), properties), properties, new RollupProperties(),
+                registry);
+        listener.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    void udpDatagramIsSaved() throws IOException {
+        byte[] frame = HitWireFormat.SMILE.createMapper().writeValueAsBytes(hit);
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(frame, frame.length, listener.udpAddress()));
+        }
+
+        verify(statService, timeout(5_000)).saveHits(List.of(hit));
+    }
+
+    @Test
+    void tcpFramesAreSplitByLengthAndMalformedCounted() throws IOException {
+        byte[] smile = HitWireFormat.SMILE.createMapper().writeValueAsBytes(List.of(hit, hit));
+        byte[] json = HitWireFormat.JSON.createMapper().writeValueAsBytes(hit);
+        byte[] broken = "{\"app\":".getBytes(StandardCharsets.UTF_8);
+        // Кадры одной записью, чтобы они пришли за один проход селектора
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(frames);
+        for (byte[] frame : List.of(smile, broken, json)) {
+            out.writeInt(frame.length);
+            out.write(frame);
+        }
+        InetSocketAddress address = (InetSocketAddress) listener.tcpAddress();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.getOutputStream().write(frames.toByteArray());
+            socket.getOutputStream().flush();
+
+            ArgumentCaptor<List<EndpointHit>> saved = captor();
+            verify(statService, timeout(5_000).atLeastOnce()).saveHits(saved.capture());
+            assertEquals(3, saved.getAllValues().stream().mapToInt(List::size).sum());
+        }
+        assertEquals(1.0, registry.get("stats.ingest.socket.frames").tag("result", "malformed").counter().count());
+        assertEquals(2.0, registry.get("stats.ingest.socket.frames").tag("result", "accepted").counter().count());
+    }
+
+    @Test
+    void asyncSaveFailureDropsOnlyThatHit() throws IOException {
+        start(properties -> properties.setMode(IngestMode.ASYNC));
+        EndpointHit other = new EndpointHit("app", "/events/2", "10.0.0.1", hit.getTimestamp());
+        doThrow(new IllegalStateException("сбой")).when(statService).saveHit(hit);
+        byte[] frame = HitWireFormat.JSON.createMapper().writeValueAsBytes(List.of(hit, other));
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(frame, frame.length, listener.udpAddress()));
+        }
+
+        verify(statService, timeout(5_000)).saveHit(other);
+        assertEquals(1.0, registry.get("stats.ingest.socket.dropped").counter().count());
+    }
+
+    @Test
+    void tcpConnectionsOverLimitAreClosed() throws IOException {
+        start(properties -> properties.getSocket().setMaxConnections(1));
+        InetSocketAddress address = (InetSocketAddress) listener.tcpAddress();
+        try (Socket first = new Socket(address.getAddress(), address.getPort());
+             Socket second = new Socket(address.getAddress(), address.getPort())) {
+            second.setSoTimeout(5_000);
+            assertEquals(-1, second.getInputStream().read());
+            assertTrue(first.isConnected());
+        }
+        assertEquals(1.0, registry.get("stats.ingest.socket.rejected").counter().count());
+    }
+
+    @Test
+    void idleTcpConnectionIsClosed() throws IOException {
+        start(properties -> properties.getSocket().setIdleTimeout(Duration.ofMillis(100)));
+        InetSocketAddress address = (InetSocketAddress) listener.tcpAddress();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoTimeout(5_000);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<EndpointHit>> captor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.explorewithme.stats.server.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.server.config.MetricsProperties;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsMetricsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void recordWrite_countsHitsPerAppAndCommitSize() {
+        StatsMetrics metrics = metrics(10);
+
+        metrics.recordWrite(List.of("main", "main", "admin"), app -> app);
+        metrics.recordWrite(List.of("main"), app -> app);
+
+        assertEquals(3.0, registry.get("stats.ingest.hits").tag("app", "main").counter().count());
+        assertEquals(1.0, registry.get("stats.ingest.hits").tag("app", "admin").counter().count());
+        assertEquals(2, registry.get("stats.ingest.commit.rows").summary().count());
+        assertEquals(4.0, registry.get("stats.ingest.commit.rows").summary().totalAmount());
+    }
+
+    @Test
+    void recordWrite_limitsAppTags() {
+        StatsMetrics metrics = metrics(2);
+
+        metrics.recordWrite(List.of("a", "b"), app -> app);
+        metrics.recordWrite(List.of("c", "d", "a"), app -> app);
+
+        assertEquals(2.0, registry.get("stats.ingest.hits").tag("app", "a").counter().count());
+        assertEquals(3, registry.get("stats.ingest.hits").counters().size());
+        assertEquals(2.0, registry.get("stats.ingest.hits").tag("app", StatsMetrics.OTHER_APP).counter().count());
+    }
+
+    @Test
+    void recordQuery_tagsByUniqueAndRange() {
+        StatsMetrics metrics = metrics(10);
+        StatsQuery query = new StatsQuery(START, START.plusDays(3), null, true, UniqueMode.EXACT);
+
+        metrics.recordQuery(metrics.startQuery(), query, 42);
+
+        assertEquals(1, registry.get("stats.query.latency").tag("unique", "true").tag("range", "7d").timer().count());
+        assertEquals(42.0, registry.get("stats.query.rows").tag("unique", "true").summary().totalAmount());
+    }
+
+    @Test
+    void range_bucketsByLength() {
+        assertEquals("1h", StatsMetrics.range(query(START.plusMinutes(59))));
+        assertEquals("1d", StatsMetrics.range(query(START.plusDays(1))));
+        assertEquals("31d", StatsMetrics.range(query(START.plusDays(30))));
+        assertEquals("longer", StatsMetrics.range(query(START.plusDays(90))));
+    }
+
+    private StatsMetrics metrics(int maxAppTags) {
+        MetricsProperties properties = new MetricsProperties();
+        properties.setMaxAppTags(maxAppTags);
+        return new StatsMetrics(registry, properties);
+    }
+
+    private static StatsQuery query(LocalDateTime end) {
+        return new StatsQuery(START, end, null, false, UniqueMode.EXACT);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.practicum.explorewithme.stats.server.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionIntervalTest {
+
+    @Test
+    void partition_day() {
+        HitPartition partition = PartitionInterval.DAY.partition(LocalDate.of(2024, 1, 31));
+
+        assertEquals("hits_p20240131", partition.name());
+        assertEquals(LocalDate.of(2024, 1, 31), partition.from());
+        assertEquals(LocalDate.of(2024, 2, 1), partition.to());
+    }
+
+    @Test
+    void partition_month() {
+        HitPartition partition = PartitionInterval.MONTH.partition(LocalDate.of(2024, 12, 15));
+
+        assertEquals("hits_p202412", partition.name());
+        assertEquals(LocalDate.of(2024, 12, 1), partition.from());
+        assertEquals(LocalDate.of(2025, 1, 1), partition.to());
+    }
+
+    @Test
+    void parse_bothFormats() {
+        assertEquals(Optional.of(PartitionInterval.DAY.partition(LocalDate.of(2024, 2, 29))),
+                PartitionInterval.parse("hits_p20240229"));
+        assertEquals(Optional.of(PartitionInterval.MONTH.partition(LocalDate.of(2024, 2, 1))),
+                PartitionInterval.parse("hits_p202402"));
+    }
+
+    @Test
+    void parse_foreignNames() {
+        assertTrue(PartitionInterval.parse("hits_default").isEmpty());
+        assertTrue(PartitionInterval.parse("hits_p2024").isEmpty());
+        assertTrue(PartitionInterval.parse("hits_p20241399").isEmpty());
+    }
+
+    @Test
+    void overlaps_dayInsideMonth() {
+        HitPartition month = PartitionInterval.MONTH.partition(LocalDate.of(2024, 3, 1));
+
+        assertTrue(month.overlaps(PartitionInterval.DAY.partition(LocalDate.of(2024, 3, 31))));
+        assertFalse(month.overlaps(PartitionInterval.DAY.partition(LocalDate.of(2024, 4, 1))));
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.PlannerProperties;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
+import ru.practicum.explorewithme.stats.server.hot.HotCounterWindow;
+import ru.practicum.explorewithme.stats.server.partition.HitPartitionManager;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.repository.HitScanRepository;
+import ru.practicum.explorewithme.stats.server.rollup.RollupStatsReader;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesReader;
+import ru.practicum.explorewithme.stats.server.visitor.ExactUniqueReader;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StatsBatchPlannerTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 12, 27, 0, 0);
+
+    // 10 млн хитов за декабрь по 1000 uri
+    private static final HitTableStatistics.Snapshot SNAPSHOT = new HitTableStatistics.Snapshot(10_000_000,
+            LocalDateTime.of(2025, 12, 1, 0, 0).toEpochSecond(ZoneOffset.UTC),
+            LocalDateTime.of(2025, 12, 31, 0, 0).toEpochSecond(ZoneOffset.UTC), 1, 1000);
+
+    @Mock
+    private HitRepository hitRepository;
+    @Mock
+    private RollupStatsReader rollupStatsReader;
+    @Mock
+    private ExactUniqueReader exactUniqueReader;
+    @Mock
+    private TimeSeriesReader timeSeriesReader;
+    @Mock
+    private HotCounterWindow hotCounterWindow;
+    @Mock
+    private HitTableStatistics statistics;
+    @Mock
+    private HitPartitionManager partitionManager;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StatsBatchPlanner batchPlanner;
+
+    @BeforeEach
+    void setUp() {
+        when(statistics.current()).thenReturn(SNAPSHOT);
+        StatsQueryPlanner planner = new StatsQueryPlanner(hitRepository, rollupStatsReader, exactUniqueReader,
+                timeSeriesReader, hotCounterWindow, statistics, partitionManager,
+                new HitArchive(new RetentionProperties()), transactionManager, new PlannerProperties(),
+                new SimpleMeterRegistry());
+        batchPlanner = new StatsBatchPlanner(planner, hitRepository);
+    }
+
+    @Test
+    void sameWindowIsReadOnce() {
+        when(rollupStatsReader.isEnabled()).thenReturn(true);
+        LocalDateTime start = DAY.withHour(10);
+        LocalDateTime end = DAY.withHour(18);
+        when(rollupStatsReader.findStats(start, end, List.of("/events/1", "/events/2"))).thenReturn(List.of(
+                new ViewStats("app", "/events/1", 7L),
+                new ViewStats("app", "/events/2", 5L)));
+
+        Map<String, StatsQuery> queries = new LinkedHashMap<>();
+        queries.put("first", new StatsQuery(start, end, List.of("/events/1"), false, UniqueMode.EXACT));
+        queries.put("second", new StatsQuery(start, end, List.of("/events/2"), false, UniqueMode.EXACT));
+        Map<String, StatsResult> results = batchPlanner.execute(queries);
+
+        assertEquals(List.of("first", "second"), List.copyOf(results.keySet()));
+        assertEquals(QueryPlan.ROLLUP, results.get("first").plan());
+        assertEquals(List.of(new ViewStats("app", "/events/1", 7L)), results.get("first").stats());
+        assertEquals(List.of(new ViewStats("app", "/events/2", 5L)), results.get("second").stats());
+        verify(rollupStatsReader, times(1)).findStats(any(), any(), any());
+    }
+
+    @Test
+    void overlappingWindowsShareOneScan() {
+        hits(new Object[]{"10.0.0.1", DAY.withHour(11)},
+                new Object[]{"10.0.0.1", DAY.withHour(13)},
+                new Object[]{"10.0.0.2", DAY.withHour(15)},
+                new Object[]{"10.0.0.2", DAY.withHour(15).withMinute(30)});
+        List<String> uris = List.of("/events/1");
+
+        Map<String, StatsQuery> queries = new LinkedHashMap<>();
+        queries.put("day", new StatsQuery(DAY.withHour(10), DAY.withHour(18), uris, false, UniqueMode.EXACT));
+        queries.put("afternoon", new StatsQuery(DAY.withHour(12), DAY.withHour(18), uris, false, UniqueMode.EXACT));
+        queries.put("visitors", new StatsQuery(DAY.withHour(14), DAY.withHour(18), uris, true, UniqueMode.EXACT));
+        Map<String, StatsResult> results = batchPlanner.execute(queries);
+
+        assertEquals(QueryPlan.RAW_SCAN, results.get("day").plan());
+        assertEquals(4L, results.get("day").stats().get(0).getHits());
+        assertEquals(3L, results.get("afternoon").stats().get(0).getHits());
+        assertEquals(1L, results.get("visitors").stats().get(0).getHits());
+        verify(hitRepository, times(1)).scan(eq(DAY.withHour(10)), eq(DAY.withHour(18)), eq(true), eq(uris), any());
+        verify(hitRepository, never()).forEachStats(any(), any(), any(), anyBoolean(), any(), anyInt(), any());
+    }
+
+    @Test
+    void patternWithoutKnownUrisIsEmpty() {
+        Map<String, StatsQuery> queries = Map.of("missing",
+                new StatsQuery(DAY, DAY.withHour(18), List.of("/events/*"), false, UniqueMode.EXACT));
+
+        StatsResult result = batchPlanner.execute(queries).get("missing");
+
+        assertEquals(QueryPlan.EMPTY, result.plan());
+        assertEquals(0, result.stats().size());
+    }
+
+    private void hits(Object[]... rows) {
+        doAnswer(invocation -> {
+            HitScanRepository.HitRowConsumer consumer = invocation.getArgument(4);
+            for (Object[] row : rows) {
+                consumer.accept("app", "/events/1", (String) row[0], (LocalDateTime) row[1]);
+            }
+            return null;
+        }).when(hitRepository).scan(any(), any(), anyBoolean(), any(), any());
+    }
+}
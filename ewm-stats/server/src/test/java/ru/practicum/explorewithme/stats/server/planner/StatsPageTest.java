@@ -0,0 +1,49 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsPageTest {
+
+    private static final List<ViewStats> STATS = List.of(
+            new ViewStats("app", "/events/3", 1L),
+            new ViewStats("app", "/events/1", 9L),
+            new ViewStats("app", "/events/4", 5L),
+            new ViewStats("app", "/events/2", 5L));
+
+    @Test
+    void withoutLimitKeepsAllRowsInOrder() {
+        assertEquals(List.of("/events/1", "/events/2", "/events/4", "/events/3"),
+                StatsPage.apply(STATS, null, 0).stream().map(ViewStats::getUri).toList());
+        assertEquals(List.of("/events/2", "/events/4", "/events/3"),
+                StatsPage.apply(STATS, null, 1).stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void topRowsAreSortedWithStableTies() {
+        List<ViewStats> page = StatsPage.apply(STATS, 3, 0);
+
+        assertEquals(List.of("/events/1", "/events/2", "/events/4"),
+                page.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void pagesDoNotOverlap() {
+        List<ViewStats> first = StatsPage.apply(STATS, 2, 0);
+        List<ViewStats> second = StatsPage.apply(STATS, 2, 2);
+
+        assertEquals(List.of("/events/1", "/events/2"), first.stream().map(ViewStats::getUri).toList());
+        assertEquals(List.of("/events/4", "/events/3"), second.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void offsetBeyondResultIsEmpty() {
+        assertTrue(StatsPage.apply(STATS, 10, 4).isEmpty());
+        assertTrue(StatsPage.apply(STATS, null, 10).isEmpty());
+    }
+}
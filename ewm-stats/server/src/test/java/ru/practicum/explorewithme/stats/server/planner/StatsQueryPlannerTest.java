@@ -0,0 +1,265 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.PlannerProperties;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
+import ru.practicum.explorewithme.stats.server.exception.StatsQueryTimeoutException;
+import ru.practicum.explorewithme.stats.server.hot.HotCounterWindow;
+import ru.practicum.explorewithme.stats.server.partition.HitPartitionManager;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.RollupStatsReader;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+import ru.practicum.explorewithme.stats.server.timeseries.TimeSeriesReader;
+import ru.practicum.explorewithme.stats.server.visitor.ExactUniqueReader;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StatsQueryPlannerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 12, 27, 10, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2025, 12, 27, 18, 0);
+    private static final List<String> URIS = List.of("/events/1");
+
+    // 10 млн хитов за декабрь по 1000 uri
+    private static final HitTableStatistics.Snapshot SNAPSHOT = new HitTableStatistics.Snapshot(10_000_000,
+            LocalDateTime.of(2025, 12, 1, 0, 0).toEpochSecond(ZoneOffset.UTC),
+            LocalDateTime.of(2025, 12, 31, 0, 0).toEpochSecond(ZoneOffset.UTC), 1, 1000);
+
+    @Mock
+    private HitRepository hitRepository;
+
+    @Mock
+    private RollupStatsReader rollupStatsReader;
+
+    @Mock
+    private ExactUniqueReader exactUniqueReader;
+
+    @Mock
+    private TimeSeriesReader timeSeriesReader;
+
+    @Mock
+    private HotCounterWindow hotCounterWindow;
+
+    @Mock
+    private HitTableStatistics statistics;
+
+    @Mock
+    private HitPartitionManager partitionManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HitArchive archive;
+
+    private StatsQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        archive = new HitArchive(new RetentionProperties());
+        when(statistics.current()).thenReturn(SNAPSHOT);
+        planner = new StatsQueryPlanner(hitRepository, rollupStatsReader, exactUniqueReader, timeSeriesReader,
+                hotCounterWindow, statistics, partitionManager, archive, transactionManager, new PlannerProperties(),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void nonUniqueFromRawHitsWhenRollupsDisabled() {
+        rawStats(false, new ViewStats("app", "/events/1", 5L));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, URIS, false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.RAW_SCAN, result.plan());
+        assertEquals(1, result.stats().size());
+        assertEquals("/events/1", result.stats().get(0).getUri());
+        assertEquals(5L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void nonUniqueFromRollupsWhenCheaper() {
+        when(rollupStatsReader.isEnabled()).thenReturn(true);
+        when(rollupStatsReader.findStats(START, END, URIS)).thenReturn(List.of(new ViewStats("app", "/events/1", 7L)));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, URIS, false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.ROLLUP, result.plan());
+        assertEquals(1, result.stats().size());
+        assertEquals(7L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void shortRangeSkipsRollups() {
+        when(rollupStatsReader.isEnabled()).thenReturn(true);
+        when(partitionManager.isEnabled()).thenReturn(true);
+        LocalDateTime start = LocalDateTime.of(2025, 12, 27, 10, 0, 30);
+        LocalDateTime end = LocalDateTime.of(2025, 12, 27, 10, 5, 30);
+        rawStats(false, new ViewStats("app", "/events/1", 2L));
+
+        StatsResult result = planner.execute(new StatsQuery(start, end, URIS, false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.PARTITION_SCAN, result.plan());
+        assertEquals(2L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void droppedRawHitsSkipRawPlan() {
+        when(rollupStatsReader.isEnabled()).thenReturn(true);
+        when(partitionManager.isEnabled()).thenReturn(true);
+        LocalDateTime start = LocalDateTime.of(2025, 12, 27, 10, 0, 30);
+        LocalDateTime end = LocalDateTime.of(2025, 12, 27, 10, 5, 30);
+        archive.drop(start.plusMinutes(1).toEpochSecond(ZoneOffset.UTC));
+        when(rollupStatsReader.findStats(start, end, URIS)).thenReturn(List.of(new ViewStats("app", "/events/1", 4L)));
+
+        StatsResult result = planner.execute(new StatsQuery(start, end, URIS, false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.ROLLUP, result.plan());
+        assertEquals(4L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void droppedRawHitsKeepRawPlanWithoutRollups() {
+        archive.drop(END.toEpochSecond(ZoneOffset.UTC));
+        rawStats(false, new ViewStats("app", "/events/1", 5L));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, URIS, false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.RAW_SCAN, result.plan());
+    }
+
+    @Test
+    void nonUniqueFromHotWindow() {
+        when(hotCounterWindow.findStats(START, END, URIS))
+                .thenReturn(Optional.of(List.of(new ViewStats("app", "/events/1", 9L))));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, URIS, false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.HOT_WINDOW, result.plan());
+        assertEquals(9L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void uniqueFromRawHits() {
+        rawStats(true, new ViewStats("app", "/events/1", 3L));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, URIS, true, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.RAW_SCAN, result.plan());
+        assertEquals(1, result.stats().size());
+        assertEquals("/events/1", result.stats().get(0).getUri());
+        assertEquals(3L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void uniqueFromBitmapsOverManyDays() {
+        when(exactUniqueReader.isEnabled()).thenReturn(true);
+        LocalDateTime start = LocalDateTime.of(2025, 12, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2025, 12, 30, 23, 59, 59);
+        when(exactUniqueReader.findUniqueStats(start, end, URIS)).thenReturn(List.of(new ViewStats("app", "/events/1", 4L)));
+
+        StatsResult result = planner.execute(new StatsQuery(start, end, URIS, true, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.VISITOR_BITMAP, result.plan());
+        assertEquals(4L, result.stats().get(0).getHits());
+    }
+
+    @Test
+    void timeoutIsReportedWithPlan() {
+        doThrow(new QueryTimeoutException("canceled")).when(hitRepository)
+                .forEachStats(any(), any(), any(), anyBoolean(), any(), anyInt(), any());
+
+        StatsQueryTimeoutException e = assertThrows(StatsQueryTimeoutException.class,
+                () -> planner.execute(new StatsQuery(START, END, URIS, false, UniqueMode.EXACT)));
+
+        assertEquals(QueryPlan.RAW_SCAN, e.getPlan());
+    }
+
+    @Test
+    void limitIsAppliedToInMemoryStats() {
+        when(rollupStatsReader.isEnabled()).thenReturn(true);
+        when(rollupStatsReader.findStats(START, END, null)).thenReturn(List.of(
+                new ViewStats("app", "/events/1", 7L),
+                new ViewStats("app", "/events/2", 5L),
+                new ViewStats("app", "/events/3", 3L)));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, null, false, UniqueMode.EXACT, 1, 1));
+
+        assertEquals(QueryPlan.ROLLUP, result.plan());
+        assertEquals(1, result.stats().size());
+        assertEquals("/events/2", result.stats().get(0).getUri());
+    }
+
+    @Test
+    void patternsAreExpandedBeforePlanning() {
+        when(hitRepository.findUrisByPrefix(eq("/events/"), anyInt())).thenReturn(List.of("/events/1", "/events/2"));
+        when(rollupStatsReader.isEnabled()).thenReturn(true);
+        when(rollupStatsReader.findStats(START, END, List.of("/events/1", "/events/2"))).thenReturn(List.of(
+                new ViewStats("app", "/events/1", 7L),
+                new ViewStats("app", "/events/2", 5L)));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, List.of("/events/*"), false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.ROLLUP, result.plan());
+        assertEquals(2, result.stats().size());
+    }
+
+    @Test
+    void patternWithoutKnownUrisIsEmpty() {
+        StatsResult result = planner.execute(new StatsQuery(START, END, List.of("/events/*"), false, UniqueMode.EXACT));
+
+        assertEquals(QueryPlan.EMPTY, result.plan());
+        assertEquals(0, result.stats().size());
+    }
+
+    @Test
+    void rollUpIsPagedAfterSumming() {
+        when(hitRepository.findUrisByPrefix(eq("/events/"), anyInt())).thenReturn(List.of("/events/1", "/events/2"));
+        rawStats(false,
+                new ViewStats("app", "/users/1", 10L),
+                new ViewStats("app", "/events/1", 7L),
+                new ViewStats("app", "/events/2", 5L));
+
+        StatsResult result = planner.execute(new StatsQuery(START, END, List.of("/events/*", "/users/1"), false,
+                UniqueMode.EXACT, 1, 0, true));
+
+        assertEquals(1, result.stats().size());
+        assertEquals("/events/*", result.stats().get(0).getUri());
+        assertEquals(12L, result.stats().get(0).getHits());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rawStats(boolean unique, ViewStats... rows) {
+        doAnswer(invocation -> {
+            Consumer<ViewStats> consumer = invocation.getArgument(6);
+            for (ViewStats row : rows) {
+                consumer.accept(row);
+            }
+            return null;
+        }).when(hitRepository).forEachStats(any(), any(), any(), eq(unique), any(), anyInt(), any());
+    }
+}
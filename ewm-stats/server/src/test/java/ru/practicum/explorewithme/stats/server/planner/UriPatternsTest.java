@@ -0,0 +1,81 @@
+package ru.practicum.explorewithme.stats.server.planner;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UriPatternsTest {
+
+    private static final List<String> KNOWN = List.of(
+            "/events/1", "/events/1/comments", "/events/2", "/events/2/comments", "/users/1");
+
+    @Test
+    void detectsPatterns() {
+        assertTrue(UriPatterns.hasPatterns(List.of("/events/1", "/events/*")));
+        assertFalse(UriPatterns.hasPatterns(List.of("/events/1")));
+        assertFalse(UriPatterns.hasPatterns(null));
+    }
+
+    @Test
+    void prefixPatternMatchesEveryUriUnderPrefix() {
+        List<String> uris = UriPatterns.expand(List.of("/events/*"), this::lookup, 10);
+
+        assertEquals(List.of("/events/1", "/events/1/comments", "/events/2", "/events/2/comments"), uris);
+    }
+
+    @Test
+    void innerWildcardIsCheckedAfterPrefixLookup() {
+        List<String> uris = UriPatterns.expand(List.of("/events/*/comments"), this::lookup, 10);
+
+        assertEquals(List.of("/events/1/comments", "/events/2/comments"), uris);
+    }
+
+    @Test
+    void exactUrisAreKeptAndDuplicatesRemoved() {
+        List<String> uris = UriPatterns.expand(List.of("/users/1", "/events/2*", "/events/2"), this::lookup, 10);
+
+        assertEquals(List.of("/users/1", "/events/2", "/events/2/comments"), uris);
+    }
+
+    // '*' подходит к любому uri: фильтр снимается без обращения к словарю
+    @Test
+    void matchAllPatternDropsUriFilter() {
+        assertNull(UriPatterns.expand(List.of("/users/1", "*"), (prefix, limit) -> {
+            throw new AssertionError("словарь не нужен");
+        }, 10));
+    }
+
+    @Test
+    void tooBroadPatternIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> UriPatterns.expand(List.of("/events/*"), this::lookup, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> UriPatterns.expand(List.of("/users/1", "/events/1*", "/events/2"), this::lookup, 3));
+    }
+
+    @Test
+    void rollUpSumsRowsPerRequestedEntryAndApp() {
+        List<ViewStats> stats = List.of(
+                new ViewStats("main", "/events/1", 3L),
+                new ViewStats("main", "/events/2", 4L),
+                new ViewStats("admin", "/events/2", 1L),
+                new ViewStats("main", "/users/1", 10L));
+
+        List<ViewStats> rolledUp = UriPatterns.rollUp(stats, List.of("/users/1", "/events/*"));
+
+        assertEquals(3, rolledUp.size());
+        assertEquals(new ViewStats("main", "/users/1", 10L), rolledUp.get(0));
+        assertEquals(new ViewStats("main", "/events/*", 7L), rolledUp.get(1));
+        assertEquals(new ViewStats("admin", "/events/*", 1L), rolledUp.get(2));
+    }
+
+    private List<String> lookup(String prefix, int limit) {
+        return KNOWN.stream().filter(uri -> uri.startsWith(prefix)).limit(limit).toList();
+    }
+}
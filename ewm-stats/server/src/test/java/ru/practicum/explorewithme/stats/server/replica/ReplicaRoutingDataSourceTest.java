@@ -0,0 +1,125 @@
+package ru.practicum.explorewithme.stats.server.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.explorewithme.stats.server.config.ReplicaProperties;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+// Реплику заменяет вторая база H2 в памяти; репликации нет, отметки пишутся в неё вручную
+class ReplicaRoutingDataSourceTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-01T00:00:00Z");
+
+    private HikariDataSource primary;
+    private HikariDataSource replicaPool;
+    private Replica replica;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        primary = pool("primary");
+        replicaPool = pool("replica");
+        replica = new Replica("replica-0", replicaPool);
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica), new SimpleMeterRegistry());
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        routing.close();
+        primary.close();
+    }
+
+    @Test
+    void readOnlyTransaction_goesToHealthyReplica() {
+        new JdbcTemplate(replicaPool).update("INSERT INTO stats_heartbeat (id, beat_at) VALUES (1, ?)",
+                NOW.minusSeconds(1).toEpochMilli());
+        monitor().check();
+
+        assertTrue(replica.isHealthy());
+        assertEquals(1000, replica.lagMillis());
+        assertEquals("replica", readOnly.execute(status -> source()));
+        assertEquals("primary", readWrite.execute(status -> source()));
+        assertEquals("primary", source());
+    }
+
+    @Test
+    void check_fallsBackToPrimaryWhenReplicaLags() {
+        new JdbcTemplate(replicaPool).update("INSERT INTO stats_heartbeat (id, beat_at) VALUES (1, ?)",
+                NOW.minusSeconds(60).toEpochMilli());
+        monitor().check();
+
+        assertFalse(replica.isHealthy());
+        assertEquals("primary", readOnly.execute(status -> source()));
+    }
+
+    @Test
+    void check_fallsBackToPrimaryWithoutHeartbeat() {
+        monitor().check();
+
+        assertFalse(replica.isHealthy());
+        assertEquals(-1, replica.lagMillis());
+        assertEquals("primary", readOnly.execute(status -> source()));
+    }
+
+    @Test
+    void check_writesHeartbeatToPrimary() {
+        ReplicaLagMonitor monitor = monitor();
+        monitor.check();
+        monitor.check();
+
+        assertEquals(NOW.toEpochMilli(), new JdbcTemplate(primary).queryForObject(
+                "SELECT beat_at FROM stats_heartbeat WHERE id = 1", Long.class));
+    }
+
+    private ReplicaLagMonitor monitor() {
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setMaxLag(Duration.ofSeconds(5));
+        return new ReplicaLagMonitor(routing, mock(TaskScheduler.class), properties, new SimpleMeterRegistry(),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private String source() {
+        return jdbcTemplate.queryForObject("SELECT name FROM source", String.class);
+    }
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID());
+        dataSource.setUsername("sa");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE stats_heartbeat (id INTEGER PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        template.execute("CREATE TABLE source (name VARCHAR(16))");
+        template.update("INSERT INTO source (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -2,37 +2,173 @@ package ru.practicum.explorewithme.stats.server.repository;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
-import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
 import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@DataJpaTest
+@JdbcTest
 @ActiveProfiles("test")
+@Import({JdbcHitRepository.class, HitDictionary.class, HitArchive.class, RetentionProperties.class})
 class HitRepositoryTest {
     @Autowired
-    private TestEntityManager entityManager;
+    private HitRepository repository;
 
     @Autowired
-    private HitRepository repository;
+    private JdbcTemplate jdbcTemplate;
 
     @Test
     void findAllByUriAndTimestampBetween() {
 
         Hit hit1 = new Hit(null, "app", "/events/1", "ip", LocalDateTime.of(2025, 12, 27, 12, 0));
-        entityManager.persistAndFlush(hit1);
-
         Hit hit2 = new Hit(null, "app", "/events/2", "ip", LocalDateTime.of(2025, 12, 27, 13, 0));
-        entityManager.persistAndFlush(hit2);
+        repository.insertBatch(List.of(hit1, hit2));
 
         List<Hit> hits = repository.findAllByUriAndTimestampBetween("/events/1", LocalDateTime.of(2025, 12, 27, 11, 0), LocalDateTime.of(2025, 12, 27, 13, 0));
 
         assertEquals(1, hits.size());
         assertEquals("/events/1", hits.get(0).getUri());
+        assertEquals("ip", hits.get(0).getIp());
+        assertEquals(LocalDateTime.of(2025, 12, 27, 12, 0), hits.get(0).getTimestamp());
+    }
+
+    @Test
+    void insertBatch() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        List<Hit> hits = List.of(
+                new Hit(null, "app", "/events/1", "ip1", timestamp),
+                new Hit(null, "app", "/events/1", "ip2", timestamp.plusMinutes(1)),
+                new Hit(null, "app", "/events/2", "ip1", timestamp.plusMinutes(2)));
+
+        int saved = repository.insertBatch(hits);
+        List<ViewStats> stats = repository.findStats(timestamp, timestamp.plusHours(1), List.of("/events/1"));
+
+        assertEquals(3, saved);
+        assertEquals(1, stats.size());
+        assertEquals(2L, stats.get(0).getHits());
+    }
+
+    @Test
+    void findUniqueStatsCountsBinaryIps() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        repository.insertBatch(List.of(
+                new Hit(null, "app", "/events/1", "192.168.0.1", timestamp),
+                new Hit(null, "app", "/events/1", "192.168.0.1", timestamp.plusMinutes(1)),
+                new Hit(null, "app", "/events/1", "2001:db8::1", timestamp.plusMinutes(2))));
+
+        List<ViewStats> stats = repository.findUniqueStats(timestamp, timestamp.plusHours(1), null);
+
+        assertEquals(1, stats.size());
+        assertEquals(2L, stats.get(0).getHits());
+    }
+
+    @Test
+    void findStatsForUnknownUriIsEmpty() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        repository.insertBatch(List.of(new Hit(null, "app", "/events/1", "ip", timestamp)));
+
+        assertTrue(repository.findStats(timestamp, timestamp.plusHours(1), List.of("/events/404")).isEmpty());
+    }
+
+    @Test
+    void forEachStatsPushesLimitAndOffset() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        repository.insertBatch(List.of(
+                new Hit(null, "app", "/events/1", "ip", timestamp),
+                new Hit(null, "app", "/events/1", "ip", timestamp),
+                new Hit(null, "app", "/events/1", "ip", timestamp),
+                new Hit(null, "app", "/events/2", "ip", timestamp),
+                new Hit(null, "app", "/events/2", "ip", timestamp),
+                new Hit(null, "app", "/events/3", "ip", timestamp)));
+
+        List<ViewStats> page = new ArrayList<>();
+        repository.forEachStats(timestamp, timestamp.plusHours(1), null, false, 1, 1, page::add);
+
+        assertEquals(1, page.size());
+        assertEquals("/events/2", page.get(0).getUri());
+        assertEquals(2L, page.get(0).getHits());
+    }
+
+    // uri /events/b получает идентификатор словаря раньше /events/a, но при равенстве порядок - по именам
+    @Test
+    void forEachStatsBreaksTiesByName() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        repository.insertBatch(List.of(
+                new Hit(null, "app", "/events/b", "ip", timestamp),
+                new Hit(null, "app", "/events/a", "ip", timestamp),
+                new Hit(null, "app", "/events/c", "ip", timestamp),
+                new Hit(null, "app", "/events/c", "ip", timestamp)));
+
+        List<ViewStats> page = new ArrayList<>();
+        repository.forEachStats(timestamp, timestamp.plusHours(1), null, false, 2, 0, page::add);
+
+        assertEquals(List.of("/events/c", "/events/a"), page.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void findUrisByPrefix() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        repository.insertBatch(List.of(
+                new Hit(null, "app", "/events/1", "ip", timestamp),
+                new Hit(null, "app", "/events/12", "ip", timestamp),
+                new Hit(null, "app", "/eventsx", "ip", timestamp),
+                new Hit(null, "app", "/users/1", "ip", timestamp)));
+
+        assertEquals(List.of("/events/1", "/events/12"), repository.findUrisByPrefix("/events/", 10));
+        assertEquals(1, repository.findUrisByPrefix("/events/", 1).size());
+        assertTrue(repository.findUrisByPrefix("/compilations/", 10).isEmpty());
+    }
+
+    // uri, записанный другим экземпляром сервера, виден без перезапуска
+    @Test
+    void findUrisByPrefixSeesUrisOfOtherInstances() {
+        repository.insertBatch(List.of(new Hit(null, "app", "/events/1", "ip", LocalDateTime.of(2025, 12, 27, 12, 0))));
+        assertEquals(List.of("/events/1"), repository.findUrisByPrefix("/events/", 10));
+
+        jdbcTemplate.update("INSERT INTO hit_uris (uri, event_id) VALUES ('/events/2', 2)");
+        jdbcTemplate.update("INSERT INTO hit_uris (uri) VALUES ('/events_x')");
+
+        assertEquals(List.of("/events/1", "/events/2"), repository.findUrisByPrefix("/events/", 10));
+        assertEquals(List.of("/events_x"), repository.findUrisByPrefix("/events_", 10));
+    }
+
+    @Test
+    void findStatsWithLongUriList() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        List<Hit> hits = new ArrayList<>();
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            hits.add(new Hit(null, "app", "/events/" + i, "ip", timestamp));
+            uris.add("/events/" + i);
+        }
+        repository.insertBatch(hits);
+
+        assertEquals(1500, repository.findStats(timestamp, timestamp.plusHours(1), uris).size());
+    }
+
+    @Test
+    void findHitIdsMatchesIdAndTimestamp() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 12, 0);
+        repository.insertBatch(List.of(
+                new Hit(null, "app", "/events/1", "ip", timestamp, "a"),
+                new Hit(null, "app", "/events/1", "ip", timestamp, null)));
+
+        Set<String> found = repository.findHitIds(List.of(
+                new Hit(null, "app", "/events/1", "ip", timestamp, "a"),
+                new Hit(null, "app", "/events/1", "ip", timestamp, "b"),
+                new Hit(null, "app", "/events/1", "ip", timestamp.plusSeconds(1), "a")));
+
+        assertEquals(Set.of("a"), found);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package ru.practicum.explorewithme.stats.server.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressCodecTest {
+
+    @Test
+    void ipv4IsStoredInFourBytes() {
+        byte[] bytes = IpAddressCodec.encode("192.168.0.1");
+
+        assertEquals(4, bytes.length);
+        assertEquals("192.168.0.1", IpAddressCodec.decode(bytes));
+    }
+
+    @Test
+    void ipv6IsStoredInSixteenBytes() {
+        byte[] bytes = IpAddressCodec.encode("2001:db8::1");
+
+        assertEquals(16, bytes.length);
+        assertEquals(IpAddressCodec.canonical("2001:0db8:0:0:0:0:0:1"), IpAddressCodec.decode(bytes));
+    }
+
+    @Test
+    void textIsKeptAsIs() {
+        for (String text : new String[]{"ip", "abc", "not-an-ip-address", "", "010.0.0.1"}) {
+            assertEquals(text, IpAddressCodec.decode(IpAddressCodec.encode(text)));
+        }
+    }
+
+    @Test
+    void textNeverLooksLikeAddress() {
+        assertNotEquals(4, IpAddressCodec.encode("abc").length);
+        assertNotEquals(16, IpAddressCodec.encode("fifteen-chars!!").length);
+    }
+}
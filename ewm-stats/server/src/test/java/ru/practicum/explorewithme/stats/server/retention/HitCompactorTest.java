@@ -0,0 +1,204 @@
+package ru.practicum.explorewithme.stats.server.retention;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.config.StorageProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.repository.HitDictionary;
+import ru.practicum.explorewithme.stats.server.repository.JdbcHitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RollupDelta;
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+import ru.practicum.explorewithme.stats.server.rollup.RollupRepository;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+@JdbcTest
+@ActiveProfiles("test")
+class HitCompactorTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-06-01T00:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDateTime OLD = LocalDateTime.of(2026, 1, 10, 12, 0);
+    private static final LocalDateTime RECENT = LocalDateTime.of(2026, 5, 30, 10, 0);
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void compact_movesOldHitsToArchive() {
+        RetentionProperties properties = properties(true);
+        HitArchive archive = new HitArchive(properties);
+        JdbcHitRepository hits = hitRepository(archive);
+        insertHits(hits);
+        RollupRepository rollups = new RollupRepository(jdbcTemplate, namedJdbcTemplate);
+        rollups.increment(List.of(
+                new RollupDelta(new RollupKey(Granularity.MINUTE, OLD, "app", "/events/1"), 2),
+                new RollupDelta(new RollupKey(Granularity.HOUR, OLD, "app", "/events/1"), 2)));
+
+        compactor(properties, archive).compact();
+
+        assertEquals(1, count("SELECT COUNT(*) FROM hits"));
+        assertEquals(0, count("SELECT COUNT(*) FROM hit_rollups WHERE granularity = 'MINUTE'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM hit_rollups WHERE granularity = 'HOUR'"));
+
+        List<ViewStats> stats = hits.findStats(OLD.minusDays(1), RECENT.plusDays(1), null);
+        assertEquals(2, stats.size());
+        assertEquals("/events/1", stats.get(0).getUri());
+        assertEquals(3L, stats.get(0).getHits());
+        assertEquals(1L, stats.get(1).getHits());
+
+        // 10.0.0.1 есть и в архиве, и в hits
+        List<ViewStats> unique = hits.findUniqueStats(OLD.minusDays(1), RECENT.plusDays(1), List.of("/events/1"));
+        assertEquals(2L, unique.get(0).getHits());
+
+        assertEquals(2, hits.findAllByUriAndTimestampBetween("/events/1", OLD, OLD.plusHours(1)).size());
+    }
+
+    // Страница собирается из пар архива и упорядоченного агрегата hits, где есть только свежие пары
+    @Test
+    void forEachStats_pagesAcrossArchive() {
+        RetentionProperties properties = properties(true);
+        HitArchive archive = new HitArchive(properties);
+        JdbcHitRepository hits = hitRepository(archive);
+        insertHits(hits);
+        compactor(properties, archive).compact();
+        hits.insertBatch(List.of(
+                new Hit(null, "app", "/events/3", "10.0.0.3", RECENT),
+                new Hit(null, "app", "/events/3", "10.0.0.4", RECENT)));
+
+        List<ViewStats> page = new ArrayList<>();
+        hits.forEachStats(OLD.minusDays(1), RECENT.plusDays(1), null, false, 1, 1, page::add);
+        assertEquals(1, page.size());
+        assertEquals("/events/3", page.get(0).getUri());
+        assertEquals(2L, page.get(0).getHits());
+
+        // У /events/1 и /events/3 по два посетителя, при равенстве порядок - по uri
+        List<ViewStats> unique = new ArrayList<>();
+        hits.forEachStats(OLD.minusDays(1), RECENT.plusDays(1), null, true, 2, 0, unique::add);
+        assertEquals(List.of("/events/1", "/events/3"), unique.stream().map(ViewStats::getUri).toList());
+        assertEquals(List.of(2L, 2L), unique.stream().map(ViewStats::getHits).toList());
+    }
+
+    @Test
+    void start_reopensArchive() {
+        RetentionProperties properties = properties(true);
+        HitArchive archive = new HitArchive(properties);
+        insertHits(hitRepository(archive));
+        compactor(properties, archive).compact();
+
+        HitArchive reopened = new HitArchive(properties);
+        compactor(properties, reopened);
+
+        List<ViewStats> stats = hitRepository(reopened).findStats(OLD.minusDays(1), OLD.plusDays(1), null);
+        assertEquals(2, stats.size());
+        assertEquals(2L, stats.get(0).getHits());
+    }
+
+    @Test
+    void compact_deletesWithoutArchive() throws IOException {
+        RetentionProperties properties = properties(false);
+        HitArchive archive = new HitArchive(properties);
+        JdbcHitRepository hits = hitRepository(archive);
+        insertHits(hits);
+
+        compactor(properties, archive).compact();
+
+        List<ViewStats> stats = hits.findStats(OLD.minusDays(1), RECENT.plusDays(1), null);
+        assertEquals(1, stats.size());
+        assertEquals(1L, stats.get(0).getHits());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        long dayEnd = OLD.toLocalDate().plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        assertFalse(archive.rawComplete(OLD.toEpochSecond(ZoneOffset.UTC)));
+        assertTrue(archive.rawComplete(dayEnd));
+
+        HitArchive reopened = new HitArchive(properties);
+        compactor(properties, reopened);
+        assertEquals(dayEnd, reopened.rawHorizon());
+    }
+
+    @Test
+    void compact_respectsPerAppAge() {
+        RetentionProperties properties = properties(true);
+        properties.setApps(Map.of("app", Duration.ofDays(365)));
+        HitArchive archive = new HitArchive(properties);
+        insertHits(hitRepository(archive));
+
+        compactor(properties, archive).compact();
+
+        assertEquals(4, count("SELECT COUNT(*) FROM hits"));
+        assertEquals(0, count("SELECT COUNT(*) FROM hit_archive"));
+    }
+
+    private void insertHits(JdbcHitRepository hits) {
+        hits.insertBatch(List.of(
+                new Hit(null, "app", "/events/1", "10.0.0.1", OLD),
+                new Hit(null, "app", "/events/1", "10.0.0.2", OLD.plusMinutes(30)),
+                new Hit(null, "app", "/events/2", "10.0.0.1", OLD.plusHours(1)),
+                new Hit(null, "app", "/events/1", "10.0.0.1", RECENT)));
+    }
+
+    private RetentionProperties properties(boolean archive) {
+        RetentionProperties properties = new RetentionProperties();
+        properties.setArchive(archive);
+        properties.setArchiveDirectory(directory.toString());
+        return properties;
+    }
+
+    private JdbcHitRepository hitRepository(HitArchive archive) {
+        return new JdbcHitRepository(jdbcTemplate, namedJdbcTemplate, dataSource,
+                new HitDictionary(jdbcTemplate, namedJdbcTemplate), archive);
+    }
+
+    // Запуск по расписанию выключен (stats.retention.enabled=false), start только открывает архив
+    private HitCompactor compactor(RetentionProperties properties, HitArchive archive) {
+        HitCompactor compactor = new HitCompactor(new RetentionRepository(jdbcTemplate, dataSource,
+                new HitDictionary(jdbcTemplate, namedJdbcTemplate)), new RollupRepository(jdbcTemplate, namedJdbcTemplate),
+                archive, transactionManager, mock(TaskScheduler.class), properties, new RollupProperties(),
+                new StorageProperties(), CLOCK);
+        compactor.start();
+        return compactor;
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_withinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 100_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add("10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF));
+            sketch.add("10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF));
+        }
+
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+
+        assertTrue(error < 4 * HyperLogLog.STANDARD_ERROR, "Ошибка оценки: " + error);
+    }
+
+    @Test
+    void merge_equalsUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            first.add("ip" + i);
+            second.add("ip" + (i + 50));
+        }
+
+        first.merge(second);
+
+        assertEquals(150, first.estimate(), 150 * 4 * HyperLogLog.STANDARD_ERROR);
+    }
+
+    @Test
+    void toBytes_roundTripSparseAndDense() {
+        HyperLogLog small = new HyperLogLog();
+        small.add("127.0.0.1");
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            large.add("ip" + i);
+        }
+
+        assertTrue(small.toBytes().length < 16);
+        assertEquals(small.estimate(), HyperLogLog.fromBytes(small.toBytes()).estimate());
+        assertEquals(large.estimate(), HyperLogLog.fromBytes(large.toBytes()).estimate());
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.explorewithme.stats.server.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangeDecomposerTest {
+
+    @Test
+    void decompose_usesCoarsestBucketsAndRawEdges() {
+        LocalDateTime start = LocalDateTime.of(2025, 12, 27, 10, 30, 15);
+        LocalDateTime end = LocalDateTime.of(2025, 12, 29, 9, 0);
+
+        List<RangeSegment> segments = RangeDecomposer.decompose(start, end);
+
+        assertEquals(6, segments.size());
+        assertSegment(segments.get(0), null, start, LocalDateTime.of(2025, 12, 27, 10, 31));
+        assertSegment(segments.get(1), Granularity.MINUTE, LocalDateTime.of(2025, 12, 27, 10, 31),
+                LocalDateTime.of(2025, 12, 27, 11, 0));
+        assertSegment(segments.get(2), Granularity.HOUR, LocalDateTime.of(2025, 12, 27, 11, 0),
+                LocalDateTime.of(2025, 12, 28, 0, 0));
+        assertSegment(segments.get(3), Granularity.DAY, LocalDateTime.of(2025, 12, 28, 0, 0),
+                LocalDateTime.of(2025, 12, 29, 0, 0));
+        assertSegment(segments.get(4), Granularity.HOUR, LocalDateTime.of(2025, 12, 29, 0, 0), end);
+        assertSegment(segments.get(5), null, end, end);
+        assertTrue(segments.get(5).toInclusive());
+        assertFalse(segments.get(0).toInclusive());
+    }
+
+    @Test
+    void decompose_shortRangeIsRawOnly() {
+        LocalDateTime start = LocalDateTime.of(2025, 12, 27, 10, 30, 15);
+        LocalDateTime end = LocalDateTime.of(2025, 12, 27, 10, 30, 45);
+
+        List<RangeSegment> segments = RangeDecomposer.decompose(start, end);
+
+        assertEquals(1, segments.size());
+        assertNull(segments.get(0).granularity());
+        assertTrue(segments.get(0).toInclusive());
+    }
+
+    private void assertSegment(RangeSegment segment, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        assertEquals(granularity, segment.granularity());
+        assertEquals(from, segment.from());
+        assertEquals(to, segment.to());
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.explorewithme.stats.server.segment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.StorageProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentStoreTest {
+
+    private static final long T0 = 1_766_836_800L;
+
+    @TempDir
+    Path directory;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void findStats_segmentsAndMemTable() {
+        SegmentStore store = store(8);
+        store.append(List.of(row("/events/1", "10.0.0.1", T0), row("/events/1", "10.0.0.1", T0 + 10),
+                row("/events/2", "10.0.0.2", T0 + 20)));
+        store.flush();
+        store.append(List.of(row("/events/1", "10.0.0.2", T0 + 30), row("/events/1", "10.0.0.3", T0 + 1000)));
+
+        List<ViewStats> all = store.findStats(T0, T0 + 100, null, false);
+        assertEquals(2, all.size());
+        assertEquals("/events/1", all.get(0).getUri());
+        assertEquals(3L, all.get(0).getHits());
+
+        List<ViewStats> unique = store.findStats(T0, T0 + 100, List.of("/events/1"), true);
+        assertEquals(1, unique.size());
+        assertEquals(2L, unique.get(0).getHits());
+    }
+
+    @Test
+    void findStats_rangeInsideLargeSegment() {
+        SegmentStore store = store(8);
+        List<SegmentRow> rows = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            rows.add(row("/events/" + (i % 3), "10.0." + (i % 7) + ".1", T0 + i));
+        }
+        store.append(rows);
+        store.flush();
+
+        List<ViewStats> stats = store.findStats(T0 + 5000, T0 + 8999, null, false);
+
+        assertEquals(4000L, stats.stream().mapToLong(ViewStats::getHits).sum());
+    }
+
+    @Test
+    void findStats_nonIpv4Addresses() {
+        SegmentStore store = store(8);
+        store.append(List.of(row("/events/1", "::1", T0), row("/events/1", "10.0.0.1", T0),
+                row("/events/1", "::1", T0 + 1)));
+        store.flush();
+
+        assertEquals(2L, store.findStats(T0, T0 + 1, null, true).get(0).getHits());
+    }
+
+    @Test
+    void start_reloadsAndMergesSegments() throws IOException {
+        SegmentStore store = store(2);
+        store.append(List.of(row("/events/1", "10.0.0.1", T0)));
+        store.flush();
+        store.append(List.of(row("/events/1", "10.0.0.2", T0 + 1)));
+        store.stop();
+
+        assertEquals(1, segmentFiles());
+
+        SegmentStore reopened = store(2);
+        assertEquals(2L, reopened.findStats(T0, T0 + 1, null, false).get(0).getHits());
+        reopened.stop();
+    }
+
+    private SegmentStore store(int mergeFactor) {
+        StorageProperties properties = new StorageProperties();
+        properties.getSegment().setDirectory(directory.toString());
+        properties.getSegment().setMergeFactor(mergeFactor);
+        properties.getSegment().setFlushInterval(Duration.ofHours(1));
+        SegmentStore store = new SegmentStore(properties, scheduler);
+        store.start();
+        return store;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.toString().endsWith(".seg")).count();
+        }
+    }
+
+    private SegmentRow row(String uri, String ip, long epochSecond) {
+        return new SegmentRow("ewm-main-service", uri, ip, epochSecond);
+    }
+}
@@ -1,36 +1,53 @@
 package ru.practicum.explorewithme.stats.server.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.explorewithme.stats.dto.EndpointHit;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
 import ru.practicum.explorewithme.stats.dto.ViewStats;
-import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.config.MetricsProperties;
+import ru.practicum.explorewithme.stats.server.ingest.HitWriter;
+import ru.practicum.explorewithme.stats.server.metrics.StatsMetrics;
+import ru.practicum.explorewithme.stats.server.planner.QueryPlan;
+import ru.practicum.explorewithme.stats.server.planner.StatsQuery;
+import ru.practicum.explorewithme.stats.server.planner.StatsQueryPlanner;
+import ru.practicum.explorewithme.stats.server.planner.StatsResult;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class StatServiceImplTest {
     @Mock
-    private HitRepository hitRepository;
+    private HitWriter hitWriter;
+
+    @Mock
+    private StatsQueryPlanner planner;
+
+    @Spy
+    private StatsMetrics metrics = new StatsMetrics(new SimpleMeterRegistry(), new MetricsProperties());
 
     @InjectMocks
     private StatServiceImpl statServiceImpl;
 
     @Test
-    void getStats_nonUnique() {
+    void getStats_delegatesToPlanner() {
 
         LocalDateTime start = LocalDateTime.of(2025, 12, 27, 10, 0);
         LocalDateTime end = LocalDateTime.of(2025, 12, 27, 18, 0);
         List<String> uris = List.of("/events/1");
-        List<ViewStats> mockStats = List.of(new ViewStats("app", "/events/1", 5L));
-        when(hitRepository.findStats(any(), any(), any())).thenReturn(mockStats);
+        StatsQuery query = new StatsQuery(start, end, uris, false, UniqueMode.EXACT);
+        when(planner.execute(query))
+                .thenReturn(new StatsResult(QueryPlan.RAW_SCAN, List.of(new ViewStats("app", "/events/1", 5L))));
 
         List<ViewStats> stats = statServiceImpl.getStats(start, end, uris, false);
 
@@ -45,8 +62,9 @@ class StatServiceImplTest {
         LocalDateTime start = LocalDateTime.of(2025, 12, 27, 10, 0);
         LocalDateTime end = LocalDateTime.of(2025, 12, 27, 18, 0);
         List<String> uris = List.of("/events/1");
-        List<ViewStats> mockStats = List.of(new ViewStats("app", "/events/1", 3L));
-        when(hitRepository.findUniqueStats(any(), any(), any())).thenReturn(mockStats);
+        StatsQuery query = new StatsQuery(start, end, uris, true, UniqueMode.EXACT);
+        when(planner.execute(query))
+                .thenReturn(new StatsResult(QueryPlan.RAW_SCAN, List.of(new ViewStats("app", "/events/1", 3L))));
 
         List<ViewStats> stats = statServiceImpl.getStats(start, end, uris, true);
 
@@ -54,4 +72,18 @@ class StatServiceImplTest {
         assertEquals("/events/1", stats.get(0).getUri());
         assertEquals(3L, stats.get(0).getHits());
     }
-}
\ No newline at end of file
+
+    @Test
+    void saveHits_batch() {
+
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 27, 10, 0);
+        List<EndpointHit> hits = List.of(
+                new EndpointHit("app", "/events/1", "ip1", timestamp),
+                new EndpointHit("app", "/events/2", "ip2", timestamp));
+        when(hitWriter.write(anyList())).thenReturn(2);
+
+        int saved = statServiceImpl.saveHits(hits);
+
+        assertEquals(2, saved);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.explorewithme.stats.server.timeseries;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.explorewithme.stats.dto.TimeSeriesPoint;
+import ru.practicum.explorewithme.stats.dto.UniqueMode;
+import ru.practicum.explorewithme.stats.server.config.RetentionProperties;
+import ru.practicum.explorewithme.stats.server.config.RollupProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+import ru.practicum.explorewithme.stats.server.repository.HitDictionary;
+import ru.practicum.explorewithme.stats.server.repository.HitRepository;
+import ru.practicum.explorewithme.stats.server.repository.JdbcHitRepository;
+import ru.practicum.explorewithme.stats.server.rollup.Granularity;
+import ru.practicum.explorewithme.stats.server.rollup.RollupDelta;
+import ru.practicum.explorewithme.stats.server.rollup.RollupKey;
+import ru.practicum.explorewithme.stats.server.rollup.RollupRepository;
+import ru.practicum.explorewithme.stats.server.rollup.RollupStatsReader;
+import ru.practicum.explorewithme.stats.server.segment.HitArchive;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@JdbcTest
+@ActiveProfiles("test")
+@Import({TimeSeriesReader.class, JdbcHitRepository.class, HitDictionary.class, HitArchive.class,
+        RetentionProperties.class, RollupRepository.class, RollupStatsReader.class, RollupProperties.class})
+class TimeSeriesReaderTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 12, 27, 0, 0);
+
+    @Autowired
+    private TimeSeriesReader reader;
+    @Autowired
+    private HitRepository hitRepository;
+    @Autowired
+    private RollupRepository rollupRepository;
+
+    @BeforeEach
+    void setUp() {
+        List<Hit> hits = List.of(
+                new Hit(null, "app", "/events/1", "10.0.0.1", DAY.withHour(10).withMinute(15).withSecond(30)),
+                new Hit(null, "app", "/events/1", "10.0.0.2", DAY.withHour(10).withMinute(45)),
+                new Hit(null, "app", "/events/2", "10.0.0.1", DAY.withHour(11).withMinute(20)),
+                new Hit(null, "app", "/events/1", "10.0.0.1", DAY.withHour(12).withMinute(5)),
+                new Hit(null, "app", "/events/1", "10.0.0.3", DAY.plusDays(1).withHour(9)));
+        hitRepository.insertBatch(hits);
+        // Агрегаты, которые построил бы RollupHitListener
+        List<RollupDelta> deltas = new ArrayList<>();
+        for (Hit hit : hits) {
+            for (Granularity granularity : Granularity.values()) {
+                deltas.add(new RollupDelta(new RollupKey(granularity, granularity.truncate(hit.getTimestamp()),
+                        hit.getApp(), hit.getUri()), 1));
+            }
+        }
+        rollupRepository.increment(deltas);
+    }
+
+    @Test
+    void readRollups_splitsEdgesIntoTheirBuckets() {
+        TimeSeriesQuery query = query(DAY.withHour(10).withMinute(30), DAY.withHour(12).withMinute(10),
+                Granularity.HOUR, TimeSeriesGroup.URI, false);
+
+        List<TimeSeriesPoint> points = rollups(query);
+
+        assertEquals(List.of(
+                new TimeSeriesPoint(DAY.withHour(10), "app", "/events/1", 1L),
+                new TimeSeriesPoint(DAY.withHour(11), "app", "/events/2", 1L),
+                new TimeSeriesPoint(DAY.withHour(12), "app", "/events/1", 1L)), points);
+        assertEquals(raw(query), points);
+    }
+
+    @Test
+    void readRollups_groupsByPrefixAndApp() {
+        TimeSeriesQuery byPrefix = query(DAY, DAY.plusDays(1).withHour(23), Granularity.DAY,
+                TimeSeriesGroup.PREFIX, false);
+        assertEquals(List.of(
+                new TimeSeriesPoint(DAY, "app", "/events", 4L),
+                new TimeSeriesPoint(DAY.plusDays(1), "app", "/events", 1L)), rollups(byPrefix));
+
+        TimeSeriesQuery byApp = query(DAY, DAY.plusDays(1).withHour(23), Granularity.DAY,
+                TimeSeriesGroup.APP, false);
+        List<TimeSeriesPoint> points = rollups(byApp);
+        assertEquals(4L, points.get(0).getHits());
+        assertNull(points.get(0).getUri());
+        assertEquals(raw(byApp), points);
+    }
+
+    // Посетитель двух uri одной группы учитывается один раз
+    @Test
+    void readRaw_countsUniqueVisitorsPerGroup() {
+        TimeSeriesQuery query = query(DAY, DAY.withHour(23), Granularity.DAY, TimeSeriesGroup.PREFIX, true);
+
+        assertEquals(List.of(new TimeSeriesPoint(DAY, "app", "/events", 2L)), raw(query));
+    }
+
+    @Test
+    void prefix_keepsLeadingSegments() {
+        assertEquals("/events", TimeSeriesGroup.prefix("/events/1/comments", 1));
+        assertEquals("/events/1", TimeSeriesGroup.prefix("/events/1/comments", 2));
+        assertEquals("/events/1", TimeSeriesGroup.prefix("/events/1", 3));
+        assertEquals("/", TimeSeriesGroup.prefix("/", 1));
+    }
+
+    private List<TimeSeriesPoint> rollups(TimeSeriesQuery query) {
+        TimeSeriesAccumulator accumulator = new TimeSeriesAccumulator(query);
+        reader.readRollups(query, accumulator);
+        return accumulator.points();
+    }
+
+    private List<TimeSeriesPoint> raw(TimeSeriesQuery query) {
+        TimeSeriesAccumulator accumulator = new TimeSeriesAccumulator(query);
+        reader.readRaw(query, accumulator);
+        return accumulator.points();
+    }
+
+    private static TimeSeriesQuery query(LocalDateTime start, LocalDateTime end, Granularity interval,
+                                         TimeSeriesGroup groupBy, boolean unique) {
+        return new TimeSeriesQuery(start, end, interval, null, groupBy, 1, unique, UniqueMode.EXACT);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.practicum.explorewithme.stats.server.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void heavyHittersSurviveLongTail() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("/events/hot", 1);
+            if (i % 2 == 0) {
+                sketch.add("/events/warm", 1);
+            }
+            sketch.add("/events/tail-" + i, 1);
+        }
+
+        List<Map.Entry<String, Long>> top = sketch.top(2);
+
+        assertEquals(10, sketch.size());
+        assertEquals("/events/hot", top.get(0).getKey());
+        assertEquals("/events/warm", top.get(1).getKey());
+        // Оценка - сверху, но не выше числа всех хитов
+        assertTrue(top.get(0).getValue() >= 10_000);
+    }
+
+    @Test
+    void exactWhileUnderCapacity() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        sketch.add("/events/1", 3);
+        sketch.add("/events/2", 1);
+        sketch.add("/events/1", 2);
+
+        Map<String, long[]> totals = new HashMap<>();
+        sketch.mergeInto(totals);
+
+        assertEquals(5L, totals.get("/events/1")[0]);
+        assertEquals(0L, totals.get("/events/1")[1]);
+        assertEquals(1L, totals.get("/events/2")[0]);
+    }
+
+    @Test
+    void clearEmptiesSketch() {
+        SpaceSaving sketch = new SpaceSaving(4);
+        sketch.add("/events/1", 1);
+        sketch.clear();
+        sketch.add("/events/2", 1);
+
+        assertEquals(1, sketch.size());
+        assertEquals("/events/2", sketch.top(10).get(0).getKey());
+    }
+}
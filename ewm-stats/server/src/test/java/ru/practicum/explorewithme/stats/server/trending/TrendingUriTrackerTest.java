@@ -0,0 +1,79 @@
+package ru.practicum.explorewithme.stats.server.trending;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.explorewithme.stats.dto.ViewStats;
+import ru.practicum.explorewithme.stats.server.config.TrendingProperties;
+import ru.practicum.explorewithme.stats.server.entity.Hit;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendingUriTrackerTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2025-12-27T12:30:30Z"), ZoneOffset.UTC);
+
+    @Test
+    void top_countsOnlyRecentMinutes() {
+        TrendingUriTracker tracker = new TrendingUriTracker(new TrendingProperties(), clock);
+        tracker.add(hit("app", "/events/1", at(12, 30, 0)));
+        tracker.add(hit("app", "/events/1", at(12, 29, 10)));
+        tracker.add(hit("app", "/events/2", at(12, 29, 20)));
+        tracker.add(hit("app", "/events/2", at(12, 10, 0)));
+        tracker.add(hit("app", "/events/2", at(12, 5, 0)));
+
+        List<ViewStats> lastFive = tracker.top(null, 5, 10);
+        List<ViewStats> lastHalfHour = tracker.top(null, 30, 10);
+
+        assertEquals("/events/1", lastFive.get(0).getUri());
+        assertEquals(2L, lastFive.get(0).getHits());
+        assertEquals(1L, lastFive.get(1).getHits());
+        assertEquals("/events/2", lastHalfHour.get(0).getUri());
+        assertEquals(3L, lastHalfHour.get(0).getHits());
+    }
+
+    @Test
+    void top_longWindowUsesHours() {
+        TrendingUriTracker tracker = new TrendingUriTracker(new TrendingProperties(), clock);
+        tracker.add(hit("app", "/events/1", at(9, 15, 0)));
+        tracker.add(hit("app", "/events/1", at(12, 15, 0)));
+
+        assertEquals(1L, tracker.top(null, 120, 10).get(0).getHits());
+        assertEquals(2L, tracker.top(null, 240, 10).get(0).getHits());
+    }
+
+    @Test
+    void top_limitsPerApp() {
+        TrendingUriTracker tracker = new TrendingUriTracker(new TrendingProperties(), clock);
+        tracker.add(hit("main", "/events/1", at(12, 30, 0)));
+        tracker.add(hit("main", "/events/2", at(12, 30, 0)));
+        tracker.add(hit("other", "/events/3", at(12, 30, 0)));
+
+        assertEquals(2, tracker.top(null, 10, 1).size());
+        assertEquals(1, tracker.top("other", 10, 10).size());
+    }
+
+    @Test
+    void top_ignoresAppsOverLimit() {
+        TrendingProperties properties = new TrendingProperties();
+        properties.setMaxApps(1);
+        TrendingUriTracker tracker = new TrendingUriTracker(properties, clock);
+        tracker.add(hit("main", "/events/1", at(12, 30, 0)));
+        tracker.add(hit("other", "/events/2", at(12, 30, 0)));
+
+        assertTrue(tracker.top("other", 10, 10).isEmpty());
+    }
+
+    private Hit hit(String app, String uri, LocalDateTime timestamp) {
+        return Hit.builder().app(app).uri(uri).ip("10.0.0.1").timestamp(timestamp).build();
+    }
+
+    private LocalDateTime at(int hour, int minute, int second) {
+        return LocalDateTime.of(2025, 12, 27, hour, minute, second);
+    }
+}
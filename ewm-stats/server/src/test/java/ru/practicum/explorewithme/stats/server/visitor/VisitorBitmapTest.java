@@ -0,0 +1,46 @@
+package ru.practicum.explorewithme.stats.server.visitor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitorBitmapTest {
+
+    @Test
+    void or_countsUnionExactly() {
+        VisitorBitmap first = new VisitorBitmap();
+        VisitorBitmap second = new VisitorBitmap();
+        for (int i = 0; i < 10_000; i++) {
+            first.add(i);
+            second.add(i + 5_000);
+        }
+        second.add(1 << 20);
+
+        VisitorBitmap union = new VisitorBitmap();
+        union.or(first);
+        union.or(second);
+
+        assertEquals(15_001, union.cardinality());
+        assertEquals(10_000, first.cardinality());
+        assertTrue(union.contains(1 << 20));
+        assertFalse(union.contains(15_000));
+    }
+
+    @Test
+    void toBytes_roundTrip() {
+        VisitorBitmap bitmap = new VisitorBitmap();
+        for (int i = 0; i < 70_000; i += 3) {
+            bitmap.add(i);
+        }
+        bitmap.add(Integer.MAX_VALUE);
+
+        VisitorBitmap restored = VisitorBitmap.fromBytes(bitmap.toBytes());
+
+        assertEquals(bitmap.cardinality(), restored.cardinality());
+        assertTrue(restored.contains(69_999));
+        assertTrue(restored.contains(Integer.MAX_VALUE));
+        assertFalse(restored.contains(1));
+    }
+}